@@ -0,0 +1,207 @@
+package com.telus.demo.controller;
+
+import com.telus.demo.exception.ServiceOverloadedException;
+import com.telus.demo.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Admission control in front of {@link NotesController}, so that a storm of likes sheds likes rather than slowing
+ * down the reads. Each request is admitted by the {@link ConcurrencyLimiter} of its {@link EndpointClass}, and likes
+ * and other writes first by the {@link ClientRateLimiter} of their client. Requests that are not admitted end right
+ * away, with a 429 (over the client's rate) or a 503 (over the concurrency of their class), and a Retry-After.
+ * Publishes {@code notes_admission_limit}, {@code notes_admission_in_flight} and {@code notes_admission_queued} by
+ * class, and {@code notes_admission_rejected_total} by class and reason.
+ */
+@Component
+public class AdmissionInterceptor implements AsyncHandlerInterceptor, WebMvcConfigurer {
+
+    private static final String ADMITTED = AdmissionInterceptor.class.getName() + ".admitted";
+
+    // Last segment of the like, unlike, like-boost and like-reset endpoints
+    private static final Pattern LIKE_ENDPOINT = Pattern.compile("/(un)?like(-boost|-reset)?$");
+
+    /**
+     * Classes of endpoints, each admitted with its own concurrency limit.
+     */
+    public enum EndpointClass {
+        READ, LIKE, WRITE;
+
+        /**
+         * @param method  The HTTP method of the request.
+         * @param pattern The URI template of the endpoint, such as /api/notes/{id}/like.
+         * @return The class of the endpoint.
+         */
+        public static EndpointClass of(String method, String pattern) {
+            if (LIKE_ENDPOINT.matcher(pattern).find()) {
+                return LIKE;
+            }
+            return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) ? READ : WRITE;
+        }
+
+        private String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    // Set on the request while it holds a slot of its class
+    private record Admitted(ConcurrencyLimiter limiter, long startNanos) {
+    }
+
+    private final boolean enabled;
+    private final ClientRateLimiter rateLimiter;
+    private final Map<EndpointClass, ConcurrencyLimiter> limiters = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> rateLimited = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> overloaded = new EnumMap<>(EndpointClass.class);
+
+    /**
+     * Constructor for AdmissionInterceptor.
+     *
+     * @param enabled            Whether requests go through admission control, or are all handled.
+     * @param readConcurrency    The largest number of reads handled at once.
+     * @param readLatencyTarget  The read latency over which the read limit is lowered.
+     * @param likeConcurrency    The largest number of likes and unlikes handled at once.
+     * @param likeLatencyTarget  The like latency over which the like limit is lowered.
+     * @param writeConcurrency   The largest number of other writes handled at once.
+     * @param writeLatencyTarget The write latency over which the write limit is lowered.
+     * @param queueSize          The largest number of requests of a class waiting for its limit.
+     * @param queueTimeout       How long a request waits for the limit of its class.
+     * @param rateLimiter        The rate limits of the clients, applied to likes and writes.
+     * @param meterRegistry      The registry the limits and rejections are published to.
+     */
+    public AdmissionInterceptor(@Value("${notes.admission.enabled:true}") boolean enabled,
+                                @Value("${notes.admission.read.max-concurrency:100}") int readConcurrency,
+                                @Value("${notes.admission.read.latency-target:250ms}") Duration readLatencyTarget,
+                                @Value("${notes.admission.like.max-concurrency:10}") int likeConcurrency,
+                                @Value("${notes.admission.like.latency-target:100ms}") Duration likeLatencyTarget,
+                                @Value("${notes.admission.write.max-concurrency:10}") int writeConcurrency,
+                                @Value("${notes.admission.write.latency-target:500ms}") Duration writeLatencyTarget,
+                                @Value("${notes.admission.queue-size:50}") int queueSize,
+                                @Value("${notes.admission.queue-timeout:50ms}") Duration queueTimeout,
+                                ClientRateLimiter rateLimiter,
+                                MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.rateLimiter = rateLimiter;
+        limiters.put(EndpointClass.READ, new ConcurrencyLimiter(readConcurrency, readLatencyTarget, queueSize, queueTimeout));
+        limiters.put(EndpointClass.LIKE, new ConcurrencyLimiter(likeConcurrency, likeLatencyTarget, queueSize, queueTimeout));
+        limiters.put(EndpointClass.WRITE, new ConcurrencyLimiter(writeConcurrency, writeLatencyTarget, queueSize, queueTimeout));
+        limiters.forEach((endpointClass, limiter) -> {
+            Gauge.builder("notes.admission.limit", limiter, ConcurrencyLimiter::getLimit)
+                    .description("Requests of the class admitted at once, as adapted to their latency")
+                    .tag("class", endpointClass.tag())
+                    .register(meterRegistry);
+            Gauge.builder("notes.admission.in.flight", limiter, ConcurrencyLimiter::getInFlight)
+                    .description("Requests of the class being handled")
+                    .tag("class", endpointClass.tag())
+                    .register(meterRegistry);
+            Gauge.builder("notes.admission.queued", limiter, ConcurrencyLimiter::getQueued)
+                    .description("Requests of the class waiting to be admitted")
+                    .tag("class", endpointClass.tag())
+                    .register(meterRegistry);
+            rateLimited.put(endpointClass, rejected(meterRegistry, endpointClass, "rate-limit"));
+            overloaded.put(endpointClass, rejected(meterRegistry, endpointClass, "concurrency"));
+        });
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this).addPathPatterns("/api/notes/**");
+    }
+
+    /**
+     * Admits the request, or throws the exception that rejects it.
+     *
+     * @throws TooManyRequestsException    If the client of a like or write is over its rate limit.
+     * @throws ServiceOverloadedException  If the class of the request is at its limit, and stays at it for the
+     *                                     queue timeout or has a full queue.
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // An asynchronous response is completed by a second dispatch, which was admitted with the first one
+        if (!enabled || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        EndpointClass endpointClass = EndpointClass.of(request.getMethod(), pattern == null ? request.getRequestURI() : pattern.toString());
+
+        if (endpointClass != EndpointClass.READ) {
+            long waitNanos = rateLimiter.tryAcquire(request);
+            if (waitNanos > 0) {
+                rateLimited.get(endpointClass).increment();
+                throw new TooManyRequestsException("Rate limit exceeded, retry later", retryAfterSeconds(waitNanos));
+            }
+        }
+        ConcurrencyLimiter limiter = limiters.get(endpointClass);
+        if (!limiter.acquire()) {
+            overloaded.get(endpointClass).increment();
+            throw new ServiceOverloadedException("Too many " + endpointClass.tag() + " requests in progress, retry later",
+                    retryAfterSeconds(limiter.getQueueTimeout().toNanos()));
+        }
+        request.setAttribute(ADMITTED, new Admitted(limiter, System.nanoTime()));
+        return true;
+    }
+
+    /**
+     * Releases the slot of a request streaming events, as it only waits for changes from then on: a long-lived
+     * stream does not hold the slot of its class. Other asynchronous responses, such as the export, keep reading the
+     * database while they are written, and keep their slot until they complete.
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod method
+                && ResponseBodyEmitter.class.isAssignableFrom(method.getReturnType().getParameterType())) {
+            release(request, false);
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        release(request, ex != null || response.getStatus() >= 500);
+    }
+
+    /**
+     * @param endpointClass A class of endpoints.
+     * @return The limiter admitting the requests of the class.
+     */
+    public ConcurrencyLimiter getLimiter(EndpointClass endpointClass) {
+        return limiters.get(endpointClass);
+    }
+
+    private static void release(HttpServletRequest request, boolean failed) {
+        if (request.getAttribute(ADMITTED) instanceof Admitted admitted) {
+            request.removeAttribute(ADMITTED);
+            admitted.limiter().release(System.nanoTime() - admitted.startNanos(), failed);
+        }
+    }
+
+    private static Counter rejected(MeterRegistry meterRegistry, EndpointClass endpointClass, String reason) {
+        return Counter.builder("notes.admission.rejected")
+                .description("Requests rejected by admission control")
+                .tag("class", endpointClass.tag())
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+}
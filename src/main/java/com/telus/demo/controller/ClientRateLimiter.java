@@ -0,0 +1,106 @@
+package com.telus.demo.controller;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket per client: each client may send {@code per-second} requests per second on average, in bursts of up
+ * to {@code burst} requests. Clients are told apart by a header when one is configured, by remote address otherwise.
+ * A header listing addresses, like X-Forwarded-For, is read from the right: each proxy appends the address it got the
+ * request from, so only the entries added by the {@code trusted-proxies} in front of the application can be trusted,
+ * while the client may have put anything before them.
+ * Buckets are dropped once their client has been idle long enough for them to be full again.
+ */
+@Component
+public class ClientRateLimiter {
+
+    private static final long MAX_CLIENTS = 100_000;
+
+    private final double tokensPerNano;
+    private final double burst;
+    private final String clientHeader;
+    private final int trustedProxies;
+    private final LongSupplier nanoTime;
+    private final Cache<String, TokenBucket> buckets;
+
+    /**
+     * Constructor for ClientRateLimiter.
+     *
+     * @param perSecond    The number of requests a client may send per second, on average.
+     * @param burst        The number of requests a client may send at once.
+     * @param clientHeader   The header identifying the client, such as X-Forwarded-For behind a proxy; empty to use
+     *                       the remote address.
+     * @param trustedProxies The number of proxies in front of the application that append to the client header.
+     */
+    @Autowired
+    public ClientRateLimiter(@Value("${notes.admission.rate-limit.per-second:50}") double perSecond,
+                             @Value("${notes.admission.rate-limit.burst:100}") int burst,
+                             @Value("${notes.admission.rate-limit.client-header:}") String clientHeader,
+                             @Value("${notes.admission.rate-limit.trusted-proxies:1}") int trustedProxies) {
+        this(perSecond, burst, clientHeader, trustedProxies, System::nanoTime);
+    }
+
+    // Takes the clock, for tests
+    ClientRateLimiter(double perSecond, int burst, String clientHeader, int trustedProxies, LongSupplier nanoTime) {
+        this.tokensPerNano = perSecond / 1e9;
+        this.burst = Math.max(1, burst);
+        this.clientHeader = clientHeader;
+        this.trustedProxies = Math.max(1, trustedProxies);
+        this.nanoTime = nanoTime;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(MAX_CLIENTS)
+                .expireAfterAccess(Duration.ofNanos((long) (this.burst / tokensPerNano)))
+                .executor(Runnable::run)  // Evicts on the calling thread, the work is tiny
+                .build();
+    }
+
+    /**
+     * Takes a token from the bucket of the client that sent a request.
+     *
+     * @param request The request.
+     * @return 0 if the request is allowed, otherwise how long the client should wait before the next one, in nanoseconds.
+     */
+    public long tryAcquire(HttpServletRequest request) {
+        return buckets.get(clientOf(request), client -> new TokenBucket(burst, nanoTime.getAsLong()))
+                .tryTake(nanoTime.getAsLong());
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        String client = clientHeader.isEmpty() ? null : request.getHeader(clientHeader);
+        if (client == null || client.isBlank()) {
+            return request.getRemoteAddr();
+        }
+        // The address the farthest trusted proxy got the request from; a shorter list did not go through all of them,
+        // and its first address is the best there is
+        String[] addresses = client.split(",");
+        return addresses[Math.max(0, addresses.length - trustedProxies)].trim();
+    }
+
+    private class TokenBucket {
+
+        private double tokens;
+        private long refilledAt;
+
+        private TokenBucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.refilledAt = now;
+        }
+
+        private synchronized long tryTake(long now) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.telus.demo.controller;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive limit on the number of requests of one endpoint class handled at the same time (AIMD).
+ * The limit grows by one for each request that finishes within the latency target while the limit is in use,
+ * and is cut by {@link #BACKOFF_RATIO} for each request that is slower or fails, so it settles around the
+ * concurrency the database keeps up with. Requests over the limit wait in a bounded FIFO queue, for a bounded time.
+ */
+public class ConcurrencyLimiter {
+
+    // Factor applied to the limit when a request is slower than the target or fails
+    static final double BACKOFF_RATIO = 0.9;
+
+    private static final int MIN_LIMIT = 1;
+
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final int queueSize;
+    private final long queueTimeoutNanos;
+
+    private double limit;
+    private int inFlight;
+    private int queued;
+
+    // Guards the counts; waiters are parked on its condition (a ReentrantLock, so virtual threads can unmount)
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    /**
+     * Constructor for ConcurrencyLimiter.
+     *
+     * @param maxLimit      The largest number of requests handled at once, which is also the initial limit.
+     * @param latencyTarget The latency over which a request counts as a sign of overload.
+     * @param queueSize     The largest number of requests waiting for the limit, 0 to reject them right away.
+     * @param queueTimeout  How long a request waits for the limit before it is rejected.
+     */
+    public ConcurrencyLimiter(int maxLimit, Duration latencyTarget, int queueSize, Duration queueTimeout) {
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        this.latencyTargetNanos = latencyTarget.toNanos();
+        this.queueSize = queueSize;
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.limit = this.maxLimit;
+    }
+
+    /**
+     * Admits a request if it is under the limit, or once it gets under it within the queue timeout.
+     * Requests arriving while others are queued queue behind them.
+     *
+     * @return Whether the request is admitted; if so, {@link #release(long, boolean)} must be called when it ends.
+     */
+    public boolean acquire() {
+        lock.lock();
+        try {
+            if (queued == 0 && inFlight < (int) limit) {
+                inFlight++;
+                return true;
+            }
+            if (queued >= queueSize) {
+                return false;
+            }
+            queued++;
+            try {
+                long remaining = queueTimeoutNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                inFlight++;
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                queued--;
+                // The slot may have been freed for a request that gave up: pass it on
+                if (inFlight < (int) limit) {
+                    released.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends an admitted request, and adapts the limit to its outcome.
+     *
+     * @param latencyNanos How long the request took.
+     * @param failed       Whether it failed for a reason that may come from overload, such as a server error.
+     */
+    public void release(long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            if (failed || latencyNanos > latencyTargetNanos) {
+                limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+            } else if (inFlight * 2 >= limit) {
+                // Only grow while the limit is in use, so it does not drift up during quiet periods
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            inFlight--;
+            if (inFlight < (int) limit) {
+                released.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The current limit.
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of requests being handled.
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of requests waiting for the limit.
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return How long a request waits for the limit at most.
+     */
+    public Duration getQueueTimeout() {
+        return Duration.ofNanos(queueTimeoutNanos);
+    }
+}
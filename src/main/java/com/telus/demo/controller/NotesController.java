@@ -1,15 +1,37 @@
 package com.telus.demo.controller;
 
+import com.telus.demo.modal.BatchOperation;
+import com.telus.demo.modal.BatchResult;
+import com.telus.demo.modal.BulkImportResult;
+import com.telus.demo.modal.CursorPage;
 import com.telus.demo.modal.Note;
+import com.telus.demo.modal.NoteETag;
+import com.telus.demo.modal.NoteFields;
+import com.telus.demo.modal.NoteSummary;
+import com.telus.demo.modal.TextStats;
+import com.telus.demo.service.NoteChangeFeed;
+import com.telus.demo.service.NotesExportService;
+import com.telus.demo.service.NotesImportService;
 import com.telus.demo.service.NotesService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Controller class for managing Notes.
@@ -19,17 +41,39 @@ import java.util.Map;
 @RequestMapping("/api/notes")
 public class NotesController {
 
+    // Response header carrying the cursor of the next page, absent on the last page
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // Media type of the export: one JSON object per line
+    public static final String NDJSON = "application/x-ndjson";
+
     // The service layer responsible for business logic
     private final NotesService notesService;
 
+    // The service streaming the bulk export
+    private final NotesExportService notesExportService;
+
+    // The service inserting bulk imports
+    private final NotesImportService notesImportService;
+
+    // The changes streamed to subscribers
+    private final NoteChangeFeed noteChangeFeed;
+
     /**
-     * Constructor that initializes the controller with a NotesService.
+     * Constructor that initializes the controller with its services.
      *
-     * @param notesService The NotesService instance to be injected.
+     * @param notesService       The NotesService instance to be injected.
+     * @param notesExportService The NotesExportService instance to be injected.
+     * @param notesImportService The NotesImportService instance to be injected.
+     * @param noteChangeFeed     The NoteChangeFeed instance to be injected.
      */
     @Autowired
-    public NotesController(NotesService notesService) {
+    public NotesController(NotesService notesService, NotesExportService notesExportService,
+                           NotesImportService notesImportService, NoteChangeFeed noteChangeFeed) {
         this.notesService = notesService;
+        this.notesExportService = notesExportService;
+        this.notesImportService = notesImportService;
+        this.noteChangeFeed = noteChangeFeed;
     }
 
     /**
@@ -44,17 +88,51 @@ public class NotesController {
         return ResponseEntity.status(HttpStatus.CREATED).body(notesService.addNote(note));
     }
 
+    /**
+     * Endpoint to add many notes at once, from a JSON array or newline-delimited JSON.
+     * The notes are inserted in chunks, so a failure only rolls back its own chunk.
+     *
+     * @param body The request body, read one note at a time.
+     * @return ResponseEntity with the number of imported notes and the failed chunks,
+     *         201 if every note was imported and 207 otherwise.
+     * @throws IOException If reading the request body fails.
+     */
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    public ResponseEntity<BulkImportResult> importNotes(InputStream body) throws IOException {
+        BulkImportResult result = notesImportService.importNotes(body);
+        HttpStatus status = result.getFailures().isEmpty() ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        return ResponseEntity.status(status).body(result);
+    }
+
+    /**
+     * Endpoint to apply several likes, unlikes, modifications and deletions in one request and one transaction.
+     * Each operation gets its own result, with the status its single-note endpoint would have answered.
+     *
+     * @param operations The operations, applied in order, at most {@link NotesService#MAX_BATCH_SIZE}.
+     * @return ResponseEntity containing one result per operation: 200 if all succeeded, 207 (Multi-Status) otherwise.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchResult>> applyBatch(@RequestBody List<BatchOperation> operations) {
+        List<BatchResult> results = notesService.applyBatch(operations);
+        boolean failed = results.stream().anyMatch(result -> result.getStatus() >= HttpStatus.BAD_REQUEST.value());
+        return ResponseEntity.status(failed ? HttpStatus.MULTI_STATUS : HttpStatus.OK).body(results);
+    }
+
     /**
      * Endpoint to modify an existing note.
+     * With an If-Match header, the note is only modified if it still has one of the given ETags (412 otherwise).
      *
      * @param id          The ID of the note to be modified.
      * @param noteDetails The new details of the note.
-     * @return ResponseEntity containing the updated note.
+     * @param ifMatch     The ETags the client expects the note to have, optional.
+     * @return ResponseEntity containing the updated note and its new ETag.
      */
     @PutMapping("/{id}")
-    public ResponseEntity<Note> modifyNote(@PathVariable Long id, @RequestBody Note noteDetails) {
+    public ResponseEntity<Note> modifyNote(@PathVariable Long id, @RequestBody Note noteDetails,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         // Modifies the note with the given ID and responds with the updated note.
-        return ResponseEntity.ok(notesService.modifyNote(id, noteDetails));
+        Note updatedNote = notesService.modifyNote(id, noteDetails, ifMatch);
+        return ResponseEntity.ok().eTag(NoteETag.of(updatedNote)).body(updatedNote);
     }
 
     /**
@@ -75,38 +153,143 @@ public class NotesController {
     }
 
     /**
-     * Endpoint to search for notes by subject.
+     * Endpoint to search for notes by subject, one page at a time.
      *
      * @param subject The subject to search for.
-     * @return ResponseEntity containing a list of notes matching the subject.
+     * @param cursor  The cursor of the page to fetch, as returned in the {@value #NEXT_CURSOR_HEADER} header.
+     * @param limit   The maximum number of notes to return.
+     * @param fields  The fields of each note to return, comma-separated, all of them by default.
+     *                Without the description, it is not even read from the database.
+     * @return ResponseEntity containing a page of notes matching the subject.
      */
     @GetMapping("/search")
-    public ResponseEntity<List<Note>> searchNotesBySubject(@RequestParam String subject) {
-        // Searches for notes with a subject containing the given string and returns the list of matching notes.
-        return ResponseEntity.ok(notesService.searchNotesBySubject(subject));
+    public ResponseEntity<List<?>> searchNotesBySubject(@RequestParam String subject,
+                                                        @RequestParam(required = false) String cursor,
+                                                        @RequestParam(required = false) Integer limit,
+                                                        @RequestParam(required = false) String fields) {
+        // Searches for notes with a subject containing the given string and returns the page of matching notes.
+        return pageResponse(fields, () -> notesService.searchNotesBySubject(subject, cursor, limit),
+                () -> notesService.searchNoteSummariesBySubject(subject, cursor, limit));
     }
 
     /**
-     * Endpoint to retrieve all notes.
+     * Endpoint to search the subject and description of notes for free text, ranked by relevance.
+     * Selected with {@code mode=fulltext}.
      *
-     * @return ResponseEntity containing the list of all notes.
+     * @param q The words to search for.
+     * @param k The maximum number of notes to return, 10 by default.
+     * @return ResponseEntity containing the best matching notes, best match first.
+     */
+    @GetMapping(value = "/search", params = "mode=fulltext")
+    public ResponseEntity<List<Note>> searchNotesFullText(@RequestParam String q,
+                                                          @RequestParam(defaultValue = "10") int k) {
+        // Ranks notes by BM25 over the in-memory full-text index and returns the top K.
+        return listResponse(notesService.searchNotesFullText(q, k));
+    }
+
+    /**
+     * Endpoint to retrieve all notes, one page at a time.
+     *
+     * @param cursor The cursor of the page to fetch, as returned in the {@value #NEXT_CURSOR_HEADER} header.
+     * @param limit  The maximum number of notes to return.
+     * @param fields The fields of each note to return, comma-separated, all of them by default.
+     *               Without the description, it is not even read from the database.
+     * @return ResponseEntity containing a page of notes.
      */
     @GetMapping
-    public ResponseEntity<List<Note>> getAllNotes() {
-        // Retrieves all notes and returns them in the response.
-        return ResponseEntity.ok(notesService.getAllNotes());
+    public ResponseEntity<List<?>> getAllNotes(@RequestParam(required = false) String cursor,
+                                               @RequestParam(required = false) Integer limit,
+                                               @RequestParam(required = false) String fields) {
+        // Retrieves a page of notes and returns them in the response.
+        return pageResponse(fields, () -> notesService.getAllNotes(cursor, limit),
+                () -> notesService.getAllNoteSummaries(cursor, limit));
+    }
+
+    /**
+     * Endpoint to export all notes as newline-delimited JSON.
+     * The response is streamed while notes are read from the database, so it never holds the whole table.
+     *
+     * @param gzip Whether to gzip the response body.
+     * @return ResponseEntity streaming one note per line, ordered by ID.
+     */
+    @GetMapping(value = "/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportNotes(@RequestParam(defaultValue = "false") boolean gzip) {
+        // Streams every note as it is read; the body is written after this method returns.
+        StreamingResponseBody body = out -> notesExportService.exportNotes(out, gzip);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON));
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Endpoint streaming the changes to notes as Server-Sent Events, in place of polling the lists.
+     * Each note created, modified, deleted or whose likes changed is pushed once committed, as a
+     * {@code note-created}, {@code note-modified}, {@code note-deleted} or {@code note-likes-changed} event whose ID
+     * is its sequence number. A client reconnecting with the Last-Event-ID header gets the changes it missed,
+     * or a {@value NoteChangeFeed#RESET_EVENT} event when they are no longer kept, after which it reads the notes again.
+     *
+     * @param lastEventId The sequence number of the last change the client received, sent when it reconnects.
+     * @return The emitter streaming the changes.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return noteChangeFeed.subscribe(lastEventId);
     }
 
     /**
      * Endpoint to get a specific note by its ID.
+     * Answers 304 Not Modified when the If-None-Match header holds the current ETag of the note.
      *
-     * @param id The ID of the note to retrieve.
-     * @return ResponseEntity containing the requested note.
+     * @param id      The ID of the note to retrieve.
+     * @param request The request, checked for an If-None-Match header.
+     * @return ResponseEntity containing the requested note and its ETag.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Note> getNoteById(@PathVariable Long id) {
+    public ResponseEntity<Note> getNoteById(@PathVariable Long id, WebRequest request) {
+        // A client polling with the ETag it already has is answered without loading the note.
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null && request.checkNotModified(notesService.getNoteETag(id))) {
+            return null;
+        }
         // Retrieves a note by its ID and returns it in the response.
-        return ResponseEntity.ok(notesService.getNoteById(id));
+        Note note = notesService.getNoteById(id);
+        return ResponseEntity.ok().eTag(NoteETag.of(note)).body(note);
+    }
+
+    /**
+     * Endpoint streaming the description of a note as plain text, for descriptions too large to read in one piece.
+     * The description is copied from the database as it is read, so it is never held in memory whole.
+     * Answers 304 Not Modified when the If-None-Match header holds the current ETag of the note.
+     *
+     * @param id      The ID of the note.
+     * @param request The request, checked for an If-None-Match header.
+     * @return ResponseEntity streaming the description, with the ETag of the note.
+     */
+    @GetMapping(value = "/{id}/description", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<StreamingResponseBody> getNoteDescription(@PathVariable Long id, WebRequest request) {
+        // Read before the body is streamed, so a missing note is still answered with 404.
+        String eTag = notesService.getNoteETag(id);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        StreamingResponseBody body = out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            notesService.writeDescription(id, writer);
+            writer.flush();
+        };
+        return ResponseEntity.ok().eTag(eTag).contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8)).body(body);
+    }
+
+    /**
+     * Endpoint to get several notes by ID in one request, such as the notes of a feed.
+     *
+     * @param ids The IDs of the notes, comma-separated, at most {@link NotesService#MAX_BATCH_SIZE}.
+     * @return ResponseEntity containing the notes in the order of the IDs; missing notes are left out.
+     */
+    @GetMapping("/batch")
+    public ResponseEntity<List<Note>> getNotesByIds(@RequestParam List<Long> ids) {
+        return listResponse(notesService.getNotesByIds(ids));
     }
 
     /**
@@ -120,6 +303,17 @@ public class NotesController {
         return ResponseEntity.ok(notesService.countTotalNotes());
     }
 
+    /**
+     * Endpoint to get the hit, miss and eviction counts of the note cache.
+     *
+     * @return ResponseEntity containing the cache statistics.
+     */
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        // Reports how well GET /api/notes/{id} is served from the cache.
+        return ResponseEntity.ok(notesService.getCacheStats());
+    }
+
     /**
      * Endpoint to get the word count of a note by its ID.
      *
@@ -132,6 +326,18 @@ public class NotesController {
         return ResponseEntity.ok(notesService.getWordCount(id));
     }
 
+    /**
+     * Endpoint to get the text statistics of a note by its ID.
+     *
+     * @param id The ID of the note to analyze.
+     * @return ResponseEntity containing the word, character, sentence and distinct word counts, and the reading time.
+     */
+    @GetMapping("/{id}/stats")
+    public ResponseEntity<TextStats> getTextStats(@PathVariable Long id) {
+        // Analyzes the description of the note with the given ID.
+        return ResponseEntity.ok(notesService.getTextStats(id));
+    }
+
     /**
      * Endpoint to get the average note length (in terms of word count).
      *
@@ -168,24 +374,35 @@ public class NotesController {
     }
 
     /**
-     * Endpoint to retrieve all liked notes.
+     * Endpoint to retrieve liked notes, one page at a time.
      *
-     * @return ResponseEntity containing the list of notes with likes greater than 0.
+     * @param cursor The cursor of the page to fetch, as returned in the {@value #NEXT_CURSOR_HEADER} header.
+     * @param limit  The maximum number of notes to return.
+     * @param fields The fields of each note to return, comma-separated, all of them by default.
+     *               Without the description, it is not even read from the database.
+     * @return ResponseEntity containing a page of notes with likes greater than 0.
      */
     @GetMapping("/liked")
-    public ResponseEntity<List<Note>> getLikedNotes() {
-        // Retrieves all notes that have at least one like.
-        return ResponseEntity.ok(notesService.getLikedNotes());
+    public ResponseEntity<List<?>> getLikedNotes(@RequestParam(required = false) String cursor,
+                                                 @RequestParam(required = false) Integer limit,
+                                                 @RequestParam(required = false) String fields) {
+        // Retrieves a page of notes that have at least one like.
+        return pageResponse(fields, () -> notesService.getLikedNotes(cursor, limit),
+                () -> notesService.getLikedNoteSummaries(cursor, limit));
     }
 
     /**
-     * Retrieves the top 5 most liked notes.
+     * Retrieves the top K most liked notes.
      *
-     * @return a ResponseEntity containing the list of top 5 liked notes
+     * @param k      the number of notes to return, 5 by default
+     * @param fields the fields of each note to return, comma-separated, all of them by default
+     * @return a ResponseEntity containing the list of top K liked notes
      */
     @GetMapping("/top-liked")
-    public ResponseEntity<List<Note>> getTopLikedNotes() {
-        return ResponseEntity.ok(notesService.getTopLikedNotes());
+    public ResponseEntity<List<?>> getTopLikedNotes(@RequestParam(defaultValue = "5") int k,
+                                                    @RequestParam(required = false) String fields) {
+        return pageResponse(fields, () -> new CursorPage<>(notesService.getTopLikedNotes(k), null),
+                () -> new CursorPage<>(notesService.getTopLikedNoteSummaries(k), null));
     }
 
     /**
@@ -219,7 +436,58 @@ public class NotesController {
         ));
     }
 
+    /**
+     * Wraps a page into a response whose body is the list of items,
+     * with the next cursor in the {@value #NEXT_CURSOR_HEADER} header when there are more pages.
+     * The ETag of the page lets a polling client get 304 Not Modified when nothing changed.
+     *
+     * @param page The page to return.
+     * @return ResponseEntity containing the items of the page.
+     */
+    private ResponseEntity<List<?>> pageResponse(CursorPage<Note> page) {
+        return pageResponse(page.getItems(), NoteETag.of(page.getItems(), page.getNextCursor()), page.getNextCursor());
+    }
 
-}
+    /**
+     * Reads a page and wraps it into a response holding the requested fields of its notes.
+     * Without the description, the page is read as note summaries, which leave the description column out of the query.
+     *
+     * @param fields    The requested fields, comma-separated, or null for whole notes.
+     * @param notes     Reads the page as whole notes.
+     * @param summaries Reads the page as note summaries.
+     * @return ResponseEntity containing the items of the page.
+     */
+    private ResponseEntity<List<?>> pageResponse(String fields, Supplier<CursorPage<Note>> notes,
+                                                 Supplier<CursorPage<NoteSummary>> summaries) {
+        if (fields == null) {
+            return pageResponse(notes.get());
+        }
+        NoteFields selected = NoteFields.parse(fields);
+        if (selected.includesDescription()) {
+            CursorPage<Note> page = notes.get();
+            return pageResponse(selected.select(page.getItems()),
+                    NoteETag.of(page.getItems(), page.getNextCursor(), selected), page.getNextCursor());
+        }
+        CursorPage<NoteSummary> page = summaries.get();
+        return pageResponse(selected.selectSummaries(page.getItems()),
+                NoteETag.ofSummaries(page.getItems(), page.getNextCursor(), selected), page.getNextCursor());
+    }
 
+    private ResponseEntity<List<?>> pageResponse(List<?> items, String eTag, String nextCursor) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(eTag);
+        if (nextCursor != null) {
+            response.header(NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response.body(items);
+    }
 
+    /**
+     * Wraps a list of notes into a response with its ETag.
+     *
+     * @param notes The notes to return.
+     * @return ResponseEntity containing the notes.
+     */
+    private ResponseEntity<List<Note>> listResponse(List<Note> notes) {
+        return ResponseEntity.ok().eTag(NoteETag.of(notes, null)).body(notes);
+    }
+}
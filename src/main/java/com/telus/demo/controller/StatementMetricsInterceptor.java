@@ -0,0 +1,59 @@
+package com.telus.demo.controller;
+
+import com.telus.demo.dao.StatementCounter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Records the number of SQL statements each request ran, as {@code notes_request_statements} tagged
+ * like {@code http_server_requests} by method and URI template, to spot endpoints issuing N+1 queries.
+ * Streamed responses finish on another thread, so only the statements before streaming are counted.
+ */
+@Component
+public class StatementMetricsInterceptor implements HandlerInterceptor, WebMvcConfigurer {
+
+    private final StatementCounter statementCounter;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Constructor for StatementMetricsInterceptor.
+     *
+     * @param statementCounter The per-thread count of the statements prepared by Hibernate.
+     * @param meterRegistry    The registry the statement counts are published to.
+     */
+    public StatementMetricsInterceptor(StatementCounter statementCounter, MeterRegistry meterRegistry) {
+        this.statementCounter = statementCounter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this).addPathPatterns("/api/**");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        statementCounter.reset();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder("notes.request.statements")
+                .description("SQL statements prepared by Hibernate while handling a request")
+                .baseUnit("statements")
+                .serviceLevelObjectives(1, 2, 5, 10, 20, 50, 100)  // Small integers, a few fixed buckets are enough
+                .tag("method", request.getMethod())
+                .tag("uri", uri == null ? "UNKNOWN" : uri.toString())
+                .register(meterRegistry)
+                .record(statementCounter.count());
+    }
+}
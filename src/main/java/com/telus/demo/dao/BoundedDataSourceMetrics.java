@@ -0,0 +1,43 @@
+package com.telus.demo.dao;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Publishes how saturated the {@link BoundedDataSource} is: the connections held and the callers queued for one.
+ * The connection pool behind it is measured by the HikariCP metrics.
+ */
+@Component
+public class BoundedDataSourceMetrics implements MeterBinder {
+
+    private final DataSource dataSource;
+
+    /**
+     * Constructor for BoundedDataSourceMetrics.
+     *
+     * @param dataSource The data source of the application, bounded by {@link BoundedDataSourcePostProcessor}.
+     */
+    public BoundedDataSourceMetrics(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!(dataSource instanceof BoundedDataSource bounded)) {
+            return;
+        }
+        Gauge.builder("notes.db.permits.active", bounded, BoundedDataSource::getActive)
+                .description("Connections held through the bounded data source")
+                .register(registry);
+        Gauge.builder("notes.db.permits.waiting", bounded, BoundedDataSource::getWaiting)
+                .description("Callers queued for a connection permit")
+                .register(registry);
+        Gauge.builder("notes.db.permits.max", bounded, BoundedDataSource::getMaxConcurrency)
+                .description("Connections that can be held at once")
+                .register(registry);
+    }
+}
@@ -0,0 +1,43 @@
+package com.telus.demo.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Wraps the application data source in a {@link BoundedDataSource}.
+ * The bound defaults to the size of the Hikari pool, so callers beyond it wait outside the pool.
+ */
+@Component
+@Slf4j
+public class BoundedDataSourcePostProcessor implements BeanPostProcessor {
+
+    private final int maxConcurrency;
+    private final Duration acquireTimeout;
+
+    /**
+     * Constructor for BoundedDataSourcePostProcessor.
+     *
+     * @param maxConcurrency The number of connections that can be open at once.
+     * @param acquireTimeout How long a caller waits for a connection before failing.
+     */
+    public BoundedDataSourcePostProcessor(
+            @Value("${notes.db.max-concurrency:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrency,
+            @Value("${notes.db.acquire-timeout:30s}") Duration acquireTimeout) {
+        this.maxConcurrency = maxConcurrency;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof BoundedDataSource)) {
+            log.info("Bounding data source {} to {} concurrent connections", beanName, maxConcurrency);
+            return new BoundedDataSource(dataSource, maxConcurrency, acquireTimeout);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,33 @@
+package com.telus.demo.dao;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Compresses the description of a note as it is written, and decompresses it as it is read, with
+ * {@link DescriptionCompression}. Created by Hibernate through the Spring bean container, which injects it.
+ */
+@Converter
+public class CompressedDescriptionConverter implements AttributeConverter<String, byte[]> {
+
+    private final DescriptionCompression compression;
+
+    /**
+     * Constructor for CompressedDescriptionConverter.
+     *
+     * @param compression The compression of the stored descriptions.
+     */
+    public CompressedDescriptionConverter(DescriptionCompression compression) {
+        this.compression = compression;
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(String description) {
+        return compression.compress(description);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] stored) {
+        return compression.decompress(stored);
+    }
+}
@@ -0,0 +1,269 @@
+package com.telus.demo.dao;
+
+import com.telus.demo.modal.Note;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression of note descriptions at rest, applied by {@link CompressedDescriptionConverter} to the description
+ * column, a binary LOB. A description is stored as its UTF-8 text, or compressed as {@link #MARKER}, the ID of its
+ * {@link Codec}, then the output of the codec. UTF-8 text only starts with the marker byte if it starts with the
+ * marker character, which is then stored behind a header too. Descriptions without the marker are read as they are,
+ * so the rows written before compression was enabled stay readable, and switching codecs does not require rewriting
+ * them. Publishes {@code notes_description_bytes_total}, by form ({@code raw} for the UTF-8 text, or {@code stored})
+ * for the compression ratio, and {@code notes_description_decompression_seconds}, the time added to the reads of
+ * compressed descriptions.
+ */
+@Component
+public class DescriptionCompression {
+
+    // First byte of the descriptions stored with a header, the UTF-8 of a character not expected at the start of text
+    public static final byte MARKER = 1;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Codecs a description can be stored with, each identified by the byte after the marker.
+     */
+    public enum Codec {
+        // Stored as it is, behind a header only if it starts with the marker
+        NONE('N'),
+        DEFLATE('D'),
+        // Deflate with a CRC32 of the text, checked on every read
+        GZIP('G');
+
+        private final byte id;
+
+        Codec(char id) {
+            this.id = (byte) id;
+        }
+
+        private static Codec of(int id) {
+            for (Codec codec : values()) {
+                if (codec.id == id) {
+                    return codec;
+                }
+            }
+            throw new IllegalStateException("Unknown description codec '" + (char) id + "'");
+        }
+
+        // The deflater of each stream is released when it is closed
+        private OutputStream compressing(OutputStream out, int level) throws IOException {
+            return switch (this) {
+                case DEFLATE -> new DeflaterOutputStream(out, new Deflater(level)) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            def.end();
+                        }
+                    }
+                };
+                case GZIP -> new GZIPOutputStream(out) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+                case NONE -> throw new IllegalStateException("Descriptions are not compressed with " + this);
+            };
+        }
+
+        private InputStream decompressing(InputStream in) throws IOException {
+            return switch (this) {
+                case DEFLATE -> new InflaterInputStream(in, new Inflater(), BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            inf.end();
+                        }
+                    }
+                };
+                case GZIP -> new GZIPInputStream(in, BUFFER_SIZE);
+                case NONE -> in;
+            };
+        }
+    }
+
+    private final Codec codec;
+    private final int level;
+    private final int minLength;
+    private final Counter rawBytes;
+    private final Counter storedBytes;
+    private final Map<Codec, Timer> decompressionTimers = new EnumMap<>(Codec.class);
+
+    /**
+     * Constructor for DescriptionCompression.
+     *
+     * @param codec         The codec new descriptions are compressed with, NONE to store them as they are.
+     * @param level         The compression level, from 1 (fastest) to 9 (smallest).
+     * @param minLength     The length from which descriptions are compressed, in characters.
+     *                      Compression roughly halves prose, but a compressed description is inflated on every read
+     *                      that loads it, so short descriptions, whose saving is small, are left as they are.
+     * @param meterRegistry The registry the metrics are published to.
+     */
+    public DescriptionCompression(@Value("${notes.description.compression.codec:none}") Codec codec,
+                                  @Value("${notes.description.compression.level:6}") int level,
+                                  @Value("${notes.description.compression.min-length:4096}") int minLength,
+                                  MeterRegistry meterRegistry) {
+        this.codec = codec;
+        this.level = level;
+        this.minLength = minLength;
+        this.rawBytes = Counter.builder("notes.description.bytes")
+                .description("Bytes of the descriptions written, as UTF-8 text and as stored")
+                .tag("form", "raw")
+                .register(meterRegistry);
+        this.storedBytes = Counter.builder("notes.description.bytes")
+                .description("Bytes of the descriptions written, as UTF-8 text and as stored")
+                .tag("form", "stored")
+                .register(meterRegistry);
+        for (Codec each : new Codec[]{Codec.DEFLATE, Codec.GZIP}) {
+            decompressionTimers.put(each, Timer.builder("notes.description.decompression")
+                    .description("Time spent decompressing the descriptions read")
+                    .tag("codec", each.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * @return Whether new descriptions are compressed, so the backfill has something to do.
+     */
+    public boolean isEnabled() {
+        return codec != Codec.NONE;
+    }
+
+    /**
+     * @return The length from which descriptions are compressed, in characters.
+     */
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * @param stored A description as stored.
+     * @return Whether it has a header, so it is compressed unless it is text starting with the marker.
+     */
+    public static boolean hasHeader(byte[] stored) {
+        return stored != null && stored.length > 0 && stored[0] == MARKER;
+    }
+
+    /**
+     * Converts a description to its stored form: compressed if it is long enough and compression makes it shorter.
+     *
+     * @param text The description.
+     * @return The description as stored, null for no description.
+     * @throws DataIntegrityViolationException If the description is longer than {@link Note#MAX_DESCRIPTION_LENGTH},
+     *                                         which the column cannot check once the description is compressed.
+     */
+    public byte[] compress(String text) {
+        if (text == null) {
+            return null;
+        }
+        if (text.length() > Note.MAX_DESCRIPTION_LENGTH) {
+            throw new DataIntegrityViolationException("Value too long for the description of a note: "
+                    + text.length() + " characters, at most " + Note.MAX_DESCRIPTION_LENGTH);
+        }
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        byte[] stored = encode(text.length(), utf8);
+        rawBytes.increment(utf8.length);
+        storedBytes.increment(stored.length);
+        return stored;
+    }
+
+    /**
+     * Converts a stored description back to its text.
+     *
+     * @param stored The description as stored, with or without header.
+     * @return The description, null for no description.
+     */
+    public String decompress(byte[] stored) {
+        if (!hasHeader(stored)) {
+            return stored != null ? new String(stored, StandardCharsets.UTF_8) : null;
+        }
+        Codec storedWith = Codec.of(stored[1]);
+        if (storedWith == Codec.NONE) {
+            return new String(stored, 2, stored.length - 2, StandardCharsets.UTF_8);
+        }
+        return decompressionTimers.get(storedWith).record(() -> {
+            try (InputStream in = storedWith.decompressing(new ByteArrayInputStream(stored, 2, stored.length - 2))) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Wraps a stream of a stored description, so that the text is read as it is decompressed: neither the text nor
+     * its compressed form is held in memory whole.
+     *
+     * @param stored The stream of the description as stored; closed with the returned reader.
+     * @return The reader of the description.
+     * @throws IOException If reading the header fails.
+     */
+    public Reader decompress(InputStream stored) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(stored, 1);
+        int first = in.read();
+        if (first != MARKER) {
+            if (first != -1) {
+                in.unread(first);
+            }
+            return new InputStreamReader(in, StandardCharsets.UTF_8);
+        }
+        Codec storedWith = Codec.of(in.read());
+        return new InputStreamReader(storedWith.decompressing(in), StandardCharsets.UTF_8);
+    }
+
+    private byte[] encode(int length, byte[] utf8) {
+        boolean marked = hasHeader(utf8);
+        if (codec == Codec.NONE || length < minLength) {
+            // Text that starts with the marker gets a header, so it is not mistaken for a compressed description
+            return marked ? withHeader(Codec.NONE, utf8) : utf8;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(utf8.length / 2);
+        bytes.write(MARKER);
+        bytes.write(codec.id);
+        try (OutputStream out = codec.compressing(bytes, level)) {
+            out.write(utf8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (bytes.size() < utf8.length) {
+            return bytes.toByteArray();
+        }
+        return marked ? withHeader(Codec.NONE, utf8) : utf8;
+    }
+
+    private static byte[] withHeader(Codec codec, byte[] utf8) {
+        byte[] stored = new byte[utf8.length + 2];
+        stored[0] = MARKER;
+        stored[1] = codec.id;
+        System.arraycopy(utf8, 0, stored, 2, utf8.length);
+        return stored;
+    }
+}
@@ -0,0 +1,192 @@
+package com.telus.demo.dao;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Hash map from positive {@code long} keys to values, with open addressing and linear probing.
+ * Keys are held in a {@code long[]} and never boxed, and there is no entry object per mapping: a lookup is a few
+ * reads of two arrays. Removal shifts the following entries back instead of leaving tombstones, so lookups never
+ * slow down as entries come and go.
+ * Not thread-safe. {@link #get(long)} may run while another thread writes, as long as its result is thrown away
+ * when the write lock guarding the map shows a concurrent write (see {@link MemoryNotesRepository}): it then
+ * returns a wrong value, never throws nor loops.
+ *
+ * @param <V> The type of the values.
+ */
+final class LongKeyMap<V> {
+
+    // Key of the empty slots; keys must be positive
+    private static final long FREE = 0;
+
+    private static final int MIN_CAPACITY = 16;
+
+    // Table of keys and the table of values, in one object so a lookup reads them from the same table
+    private volatile Table<V> table;
+    private int size;
+
+    /**
+     * @param expectedSize The number of entries the map holds without growing.
+     */
+    LongKeyMap(int expectedSize) {
+        this.table = new Table<>(capacityFor(expectedSize));
+    }
+
+    /**
+     * @param key The key.
+     * @return The value of the key, null if it has none.
+     */
+    V get(long key) {
+        Table<V> table = this.table;
+        long[] keys = table.keys;
+        int mask = keys.length - 1;
+        // Bounded by the capacity, in case a concurrent write moved the entries being probed
+        for (int slot = slot(key, mask), probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+            long current = keys[slot];
+            if (current == key) {
+                return table.values[slot];
+            }
+            if (current == FREE) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param key   The key, positive.
+     * @param value The value, not null.
+     * @return The previous value of the key, null if it had none.
+     */
+    V put(long key, V value) {
+        if (key <= FREE) {
+            throw new IllegalArgumentException("Keys must be positive, got " + key);
+        }
+        Table<V> table = this.table;
+        long[] keys = table.keys;
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key) {
+                V previous = table.values[slot];
+                table.values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // Values before keys: a concurrent get that finds the key finds its value
+        table.values[slot] = value;
+        keys[slot] = key;
+        if (++size > keys.length / 2) {
+            this.table = resize(table, keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * @param key The key.
+     * @return The value the key had, null if it had none.
+     */
+    V remove(long key) {
+        Table<V> table = this.table;
+        long[] keys = table.keys;
+        V[] values = table.values;
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == FREE) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+        V previous = values[slot];
+        // Moves back the entries of the same probe sequence that follow, so none is cut off from its home slot
+        int free = slot;
+        for (int next = (free + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+            int home = slot(keys[next], mask);
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        keys[free] = FREE;
+        values[free] = null;
+        size--;
+        return previous;
+    }
+
+    /**
+     * @return The number of entries.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes every entry, keeping the capacity.
+     */
+    void clear() {
+        Table<V> table = this.table;
+        Arrays.fill(table.keys, FREE);
+        Arrays.fill(table.values, null);
+        size = 0;
+    }
+
+    /**
+     * Passes every value to the action, in no particular order.
+     *
+     * @param action The action.
+     */
+    void forEachValue(Consumer<? super V> action) {
+        Table<V> table = this.table;
+        for (int slot = 0; slot < table.keys.length; slot++) {
+            if (table.keys[slot] != FREE) {
+                action.accept(table.values[slot]);
+            }
+        }
+    }
+
+    private static <V> Table<V> resize(Table<V> table, int capacity) {
+        Table<V> resized = new Table<>(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < table.keys.length; i++) {
+            long key = table.keys[i];
+            if (key != FREE) {
+                int slot = slot(key, mask);
+                while (resized.keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                resized.keys[slot] = key;
+                resized.values[slot] = table.values[i];
+            }
+        }
+        return resized;
+    }
+
+    // Spreads the bits of the key, as IDs are sequential and carry their shard in their high bits
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity / 2 < expectedSize) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    private static final class Table<V> {
+
+        final long[] keys;
+        final V[] values;
+
+        @SuppressWarnings("unchecked")
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = (V[]) new Object[capacity];
+        }
+    }
+}
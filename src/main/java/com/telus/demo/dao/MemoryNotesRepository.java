@@ -0,0 +1,832 @@
+package com.telus.demo.dao;
+
+import com.telus.demo.modal.Note;
+import com.telus.demo.modal.NoteLengthTotals;
+import com.telus.demo.modal.NoteLikes;
+import com.telus.demo.modal.NoteSummary;
+import com.telus.demo.modal.NoteVersion;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * {@link NotesRepository} keeping every note in memory, used instead of JPA when {@code notes.storage.engine=memory}.
+ * <p>
+ * Notes are held in a {@link LongKeyMap} by ID, and their IDs in ascending order for the keyset pages. A point read
+ * is an optimistic read of the map, validated against the write lock, and takes no lock unless a write ran meanwhile.
+ * <p>
+ * The changes made in a transaction are staged with it, seen by its own reads only, and applied when it commits:
+ * under the write lock, they are appended to the {@link NoteLog} as one record, then stored, and the committer waits,
+ * without the lock, until the log is forced to disk: committers that wait at the same time share one fsync. A rolled
+ * back transaction leaves nothing to undo. Outside a transaction, each change commits on its own. A periodic snapshot
+ * compacts the log, and the notes are read back from the snapshot and the log on startup. If the log cannot be forced
+ * to disk, the changes it holds are visible already but may not be durable, so the store fails: every later change is
+ * refused, and no snapshot is written, until it is reopened from what reached the disk.
+ * <p>
+ * Notes are copied in and out, so callers never share the stored instances, which are never changed once stored.
+ * Saving or deleting a note that was changed since it was read fails like a JPA optimistic lock, when saving or at
+ * the latest at commit; the like updates are made again at commit to the note as stored then, like UPDATE queries.
+ * Notes live on this node only, so this store does not combine with sharding.
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(name = "notes.storage.engine", havingValue = "memory")
+@Slf4j
+public class MemoryNotesRepository implements NotesRepository {
+
+    // Width of the subject column of the JPA schema, enforced the same way, as is Note.MAX_DESCRIPTION_LENGTH
+    private static final int MAX_SUBJECT_LENGTH = 255;
+
+    // Notes read per query by streamAllByOrderByNoteId
+    private static final int STREAM_PAGE_SIZE = 500;
+
+    private final LongKeyMap<Note> notes = new LongKeyMap<>(1024);
+    private final IdOrder order = new IdOrder();
+    private final StampedLock lock = new StampedLock();
+    private final NoteLog noteLog;
+
+    // Last ID handed out, or stored; kept by the snapshots, so that the IDs of deleted notes are never handed out again
+    private final AtomicLong lastId = new AtomicLong();
+    // Set once the log could not be forced to disk: the changes stored since may not be durable, so that neither
+    // writes nor snapshots, which would make them durable, are accepted any more
+    private volatile RuntimeException logFailure;
+    // Bytes logged when the last snapshot was taken
+    private long snapshotAppended;
+
+    /**
+     * Constructor for MemoryNotesRepository. Reads the notes back from the latest snapshot and the log.
+     *
+     * @param directory   The directory of the log and the snapshots.
+     * @param logFileSize The size of each log file, memory-mapped whole.
+     * @param noteShards  The shards, checked to be a single one.
+     */
+    public MemoryNotesRepository(@Value("${notes.storage.memory.directory:./data/memory}") Path directory,
+                                 @Value("${notes.storage.memory.log-file-size:64MB}") DataSize logFileSize,
+                                 NoteShards noteShards) {
+        if (noteShards.isSharded()) {
+            throw new IllegalStateException("The in-memory note store keeps every note on this node; "
+                    + "it does not combine with notes.sharding.shard-urls");
+        }
+        this.noteLog = NoteLog.open(directory, Math.toIntExact(logFileSize.toBytes()), new NoteLog.Replay() {
+            @Override
+            public void put(Note note) {
+                store(note);
+            }
+
+            @Override
+            public void delete(long noteId) {
+                unstore(noteId);
+            }
+
+            @Override
+            public void lastId(long noteId) {
+                lastId.accumulateAndGet(noteId, Math::max);
+            }
+        });
+        log.info("In-memory note store opened with {} notes from {}", notes.size(), directory);
+    }
+
+    /**
+     * Writes a snapshot of every note and deletes the log it replaces, unless nothing changed since the last one.
+     * The notes are copied under the write lock, which is then released while the snapshot is written.
+     */
+    @Scheduled(fixedDelayString = "${notes.storage.memory.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        List<Note> copy;
+        long generation;
+        long copiedLastId;
+        long stamp = lock.writeLock();
+        try {
+            if (noteLog.getAppended() == snapshotAppended || logFailure != null) {
+                return;
+            }
+            generation = noteLog.roll();
+            copy = new ArrayList<>(notes.size());
+            notes.forEachValue(copy::add);
+            copiedLastId = lastId.get();
+            snapshotAppended = noteLog.getAppended();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        copy.sort(Comparator.comparingLong(Note::getNoteId));
+        noteLog.writeSnapshot(generation, copy, copiedLastId);
+        log.info("Wrote a snapshot of {} notes", copy.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        snapshot();
+        noteLog.close();
+    }
+
+    // Writes, staged in the current transaction and applied to the store and the log when it commits
+
+    @Override
+    public <S extends Note> S save(S entity) {
+        return change(changes -> stageSave(changes, entity));
+    }
+
+    @Override
+    public <S extends Note> List<S> saveAll(Iterable<S> entities) {
+        return change(changes -> {
+            List<S> saved = new ArrayList<>();
+            for (S entity : entities) {
+                saved.add(stageSave(changes, entity));
+            }
+            return saved;
+        });
+    }
+
+    @Override
+    public int incrementLikes(Long noteId, int delta, LocalDateTime updatedAt) {
+        return change(changes -> stageUpdate(changes, noteId,
+                note -> note.toBuilder().likes(Math.max(0, note.getLikes() + delta)), updatedAt) ? 1 : 0);
+    }
+
+    @Override
+    public int resetLikes(Long noteId, LocalDateTime updatedAt) {
+        return change(changes -> stageUpdate(changes, noteId, note -> note.toBuilder().likes(0), updatedAt) ? 1 : 0);
+    }
+
+    @Override
+    public int incrementLikesBatch(Map<Long, Long> deltas) {
+        LocalDateTime updatedAt = LocalDateTime.now();
+        return change(changes -> {
+            int updated = 0;
+            for (Map.Entry<Long, Long> delta : deltas.entrySet()) {
+                if (stageUpdate(changes, delta.getKey(),
+                        note -> note.toBuilder().likes((int) Math.max(0, note.getLikes() + delta.getValue())), updatedAt)) {
+                    updated++;
+                }
+            }
+            return updated;
+        });
+    }
+
+    @Override
+    public boolean writeDescription(Long noteId, Writer out) throws IOException {
+        Note note = read(noteId, Function.identity());
+        if (note == null) {
+            return false;
+        }
+        if (note.getDescription() != null) {
+            out.write(note.getDescription());
+        }
+        return true;
+    }
+
+    /**
+     * Descriptions are kept in memory and in the log as they are, so there is nothing to compress.
+     */
+    @Override
+    public long compressDescriptions(long afterId, int limit) {
+        return afterId;
+    }
+
+    @Override
+    public void deleteById(Long noteId) {
+        deleteAllById(Collections.singletonList(noteId));
+    }
+
+    @Override
+    public void delete(Note entity) {
+        deleteById(entity.getNoteId());
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Long> noteIds) {
+        change(changes -> {
+            for (Long noteId : noteIds) {
+                Pending pending = noteId != null ? pending(changes, noteId) : null;
+                if (pending != null && pending.current != null) {
+                    pending.overwrite(null);
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends Note> entities) {
+        List<Long> noteIds = new ArrayList<>();
+        entities.forEach(note -> noteIds.add(note.getNoteId()));
+        deleteAllById(noteIds);
+    }
+
+    @Override
+    public void deleteAll() {
+        deleteAllById(findAll().stream().map(Note::getNoteId).toList());
+    }
+
+    @Override
+    public void flush() {
+        // Changes are logged when their transaction commits, or right away outside of one
+    }
+
+    // Point reads, answered without locking unless a write runs at the same time
+
+    @Override
+    public Optional<Note> findById(Long noteId) {
+        return Optional.ofNullable(read(noteId, MemoryNotesRepository::copy));
+    }
+
+    @Override
+    public boolean existsById(Long noteId) {
+        return read(noteId, note -> Boolean.TRUE) != null;
+    }
+
+    @Override
+    public Optional<Integer> findWordCountById(Long noteId) {
+        return Optional.ofNullable(read(noteId, Note::getWordCount));
+    }
+
+    @Override
+    public Optional<NoteVersion> findVersionById(Long noteId) {
+        return Optional.ofNullable(read(noteId, note -> new Version(note.getVersion(), note.getLikes(), note.getTimestampUpdated())));
+    }
+
+    // Scans, under the read lock, seeing the changes of the current transaction
+
+    @Override
+    public List<Note> findAll() {
+        return scan(0L, Integer.MAX_VALUE, note -> true, MemoryNotesRepository::copy);
+    }
+
+    @Override
+    public List<Note> findAllById(Iterable<Long> noteIds) {
+        List<Note> found = new ArrayList<>();
+        for (Long noteId : noteIds) {
+            Note note = read(noteId, MemoryNotesRepository::copy);
+            if (note != null) {
+                found.add(note);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public long count() {
+        TreeMap<Long, Pending> changes = transactionChanges(false);
+        long stamp = lock.readLock();
+        try {
+            long count = notes.size();
+            if (changes != null) {
+                for (Pending pending : changes.values()) {
+                    count += (pending.current != null ? 1 : 0) - (notes.get(pending.noteId) != null ? 1 : 0);
+                }
+            }
+            return count;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Note> findBySubjectContainingIgnoreCase(String subject) {
+        return scan(0L, Integer.MAX_VALUE, subjectContains(subject), MemoryNotesRepository::copy);
+    }
+
+    @Override
+    public List<Note> findByLikesGreaterThan(int likes) {
+        return scan(0L, Integer.MAX_VALUE, note -> note.getLikes() > likes, MemoryNotesRepository::copy);
+    }
+
+    @Override
+    public List<Note> findByNoteIdGreaterThanOrderByNoteIdAsc(Long noteId, Limit limit) {
+        return scan(noteId, max(limit), note -> true, MemoryNotesRepository::copy);
+    }
+
+    @Override
+    public List<Note> findByLikesGreaterThanAndNoteIdGreaterThanOrderByNoteIdAsc(int likes, Long noteId, Limit limit) {
+        return scan(noteId, max(limit), note -> note.getLikes() > likes, MemoryNotesRepository::copy);
+    }
+
+    @Override
+    public List<Note> findBySubjectContainingIgnoreCaseAndNoteIdGreaterThanOrderByNoteIdAsc(String subject, Long noteId, Limit limit) {
+        return scan(noteId, max(limit), subjectContains(subject), MemoryNotesRepository::copy);
+    }
+
+    @Override
+    public List<NoteSummary> findSummariesByNoteIdGreaterThanOrderByNoteIdAsc(Long noteId, Limit limit) {
+        return scan(noteId, max(limit), note -> true, NoteSummary::of);
+    }
+
+    @Override
+    public List<NoteSummary> findSummariesByLikesGreaterThanAndNoteIdGreaterThanOrderByNoteIdAsc(int likes, Long noteId, Limit limit) {
+        return scan(noteId, max(limit), note -> note.getLikes() > likes, NoteSummary::of);
+    }
+
+    @Override
+    public List<NoteSummary> findSummariesBySubjectContainingIgnoreCaseAndNoteIdGreaterThanOrderByNoteIdAsc(String subject, Long noteId,
+                                                                                                            Limit limit) {
+        return scan(noteId, max(limit), subjectContains(subject), NoteSummary::of);
+    }
+
+    @Override
+    public List<NoteSummary> findSummariesByNoteIdIn(Collection<Long> noteIds) {
+        return findAllById(noteIds).stream().map(NoteSummary::of).toList();
+    }
+
+    @Override
+    public List<NoteLikes> findLikeRanking(Limit limit) {
+        return scan(0L, Integer.MAX_VALUE, note -> true, note -> (NoteLikes) new Likes(note.getNoteId(), note.getLikes(), note.getVersion()))
+                .stream()
+                .sorted(Comparator.comparingInt(NoteLikes::getLikes).reversed().thenComparing(NoteLikes::getNoteId))
+                .limit(max(limit))
+                .toList();
+    }
+
+    @Override
+    public NoteLengthTotals sumWordCounts() {
+        long[] totals = new long[2];
+        Consumer<Note> add = note -> {
+            totals[0] += note.getWordCount() != null ? note.getWordCount() : 0;
+            totals[1]++;
+        };
+        TreeMap<Long, Pending> changes = transactionChanges(false);
+        long stamp = lock.readLock();
+        try {
+            if (changes == null) {
+                notes.forEachValue(add);
+            } else {
+                notes.forEachValue(note -> {
+                    if (!changes.containsKey(note.getNoteId())) {
+                        add.accept(note);
+                    }
+                });
+                changes.values().stream().map(pending -> pending.current).filter(Objects::nonNull).forEach(add);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return new Totals(totals[0], totals[1]);
+    }
+
+    @Override
+    public List<Note> findByWordCountIsNull(Limit limit) {
+        return scan(0L, max(limit), note -> note.getWordCount() == null, MemoryNotesRepository::copy);
+    }
+
+    @Override
+    public Stream<Note> streamAllByOrderByNoteId() {
+        // Reads one page at a time, so that the whole store is never copied at once
+        return Stream.iterate(findByNoteIdGreaterThanOrderByNoteIdAsc(0L, Limit.of(STREAM_PAGE_SIZE)), page -> !page.isEmpty(),
+                        page -> page.size() < STREAM_PAGE_SIZE ? List.of() : findByNoteIdGreaterThanOrderByNoteIdAsc(
+                                page.get(page.size() - 1).getNoteId(), Limit.of(STREAM_PAGE_SIZE)))
+                .flatMap(List::stream);
+    }
+
+    /**
+     * Stages a change in the current transaction, or commits it right away outside of one.
+     *
+     * @param stage Stages the change in the changes of the transaction.
+     * @return What the staging returned.
+     */
+    private <T> T change(Function<Map<Long, Pending>, T> stage) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            return stage.apply(transactionChanges(true));
+        }
+        Map<Long, Pending> changes = new TreeMap<>();
+        T result = stage.apply(changes);
+        commit(changes);
+        return result;
+    }
+
+    /**
+     * The changes staged by the current transaction, by note ID.
+     *
+     * @param create Whether to start staging changes in the transaction if it has none yet.
+     * @return The changes, null if none are staged and create is false, or outside a transaction.
+     */
+    @SuppressWarnings("unchecked")
+    private TreeMap<Long, Pending> transactionChanges(boolean create) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        TreeMap<Long, Pending> changes = (TreeMap<Long, Pending>) TransactionSynchronizationManager.getResource(this);
+        if (changes == null && create) {
+            TreeMap<Long, Pending> staged = new TreeMap<>();
+            TransactionSynchronizationManager.bindResource(this, staged);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    // Failing here rolls the transaction back
+                    commit(staged);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    // On a rollback the staged changes are dropped, never having been stored or logged
+                    TransactionSynchronizationManager.unbindResourceIfPossible(MemoryNotesRepository.this);
+                }
+            });
+            changes = staged;
+        }
+        return changes;
+    }
+
+    // The change staged for a note, started from the stored note if there is none yet
+    private Pending pending(Map<Long, Pending> changes, long noteId) {
+        return changes.computeIfAbsent(noteId, id -> new Pending(id, readStored(id, Function.identity())));
+    }
+
+    /**
+     * Stages the insert or update of a note.
+     * A note without an ID, or with an ID that is not stored, is inserted with a new ID.
+     *
+     * @throws ObjectOptimisticLockingFailureException If the note was changed since it was read.
+     * @throws DataIntegrityViolationException         If its subject or description is too long.
+     */
+    private <S extends Note> S stageSave(Map<Long, Pending> changes, S entity) {
+        checkLength("subject", entity.getSubject(), MAX_SUBJECT_LENGTH);
+        checkLength("description", entity.getDescription(), Note.MAX_DESCRIPTION_LENGTH);
+        Note existing = entity.getNoteId() != null ? pending(changes, entity.getNoteId()).current : null;
+        if (existing == null) {
+            entity.setNoteId(lastId.incrementAndGet());
+            entity.setVersion(0);
+        } else if (existing.getVersion() != entity.getVersion()) {
+            throw new ObjectOptimisticLockingFailureException(Note.class, entity.getNoteId());
+        } else {
+            entity.setVersion(existing.getVersion() + 1);
+        }
+        pending(changes, entity.getNoteId()).overwrite(copy(entity));
+        return entity;
+    }
+
+    /**
+     * Stages a change made with a single write, the way the update queries of the JPA repository do: at commit it is
+     * made again to the note as stored then, rather than overwriting the note with the one seen here.
+     *
+     * @return Whether the note exists.
+     */
+    private boolean stageUpdate(Map<Long, Pending> changes, Long noteId, Function<Note, Note.NoteBuilder> change,
+                                LocalDateTime updatedAt) {
+        Pending pending = noteId != null ? pending(changes, noteId) : null;
+        if (pending == null || pending.current == null) {
+            return false;
+        }
+        pending.update(note -> change.apply(note).timestampUpdated(updatedAt).version(note.getVersion() + 1).build());
+        return true;
+    }
+
+    /**
+     * Stores and logs staged changes, all of them or, if one fails, none.
+     *
+     * @throws ObjectOptimisticLockingFailureException If a note saved or deleted was changed since it was read.
+     */
+    private void commit(Map<Long, Pending> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        checkLog();
+        List<Note> puts = new ArrayList<>();
+        List<Long> deletedIds = new ArrayList<>();
+        long position;
+        long stamp = lock.writeLock();
+        try {
+            checkLog();
+            for (Pending pending : changes.values()) {
+                Note stored = notes.get(pending.noteId);
+                if (pending.overwritten) {
+                    // Stored notes are replaced, never changed, so the note is unchanged if it is the same instance
+                    if (stored != pending.base) {
+                        throw new ObjectOptimisticLockingFailureException(Note.class, pending.noteId);
+                    }
+                    if (pending.current != null) {
+                        puts.add(pending.current);
+                    } else if (stored != null) {
+                        deletedIds.add(pending.noteId);
+                    }
+                } else if (stored != null && !pending.updates.isEmpty()) {
+                    // An update of a note deleted meanwhile changes nothing, like an UPDATE query matching no row
+                    Note note = stored;
+                    for (UnaryOperator<Note> update : pending.updates) {
+                        note = update.apply(note);
+                    }
+                    puts.add(note);
+                }
+            }
+            if (puts.isEmpty() && deletedIds.isEmpty()) {
+                return;
+            }
+            position = noteLog.appendCommit(puts, deletedIds);
+            puts.forEach(this::store);
+            deletedIds.forEach(this::unstore);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        try {
+            noteLog.awaitDurable(position);
+        } catch (RuntimeException e) {
+            // The changes are visible already, and may reach the disk later: fail the store rather than let them be
+            // read, or built upon, as if they were durable
+            logFailure = e;
+            log.error("Note log could not be forced to disk, no longer accepting changes", e);
+            throw e;
+        }
+    }
+
+    private void checkLog() {
+        RuntimeException failure = logFailure;
+        if (failure != null) {
+            throw new IllegalStateException("Note log could not be forced to disk", failure);
+        }
+    }
+
+    // Under the write lock, or while replaying the log
+    private void store(Note note) {
+        if (notes.put(note.getNoteId(), note) == null) {
+            order.add(note.getNoteId());
+        }
+        lastId.accumulateAndGet(note.getNoteId(), Math::max);
+    }
+
+    private void unstore(long noteId) {
+        if (notes.remove(noteId) != null) {
+            order.remove(noteId);
+        }
+    }
+
+    /**
+     * Reads a note as the current transaction sees it: with the changes it staged, if any.
+     *
+     * @param noteId The ID of the note.
+     * @param read   What to read from the note.
+     * @return What was read, null if the note does not exist.
+     */
+    private <T> T read(Long noteId, Function<Note, T> read) {
+        if (noteId == null) {
+            return null;
+        }
+        TreeMap<Long, Pending> changes = transactionChanges(false);
+        Pending pending = changes != null ? changes.get(noteId) : null;
+        if (pending != null) {
+            return pending.current != null ? read.apply(pending.current) : null;
+        }
+        return readStored(noteId, read);
+    }
+
+    /**
+     * Reads a stored note under an optimistic read, retried under the read lock if a write ran meanwhile.
+     *
+     * @param noteId The ID of the note.
+     * @param read   What to read from the stored note.
+     * @return What was read, null if the note does not exist.
+     */
+    private <T> T readStored(long noteId, Function<Note, T> read) {
+        long stamp = lock.tryOptimisticRead();
+        Note note = notes.get(noteId);
+        if (lock.validate(stamp)) {
+            // Stored notes never change, so reading from one after the validation is safe
+            return note != null ? read.apply(note) : null;
+        }
+        stamp = lock.readLock();
+        try {
+            note = notes.get(noteId);
+            return note != null ? read.apply(note) : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Walks the notes in ID order, after an ID, and maps the first ones that match. The notes changed by the current
+     * transaction are seen as it changed them, merged in ID order with the stored ones.
+     */
+    private <T> List<T> scan(Long after, int max, Predicate<Note> filter, Function<Note, T> map) {
+        long from = after != null ? after : 0;
+        TreeMap<Long, Pending> changes = transactionChanges(false);
+        Iterator<Pending> staged = changes != null ? changes.tailMap(from, false).values().iterator() : Collections.emptyIterator();
+        Pending next = staged.hasNext() ? staged.next() : null;
+        List<T> found = new ArrayList<>(Math.min(max, 64));
+        long stamp = lock.readLock();
+        try {
+            for (int i = order.indexAfter(from); i < order.size && found.size() < max; i++) {
+                if (order.removed.get(i)) {
+                    continue;
+                }
+                long noteId = order.ids[i];
+                // Notes the transaction inserted before this one, then this one as the transaction sees it
+                for (; next != null && next.noteId <= noteId && found.size() < max; next = staged.hasNext() ? staged.next() : null) {
+                    match(next.current, filter, map, found);
+                }
+                if (found.size() < max && (changes == null || !changes.containsKey(noteId))) {
+                    match(notes.get(noteId), filter, map, found);
+                }
+            }
+            for (; next != null && found.size() < max; next = staged.hasNext() ? staged.next() : null) {
+                match(next.current, filter, map, found);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return found;
+    }
+
+    private static <T> void match(Note note, Predicate<Note> filter, Function<Note, T> map, List<T> found) {
+        if (note != null && filter.test(note)) {
+            found.add(map.apply(note));
+        }
+    }
+
+    private static void checkLength(String column, String value, int maxLength) {
+        if (value != null && value.length() > maxLength) {
+            throw new DataIntegrityViolationException("Value too long for the " + column + " of a note: "
+                    + value.length() + " characters, at most " + maxLength);
+        }
+    }
+
+    private static Note copy(Note note) {
+        return note.toBuilder().build();
+    }
+
+    private static Predicate<Note> subjectContains(String subject) {
+        String upper = subject.toUpperCase(Locale.ROOT);
+        return note -> note.getSubject() != null && note.getSubject().toUpperCase(Locale.ROOT).contains(upper);
+    }
+
+    private static int max(Limit limit) {
+        return limit.isLimited() ? limit.max() : Integer.MAX_VALUE;
+    }
+
+    /**
+     * The IDs of the stored notes in ascending order, for the keyset pages. New notes get the highest ID, so an
+     * insert is mostly an append; a deletion only marks its ID, and the marked IDs are dropped once they are the majority.
+     */
+    private static final class IdOrder {
+
+        private long[] ids = new long[1024];
+        private final BitSet removed = new BitSet();
+        private int size;
+        private int removedCount;
+
+        void add(long noteId) {
+            int index = size == 0 || ids[size - 1] < noteId ? size : Arrays.binarySearch(ids, 0, size, noteId);
+            if (index >= 0 && index < size) {
+                if (removed.get(index)) {
+                    removed.clear(index);  // A deleted note put back, as the rollbacks of older logs did
+                    removedCount--;
+                }
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            if (index < 0) {
+                // A transaction that committed after one given a later ID
+                index = -index - 1;
+                System.arraycopy(ids, index, ids, index + 1, size - index);
+                for (int i = size; i > index; i--) {
+                    removed.set(i, removed.get(i - 1));
+                }
+                removed.clear(index);
+            }
+            ids[index] = noteId;
+            size++;
+        }
+
+        void remove(long noteId) {
+            int index = Arrays.binarySearch(ids, 0, size, noteId);
+            if (index >= 0 && !removed.get(index)) {
+                removed.set(index);
+                if (++removedCount > size / 2) {
+                    compact();
+                }
+            }
+        }
+
+        // Index of the first ID above the given one
+        int indexAfter(long noteId) {
+            int index = Arrays.binarySearch(ids, 0, size, noteId);
+            return index >= 0 ? index + 1 : -index - 1;
+        }
+
+        private void compact() {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!removed.get(i)) {
+                    ids[kept++] = ids[i];
+                }
+            }
+            removed.clear();
+            size = kept;
+            removedCount = 0;
+        }
+    }
+
+    /**
+     * The change a transaction staged for a note.
+     */
+    private static final class Pending {
+
+        private final long noteId;
+        // The stored note when the transaction first changed it, null if there was none
+        private final Note base;
+        // The note as the transaction sees it, null if deleted
+        private Note current;
+        // Whether the note was saved or deleted, which requires it to be stored unchanged at commit
+        private boolean overwritten;
+        // Otherwise, the updates to make again at commit
+        private final List<UnaryOperator<Note>> updates = new ArrayList<>();
+
+        Pending(long noteId, Note base) {
+            this.noteId = noteId;
+            this.base = base;
+            this.current = base;
+        }
+
+        void overwrite(Note note) {
+            current = note;
+            overwritten = true;
+        }
+
+        void update(UnaryOperator<Note> update) {
+            current = update.apply(current);
+            updates.add(update);
+        }
+    }
+
+    private record Version(long version, int likes, LocalDateTime timestampUpdated) implements NoteVersion {
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public int getLikes() {
+            return likes;
+        }
+
+        @Override
+        public LocalDateTime getTimestampUpdated() {
+            return timestampUpdated;
+        }
+    }
+
+    private record Likes(Long noteId, int likes, long version) implements NoteLikes {
+
+        @Override
+        public Long getNoteId() {
+            return noteId;
+        }
+
+        @Override
+        public int getLikes() {
+            return likes;
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    private record Totals(long totalWords, long noteCount) implements NoteLengthTotals {
+
+        @Override
+        public long getTotalWords() {
+            return totalWords;
+        }
+
+        @Override
+        public long getNoteCount() {
+            return noteCount;
+        }
+    }
+}
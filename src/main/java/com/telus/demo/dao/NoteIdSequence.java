@@ -0,0 +1,63 @@
+package com.telus.demo.dao;
+
+import com.telus.demo.modal.Note;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.sequence.SequenceSupport;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the note ID sequence past the IDs already in the table.
+ * Notes used to get their IDs from an IDENTITY column, so on an existing database the sequence
+ * created by the V1 Flyway migration starts at 1 and would hand out IDs that are already taken.
+ */
+@Component
+@Slf4j
+public class NoteIdSequence {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SessionFactoryImplementor sessionFactory;
+
+    /**
+     * Constructor for NoteIdSequence.
+     *
+     * @param jdbcTemplate         The template used to read and move the sequence.
+     * @param entityManagerFactory The entity manager factory, whose ID generator reserves blocks of the sequence.
+     */
+    public NoteIdSequence(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+    }
+
+    /**
+     * Makes sure the next block of IDs reserved by Hibernate starts after the largest stored ID.
+     */
+    @PostConstruct
+    public void align() {
+        Long maxId = jdbcTemplate.queryForObject("select max(note_id) from note", Long.class);
+        if (maxId == null) {
+            return;
+        }
+        // The pooled optimizer hands out the block ending at the value it reads from the sequence
+        long firstSafeValue = maxId + Note.ID_ALLOCATION_SIZE;
+        SequenceSupport sequenceSupport = sessionFactory.getJdbcServices().getDialect().getSequenceSupport();
+        if (sequenceSupport.supportsSequences()) {
+            Long next = jdbcTemplate.queryForObject(
+                    sequenceSupport.getSequenceNextValString(Note.ID_SEQUENCE), Long.class);
+            if (next != null && next < firstSafeValue) {
+                jdbcTemplate.execute("alter sequence " + Note.ID_SEQUENCE + " restart with " + firstSafeValue);
+                log.info("Moved sequence {} past the existing note IDs, to {}", Note.ID_SEQUENCE, firstSafeValue);
+            }
+        } else {
+            // Databases without sequences (MySQL) get a one-row table emulating it
+            int moved = jdbcTemplate.update("update " + Note.ID_SEQUENCE + " set next_val = ? where next_val < ?",
+                    firstSafeValue, firstSafeValue);
+            if (moved > 0) {
+                log.info("Moved sequence table {} past the existing note IDs, to {}", Note.ID_SEQUENCE, firstSafeValue);
+            }
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package com.telus.demo.dao;
+
+import com.telus.demo.modal.Note;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead log of the in-memory note store, with the snapshots that compact it.
+ * <p>
+ * The log is a series of files, {@code notes-GENERATION.wal}, each memory-mapped whole, so appending a record is a
+ * copy into memory. A record is its length, the CRC-32C of its body, then the body: the changes committed together,
+ * each a note written whole or the ID of a deleted note, so that a transaction is replayed whole or not at all.
+ * A zero length ends the records of a file. Appending returns the position of the record;
+ * {@link #awaitDurable(long)} returns once the log is forced to disk up to it. Writers that wait at the same time
+ * share one force: the first forces everything appended so far, the others find their record already durable
+ * (group commit).
+ * <p>
+ * {@code snapshot-GENERATION.bin} holds every note as of the start of log file GENERATION, in the same record format,
+ * after a record of the highest ID handed out by then: the notes with the highest IDs may have been deleted, and their
+ * IDs must not be handed out again.
+ * It is written to a temporary file, forced, then renamed, so a snapshot is either complete or absent; the log files
+ * it covers are deleted after. Recovery reads the latest snapshot, then replays the following log files, stopping in
+ * each at the first record that is incomplete or fails its CRC: the tail of a write cut short by a crash.
+ * Appends then go to a new file, never after such a tail.
+ */
+@Slf4j
+final class NoteLog implements AutoCloseable {
+
+    /**
+     * Receives the notes read back by {@link #open}, in the order they were written.
+     */
+    interface Replay {
+
+        void put(Note note);
+
+        void delete(long noteId);
+
+        /**
+         * @param noteId The highest ID handed out as of a snapshot, possibly above the ID of every note.
+         */
+        void lastId(long noteId);
+    }
+
+    private static final Pattern LOG_FILE = Pattern.compile("notes-(\\d+)\\.wal");
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.bin");
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte LAST_ID = 3;
+
+    // Length and CRC in front of every record body
+    private static final int HEADER_SIZE = 8;
+
+    private final Path directory;
+    private final int fileSize;
+
+    // Guards appends and the switch to a new file
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private long generation;
+    private MappedByteBuffer file;
+    // Position of the current file in the whole log, and the number of bytes appended to the whole log
+    private long fileStart;
+    private volatile long appended;
+
+    // Guards the group commit
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    private boolean syncing;
+    private long durable;
+    // Offset in the current file up to which it was forced
+    private int syncedOffset;
+
+    private NoteLog(Path directory, int fileSize) {
+        this.directory = directory;
+        this.fileSize = fileSize;
+    }
+
+    /**
+     * Reads back the notes of a log directory, then opens the log for appending.
+     *
+     * @param directory The directory of the log, created if missing.
+     * @param fileSize  The size of each log file, and the largest record.
+     * @param replay    Receives the notes of the latest snapshot, then the changes logged after it.
+     * @return The log, appending to a new file.
+     * @throws UncheckedIOException If the directory cannot be read or written.
+     */
+    static NoteLog open(Path directory, int fileSize, Replay replay) {
+        NoteLog log = new NoteLog(directory, fileSize);
+        try {
+            Files.createDirectories(directory);
+            long snapshot = latest(directory, SNAPSHOT_FILE);
+            if (snapshot >= 0) {
+                replay(directory.resolve(snapshotName(snapshot)), replay);
+            }
+            long last = Math.max(snapshot, 0);
+            for (long generation : generations(directory, LOG_FILE)) {
+                if (generation >= snapshot) {
+                    replay(directory.resolve(logName(generation)), replay);
+                    last = generation;
+                }
+            }
+            log.startFile(last + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the note log in " + directory, e);
+        }
+        return log;
+    }
+
+    /**
+     * Logs the changes of a transaction as one record.
+     *
+     * @param notes      The notes put, as stored.
+     * @param deletedIds The IDs of the deleted notes.
+     * @return The position to pass to {@link #awaitDurable(long)}.
+     */
+    long appendCommit(Collection<Note> notes, Collection<Long> deletedIds) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(9 * deletedIds.size() + notes.stream().mapToInt(NoteLog::length).sum());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (Note note : notes) {
+                writeNote(out, note);
+            }
+            for (long noteId : deletedIds) {
+                out.writeByte(DELETE);
+                out.writeLong(noteId);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // Not thrown by an in-memory stream
+        }
+        return append(bytes.toByteArray());
+    }
+
+    /**
+     * Waits until the log is on disk up to a position, forcing it unless another writer already does.
+     *
+     * @param position A position returned by an append.
+     */
+    void awaitDurable(long position) {
+        syncLock.lock();
+        try {
+            while (durable < position) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                syncLock.unlock();
+                long forced;
+                try {
+                    forced = force();
+                } finally {
+                    syncLock.lock();
+                    syncing = false;
+                    synced.signalAll();
+                }
+                durable = Math.max(durable, forced);
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Forces the current file and starts a new one, which a snapshot taken now then covers.
+     * Called with the writes of the store held off, so that no change falls between the two.
+     *
+     * @return The generation of the new file, the one to name the snapshot after.
+     */
+    long roll() {
+        appendLock.lock();
+        try {
+            force();
+            startFile(generation + 1);
+            return generation;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start a new note log file", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot, then deletes the log files and the older snapshots it makes useless.
+     *
+     * @param generation The generation returned by the {@link #roll()} done as the notes were copied.
+     * @param notes      Every note, as of the start of that generation.
+     * @param lastId     The highest ID handed out by then.
+     * @throws UncheckedIOException If the snapshot cannot be written; the log still holds every change.
+     */
+    void writeSnapshot(long generation, Collection<Note> notes, long lastId) {
+        Path target = directory.resolve(snapshotName(generation));
+        Path temporary = directory.resolve(snapshotName(generation) + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+                byte[] header = ByteBuffer.allocate(9).put(LAST_ID).putLong(lastId).array();
+                buffer.putInt(header.length).putInt(crc(header, 0, header.length)).put(header);
+                for (Note note : notes) {
+                    byte[] body = encode(note);
+                    if (buffer.remaining() < HEADER_SIZE + body.length) {
+                        write(channel, buffer);
+                        if (buffer.capacity() < HEADER_SIZE + body.length) {
+                            buffer = ByteBuffer.allocate(HEADER_SIZE + body.length);
+                        }
+                    }
+                    buffer.putInt(body.length).putInt(crc(body, 0, body.length)).put(body);
+                }
+                write(channel, buffer);
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            for (long older : generations(directory, LOG_FILE)) {
+                if (older < generation) {
+                    Files.deleteIfExists(directory.resolve(logName(older)));
+                }
+            }
+            for (long older : generations(directory, SNAPSHOT_FILE)) {
+                if (older < generation) {
+                    Files.deleteIfExists(directory.resolve(snapshotName(older)));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the note snapshot " + target, e);
+        }
+    }
+
+    /**
+     * @return The number of bytes logged since the log was opened.
+     */
+    long getAppended() {
+        return appended;
+    }
+
+    @Override
+    public void close() {
+        awaitDurable(appended);
+    }
+
+    private long append(byte[] body) {
+        if (HEADER_SIZE + body.length >= fileSize) {
+            throw new IllegalArgumentException("The changes of a commit, " + body.length + " bytes, do not fit in a log file of "
+                    + fileSize + " bytes");
+        }
+        appendLock.lock();
+        try {
+            // Keeps room for the zero length that ends the records of the file
+            if (file.remaining() < HEADER_SIZE + body.length + Integer.BYTES) {
+                force();
+                startFile(generation + 1);
+            }
+            file.putInt(body.length).putInt(crc(body, 0, body.length)).put(body);
+            appended = fileStart + file.position();
+            return appended;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start a new note log file", e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Forces what was appended to the current file so far.
+     *
+     * @return The position the log is durable up to.
+     */
+    private long force() {
+        MappedByteBuffer target;
+        int from;
+        int to;
+        long position;
+        appendLock.lock();
+        try {
+            target = file;
+            from = syncedOffset;
+            to = file.position();
+            position = appended;
+            syncedOffset = to;
+        } finally {
+            appendLock.unlock();
+        }
+        if (to > from) {
+            target.force(from, to - from);
+        }
+        return position;
+    }
+
+    private void startFile(long generation) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(logName(generation)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping outlives the channel; the file is zero-filled, so its records end where the writes end
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            fileStart = appended;
+            this.file = mapped;
+            this.generation = generation;
+            this.syncedOffset = 0;
+        }
+    }
+
+    private static void replay(Path path, Replay replay) throws IOException {
+        byte[] content = Files.readAllBytes(path);
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        int records = 0;
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt();
+            if (length == 0) {
+                break;
+            }
+            int crc = buffer.getInt();
+            if (length < 0 || length > buffer.remaining() || crc(content, buffer.position(), length) != crc) {
+                log.warn("Note log {} ends with an incomplete record after {} records, ignored", path.getFileName(), records);
+                break;
+            }
+            decode(buffer.slice(buffer.position(), length), replay);
+            buffer.position(buffer.position() + length);
+            records++;
+        }
+        log.info("Replayed {} records of {}", records, path.getFileName());
+    }
+
+    private static byte[] encode(Note note) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(length(note));
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeNote(out, note);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // Not thrown by an in-memory stream
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeNote(DataOutputStream out, Note note) throws IOException {
+        out.writeByte(PUT);
+        out.writeLong(note.getNoteId());
+        out.writeLong(note.getVersion());
+        out.writeInt(note.getLikes());
+        out.writeInt(note.getWordCount() != null ? note.getWordCount() : -1);
+        writeTimestamp(out, note.getTimestampCreated());
+        writeTimestamp(out, note.getTimestampUpdated());
+        writeString(out, note.getSubject());
+        writeString(out, note.getDescription());
+    }
+
+    private static void decode(ByteBuffer body, Replay replay) {
+        while (body.hasRemaining()) {
+            byte type = body.get();
+            long noteId = body.getLong();
+            if (type == DELETE) {
+                replay.delete(noteId);
+                continue;
+            }
+            if (type == LAST_ID) {
+                replay.lastId(noteId);
+                continue;
+            }
+            long version = body.getLong();
+            int likes = body.getInt();
+            int wordCount = body.getInt();
+            replay.put(Note.builder()
+                    .noteId(noteId)
+                    .version(version)
+                    .likes(likes)
+                    .wordCount(wordCount >= 0 ? wordCount : null)
+                    .timestampCreated(readTimestamp(body))
+                    .timestampUpdated(readTimestamp(body))
+                    .subject(readString(body))
+                    .description(readString(body))
+                    .build());
+        }
+    }
+
+    private static void writeTimestamp(DataOutputStream out, LocalDateTime timestamp) throws IOException {
+        out.writeBoolean(timestamp != null);
+        if (timestamp != null) {
+            out.writeLong(timestamp.toLocalDate().toEpochDay());
+            out.writeLong(timestamp.toLocalTime().toNanoOfDay());
+        }
+    }
+
+    private static LocalDateTime readTimestamp(ByteBuffer body) {
+        if (body.get() == 0) {
+            return null;
+        }
+        return LocalDateTime.of(LocalDate.ofEpochDay(body.getLong()), LocalTime.ofNanoOfDay(body.getLong()));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(body.array(), body.arrayOffset() + body.position(), length, StandardCharsets.UTF_8);
+        body.position(body.position() + length);
+        return value;
+    }
+
+    // Upper bound of the encoded size of a note
+    private static int length(Note note) {
+        return 64 + length(note.getSubject()) + length(note.getDescription());
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length() * 3;
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static long latest(Path directory, Pattern pattern) throws IOException {
+        List<Long> generations = generations(directory, pattern);
+        return generations.isEmpty() ? -1 : generations.get(generations.size() - 1);
+    }
+
+    // The generations of the files of a kind, in order
+    private static List<Long> generations(Path directory, Pattern pattern) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> pattern.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static String logName(long generation) {
+        return String.format("notes-%019d.wal", generation);
+    }
+
+    private static String snapshotName(long generation) {
+        return String.format("snapshot-%019d.bin", generation);
+    }
+}
@@ -0,0 +1,213 @@
+package com.telus.demo.dao;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * The shards notes are spread over, and how work is routed to them.
+ * Shard 0 is the application data source ({@code spring.datasource}); {@code notes.sharding.shard-urls} adds the others.
+ * A note ID carries its shard in its high bits ({@link #encode(int, long)}), so a note is found from its ID alone.
+ * Shard 0 IDs are the plain sequence values, which is what lets an existing database become shard 0 as is.
+ * With a single shard, everything runs on the calling thread, exactly as without sharding.
+ */
+@Component
+public class NoteShards {
+
+    /**
+     * Position of the shard number in a note ID; the bits below hold the value of the shard's sequence.
+     */
+    public static final int SHARD_SHIFT = 48;
+
+    /**
+     * Largest number of shards. Keeps every ID below 2^53, so it stays exact as a JSON number in JavaScript.
+     */
+    public static final int MAX_SHARDS = 32;
+
+    private final int count;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    // Runs the queries of a fan-out in parallel; null with a single shard
+    private final ExecutorService executor;
+
+    /**
+     * Constructor for NoteShards.
+     *
+     * @param shardUrls The JDBC URLs of the shards besides the application data source; none to not shard.
+     */
+    public NoteShards(@Value("${notes.sharding.shard-urls:}") List<String> shardUrls) {
+        this.count = 1 + (int) shardUrls.stream().filter(url -> !url.isBlank()).count();
+        if (count > MAX_SHARDS) {
+            throw new IllegalStateException("At most " + MAX_SHARDS + " shards are supported, got " + count);
+        }
+        this.executor = count > 1 ? Executors.newVirtualThreadPerTaskExecutor() : null;
+    }
+
+    /**
+     * @return The number of shards, 1 when notes are not sharded.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return Whether notes are spread over more than one database.
+     */
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    /**
+     * Tags a value of a shard's ID sequence with the shard number.
+     *
+     * @param shard The shard the note is stored on.
+     * @param value The value taken from that shard's sequence.
+     * @return The note ID.
+     */
+    public static long encode(int shard, long value) {
+        if (value < 0 || value >= 1L << SHARD_SHIFT) {
+            throw new IllegalStateException("Sequence value " + value + " of shard " + shard + " does not fit in a note ID");
+        }
+        return (long) shard << SHARD_SHIFT | value;
+    }
+
+    /**
+     * Returns the shard a note is stored on.
+     * IDs that name no existing shard, which cannot belong to any note, are looked up on shard 0.
+     *
+     * @param noteId The ID of the note.
+     * @return The shard number.
+     */
+    public int shardOf(long noteId) {
+        long shard = noteId >>> SHARD_SHIFT;
+        return shard < count ? (int) shard : 0;
+    }
+
+    /**
+     * Picks the shard a new note is stored on, in turn, so that notes are spread evenly.
+     *
+     * @return The shard number.
+     */
+    public int nextShard() {
+        return count == 1 ? 0 : Math.floorMod(nextShard.getAndIncrement(), count);
+    }
+
+    /**
+     * Runs work with the connections of the current thread opened on a shard.
+     * Must be called outside any transaction, as a transaction keeps the connection it started with.
+     *
+     * @param shard  The shard number.
+     * @param action The work to run.
+     * @return The result of the work.
+     */
+    public <T> T onShard(int shard, Supplier<T> action) {
+        int previous = ShardRoutingDataSource.setCurrentShard(shard);
+        try {
+            return action.get();
+        } finally {
+            ShardRoutingDataSource.setCurrentShard(previous);
+        }
+    }
+
+    /**
+     * Runs work with the connections of the current thread opened on a shard.
+     *
+     * @param shard  The shard number.
+     * @param action The work to run.
+     */
+    public void onShard(int shard, Runnable action) {
+        onShard(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs a query on every shard in parallel, and waits for all of them.
+     *
+     * @param query The query, given the shard number.
+     * @return The result of each shard, by shard number.
+     */
+    public <T> List<T> onEachShard(IntFunction<T> query) {
+        if (count == 1) {
+            return Collections.singletonList(onShard(0, () -> query.apply(0)));
+        }
+        List<Future<T>> futures = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            int target = shard;
+            futures.add(executor.submit(() -> onShard(target, () -> query.apply(target))));
+        }
+        List<T> results = new ArrayList<>(count);
+        for (Future<T> future : futures) {
+            results.add(await(future));
+        }
+        return results;
+    }
+
+    /**
+     * Runs work on every shard in parallel, and waits for all of them.
+     *
+     * @param action The work, given the shard number.
+     */
+    public void forEachShard(IntConsumer action) {
+        onEachShard(shard -> {
+            action.accept(shard);
+            return null;
+        });
+    }
+
+    /**
+     * Splits items by the shard of the note they refer to, keeping their order within each shard.
+     *
+     * @param items  The items.
+     * @param noteId The ID of the note an item refers to.
+     * @return The items of each shard that has some, by shard number.
+     */
+    public <T> Map<Integer, List<T>> groupByShard(Collection<T> items, ToLongFunction<T> noteId) {
+        Map<Integer, List<T>> byShard = new TreeMap<>();
+        for (T item : items) {
+            byShard.computeIfAbsent(shardOf(noteId.applyAsLong(item)), shard -> new ArrayList<>()).add(item);
+        }
+        return byShard;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
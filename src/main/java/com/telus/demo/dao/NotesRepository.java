@@ -1,18 +1,66 @@
 package com.telus.demo.dao;
 
 import com.telus.demo.modal.Note;
-import org.springframework.data.jpa.repository.JpaRepository;
+import com.telus.demo.modal.NoteLengthTotals;
+import com.telus.demo.modal.NoteLikes;
+import com.telus.demo.modal.NoteSummary;
+import com.telus.demo.modal.NoteVersion;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.ListCrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for managing Note entities.
- * Extends JpaRepository to provide basic CRUD operations for Note objects.
+ * Extends ListCrudRepository to provide basic CRUD operations for Note objects,
+ * and NotesRepositoryCustom for the operations implemented with plain JDBC.
+ * Only the operations the services use are declared, so that {@link MemoryNotesRepository} can implement all of them.
+ * <p>
+ * The description of a note is loaded lazily. The methods returning notes to the services load it in the same
+ * query, with the {@value Note#WITH_DESCRIPTION} entity graph, since the notes are used once the session is closed.
+ * The other methods read only the small columns.
  */
-public interface NotesRepository extends JpaRepository<Note, Long> {
+public interface NotesRepository extends ListCrudRepository<Note, Long>, NotesRepositoryCustom {
+
+    /**
+     * Writes the pending changes of the current transaction to the database.
+     */
+    void flush();
+
+    /**
+     * Finds a note by ID, with its description.
+     *
+     * @param noteId The ID of the note.
+     * @return The note, empty if it does not exist.
+     */
+    @Override
+    @EntityGraph(Note.WITH_DESCRIPTION)
+    Optional<Note> findById(Long noteId);
+
+    /**
+     * Finds notes by ID, with their description.
+     *
+     * @param noteIds The IDs of the notes.
+     * @return The notes that exist, in no particular order.
+     */
+    @Override
+    @EntityGraph(Note.WITH_DESCRIPTION)
+    List<Note> findAllById(Iterable<Long> noteIds);
 
     /**
      * Finds all notes whose subject contains the given string, case-insensitive.
+     * Their description is only loaded if read while the session is open.
      *
      * @param subject The subject string to search for.
      * @return A list of notes that contain the given subject string.
@@ -21,9 +69,169 @@ public interface NotesRepository extends JpaRepository<Note, Long> {
 
     /**
      * Finds all notes that have more than a specified number of likes.
+     * Their description is only loaded if read while the session is open.
      *
      * @param likes The minimum number of likes.
      * @return A list of notes with likes greater than the specified value.
      */
     List<Note> findByLikesGreaterThan(int likes);
+
+    /**
+     * Finds the next page of notes after the given ID, ordered by ID (keyset pagination).
+     *
+     * @param noteId The last ID of the previous page, 0 for the first page.
+     * @param limit  The maximum number of notes to return.
+     * @return The notes with an ID greater than the given one.
+     */
+    @EntityGraph(Note.WITH_DESCRIPTION)
+    List<Note> findByNoteIdGreaterThanOrderByNoteIdAsc(Long noteId, Limit limit);
+
+    /**
+     * Finds the next page of notes with more than the given likes after the given ID, ordered by ID.
+     *
+     * @param likes  The minimum number of likes.
+     * @param noteId The last ID of the previous page, 0 for the first page.
+     * @param limit  The maximum number of notes to return.
+     * @return The matching notes with an ID greater than the given one.
+     */
+    @EntityGraph(Note.WITH_DESCRIPTION)
+    List<Note> findByLikesGreaterThanAndNoteIdGreaterThanOrderByNoteIdAsc(int likes, Long noteId, Limit limit);
+
+    /**
+     * Finds the next page of notes whose subject contains the given string, case-insensitive,
+     * after the given ID, ordered by ID.
+     *
+     * @param subject The subject string to search for.
+     * @param noteId  The last ID of the previous page, 0 for the first page.
+     * @param limit   The maximum number of notes to return.
+     * @return The matching notes with an ID greater than the given one.
+     */
+    @EntityGraph(Note.WITH_DESCRIPTION)
+    List<Note> findBySubjectContainingIgnoreCaseAndNoteIdGreaterThanOrderByNoteIdAsc(String subject, Long noteId, Limit limit);
+
+    /**
+     * Finds the next page of notes after the given ID, ordered by ID, without reading their description.
+     *
+     * @param noteId The last ID of the previous page, 0 for the first page.
+     * @param limit  The maximum number of notes to return.
+     * @return The summaries of the notes with an ID greater than the given one.
+     */
+    List<NoteSummary> findSummariesByNoteIdGreaterThanOrderByNoteIdAsc(Long noteId, Limit limit);
+
+    /**
+     * Finds the next page of notes with more than the given likes after the given ID, ordered by ID,
+     * without reading their description.
+     *
+     * @param likes  The minimum number of likes.
+     * @param noteId The last ID of the previous page, 0 for the first page.
+     * @param limit  The maximum number of notes to return.
+     * @return The summaries of the matching notes with an ID greater than the given one.
+     */
+    List<NoteSummary> findSummariesByLikesGreaterThanAndNoteIdGreaterThanOrderByNoteIdAsc(int likes, Long noteId, Limit limit);
+
+    /**
+     * Finds the next page of notes whose subject contains the given string, case-insensitive,
+     * after the given ID, ordered by ID, without reading their description.
+     *
+     * @param subject The subject string to search for.
+     * @param noteId  The last ID of the previous page, 0 for the first page.
+     * @param limit   The maximum number of notes to return.
+     * @return The summaries of the matching notes with an ID greater than the given one.
+     */
+    List<NoteSummary> findSummariesBySubjectContainingIgnoreCaseAndNoteIdGreaterThanOrderByNoteIdAsc(String subject, Long noteId,
+                                                                                                     Limit limit);
+
+    /**
+     * Finds notes by ID without reading their description.
+     *
+     * @param noteIds The IDs of the notes.
+     * @return The summaries of the notes that exist, in no particular order.
+     */
+    List<NoteSummary> findSummariesByNoteIdIn(Collection<Long> noteIds);
+
+    /**
+     * Lists note IDs, like counts and versions, most liked first, ties broken by ID.
+     *
+     * @param limit The maximum number of rows to return.
+     * @return The like ranking of the notes.
+     */
+    @Query("select n.noteId as noteId, n.likes as likes, n.version as version from Note n order by n.likes desc, n.noteId asc")
+    List<NoteLikes> findLikeRanking(Limit limit);
+
+    /**
+     * Atomically adds a delta to the like count of a note, never going below 0.
+     * The increment happens in the database, so concurrent calls cannot lose updates.
+     *
+     * @param noteId    The ID of the note.
+     * @param delta     The number of likes to add, negative to remove likes.
+     * @param updatedAt The new update timestamp of the note.
+     * @return The number of updated rows, 0 if the note does not exist.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Note n set n.likes = case when n.likes + :delta > 0 then n.likes + :delta else 0 end, "
+            + "n.timestampUpdated = :updatedAt, n.version = n.version + 1 where n.noteId = :noteId")
+    int incrementLikes(@Param("noteId") Long noteId, @Param("delta") int delta, @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Sets the like count of a note back to 0.
+     *
+     * @param noteId    The ID of the note.
+     * @param updatedAt The new update timestamp of the note.
+     * @return The number of updated rows, 0 if the note does not exist.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Note n set n.likes = 0, n.timestampUpdated = :updatedAt, n.version = n.version + 1 "
+            + "where n.noteId = :noteId")
+    int resetLikes(@Param("noteId") Long noteId, @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Reads the precomputed word count of a note, without loading its description.
+     *
+     * @param noteId The ID of the note.
+     * @return The word count, empty if the note does not exist.
+     */
+    @Query("select n.wordCount from Note n where n.noteId = :noteId")
+    Optional<Integer> findWordCountById(@Param("noteId") Long noteId);
+
+    /**
+     * Reads the version, like count and update timestamp of a note, enough to build its ETag, or to bring a
+     * cached copy up to date after its likes changed, without loading its description.
+     *
+     * @param noteId The ID of the note.
+     * @return The version, likes and update timestamp, empty if the note does not exist.
+     */
+    @Query("select n.version as version, n.likes as likes, n.timestampUpdated as timestampUpdated from Note n "
+            + "where n.noteId = :noteId")
+    Optional<NoteVersion> findVersionById(@Param("noteId") Long noteId);
+
+    /**
+     * Sums the word counts of all notes and counts the notes, in a single query.
+     *
+     * @return The totals used to compute the average note length.
+     */
+    @Query("select coalesce(sum(n.wordCount), 0) as totalWords, count(n) as noteCount from Note n")
+    NoteLengthTotals sumWordCounts();
+
+    /**
+     * Finds notes written before word counts were stored, so they can be backfilled.
+     *
+     * @param limit The maximum number of notes to return.
+     * @return Notes without a word count.
+     */
+    @EntityGraph(Note.WITH_DESCRIPTION)
+    List<Note> findByWordCountIsNull(Limit limit);
+
+    /**
+     * Streams every note ordered by ID, fetching rows from the database in chunks instead of all at once.
+     * Must be consumed inside a transaction, and closed afterwards.
+     *
+     * @return A stream over all notes.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @EntityGraph(Note.WITH_DESCRIPTION)
+    @Query("select n from Note n order by n.noteId")
+    Stream<Note> streamAllByOrderByNoteId();
 }
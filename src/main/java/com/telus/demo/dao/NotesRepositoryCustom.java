@@ -0,0 +1,41 @@
+package com.telus.demo.dao;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Repository operations on notes that are implemented with plain JDBC rather than derived JPA queries.
+ */
+public interface NotesRepositoryCustom {
+
+    /**
+     * Adds like deltas to many notes with a single JDBC batch, never going below 0.
+     * Notes that no longer exist are skipped.
+     *
+     * @param deltas The number of likes to add per note ID, negative to remove likes.
+     * @return The number of notes that were updated.
+     */
+    int incrementLikesBatch(Map<Long, Long> deltas);
+
+    /**
+     * Copies the description of a note to a writer as it is read from the database and decompressed, without
+     * holding all of it in memory.
+     *
+     * @param noteId The ID of the note.
+     * @param out    The writer to copy the description to; it is not closed.
+     * @return Whether the note exists; nothing is written for a note without a description.
+     * @throws IOException If writing fails.
+     */
+    boolean writeDescription(Long noteId, Writer out) throws IOException;
+
+    /**
+     * Compresses the descriptions stored before compression was enabled, for the notes after the given ID,
+     * ordered by ID. Notes changed in the meantime are skipped, as they were written compressed.
+     *
+     * @param afterId The ID the batch starts after, 0 for the first batch.
+     * @param limit   The largest number of notes examined.
+     * @return The ID of the last note examined, which the next batch starts after; afterId when there are none left.
+     */
+    long compressDescriptions(long afterId, int limit);
+}
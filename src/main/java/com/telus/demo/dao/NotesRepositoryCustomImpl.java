@@ -0,0 +1,105 @@
+package com.telus.demo.dao;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC implementation of {@link NotesRepositoryCustom}, picked up by Spring Data as a fragment of {@link NotesRepository}.
+ */
+public class NotesRepositoryCustomImpl implements NotesRepositoryCustom {
+
+    private static final String INCREMENT_LIKES_SQL =
+            "update note set likes = case when likes + ? > 0 then likes + ? else 0 end, timestamp_updated = ?, "
+                    + "version = version + 1 where note_id = ?";
+
+    private static final String DESCRIPTION_SQL = "select description from note where note_id = ?";
+
+    private static final String UNCOMPRESSED_DESCRIPTIONS_SQL =
+            "select note_id, version, description from note where note_id > ? and octet_length(description) >= ? "
+                    + "and substring(description from 1 for 1) <> ? order by note_id limit ?";
+
+    // The version is checked but not incremented: the text of the note, and so its ETag, do not change
+    private static final String COMPRESS_DESCRIPTION_SQL =
+            "update note set description = ? where note_id = ? and version = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DescriptionCompression compression;
+
+    public NotesRepositoryCustomImpl(JdbcTemplate jdbcTemplate, DescriptionCompression compression) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.compression = compression;
+    }
+
+    @Override
+    @Transactional
+    public int incrementLikesBatch(Map<Long, Long> deltas) {
+        Timestamp updatedAt = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((noteId, delta) -> rows.add(new Object[]{delta, delta, updatedAt, noteId}));
+        int updated = 0;
+        for (int count : jdbcTemplate.batchUpdate(INCREMENT_LIKES_SQL, rows)) {
+            updated += Math.max(count, 0);
+        }
+        return updated;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean writeDescription(Long noteId, Writer out) throws IOException {
+        try {
+            return Boolean.TRUE.equals(jdbcTemplate.query(DESCRIPTION_SQL, rs -> {
+                if (!rs.next()) {
+                    return false;
+                }
+                // Read from the LOB in chunks; the transaction keeps it readable until the copy ends
+                InputStream stored = rs.getBinaryStream(1);
+                if (stored == null) {
+                    return true;
+                }
+                try (Reader description = compression.decompress(stored)) {
+                    description.transferTo(out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return true;
+            }, noteId));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    @Transactional
+    public long compressDescriptions(long afterId, int limit) {
+        List<Object[]> rows = new ArrayList<>();
+        long lastId = jdbcTemplate.query(UNCOMPRESSED_DESCRIPTIONS_SQL, rs -> {
+            long last = afterId;
+            while (rs.next()) {
+                last = rs.getLong(1);
+                byte[] text = rs.getBytes(3);
+                byte[] stored = compression.compress(compression.decompress(text));
+                // Text that does not compress is left as it is
+                if (!Arrays.equals(stored, text)) {
+                    rows.add(new Object[]{stored, last, rs.getLong(2)});
+                }
+            }
+            return last;
+        }, afterId, compression.getMinLength(), new byte[]{DescriptionCompression.MARKER}, limit);
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(COMPRESS_DESCRIPTION_SQL, rows);
+        }
+        return lastId;
+    }
+}
@@ -0,0 +1,19 @@
+package com.telus.demo.dao;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method working on a single note, whose ID is its first argument.
+ * The connections opened while the method runs, including the one of its transaction, come from the shard
+ * holding that note (see {@link NoteShards}). A first argument that is a collection of batch operations routes
+ * to the shard of the first operation's note; the method checks that the others are on the same shard.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface OnNoteShard {
+}
@@ -0,0 +1,50 @@
+package com.telus.demo.dao;
+
+import com.telus.demo.modal.BatchOperation;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Routes the connections of the methods annotated with {@link OnNoteShard} to the shard of their note.
+ * Runs outside the transaction interceptor, so the shard is known when the transaction acquires its connection.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class OnNoteShardAspect {
+
+    private final NoteShards noteShards;
+
+    public OnNoteShardAspect(NoteShards noteShards) {
+        this.noteShards = noteShards;
+    }
+
+    @Around("@annotation(com.telus.demo.dao.OnNoteShard)")
+    public Object onNoteShard(ProceedingJoinPoint joinPoint) throws Throwable {
+        int previous = ShardRoutingDataSource.setCurrentShard(shardOf(joinPoint.getArgs()[0]));
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ShardRoutingDataSource.setCurrentShard(previous);
+        }
+    }
+
+    private int shardOf(Object key) {
+        if (key instanceof Long noteId) {
+            return noteShards.shardOf(noteId);
+        }
+        if (key instanceof Iterable<?> operations) {
+            for (Object operation : operations) {
+                if (operation instanceof BatchOperation batchOperation && batchOperation.getId() != null) {
+                    return noteShards.shardOf(batchOperation.getId());
+                }
+            }
+        }
+        // No note to look for; the method fails or finds nothing on whichever shard
+        return 0;
+    }
+}
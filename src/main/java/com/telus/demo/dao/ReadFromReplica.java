@@ -0,0 +1,19 @@
+package com.telus.demo.dao;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a read that may be served by a replica, when replicas are configured.
+ * The connections opened while the method runs come from {@link ReplicaRoutingDataSource}'s replicas,
+ * unless a read-write transaction is active. Only put it on reads that tolerate replication lag:
+ * anything read back right after a write, cached, or used to recover in-memory state must stay on the primary.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReadFromReplica {
+}
@@ -0,0 +1,29 @@
+package com.telus.demo.dao;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Routes the connections of the methods annotated with {@link ReadFromReplica} to the replicas.
+ * Runs outside the transaction interceptor, so the route is known when a read-only transaction
+ * acquires its connection.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ReadFromReplicaAspect {
+
+    @Around("@annotation(com.telus.demo.dao.ReadFromReplica)")
+    public Object readFromReplica(ProceedingJoinPoint joinPoint) throws Throwable {
+        boolean previous = ReplicaRoutingDataSource.setReadFromReplica(true);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReplicaRoutingDataSource.setReadFromReplica(previous);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.telus.demo.dao;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Checks the read replicas on a fixed delay, so that a replica marked down comes back into rotation,
+ * and reports them under {@code /actuator/health}. Reads fall back to the primary while every replica is
+ * down, so the application stays up.
+ */
+@Component
+public class ReplicaHealthIndicator implements HealthIndicator {
+
+    // Null when no replica is configured
+    private final ReplicaRoutingDataSource routingDataSource;
+
+    /**
+     * Constructor for ReplicaHealthIndicator.
+     *
+     * @param dataSource The data source of the application, routed by {@link ReplicaRoutingPostProcessor}.
+     * @throws SQLException If the data source cannot be unwrapped.
+     */
+    public ReplicaHealthIndicator(DataSource dataSource) throws SQLException {
+        this.routingDataSource = dataSource.isWrapperFor(ReplicaRoutingDataSource.class)
+                ? dataSource.unwrap(ReplicaRoutingDataSource.class) : null;
+    }
+
+    /**
+     * Validates a connection of every replica.
+     */
+    @Scheduled(fixedDelayString = "${notes.datasource.replica-check-interval-ms:5000}")
+    public void checkReplicas() {
+        if (routingDataSource != null) {
+            routingDataSource.checkReplicas();
+        }
+    }
+
+    @Override
+    public Health health() {
+        if (routingDataSource == null) {
+            return Health.up().withDetail("replicas", "none configured").build();
+        }
+        Health.Builder health = Health.up();
+        routingDataSource.getReplicaStatus().forEach((name, up) -> health.withDetail(name, up ? "UP" : "DOWN"));
+        return health.build();
+    }
+}
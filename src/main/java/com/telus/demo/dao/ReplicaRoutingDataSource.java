@@ -0,0 +1,220 @@
+package com.telus.demo.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Data source that sends the reads marked with {@link ReadFromReplica} to read replicas, and everything else
+ * to the primary. Replicas are picked round-robin or by fewest open connections among those that are up.
+ * A replica that fails to hand out a connection is marked down and the read falls back to the primary;
+ * {@link #checkReplicas()} brings it back once it answers again.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    /**
+     * How a replica is picked for a read.
+     */
+    public enum Selection {
+        ROUND_ROBIN,
+        LEAST_CONNECTIONS
+    }
+
+    // Set by ReadFromReplicaAspect while a @ReadFromReplica method runs
+    private static final ThreadLocal<Boolean> READ_FROM_REPLICA = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Selection selection;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Constructor for ReplicaRoutingDataSource.
+     *
+     * @param primary   The data source of the primary, used for writes and for every read not marked for replicas.
+     * @param replicas  The data sources of the replicas, by name.
+     * @param selection How a replica is picked for a read.
+     */
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Selection selection) {
+        this.primary = primary;
+        this.selection = selection;
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+    }
+
+    /**
+     * Sets whether the connections opened by the current thread may come from a replica.
+     *
+     * @param readFromReplica Whether reads may go to a replica.
+     * @return The previous value, to restore afterwards.
+     */
+    static boolean setReadFromReplica(boolean readFromReplica) {
+        boolean previous = READ_FROM_REPLICA.get();
+        READ_FROM_REPLICA.set(readFromReplica);
+        return previous;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = routesToReplica() ? select() : null;
+        if (replica != null) {
+            try {
+                return replica.getConnection();
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        // Only the primary is known to accept other credentials
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * Validates a connection of every replica, marking it up or down.
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    replica.markUp();
+                } else {
+                    replica.markDown(null);
+                }
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+    }
+
+    /**
+     * @return Whether each replica is up, by name.
+     */
+    public Map<String, Boolean> getReplicaStatus() {
+        Map<String, Boolean> status = new LinkedHashMap<>();
+        replicas.forEach(replica -> status.put(replica.name, replica.up));
+        return status;
+    }
+
+    /**
+     * @return The number of connections currently held on each replica, by name.
+     */
+    public Map<String, Integer> getReplicaConnections() {
+        Map<String, Integer> active = new LinkedHashMap<>();
+        replicas.forEach(replica -> active.put(replica.name, replica.active.get()));
+        return active;
+    }
+
+    /**
+     * Closes the connection pools of the replicas.
+     */
+    @Override
+    public void close() {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Failed to close replica {}", replica.name, e);
+                }
+            }
+        }
+    }
+
+    private static boolean routesToReplica() {
+        // A read-write transaction stays on the primary, even when started inside a replica read
+        boolean readWriteTransaction = TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        return READ_FROM_REPLICA.get() && !readWriteTransaction;
+    }
+
+    /**
+     * @return The replica to read from, or null to fall back to the primary when none is up.
+     */
+    private Replica select() {
+        List<Replica> up = replicas.stream().filter(replica -> replica.up).toList();
+        if (up.isEmpty()) {
+            return null;
+        }
+        return switch (selection) {
+            case ROUND_ROBIN -> up.get(Math.floorMod(next.getAndIncrement(), up.size()));
+            case LEAST_CONNECTIONS -> up.stream().min(Comparator.comparingInt(replica -> replica.active.get())).orElseThrow();
+        };
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        // Connections handed out and not closed yet, for LEAST_CONNECTIONS
+        private final AtomicInteger active = new AtomicInteger();
+        private volatile boolean up = true;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        private Connection getConnection() throws SQLException {
+            Connection connection = dataSource.getConnection();
+            active.incrementAndGet();
+            return releaseOnClose(connection);
+        }
+
+        private void markUp() {
+            if (!up) {
+                up = true;
+                log.info("Replica {} is back up, reads are routed to it again", name);
+            }
+        }
+
+        private void markDown(SQLException cause) {
+            if (up) {
+                up = false;
+                log.warn("Replica {} is down, its reads fall back to the primary: {}", name,
+                        cause == null ? "connection not valid" : cause.getMessage());
+            }
+        }
+
+        /**
+         * Wraps a connection so that closing it, once, is counted.
+         */
+        private Connection releaseOnClose(Connection connection) {
+            AtomicBoolean released = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                            try {
+                                connection.close();
+                            } finally {
+                                active.decrementAndGet();
+                            }
+                            return null;
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+    }
+}
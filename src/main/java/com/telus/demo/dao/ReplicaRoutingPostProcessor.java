@@ -0,0 +1,101 @@
+package com.telus.demo.dao;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Puts a {@link ReplicaRoutingDataSource} in front of the application data source when read replicas are configured.
+ * Runs before {@link BoundedDataSourcePostProcessor}, so the bound covers the connections of the primary and the replicas.
+ */
+@Component
+@Slf4j
+public class ReplicaRoutingPostProcessor implements BeanPostProcessor, Ordered, DisposableBean {
+
+    // A replica that does not answer quickly is skipped, its read goes to the primary instead
+    private static final long REPLICA_CONNECTION_TIMEOUT_MS = 1_000;
+
+    private final List<String> replicaUrls;
+    private final String username;
+    private final String password;
+    private final int poolSize;
+    private final ReplicaRoutingDataSource.Selection selection;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    /**
+     * Constructor for ReplicaRoutingPostProcessor.
+     *
+     * @param replicaUrls The JDBC URLs of the replicas; none to read everything from the primary.
+     * @param username    The user the replicas are read with, the same as the primary's.
+     * @param password    The password of that user.
+     * @param poolSize    The size of the connection pool of each replica.
+     * @param selection   How a replica is picked: round-robin or least-connections.
+     */
+    public ReplicaRoutingPostProcessor(
+            @Value("${notes.datasource.replica-urls:}") List<String> replicaUrls,
+            @Value("${spring.datasource.username:}") String username,
+            @Value("${spring.datasource.password:}") String password,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${notes.datasource.replica-selection:round-robin}") String selection) {
+        this.replicaUrls = replicaUrls.stream().filter(url -> !url.isBlank()).toList();
+        this.username = username;
+        this.password = password;
+        this.poolSize = poolSize;
+        this.selection = ReplicaRoutingDataSource.Selection.valueOf(selection.toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (replicaUrls.isEmpty() || !(bean instanceof DataSource primary)
+                || bean instanceof BoundedDataSource || bean instanceof ReplicaRoutingDataSource) {
+            return bean;
+        }
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            replicas.put("replica-" + (i + 1), replica("replica-" + (i + 1), replicaUrls.get(i)));
+        }
+        log.info("Routing replica reads of data source {} to {} replicas ({})", beanName, replicas.size(), selection);
+        routingDataSource = new ReplicaRoutingDataSource(primary, replicas, selection);
+        return routingDataSource;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public void destroy() {
+        if (routingDataSource != null) {
+            routingDataSource.close();
+        }
+    }
+
+    private DataSource replica(String name, String url) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName(name);
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setReadOnly(true);
+        dataSource.setConnectionTimeout(REPLICA_CONNECTION_TIMEOUT_MS);
+        // Start even if the replica is down; the health check notices when it comes up
+        dataSource.setInitializationFailTimeout(-1);
+        return dataSource;
+    }
+}
@@ -0,0 +1,37 @@
+package com.telus.demo.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the Flyway migrations on every shard, one after the other, rather than only on the connection
+ * Flyway opens on startup, which is shard 0's. Hibernate then validates the schema of shard 0, which
+ * every shard shares since the same migrations created them.
+ */
+@Component
+@Slf4j
+public class ShardMigrationStrategy implements FlywayMigrationStrategy {
+
+    private final NoteShards noteShards;
+
+    /**
+     * Constructor for ShardMigrationStrategy.
+     *
+     * @param noteShards The shards to migrate.
+     */
+    public ShardMigrationStrategy(NoteShards noteShards) {
+        this.noteShards = noteShards;
+    }
+
+    @Override
+    public void migrate(Flyway flyway) {
+        for (int shard = 0; shard < noteShards.getCount(); shard++) {
+            int migrations = noteShards.onShard(shard, () -> flyway.migrate().migrationsExecuted);
+            if (noteShards.isSharded()) {
+                log.info("Applied {} migrations to shard {}", migrations, shard);
+            }
+        }
+    }
+}
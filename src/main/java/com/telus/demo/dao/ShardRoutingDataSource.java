@@ -0,0 +1,87 @@
+package com.telus.demo.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data source that opens the connections of the current thread on the shard selected by {@link NoteShards}.
+ * Shard 0 is the application's own data source; when no shard is selected, or one that does not exist,
+ * connections come from it.
+ */
+@Slf4j
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    // Set by NoteShards.onShard() and OnNoteShardAspect around the work done on a shard
+    private static final ThreadLocal<Integer> CURRENT_SHARD = ThreadLocal.withInitial(() -> 0);
+
+    private final List<DataSource> shards;
+
+    /**
+     * Constructor for ShardRoutingDataSource.
+     *
+     * @param shards The data sources of the shards, by shard number; the first one is the default.
+     */
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            targets.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        afterPropertiesSet();
+    }
+
+    /**
+     * @return The shard the connections of the current thread are opened on.
+     */
+    static int currentShard() {
+        return CURRENT_SHARD.get();
+    }
+
+    /**
+     * Sets the shard the connections opened by the current thread come from.
+     *
+     * @param shard The shard number.
+     * @return The previous shard, to restore afterwards.
+     */
+    static int setCurrentShard(int shard) {
+        int previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        return previous;
+    }
+
+    /**
+     * @return The number of shards.
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return CURRENT_SHARD.get();
+    }
+
+    /**
+     * Closes the connection pools of the shards other than the application's own data source.
+     */
+    @Override
+    public void close() {
+        for (DataSource shard : shards.subList(1, shards.size())) {
+            if (shard instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Failed to close shard data source {}", shard, e);
+                }
+            }
+        }
+    }
+}
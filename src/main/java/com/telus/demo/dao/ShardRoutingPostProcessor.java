@@ -0,0 +1,96 @@
+package com.telus.demo.dao;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Puts a {@link ShardRoutingDataSource} in front of the application data source when shards are configured,
+ * the application data source becoming shard 0. Runs before {@link BoundedDataSourcePostProcessor}, so the bound
+ * covers the connections of every shard.
+ */
+@Component
+@Slf4j
+public class ShardRoutingPostProcessor implements BeanPostProcessor, Ordered, DisposableBean {
+
+    private final List<String> shardUrls;
+    private final String username;
+    private final String password;
+    private final int poolSize;
+
+    private ShardRoutingDataSource routingDataSource;
+
+    /**
+     * Constructor for ShardRoutingPostProcessor.
+     *
+     * @param shardUrls   The JDBC URLs of shards 1 to N-1; none to keep every note in the application data source.
+     * @param replicaUrls The JDBC URLs of the read replicas, which only exist for an unsharded database.
+     * @param username    The user the shards are accessed with, the same as the application data source's.
+     * @param password    The password of that user.
+     * @param poolSize    The size of the connection pool of each shard.
+     */
+    public ShardRoutingPostProcessor(
+            @Value("${notes.sharding.shard-urls:}") List<String> shardUrls,
+            @Value("${notes.datasource.replica-urls:}") List<String> replicaUrls,
+            @Value("${spring.datasource.username:}") String username,
+            @Value("${spring.datasource.password:}") String password,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize) {
+        this.shardUrls = shardUrls.stream().filter(url -> !url.isBlank()).toList();
+        if (!this.shardUrls.isEmpty() && replicaUrls.stream().anyMatch(url -> !url.isBlank())) {
+            throw new IllegalStateException("notes.sharding.shard-urls and notes.datasource.replica-urls cannot be "
+                    + "combined: replicas are only routed for an unsharded database");
+        }
+        this.username = username;
+        this.password = password;
+        this.poolSize = poolSize;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (shardUrls.isEmpty() || !(bean instanceof DataSource primary)
+                || bean instanceof BoundedDataSource || bean instanceof ShardRoutingDataSource) {
+            return bean;
+        }
+        List<DataSource> shards = new ArrayList<>();
+        shards.add(primary);
+        for (String url : shardUrls) {
+            shards.add(shard("shard-" + shards.size(), url));
+        }
+        log.info("Spreading the notes of data source {} over {} shards", beanName, shards.size());
+        routingDataSource = new ShardRoutingDataSource(shards);
+        return routingDataSource;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public void destroy() {
+        if (routingDataSource != null) {
+            routingDataSource.close();
+        }
+    }
+
+    private DataSource shard(String name, String url) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName(name);
+        dataSource.setMaximumPoolSize(poolSize);
+        return dataSource;
+    }
+}
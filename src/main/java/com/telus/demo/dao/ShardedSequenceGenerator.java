@@ -0,0 +1,57 @@
+package com.telus.demo.dao;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.OptimizerDescriptor;
+import org.hibernate.id.enhanced.OptimizerFactory;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sequence generator for note IDs that carry their shard, see {@link NoteShards}.
+ * Every shard has its own copy of the sequence, read through the connection of the current shard, and its own
+ * block of values reserved in memory. Shard 0 hands out the plain sequence values, exactly like a standard
+ * sequence generator; the other shards tag theirs with the shard number.
+ */
+public class ShardedSequenceGenerator extends SequenceStyleGenerator {
+
+    // Blocks of values reserved per shard, other than shard 0 whose block is kept by the superclass
+    private final Map<Integer, Optimizer> shardOptimizers = new ConcurrentHashMap<>();
+
+    private OptimizerDescriptor optimizerDescriptor;
+    private Class<?> returnClass;
+    private int incrementSize;
+    private long initialValue;
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) {
+        super.configure(type, parameters, serviceRegistry);
+        this.returnClass = type.getReturnedClass();
+        this.incrementSize = getOptimizer().getIncrementSize();
+        this.optimizerDescriptor = determineOptimizationStrategy(parameters, incrementSize);
+        this.initialValue = determineInitialValue(parameters);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        int shard = ShardRoutingDataSource.currentShard();
+        if (shard == 0) {
+            return super.generate(session, object);
+        }
+        Optimizer optimizer = shardOptimizers.computeIfAbsent(shard,
+                key -> OptimizerFactory.buildOptimizer(optimizerDescriptor, returnClass, incrementSize, initialValue));
+        Number value = (Number) optimizer.generate(getDatabaseStructure().buildCallback(session));
+        return NoteShards.encode(shard, value.longValue());
+    }
+
+    @Override
+    public boolean supportsBulkInsertionIdentifierGeneration() {
+        // An insert-select would take plain values from the sequence, without the shard
+        return false;
+    }
+}
@@ -0,0 +1,44 @@
+package com.telus.demo.dao;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread, so they can be attributed to a request.
+ * Hibernate statistics only hold totals across all sessions. The counter is registered as the
+ * statement inspector of the session factory and leaves every statement unchanged.
+ */
+@Component
+public class StatementCounter implements StatementInspector, HibernatePropertiesCustomizer {
+
+    private final ThreadLocal<int[]> statements = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        statements.get()[0]++;
+        return sql;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+
+    /**
+     * Starts counting from 0 on the current thread.
+     */
+    public void reset() {
+        statements.get()[0] = 0;
+    }
+
+    /**
+     * @return The number of statements prepared on the current thread since the last {@link #reset()}.
+     */
+    public int count() {
+        return statements.get()[0];
+    }
+}
@@ -0,0 +1,7 @@
+package com.telus.demo.exception;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
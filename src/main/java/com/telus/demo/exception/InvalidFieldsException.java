@@ -0,0 +1,7 @@
+package com.telus.demo.exception;
+
+public class InvalidFieldsException extends RuntimeException {
+    public InvalidFieldsException(String message) {
+        super(message);
+    }
+}
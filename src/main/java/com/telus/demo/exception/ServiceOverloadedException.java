@@ -0,0 +1,16 @@
+package com.telus.demo.exception;
+
+public class ServiceOverloadedException extends RuntimeException {
+
+    // Seconds the client should wait before retrying, sent as Retry-After
+    private final long retryAfterSeconds;
+
+    public ServiceOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,29 @@
+package com.telus.demo.modal;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One operation of a {@code POST /api/notes/batch} request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchOperation {
+
+    private Type op;
+
+    private Long id;
+
+    // The changes of a modify operation, applied like PUT /api/notes/{id}
+    private Note note;
+
+    public enum Type {
+        @JsonProperty("like") LIKE,
+        @JsonProperty("unlike") UNLIKE,
+        @JsonProperty("modify") MODIFY,
+        @JsonProperty("delete") DELETE
+    }
+}
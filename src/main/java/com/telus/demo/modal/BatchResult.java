@@ -0,0 +1,28 @@
+package com.telus.demo.modal;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one operation of a batch, in the position of the operation in the request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult {
+
+    private BatchOperation.Type op;
+
+    private Long id;
+
+    // The HTTP status the operation would have answered on its own endpoint
+    private int status;
+
+    // The note after the operation, absent for deletes and failures
+    private Note note;
+
+    private String error;
+}
@@ -0,0 +1,42 @@
+package com.telus.demo.modal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import.
+ * Notes are inserted in chunks, each in its own transaction: a failed chunk is rolled back on its own
+ * and reported here, while the chunks before and after it are kept.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkImportResult {
+
+    private long imported;
+
+    private List<ChunkFailure> failures = new ArrayList<>();
+
+    /**
+     * A chunk of notes that was not imported.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ChunkFailure {
+
+        // Position of the chunk in the import, starting at 0
+        private int chunk;
+
+        // Position of the first note of the chunk in the input, starting at 0
+        private long firstNote;
+
+        private int notes;
+
+        private String error;
+    }
+}
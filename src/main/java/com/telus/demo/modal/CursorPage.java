@@ -0,0 +1,39 @@
+package com.telus.demo.modal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * A single page of a keyset-paginated listing.
+ * Holds the items of the page and the opaque cursor of the next page, which is null on the last page.
+ *
+ * @param <T> The type of the items in the page.
+ */
+@Data
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> items;
+
+    private String nextCursor;
+
+    /**
+     * Builds a page from rows fetched with one extra element beyond the page size.
+     * The extra row only signals that another page exists and is not returned.
+     *
+     * @param rows     The rows fetched with a limit of {@code pageSize + 1}.
+     * @param pageSize The number of items to return.
+     * @param key      Extracts the keyset value of a row, used to build the next cursor.
+     * @return The page of at most {@code pageSize} items.
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int pageSize, ToLongFunction<T> key) {
+        if (rows.size() <= pageSize) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, pageSize);
+        return new CursorPage<>(items, PageCursor.encode(key.applyAsLong(items.get(pageSize - 1))));
+    }
+}
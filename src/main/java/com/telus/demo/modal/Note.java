@@ -1,34 +1,79 @@
 package com.telus.demo.modal;
 
 
+import com.telus.demo.dao.CompressedDescriptionConverter;
+import com.telus.demo.dao.ShardedSequenceGenerator;
+import jakarta.persistence.Basic;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
 import java.time.LocalDateTime;
 
 @Entity
+@NamedEntityGraph(name = Note.WITH_DESCRIPTION, attributeNodes = @NamedAttributeNode("description"))
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Note {
 
+    // Name of the ID sequence, and how many IDs Hibernate reserves with each call to it
+    public static final String ID_SEQUENCE = "note_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Longest description accepted, in characters
+    public static final int MAX_DESCRIPTION_LENGTH = 1024 * 1024;
+
+    // Entity graph of the queries that load the description with the rest of the note
+    public static final String WITH_DESCRIPTION = "Note.withDescription";
+
+    // A pooled sequence rather than IDENTITY, so Hibernate knows the IDs before inserting and can batch the inserts.
+    // One sequence per shard, the ID carrying the shard of the note (see NoteShards)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @GenericGenerator(name = ID_SEQUENCE, type = ShardedSequenceGenerator.class, parameters = {
+            @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = ID_SEQUENCE),
+            @Parameter(name = SequenceStyleGenerator.INCREMENT_PARAM, value = "" + ID_ALLOCATION_SIZE)
+    })
     private Long noteId;
 
     private String subject;
 
+    // Stored as a LOB, out of the row of the other columns, and only loaded when read: loading a note for a like,
+    // a deletion or a change of its subject does not read it. Needs the entity enhancement of the build.
+    // Stored as bytes, long descriptions compressed (see DescriptionCompression), which checks the length
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Convert(converter = CompressedDescriptionConverter.class)
     private String description;
 
     private int likes;
 
+    // Number of words in the description, computed when the note is written
+    private Integer wordCount;
+
+    // Incremented on every change, including the bulk like updates; the ETag of the note is built from it
+    @Version
+    @ColumnDefault("0")
+    private long version;
+
     private LocalDateTime timestampCreated;
 
     private LocalDateTime timestampUpdated;
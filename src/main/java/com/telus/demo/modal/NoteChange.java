@@ -0,0 +1,35 @@
+package com.telus.demo.modal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Locale;
+
+/**
+ * A change to a note, as pushed to the subscribers of {@code GET /api/notes/stream}.
+ */
+@Data
+@AllArgsConstructor
+public class NoteChange {
+
+    public enum Type {
+        CREATED, MODIFIED, DELETED, LIKES_CHANGED;
+
+        /**
+         * @return The name of the Server-Sent Event, such as {@code note-likes-changed}.
+         */
+        public String eventName() {
+            return "note-" + name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    // Numbers the changes in the order they were committed, also the ID of the event
+    private long sequence;
+
+    private Type type;
+
+    private Long noteId;
+
+    // The note once changed, without its description; null for a deletion
+    private NoteSummary note;
+}
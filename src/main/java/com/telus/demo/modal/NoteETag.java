@@ -0,0 +1,124 @@
+package com.telus.demo.modal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Strong ETags of notes and of lists of notes.
+ * A note's ETag is its version plus the likes it is shown with, since likes still pending in the
+ * write-behind buffer change the response without changing the version. A list's ETag also depends on
+ * the fields its notes are returned with, as each selection of fields is a representation of its own.
+ */
+public final class NoteETag {
+
+    private NoteETag() {
+    }
+
+    /**
+     * @param version The version of the note.
+     * @param likes   The likes the note is shown with.
+     * @return The quoted ETag of the note.
+     */
+    public static String of(long version, int likes) {
+        return "\"" + version + "-" + likes + "\"";
+    }
+
+    /**
+     * @param note The note as returned to the client.
+     * @return The quoted ETag of the note.
+     */
+    public static String of(Note note) {
+        return of(note.getVersion(), note.getLikes());
+    }
+
+    /**
+     * Hashes the ID, version and likes of every note of a list, in order.
+     *
+     * @param notes      The notes as returned to the client.
+     * @param nextCursor The cursor of the next page, null if there is none.
+     * @return The quoted ETag of the list.
+     */
+    public static String of(List<Note> notes, String nextCursor) {
+        return of(notes, nextCursor, null);
+    }
+
+    /**
+     * Hashes the ID, version and likes of every note of a list, in order, and the fields they are returned with.
+     *
+     * @param notes      The notes the returned fields are taken from.
+     * @param nextCursor The cursor of the next page, null if there is none.
+     * @param fields     The fields of each note returned to the client, null for whole notes.
+     * @return The quoted ETag of the list.
+     */
+    public static String of(List<Note> notes, String nextCursor, NoteFields fields) {
+        MessageDigest digest = sha256();
+        ByteBuffer entry = ByteBuffer.allocate(Long.BYTES * 2 + Integer.BYTES);
+        for (Note note : notes) {
+            update(digest, entry, note.getNoteId(), note.getVersion(), note.getLikes());
+        }
+        return of(digest, nextCursor, fields);
+    }
+
+    /**
+     * Hashes the ID, version and likes of every note of a list of summaries, in order, and the fields they are
+     * returned with.
+     *
+     * @param summaries  The note summaries the returned fields are taken from.
+     * @param nextCursor The cursor of the next page, null if there is none.
+     * @param fields     The fields of each note returned to the client.
+     * @return The quoted ETag of the list.
+     */
+    public static String ofSummaries(List<NoteSummary> summaries, String nextCursor, NoteFields fields) {
+        MessageDigest digest = sha256();
+        ByteBuffer entry = ByteBuffer.allocate(Long.BYTES * 2 + Integer.BYTES);
+        for (NoteSummary summary : summaries) {
+            update(digest, entry, summary.getNoteId(), summary.getVersion(), summary.getLikes());
+        }
+        return of(digest, nextCursor, fields);
+    }
+
+    private static void update(MessageDigest digest, ByteBuffer entry, long noteId, long version, int likes) {
+        entry.clear();
+        entry.putLong(noteId).putLong(version).putInt(likes);
+        digest.update(entry.array());
+    }
+
+    private static String of(MessageDigest digest, String nextCursor, NoteFields fields) {
+        if (nextCursor != null) {
+            digest.update(nextCursor.getBytes(StandardCharsets.UTF_8));
+        }
+        if (fields != null) {
+            // Cursors never hold a NUL, so the fields cannot be mistaken for the end of a cursor
+            digest.update((byte) 0);
+            digest.update(fields.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        // 128 bits are plenty to tell two lists apart
+        return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+    }
+
+    /**
+     * Checks an If-Match header against the current ETag, using the strong comparison of RFC 9110.
+     *
+     * @param ifMatch The If-Match header: {@code *} or a comma-separated list of ETags.
+     * @param eTag    The current quoted ETag.
+     * @return Whether the header matches.
+     */
+    public static boolean matches(String ifMatch, String eTag) {
+        return Arrays.stream(ifMatch.split(","))
+                .map(String::trim)
+                .anyMatch(candidate -> candidate.equals("*") || candidate.equals(eTag));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is always available", e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.telus.demo.modal;
+
+import com.telus.demo.exception.InvalidFieldsException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The fields of a note a list endpoint returns, as requested with {@code ?fields=noteId,subject,likes}.
+ * Each note is returned as an object holding only these fields, in the requested order.
+ */
+public final class NoteFields {
+
+    public static final String DESCRIPTION = "description";
+
+    // The fields of a note, as serialized
+    public static final List<String> ALL = List.of("noteId", "subject", DESCRIPTION, "likes", "wordCount", "version",
+            "timestampCreated", "timestampUpdated");
+
+    private final List<String> names;
+
+    private NoteFields(List<String> names) {
+        this.names = names;
+    }
+
+    /**
+     * Parses the {@code fields} request parameter.
+     *
+     * @param fields The comma-separated field names; duplicates are ignored.
+     * @return The requested fields.
+     * @throws InvalidFieldsException If no field is given, or one that a note does not have.
+     */
+    public static NoteFields parse(String fields) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (!trimmed.isEmpty() && !ALL.contains(trimmed)) {
+                throw new InvalidFieldsException("Unknown note field: " + trimmed + ", expected some of " + ALL);
+            }
+            if (!trimmed.isEmpty()) {
+                names.add(trimmed);
+            }
+        }
+        if (names.isEmpty()) {
+            throw new InvalidFieldsException("No note field requested, expected some of " + ALL);
+        }
+        return new NoteFields(List.copyOf(names));
+    }
+
+    /**
+     * @return Whether the description is requested, which requires reading whole notes rather than {@link NoteSummary}.
+     */
+    public boolean includesDescription() {
+        return names.contains(DESCRIPTION);
+    }
+
+    /**
+     * @param notes The notes.
+     * @return The requested fields of each note.
+     */
+    public List<Map<String, Object>> select(List<Note> notes) {
+        List<Map<String, Object>> selected = new ArrayList<>(notes.size());
+        for (Note note : notes) {
+            selected.add(select(note));
+        }
+        return selected;
+    }
+
+    /**
+     * @param summaries The notes, without their description.
+     * @return The requested fields of each note.
+     */
+    public List<Map<String, Object>> selectSummaries(List<NoteSummary> summaries) {
+        List<Map<String, Object>> selected = new ArrayList<>(summaries.size());
+        for (NoteSummary summary : summaries) {
+            selected.add(select(Note.builder()
+                    .noteId(summary.getNoteId())
+                    .subject(summary.getSubject())
+                    .likes(summary.getLikes())
+                    .wordCount(summary.getWordCount())
+                    .version(summary.getVersion())
+                    .timestampCreated(summary.getTimestampCreated())
+                    .timestampUpdated(summary.getTimestampUpdated())
+                    .build()));
+        }
+        return selected;
+    }
+
+    /**
+     * @return The requested fields, in order and without duplicates, such as {@code noteId,subject}:
+     *         two requests with the same selection get the same representation.
+     */
+    @Override
+    public String toString() {
+        return String.join(",", names);
+    }
+
+    private Map<String, Object> select(Note note) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (String name : names) {
+            fields.put(name, switch (name) {
+                case "noteId" -> note.getNoteId();
+                case "subject" -> note.getSubject();
+                case DESCRIPTION -> note.getDescription();
+                case "likes" -> note.getLikes();
+                case "wordCount" -> note.getWordCount();
+                case "version" -> note.getVersion();
+                case "timestampCreated" -> note.getTimestampCreated();
+                case "timestampUpdated" -> note.getTimestampUpdated();
+                default -> throw new IllegalStateException("Unexpected note field " + name);
+            });
+        }
+        return fields;
+    }
+}
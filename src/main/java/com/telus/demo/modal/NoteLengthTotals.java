@@ -0,0 +1,11 @@
+package com.telus.demo.modal;
+
+/**
+ * Projection of the word counts of all notes, aggregated in a single query.
+ */
+public interface NoteLengthTotals {
+
+    long getTotalWords();
+
+    long getNoteCount();
+}
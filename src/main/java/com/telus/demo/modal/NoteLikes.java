@@ -0,0 +1,13 @@
+package com.telus.demo.modal;
+
+/**
+ * Projection of a note reduced to its ID, like count and version.
+ */
+public interface NoteLikes {
+
+    Long getNoteId();
+
+    int getLikes();
+
+    long getVersion();
+}
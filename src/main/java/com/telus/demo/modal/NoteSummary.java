@@ -0,0 +1,41 @@
+package com.telus.demo.modal;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of a note without its description, the only column that can be large.
+ * Read by the list endpoints when the description is not among the requested {@link NoteFields}, so the
+ * description is neither read from the database nor serialized.
+ */
+@Data
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class NoteSummary {
+
+    private Long noteId;
+
+    private String subject;
+
+    private int likes;
+
+    private Integer wordCount;
+
+    private long version;
+
+    private LocalDateTime timestampCreated;
+
+    private LocalDateTime timestampUpdated;
+
+    /**
+     * @param note The note.
+     * @return The summary of the note, as it is now.
+     */
+    public static NoteSummary of(Note note) {
+        return new NoteSummary(note.getNoteId(), note.getSubject(), note.getLikes(), note.getWordCount(), note.getVersion(),
+                note.getTimestampCreated(), note.getTimestampUpdated());
+    }
+}
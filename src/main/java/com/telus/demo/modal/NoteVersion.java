@@ -0,0 +1,15 @@
+package com.telus.demo.modal;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of a note reduced to what its ETag is built from, and to what a change of its likes updates.
+ */
+public interface NoteVersion {
+
+    long getVersion();
+
+    int getLikes();
+
+    LocalDateTime getTimestampUpdated();
+}
@@ -0,0 +1,68 @@
+package com.telus.demo.modal;
+
+import com.telus.demo.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes and decodes the opaque cursors used for keyset pagination.
+ * A cursor wraps the last key of the previous page, so clients can only pass it back as is.
+ */
+public final class PageCursor {
+
+    public static final int DEFAULT_LIMIT = 50;
+
+    public static final int MAX_LIMIT = 500;
+
+    private static final String PREFIX = "k:";
+
+    private PageCursor() {
+    }
+
+    /**
+     * Encodes the last key of a page into an opaque cursor.
+     *
+     * @param key The last key of the page.
+     * @return The URL-safe cursor.
+     */
+    public static String encode(long key) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + key).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decodes a cursor back into the key after which the next page starts.
+     *
+     * @param cursor The cursor, or null/blank for the first page.
+     * @return The key to continue after, 0 for the first page.
+     * @throws InvalidCursorException If the cursor was not produced by {@link #encode(long)}.
+     */
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            if (!raw.startsWith(PREFIX)) {
+                throw new InvalidCursorException("Invalid page cursor: " + cursor);
+            }
+            return Long.parseLong(raw.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid page cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Clamps a requested page size into {@code [1, MAX_LIMIT]}.
+     *
+     * @param limit The requested page size, or null for the default.
+     * @return The page size to use.
+     */
+    public static int clampLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+}
@@ -0,0 +1,30 @@
+package com.telus.demo.modal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Text statistics of the description of a note, computed in a single pass by
+ * {@link com.telus.demo.service.TextAnalyzer}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TextStats {
+
+    // Runs of non-whitespace characters
+    private int words;
+
+    // Unicode code points, whitespace included
+    private int characters;
+
+    // Runs of '.', '!' or '?' ending a word, plus an unterminated last sentence
+    private int sentences;
+
+    // Estimated number of distinct words, ignoring case and punctuation
+    private int uniqueWords;
+
+    // At 200 words per minute, rounded up to the second
+    private int readingTimeSeconds;
+}
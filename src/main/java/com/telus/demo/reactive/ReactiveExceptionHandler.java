@@ -0,0 +1,74 @@
+package com.telus.demo.reactive;
+
+import com.telus.demo.exception.GlobalExceptionHandler;
+import com.telus.demo.exception.InvalidBatchException;
+import com.telus.demo.exception.InvalidCursorException;
+import com.telus.demo.exception.NoteNotFoundException;
+import com.telus.demo.exception.PreconditionFailedException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * WebFlux counterpart of {@link GlobalExceptionHandler}, answering with the same status codes and bodies.
+ */
+@ControllerAdvice
+public class ReactiveExceptionHandler {
+
+    // Handle Note Not Found Exception
+    @ExceptionHandler(NoteNotFoundException.class)
+    public ResponseEntity<Object> handleNoteNotFoundException(NoteNotFoundException ex, ServerWebExchange exchange) {
+        return error(HttpStatus.NOT_FOUND, "Note Not Found", ex.getMessage(), exchange);
+    }
+
+    // Handle Invalid Cursor Exception
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<Object> handleInvalidCursorException(InvalidCursorException ex, ServerWebExchange exchange) {
+        return error(HttpStatus.BAD_REQUEST, "Invalid Cursor", ex.getMessage(), exchange);
+    }
+
+    // Handle Invalid Batch Exception
+    @ExceptionHandler(InvalidBatchException.class)
+    public ResponseEntity<Object> handleInvalidBatchException(InvalidBatchException ex, ServerWebExchange exchange) {
+        return error(HttpStatus.BAD_REQUEST, "Invalid Batch", ex.getMessage(), exchange);
+    }
+
+    // Handle Precondition Failed Exception (If-Match does not match the current version)
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<Object> handlePreconditionFailedException(PreconditionFailedException ex, ServerWebExchange exchange) {
+        return error(HttpStatus.PRECONDITION_FAILED, "Precondition Failed", ex.getMessage(), exchange);
+    }
+
+    // Handle Optimistic Locking Failures (the note was changed by another request meanwhile)
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Object> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex,
+                                                                          ServerWebExchange exchange) {
+        return error(HttpStatus.CONFLICT, "Concurrent Modification",
+                "The note was modified by another request, reload it and retry", exchange);
+    }
+
+    // Handle Generic Exceptions
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<Object> handleGlobalException(Exception ex, ServerWebExchange exchange) {
+        return error(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error", ex.getMessage(), exchange);
+    }
+
+    private static ResponseEntity<Object> error(HttpStatus status, String error, String message, ServerWebExchange exchange) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("status", status.value());
+        body.put("error", error);
+        body.put("message", message);
+        // Same format as WebRequest.getDescription(false) in the servlet variant
+        body.put("path", "uri=" + exchange.getRequest().getPath().value());
+
+        return new ResponseEntity<>(body, status);
+    }
+}
@@ -0,0 +1,30 @@
+package com.telus.demo.reactive;
+
+import com.telus.demo.dao.DescriptionCompression;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Starts the reactive variant of the notes API: WebFlux on Netty, with R2DBC instead of JPA.
+ * Only the components of this package are loaded, besides the {@link DescriptionCompression} of the descriptions
+ * shared with the JPA variant, with the {@code reactive} profile (application-reactive.yaml) switching the auto-configuration from the servlet stack.
+ * Not a @SpringBootConfiguration, so that tests keep finding {@link com.telus.demo.NoteApplication} on their own.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableAutoConfiguration
+@ComponentScan
+@Import(DescriptionCompression.class)
+public class ReactiveNoteApplication {
+
+	public static final String PROFILE = "reactive";
+
+	public static void main(String[] args) {
+		SpringApplication application = new SpringApplication(ReactiveNoteApplication.class);
+		application.setAdditionalProfiles(PROFILE);
+		application.run(args);
+	}
+
+}
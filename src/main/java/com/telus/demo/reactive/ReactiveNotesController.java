@@ -0,0 +1,322 @@
+package com.telus.demo.reactive;
+
+import com.telus.demo.controller.NotesController;
+import com.telus.demo.modal.CursorPage;
+import com.telus.demo.modal.Note;
+import com.telus.demo.modal.NoteETag;
+import com.telus.demo.modal.TextStats;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WebFlux variant of {@link NotesController}, serving the same {@code /api/notes} contract without
+ * holding a thread per request.
+ * The list endpoints also stream every remaining note as newline-delimited JSON when the client
+ * accepts {@value NotesController#NDJSON}; rows are then read from the database only as fast as the
+ * client reads the response.
+ * Not available here: the bulk import, the batch of writes, full-text search and the cache statistics,
+ * which rely on the in-memory state of the servlet variant.
+ */
+@RestController
+@RequestMapping("/api/notes")
+public class ReactiveNotesController {
+
+    // The service layer responsible for business logic
+    private final ReactiveNotesService notesService;
+
+    /**
+     * Constructor that initializes the controller with its service.
+     *
+     * @param notesService The ReactiveNotesService instance to be injected.
+     */
+    public ReactiveNotesController(ReactiveNotesService notesService) {
+        this.notesService = notesService;
+    }
+
+    /**
+     * Endpoint to add a new note.
+     *
+     * @param note The note to be added.
+     * @return ResponseEntity containing the added note and the HTTP status 201 (Created).
+     */
+    @PostMapping
+    public Mono<ResponseEntity<Note>> addNote(@RequestBody Note note) {
+        return notesService.addNote(note)
+                .map(savedNote -> ResponseEntity.status(HttpStatus.CREATED).body(savedNote));
+    }
+
+    /**
+     * Endpoint to modify an existing note.
+     * With an If-Match header, the note is only modified if it still has one of the given ETags (412 otherwise).
+     *
+     * @param id          The ID of the note to be modified.
+     * @param noteDetails The new details of the note.
+     * @param ifMatch     The ETags the client expects the note to have, optional.
+     * @return ResponseEntity containing the updated note and its new ETag.
+     */
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<Note>> modifyNote(@PathVariable Long id, @RequestBody Note noteDetails,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return notesService.modifyNote(id, noteDetails, ifMatch)
+                .map(updatedNote -> ResponseEntity.ok().eTag(NoteETag.of(updatedNote)).body(updatedNote));
+    }
+
+    /**
+     * Endpoint to delete a note.
+     *
+     * @param id The ID of the note to be deleted.
+     * @return ResponseEntity with a map indicating whether the note was deleted.
+     */
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Map<String, Boolean>>> deleteNote(@PathVariable Long id) {
+        return notesService.deleteNote(id).thenReturn(ResponseEntity.ok(Map.of("deleted", Boolean.TRUE)));
+    }
+
+    /**
+     * Endpoint to search for notes by subject, one page at a time.
+     *
+     * @param subject The subject to search for.
+     * @param cursor  The cursor of the page to fetch, as returned in the {@value NotesController#NEXT_CURSOR_HEADER} header.
+     * @param limit   The maximum number of notes to return.
+     * @return ResponseEntity containing a page of notes matching the subject.
+     */
+    @GetMapping("/search")
+    public Mono<ResponseEntity<List<Note>>> searchNotesBySubject(@RequestParam String subject,
+                                                                 @RequestParam(required = false) String cursor,
+                                                                 @RequestParam(required = false) Integer limit) {
+        return notesService.searchNotesBySubject(subject, cursor, limit).map(ReactiveNotesController::pageResponse);
+    }
+
+    /**
+     * Endpoint to stream every note matching a subject, as newline-delimited JSON.
+     *
+     * @param subject The subject to search for.
+     * @param cursor  The cursor of the page to start from.
+     * @return The matching notes, ordered by ID.
+     */
+    @GetMapping(value = "/search", produces = NotesController.NDJSON)
+    public Flux<Note> streamNotesBySubject(@RequestParam String subject, @RequestParam(required = false) String cursor) {
+        return notesService.streamNotesBySubject(subject, cursor);
+    }
+
+    /**
+     * Endpoint to retrieve all notes, one page at a time.
+     *
+     * @param cursor The cursor of the page to fetch, as returned in the {@value NotesController#NEXT_CURSOR_HEADER} header.
+     * @param limit  The maximum number of notes to return.
+     * @return ResponseEntity containing a page of notes.
+     */
+    @GetMapping
+    public Mono<ResponseEntity<List<Note>>> getAllNotes(@RequestParam(required = false) String cursor,
+                                                        @RequestParam(required = false) Integer limit) {
+        return notesService.getAllNotes(cursor, limit).map(ReactiveNotesController::pageResponse);
+    }
+
+    /**
+     * Endpoint to stream every note as newline-delimited JSON.
+     *
+     * @param cursor The cursor of the page to start from.
+     * @return The notes, ordered by ID.
+     */
+    @GetMapping(produces = NotesController.NDJSON)
+    public Flux<Note> streamAllNotes(@RequestParam(required = false) String cursor) {
+        return notesService.streamAllNotes(cursor);
+    }
+
+    /**
+     * Endpoint to export all notes as newline-delimited JSON.
+     * Compressed when the client sends {@code Accept-Encoding: gzip}, instead of with {@code ?gzip=true}.
+     *
+     * @return The notes, ordered by ID.
+     */
+    @GetMapping(value = "/export", produces = NotesController.NDJSON)
+    public Flux<Note> exportNotes() {
+        return notesService.streamAllNotes(null);
+    }
+
+    /**
+     * Endpoint to get a specific note by its ID.
+     * Answers 304 Not Modified when the If-None-Match header holds the current ETag of the note.
+     *
+     * @param id The ID of the note to retrieve.
+     * @return ResponseEntity containing the requested note and its ETag.
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Note>> getNoteById(@PathVariable Long id) {
+        // WebFlux compares the ETag with If-None-Match and drops the body when they match
+        return notesService.getNoteById(id).map(note -> ResponseEntity.ok().eTag(NoteETag.of(note)).body(note));
+    }
+
+    /**
+     * Endpoint to get several notes by ID in one request, such as the notes of a feed.
+     *
+     * @param ids The IDs of the notes, comma-separated.
+     * @return ResponseEntity containing the notes in the order of the IDs; missing notes are left out.
+     */
+    @GetMapping("/batch")
+    public Mono<ResponseEntity<List<Note>>> getNotesByIds(@RequestParam List<Long> ids) {
+        return notesService.getNotesByIds(ids).collectList().map(ReactiveNotesController::listResponse);
+    }
+
+    /**
+     * Endpoint to get the total count of notes.
+     *
+     * @return ResponseEntity containing the total number of notes.
+     */
+    @GetMapping("/count")
+    public Mono<ResponseEntity<Long>> countTotalNotes() {
+        return notesService.countTotalNotes().map(ResponseEntity::ok);
+    }
+
+    /**
+     * Endpoint to get the word count of a note by its ID.
+     *
+     * @param id The ID of the note whose word count is to be calculated.
+     * @return ResponseEntity containing the word count of the note.
+     */
+    @GetMapping("/word-count/{id}")
+    public Mono<ResponseEntity<Integer>> getWordCount(@PathVariable Long id) {
+        return notesService.getWordCount(id).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Endpoint to get the text statistics of a note by its ID.
+     *
+     * @param id The ID of the note to analyze.
+     * @return ResponseEntity containing the word, character, sentence and distinct word counts, and the reading time.
+     */
+    @GetMapping("/{id}/stats")
+    public Mono<ResponseEntity<TextStats>> getTextStats(@PathVariable Long id) {
+        return notesService.getTextStats(id).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Endpoint to get the average note length (in terms of word count).
+     *
+     * @return ResponseEntity containing the average note length in words.
+     */
+    @GetMapping("/average-length")
+    public Mono<ResponseEntity<Double>> getAverageNoteLength() {
+        return notesService.getAverageNoteLength().map(ResponseEntity::ok);
+    }
+
+    /**
+     * Endpoint to like a note.
+     *
+     * @param id The ID of the note to be liked.
+     * @return ResponseEntity containing the updated note with increased likes.
+     */
+    @PostMapping("/{id}/like")
+    public Mono<ResponseEntity<Note>> likeNote(@PathVariable Long id) {
+        return notesService.likeNote(id).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Endpoint to unlike a note.
+     *
+     * @param id The ID of the note to be unliked.
+     * @return ResponseEntity containing the updated note with decreased likes.
+     */
+    @DeleteMapping("/{id}/unlike")
+    public Mono<ResponseEntity<Note>> unlikeNote(@PathVariable Long id) {
+        return notesService.unlikeNote(id).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Endpoint to retrieve liked notes, one page at a time.
+     *
+     * @param cursor The cursor of the page to fetch, as returned in the {@value NotesController#NEXT_CURSOR_HEADER} header.
+     * @param limit  The maximum number of notes to return.
+     * @return ResponseEntity containing a page of notes with likes greater than 0.
+     */
+    @GetMapping("/liked")
+    public Mono<ResponseEntity<List<Note>>> getLikedNotes(@RequestParam(required = false) String cursor,
+                                                          @RequestParam(required = false) Integer limit) {
+        return notesService.getLikedNotes(cursor, limit).map(ReactiveNotesController::pageResponse);
+    }
+
+    /**
+     * Endpoint to stream every liked note as newline-delimited JSON.
+     *
+     * @param cursor The cursor of the page to start from.
+     * @return The notes with likes greater than 0, ordered by ID.
+     */
+    @GetMapping(value = "/liked", produces = NotesController.NDJSON)
+    public Flux<Note> streamLikedNotes(@RequestParam(required = false) String cursor) {
+        return notesService.streamLikedNotes(cursor);
+    }
+
+    /**
+     * Retrieves the top K most liked notes.
+     *
+     * @param k the number of notes to return, 5 by default
+     * @return a ResponseEntity containing the list of top K liked notes
+     */
+    @GetMapping("/top-liked")
+    public Mono<ResponseEntity<List<Note>>> getTopLikedNotes(@RequestParam(defaultValue = "5") int k) {
+        return notesService.getTopLikedNotes(k).collectList().map(ReactiveNotesController::listResponse);
+    }
+
+    /**
+     * Boosts the like count of a note by 10.
+     *
+     * @param id the ID of the note to boost likes
+     * @return a ResponseEntity containing a success message and the updated like count
+     */
+    @PostMapping("/{id}/like-boost")
+    public Mono<ResponseEntity<Map<String, Object>>> boostLikes(@PathVariable Long id) {
+        return notesService.boostLikes(id).map(updatedNote -> ResponseEntity.ok(Map.of(
+                "message", "Like Boost Activated!",
+                "TotalLikes", updatedNote.getLikes()
+        )));
+    }
+
+    /**
+     * Resets the like count of a note to 0 (admin only).
+     *
+     * @param id the ID of the note to reset likes
+     * @return a ResponseEntity containing a success message and the updated like count
+     */
+    @DeleteMapping("/{id}/like-reset")
+    public Mono<ResponseEntity<Map<String, Object>>> resetLikes(@PathVariable Long id) {
+        return notesService.resetLikes(id).map(updatedNote -> ResponseEntity.ok(Map.of(
+                "message", "All like reset!",
+                "TotalLikes", updatedNote.getLikes()
+        )));
+    }
+
+    /**
+     * Wraps a page into a response whose body is the list of items, with the next cursor in the
+     * {@value NotesController#NEXT_CURSOR_HEADER} header when there are more pages, and the ETag of the page.
+     */
+    private static ResponseEntity<List<Note>> pageResponse(CursorPage<Note> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(NoteETag.of(page.getItems(), page.getNextCursor()));
+        if (page.getNextCursor() != null) {
+            response.header(NotesController.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    /**
+     * Wraps a list of notes into a response with its ETag.
+     */
+    private static ResponseEntity<List<Note>> listResponse(List<Note> notes) {
+        return ResponseEntity.ok().eTag(NoteETag.of(notes, null)).body(notes);
+    }
+}
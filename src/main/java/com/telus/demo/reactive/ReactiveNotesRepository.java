@@ -0,0 +1,325 @@
+package com.telus.demo.reactive;
+
+import com.telus.demo.dao.DescriptionCompression;
+import com.telus.demo.modal.Note;
+import com.telus.demo.modal.NoteLengthTotals;
+import io.r2dbc.spi.Readable;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+
+/**
+ * Reactive counterpart of {@link com.telus.demo.dao.NotesRepository}, on R2DBC.
+ * Reads and writes the same {@code note} table and ID sequence as the JPA entity, so both variants of
+ * the API can be started on the same database. Every query returns a cold publisher: nothing is sent
+ * to the database until it is subscribed, and the rows of a {@link Flux} are read as they are requested.
+ */
+@Repository
+@DependsOnDatabaseInitialization
+@Slf4j
+public class ReactiveNotesRepository {
+
+    private static final String COLUMNS =
+            "note_id, subject, description, likes, word_count, version, timestamp_created, timestamp_updated";
+
+    private final DatabaseClient databaseClient;
+    private final DescriptionCompression compression;
+
+    /**
+     * Constructor for ReactiveNotesRepository.
+     *
+     * @param databaseClient The client the statements are run with.
+     * @param compression    The compression of the stored descriptions, the same as the JPA variant's.
+     */
+    public ReactiveNotesRepository(DatabaseClient databaseClient, DescriptionCompression compression) {
+        this.databaseClient = databaseClient;
+        this.compression = compression;
+    }
+
+    /**
+     * Moves the ID sequence past the IDs already in the table, as {@link com.telus.demo.dao.NoteIdSequence} does
+     * for the JPA variant. Runs once on startup, before the application serves any request.
+     */
+    @PostConstruct
+    public void alignIdSequence() {
+        // A mapper may not return null, so an empty table reads as 0
+        Long maxId = databaseClient.sql("select coalesce(max(note_id), 0) from note")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .block();
+        if (maxId == null || maxId == 0) {
+            return;
+        }
+        // Each insert takes the value it reads, and the JPA variant takes the block of IDs ending at it
+        long firstSafeValue = maxId + Note.ID_ALLOCATION_SIZE;
+        Long next = nextId().block();
+        if (next != null && next < firstSafeValue) {
+            databaseClient.sql("alter sequence " + Note.ID_SEQUENCE + " restart with " + firstSafeValue).then().block();
+            log.info("Moved sequence {} past the existing note IDs, to {}", Note.ID_SEQUENCE, firstSafeValue);
+        }
+    }
+
+    /**
+     * Inserts a new note with the next value of the ID sequence.
+     *
+     * @param note The note to insert; its ID is ignored.
+     * @return The inserted note, with its ID and version 0.
+     */
+    public Mono<Note> insert(Note note) {
+        return nextId().flatMap(id -> bindNullable(bindValues(databaseClient.sql("insert into note (" + COLUMNS + ") "
+                        + "values (:noteId, :subject, :description, :likes, :wordCount, 0, :created, :updated)"), note),
+                        "created", note.getTimestampCreated(), LocalDateTime.class)
+                .bind("noteId", id)
+                .bind("likes", note.getLikes())
+                .then()
+                .thenReturn(note.toBuilder().noteId(id).version(0).build()));
+    }
+
+    /**
+     * Writes the subject, description, likes and word count of a note, only if its version did not change.
+     *
+     * @param note The note with its new values and the version it was read with.
+     * @return The number of updated rows, 0 if the note was deleted or modified since it was read.
+     */
+    public Mono<Long> update(Note note) {
+        return bindValues(databaseClient.sql("update note set subject = :subject, description = :description, "
+                        + "likes = :likes, word_count = :wordCount, timestamp_updated = :updated, version = version + 1 "
+                        + "where note_id = :noteId and version = :version"), note)
+                .bind("noteId", note.getNoteId())
+                .bind("likes", note.getLikes())
+                .bind("version", note.getVersion())
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Deletes a note.
+     *
+     * @param noteId The ID of the note.
+     * @return The number of deleted rows, 0 if the note does not exist.
+     */
+    public Mono<Long> deleteById(Long noteId) {
+        return databaseClient.sql("delete from note where note_id = :noteId")
+                .bind("noteId", noteId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * @param noteId The ID of the note.
+     * @return The note, or an empty Mono if it does not exist.
+     */
+    public Mono<Note> findById(Long noteId) {
+        return databaseClient.sql("select " + COLUMNS + " from note where note_id = :noteId")
+                .bind("noteId", noteId)
+                .map(this::toNote)
+                .one();
+    }
+
+    /**
+     * @param noteIds The IDs of the notes.
+     * @return The notes that exist, in no particular order.
+     */
+    public Flux<Note> findAllById(Iterable<Long> noteIds) {
+        return databaseClient.sql("select " + COLUMNS + " from note where note_id in (:noteIds)")
+                .bind("noteIds", noteIds)
+                .map(this::toNote)
+                .all();
+    }
+
+    /**
+     * Keyset pagination over all notes, ordered by ID.
+     *
+     * @param noteId The ID after which the page starts, 0 for the first page.
+     * @param limit  The maximum number of notes to read, or 0 to read to the end of the table.
+     * @return The notes with an ID greater than the given one.
+     */
+    public Flux<Note> findByNoteIdGreaterThanOrderByNoteIdAsc(long noteId, int limit) {
+        return page(databaseClient.sql("select " + COLUMNS + " from note where note_id > :noteId "
+                + "order by note_id" + limitClause(limit)), noteId, limit);
+    }
+
+    /**
+     * Keyset pagination over liked notes, ordered by ID.
+     *
+     * @param noteId The ID after which the page starts, 0 for the first page.
+     * @param limit  The maximum number of notes to read, or 0 to read to the end of the table.
+     * @return The notes with at least one like and an ID greater than the given one.
+     */
+    public Flux<Note> findLikedByNoteIdGreaterThanOrderByNoteIdAsc(long noteId, int limit) {
+        return page(databaseClient.sql("select " + COLUMNS + " from note where likes > 0 and note_id > :noteId "
+                + "order by note_id" + limitClause(limit)), noteId, limit);
+    }
+
+    /**
+     * Keyset pagination over the notes whose subject contains a string, ignoring case, ordered by ID.
+     *
+     * @param subject The string to search for.
+     * @param noteId  The ID after which the page starts, 0 for the first page.
+     * @param limit   The maximum number of notes to read, or 0 to read to the end of the table.
+     * @return The matching notes with an ID greater than the given one.
+     */
+    public Flux<Note> findBySubjectContainingIgnoreCaseOrderByNoteIdAsc(String subject, long noteId, int limit) {
+        return page(databaseClient.sql("select " + COLUMNS + " from note where upper(subject) like upper(:subject) "
+                        + "escape '\\' and note_id > :noteId order by note_id" + limitClause(limit))
+                .bind("subject", "%" + escapeLike(subject) + "%"), noteId, limit);
+    }
+
+    /**
+     * @param limit The number of notes to return.
+     * @return The most liked notes, most liked first, ties broken by ID.
+     */
+    public Flux<Note> findTopLiked(int limit) {
+        return databaseClient.sql("select " + COLUMNS + " from note order by likes desc, note_id limit :limit")
+                .bind("limit", limit)
+                .map(this::toNote)
+                .all();
+    }
+
+    /**
+     * @return The number of notes.
+     */
+    public Mono<Long> count() {
+        return databaseClient.sql("select count(*) from note")
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    /**
+     * Reads the precomputed word count of a note, without loading its description.
+     *
+     * @param noteId The ID of the note.
+     * @return The word count, or an empty Mono if the note does not exist or has no word count yet.
+     */
+    public Mono<Integer> findWordCountById(Long noteId) {
+        return databaseClient.sql("select word_count from note where note_id = :noteId and word_count is not null")
+                .bind("noteId", noteId)
+                .map(row -> row.get(0, Integer.class))
+                .one();
+    }
+
+    /**
+     * Sums the word counts of all notes with a single aggregate query.
+     *
+     * @return The total number of words and the number of notes.
+     */
+    public Mono<NoteLengthTotals> sumWordCounts() {
+        return databaseClient.sql("select coalesce(sum(word_count), 0), count(*) from note")
+                .map(row -> totals(row.get(0, Long.class), row.get(1, Long.class)))
+                .one();
+    }
+
+    /**
+     * Adds likes to a note with a single atomic update, never going below 0.
+     *
+     * @param noteId    The ID of the note.
+     * @param delta     The number of likes to add, negative to remove likes.
+     * @param updatedAt The new update timestamp of the note.
+     * @return The number of updated rows, 0 if the note does not exist.
+     */
+    public Mono<Long> incrementLikes(Long noteId, int delta, LocalDateTime updatedAt) {
+        return databaseClient.sql("update note set likes = case when likes + :delta > 0 then likes + :delta else 0 end, "
+                        + "timestamp_updated = :updatedAt, version = version + 1 where note_id = :noteId")
+                .bind("noteId", noteId)
+                .bind("delta", delta)
+                .bind("updatedAt", updatedAt)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Sets the like count of a note back to 0.
+     *
+     * @param noteId    The ID of the note.
+     * @param updatedAt The new update timestamp of the note.
+     * @return The number of updated rows, 0 if the note does not exist.
+     */
+    public Mono<Long> resetLikes(Long noteId, LocalDateTime updatedAt) {
+        return databaseClient.sql("update note set likes = 0, timestamp_updated = :updatedAt, version = version + 1 "
+                        + "where note_id = :noteId")
+                .bind("noteId", noteId)
+                .bind("updatedAt", updatedAt)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private Mono<Long> nextId() {
+        return databaseClient.sql("select next value for " + Note.ID_SEQUENCE)
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    private Flux<Note> page(DatabaseClient.GenericExecuteSpec spec, long noteId, int limit) {
+        spec = spec.bind("noteId", noteId);
+        if (limit > 0) {
+            spec = spec.bind("limit", limit);
+        }
+        return spec.map(this::toNote).all();
+    }
+
+    // Without a limit the rows are streamed: R2DBC reads them as the subscriber requests them
+    private static String limitClause(int limit) {
+        return limit > 0 ? " limit :limit" : "";
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private DatabaseClient.GenericExecuteSpec bindValues(DatabaseClient.GenericExecuteSpec spec, Note note) {
+        spec = bindNullable(spec, "subject", note.getSubject(), String.class);
+        // Bound as a byte array, which H2 converts to the BLOB; the driver would block to write a ByteBuffer as a BLOB
+        spec = bindNullable(spec, "description", compression.compress(note.getDescription()), byte[].class);
+        spec = bindNullable(spec, "wordCount", note.getWordCount(), Integer.class);
+        return bindNullable(spec, "updated", note.getTimestampUpdated(), LocalDateTime.class);
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec, String name,
+                                                                  Object value, Class<?> type) {
+        return value == null ? spec.bindNull(name, type) : spec.bind(name, value);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static NoteLengthTotals totals(Long totalWords, Long noteCount) {
+        return new NoteLengthTotals() {
+            @Override
+            public long getTotalWords() {
+                return totalWords;
+            }
+
+            @Override
+            public long getNoteCount() {
+                return noteCount;
+            }
+        };
+    }
+
+    private Note toNote(Readable row) {
+        return Note.builder()
+                .noteId(row.get("note_id", Long.class))
+                .subject(row.get("subject", String.class))
+                // A BLOB is only read as a ByteBuffer by the H2 driver
+                .description(compression.decompress(bytes(row.get("description", ByteBuffer.class))))
+                .likes(row.get("likes", Integer.class))
+                .wordCount(row.get("word_count", Integer.class))
+                .version(row.get("version", Long.class))
+                .timestampCreated(row.get("timestamp_created", LocalDateTime.class))
+                .timestampUpdated(row.get("timestamp_updated", LocalDateTime.class))
+                .build();
+    }
+}
@@ -0,0 +1,364 @@
+package com.telus.demo.reactive;
+
+import com.telus.demo.exception.InvalidBatchException;
+import com.telus.demo.exception.NoteNotFoundException;
+import com.telus.demo.exception.PreconditionFailedException;
+import com.telus.demo.modal.CursorPage;
+import com.telus.demo.modal.Note;
+import com.telus.demo.modal.NoteETag;
+import com.telus.demo.modal.PageCursor;
+import com.telus.demo.modal.TextStats;
+import com.telus.demo.service.NotesService;
+import com.telus.demo.service.TextAnalyzer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Reactive counterpart of {@link NotesService}, with the same rules and errors.
+ * It keeps no in-memory state: the cache, the leaderboard, the running word count totals and the
+ * write-behind like buffer of the servlet variant are replaced by queries, so several instances can
+ * share one database.
+ */
+@Service
+@Slf4j
+public class ReactiveNotesService {
+
+    private final ReactiveNotesRepository noteRepository;
+
+    // Largest ?k= accepted by the top-liked endpoint, as in the servlet variant
+    private final int topLikedCapacity;
+
+    /**
+     * Constructor for ReactiveNotesService.
+     *
+     * @param noteRepository   The repository the notes are read from and written to.
+     * @param topLikedCapacity The largest number of notes returned by {@link #getTopLikedNotes(int)}.
+     */
+    public ReactiveNotesService(ReactiveNotesRepository noteRepository,
+                                @Value("${notes.top-liked.capacity:100}") int topLikedCapacity) {
+        this.noteRepository = noteRepository;
+        this.topLikedCapacity = topLikedCapacity;
+    }
+
+    /**
+     * Adds a new note to the system.
+     *
+     * @param note The note to be added.
+     * @return The saved note.
+     */
+    public Mono<Note> addNote(Note note) {
+        log.info("Adding a new note with subject: {}", note.getSubject());
+        LocalDateTime now = LocalDateTime.now();
+        note.setTimestampCreated(now);
+        note.setTimestampUpdated(now);
+        note.setWordCount(TextAnalyzer.countWords(note.getDescription()));
+        return noteRepository.insert(note)
+                .doOnNext(savedNote -> log.info("Note with ID {} added successfully", savedNote.getNoteId()));
+    }
+
+    /**
+     * Modifies an existing note by its ID, only if it still has one of the expected ETags.
+     *
+     * @param id          The ID of the note to modify.
+     * @param noteDetails The updated note details.
+     * @param ifMatch     The If-Match header sent by the client, or null to modify the note unconditionally.
+     * @return The updated note.
+     * @throws NoteNotFoundException             If the note with the given ID is not found.
+     * @throws PreconditionFailedException       If the note changed since the client read it.
+     * @throws OptimisticLockingFailureException If the note changed while it was modified, without If-Match.
+     */
+    public Mono<Note> modifyNote(Long id, Note noteDetails, String ifMatch) {
+        log.info("Modifying note with ID {}", id);
+        return findExistingById(id).flatMap(note -> {
+            if (ifMatch != null && !NoteETag.matches(ifMatch, NoteETag.of(note))) {
+                return Mono.error(new PreconditionFailedException(
+                        "Note with ID " + id + " was modified, its current version is " + note.getVersion()));
+            }
+            Note updated = note.toBuilder().timestampUpdated(LocalDateTime.now()).build();
+            if (noteDetails.getSubject() != null) {
+                updated.setSubject(noteDetails.getSubject());
+            }
+            if (noteDetails.getDescription() != null) {
+                updated.setDescription(noteDetails.getDescription());
+                updated.setWordCount(TextAnalyzer.countWords(noteDetails.getDescription()));
+            }
+            if (noteDetails.getLikes() > 0) {
+                updated.setLikes(noteDetails.getLikes());
+            }
+            // The update only matches the version read above, so a concurrent change is never overwritten
+            return noteRepository.update(updated).flatMap(rows -> {
+                if (rows > 0) {
+                    updated.setVersion(note.getVersion() + 1);
+                    log.info("Note with ID {} modified successfully", id);
+                    return Mono.just(updated);
+                }
+                return Mono.error(ifMatch != null
+                        ? new PreconditionFailedException("Note with ID " + id + " was modified concurrently")
+                        : new OptimisticLockingFailureException("Note with ID " + id + " was modified concurrently"));
+            });
+        });
+    }
+
+    /**
+     * Deletes a note by its ID.
+     *
+     * @param id The ID of the note to delete.
+     * @return A Mono completing once the note is deleted.
+     * @throws NoteNotFoundException If the note with the given ID is not found.
+     */
+    public Mono<Void> deleteNote(Long id) {
+        log.info("Deleting note with ID {}", id);
+        return noteRepository.deleteById(id)
+                .flatMap(rows -> rows > 0 ? Mono.<Void>empty() : Mono.error(notFound(id)))
+                .doOnSuccess(done -> log.info("Note with ID {} deleted successfully", id));
+    }
+
+    /**
+     * Searches for notes by a subject string (case-insensitive), one page at a time.
+     *
+     * @param subject The subject string to search for.
+     * @param cursor  The cursor returned with the previous page, or null for the first page.
+     * @param limit   The requested page size, or null for the default.
+     * @return A page of notes that contain the given subject.
+     */
+    public Mono<CursorPage<Note>> searchNotesBySubject(String subject, String cursor, Integer limit) {
+        log.info("Searching notes with subject containing: {}", subject);
+        return page(cursor, limit, (after, rows) -> noteRepository.findBySubjectContainingIgnoreCaseOrderByNoteIdAsc(subject, after, rows));
+    }
+
+    /**
+     * Streams every note whose subject contains a string (case-insensitive), ordered by ID.
+     *
+     * @param subject The subject string to search for.
+     * @param cursor  The cursor of the page to start from, or null to start with the first note.
+     * @return The matching notes, read from the database as the subscriber requests them.
+     */
+    public Flux<Note> streamNotesBySubject(String subject, String cursor) {
+        return Flux.defer(() -> noteRepository.findBySubjectContainingIgnoreCaseOrderByNoteIdAsc(subject, PageCursor.decode(cursor), 0));
+    }
+
+    /**
+     * Fetches a note by its ID.
+     *
+     * @param id The ID of the note to retrieve.
+     * @return The note corresponding to the given ID.
+     * @throws NoteNotFoundException If the note with the given ID is not found.
+     */
+    public Mono<Note> getNoteById(Long id) {
+        log.info("Fetching note with ID {}", id);
+        return findExistingById(id);
+    }
+
+    /**
+     * Counts the total number of notes in the system.
+     *
+     * @return The total number of notes.
+     */
+    public Mono<Long> countTotalNotes() {
+        log.info("Counting total number of notes");
+        return noteRepository.count();
+    }
+
+    /**
+     * Returns the word count of a note by its ID.
+     *
+     * @param id The ID of the note.
+     * @return The word count of the note's description.
+     * @throws NoteNotFoundException If the note with the given ID is not found.
+     */
+    public Mono<Integer> getWordCount(Long id) {
+        log.info("Getting word count for note with ID {}", id);
+        return noteRepository.findWordCountById(id)
+                // Not backfilled yet, or not found
+                .switchIfEmpty(Mono.defer(() -> findExistingById(id).map(note -> TextAnalyzer.countWords(note.getDescription()))));
+    }
+
+    /**
+     * Returns the text statistics of a note's description, analyzed in a single pass.
+     *
+     * @param id The ID of the note.
+     * @return The word, character, sentence and distinct word counts, and the reading time.
+     * @throws NoteNotFoundException If the note with the given ID is not found.
+     */
+    public Mono<TextStats> getTextStats(Long id) {
+        log.info("Analyzing the text of note with ID {}", id);
+        return findExistingById(id).map(note -> TextAnalyzer.analyze(note.getDescription()));
+    }
+
+    /**
+     * Returns the average length of all notes' descriptions in terms of word count.
+     *
+     * @return The average word count across all notes, 0.0 if there are no notes.
+     */
+    public Mono<Double> getAverageNoteLength() {
+        log.info("Calculating the average note length");
+        return noteRepository.sumWordCounts()
+                .map(totals -> totals.getNoteCount() == 0 ? 0.0 : (double) totals.getTotalWords() / totals.getNoteCount());
+    }
+
+    /**
+     * Likes a note, increasing its like count by 1.
+     *
+     * @param id The ID of the note to like.
+     * @return The updated note with the new like count.
+     * @throws NoteNotFoundException If the note with the given ID is not found.
+     */
+    public Mono<Note> likeNote(Long id) {
+        log.info("Liking note with ID {}", id);
+        return addLikes(id, 1);
+    }
+
+    /**
+     * Unlikes a note, decreasing its like count by 1 (minimum 0).
+     *
+     * @param id The ID of the note to unlike.
+     * @return The updated note with the new like count.
+     * @throws NoteNotFoundException If the note with the given ID is not found.
+     */
+    public Mono<Note> unlikeNote(Long id) {
+        log.info("Unliking note with ID {}", id);
+        return addLikes(id, -1);
+    }
+
+    /**
+     * Retrieves the notes that have been liked (likes > 0), one page at a time.
+     *
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param limit  The requested page size, or null for the default.
+     * @return A page of liked notes.
+     */
+    public Mono<CursorPage<Note>> getLikedNotes(String cursor, Integer limit) {
+        log.info("Fetching liked notes");
+        return page(cursor, limit, noteRepository::findLikedByNoteIdGreaterThanOrderByNoteIdAsc);
+    }
+
+    /**
+     * Streams every liked note, ordered by ID.
+     *
+     * @param cursor The cursor of the page to start from, or null to start with the first note.
+     * @return The liked notes, read from the database as the subscriber requests them.
+     */
+    public Flux<Note> streamLikedNotes(String cursor) {
+        return Flux.defer(() -> noteRepository.findLikedByNoteIdGreaterThanOrderByNoteIdAsc(PageCursor.decode(cursor), 0));
+    }
+
+    /**
+     * Retrieves the available notes, one page at a time, ordered by ID.
+     *
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param limit  The requested page size, or null for the default.
+     * @return A page of notes.
+     */
+    public Mono<CursorPage<Note>> getAllNotes(String cursor, Integer limit) {
+        log.info("Fetching available notes");
+        return page(cursor, limit, noteRepository::findByNoteIdGreaterThanOrderByNoteIdAsc);
+    }
+
+    /**
+     * Streams every note, ordered by ID.
+     *
+     * @param cursor The cursor of the page to start from, or null to start with the first note.
+     * @return The notes, read from the database as the subscriber requests them.
+     */
+    public Flux<Note> streamAllNotes(String cursor) {
+        return Flux.defer(() -> noteRepository.findByNoteIdGreaterThanOrderByNoteIdAsc(PageCursor.decode(cursor), 0));
+    }
+
+    /**
+     * Retrieves the top K most liked notes with a single ordered query.
+     *
+     * @param k the number of notes to return, clamped to the capacity of the servlet variant's leaderboard
+     * @return a list of the K most liked notes, most liked first
+     */
+    public Flux<Note> getTopLikedNotes(int k) {
+        return noteRepository.findTopLiked(Math.max(1, Math.min(k, topLikedCapacity)));
+    }
+
+    /**
+     * Retrieves several notes by ID with a single query, in the order of the given IDs.
+     *
+     * @param ids the IDs of the notes, at most {@link NotesService#MAX_BATCH_SIZE}
+     * @return the notes that exist, in the order of their IDs; missing notes are left out
+     * @throws InvalidBatchException if too many IDs are given
+     */
+    public Flux<Note> getNotesByIds(List<Long> ids) {
+        if (ids.size() > NotesService.MAX_BATCH_SIZE) {
+            return Flux.error(new InvalidBatchException(
+                    "A batch holds at most " + NotesService.MAX_BATCH_SIZE + " items, got " + ids.size()));
+        }
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        log.info("Fetching {} notes by ID", ids.size());
+        return noteRepository.findAllById(ids)
+                .collectMap(Note::getNoteId, Function.identity())
+                .flatMapIterable(notes -> ids.stream().map(notes::get).filter(Objects::nonNull).collect(Collectors.toList()));
+    }
+
+    /**
+     * Boosts the like count of a note by 10.
+     *
+     * @param id the ID of the note to be boosted
+     * @return the updated note with boosted likes
+     * @throws NoteNotFoundException if the note with the given ID is not found
+     */
+    public Mono<Note> boostLikes(Long id) {
+        return addLikes(id, 10);
+    }
+
+    /**
+     * Resets the like count of a note to 0.
+     *
+     * @param id the ID of the note to reset likes
+     * @return the updated note with 0 likes
+     * @throws NoteNotFoundException if the note with the given ID is not found
+     */
+    public Mono<Note> resetLikes(Long id) {
+        return noteRepository.resetLikes(id, LocalDateTime.now())
+                .flatMap(rows -> rows > 0 ? findExistingById(id) : Mono.error(notFound(id)));
+    }
+
+    /**
+     * Adds likes to a note with a single atomic update in the database, then reads the note back.
+     */
+    private Mono<Note> addLikes(Long id, int delta) {
+        return noteRepository.incrementLikes(id, delta, LocalDateTime.now())
+                .flatMap(rows -> rows > 0 ? findExistingById(id) : Mono.error(notFound(id)));
+    }
+
+    /**
+     * Reads one more row than the page size, to tell whether there is a next page.
+     */
+    private Mono<CursorPage<Note>> page(String cursor, Integer limit, PageQuery query) {
+        return Mono.defer(() -> {
+            int pageSize = PageCursor.clampLimit(limit);
+            return query.find(PageCursor.decode(cursor), pageSize + 1)
+                    .collectList()
+                    .map(rows -> CursorPage.of(rows, pageSize, Note::getNoteId));
+        });
+    }
+
+    private Mono<Note> findExistingById(Long id) {
+        return noteRepository.findById(id).switchIfEmpty(Mono.error(() -> notFound(id)));
+    }
+
+    private static NoteNotFoundException notFound(Long id) {
+        return new NoteNotFoundException("Note with ID " + id + " not found");
+    }
+
+    @FunctionalInterface
+    private interface PageQuery {
+        Flux<Note> find(long afterId, int limit);
+    }
+}
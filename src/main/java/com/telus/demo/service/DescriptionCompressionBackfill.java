@@ -0,0 +1,87 @@
+package com.telus.demo.service;
+
+import com.telus.demo.dao.DescriptionCompression;
+import com.telus.demo.dao.NoteShards;
+import com.telus.demo.dao.NotesRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compresses the descriptions stored before compression was enabled, one batch of notes every interval, going over
+ * the notes of each shard in turn by ID. New descriptions are compressed as they are written, so once every shard
+ * has been gone over, there is nothing left to do until the next start.
+ */
+@Component
+@Slf4j
+public class DescriptionCompressionBackfill {
+
+    private final NotesRepository noteRepository;
+    private final NoteShards noteShards;
+    private final int batchSize;
+
+    // Position of the backfill: the shard it is going over, and the note ID the next batch starts after
+    private int shard;
+    private long afterId;
+    private boolean done;
+
+    // Serializes the batches, which hold it while they run (a ReentrantLock, so virtual threads can unmount)
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Constructor for DescriptionCompressionBackfill.
+     *
+     * @param noteRepository The repository the descriptions are compressed with.
+     * @param noteShards     The shards the notes are spread over, each gone over in turn.
+     * @param compression    The compression of the stored descriptions; nothing is done when it is disabled.
+     * @param batchSize      The number of notes examined by each batch.
+     */
+    public DescriptionCompressionBackfill(NotesRepository noteRepository, NoteShards noteShards,
+                                          DescriptionCompression compression,
+                                          @Value("${notes.description.compression.backfill.batch-size:100}") int batchSize) {
+        this.noteRepository = noteRepository;
+        this.noteShards = noteShards;
+        this.batchSize = batchSize;
+        this.done = !compression.isEnabled();
+    }
+
+    /**
+     * Compresses the next batch of descriptions, unless every shard has been gone over.
+     */
+    @Scheduled(initialDelayString = "${notes.description.compression.backfill.interval-ms:1000}",
+            fixedDelayString = "${notes.description.compression.backfill.interval-ms:1000}")
+    public void compressNextBatch() {
+        lock.lock();
+        try {
+            if (done) {
+                return;
+            }
+            long from = afterId;
+            long lastId = noteShards.onShard(shard, () -> noteRepository.compressDescriptions(from, batchSize));
+            if (lastId != from) {
+                afterId = lastId;
+                return;
+            }
+            log.info("Compressed the descriptions of the notes on shard {}", shard);
+            afterId = 0;
+            done = ++shard == noteShards.getCount();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Whether every shard has been gone over, or compression is disabled.
+     */
+    public boolean isDone() {
+        lock.lock();
+        try {
+            return done;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.telus.demo.service;
+
+import com.telus.demo.dao.NoteShards;
+import com.telus.demo.dao.NotesRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for like mutations.
+ * When enabled, likes and unlikes only add to a striped per-note counter, and a background flush
+ * merges the pending deltas of all notes into the database with one JDBC batch every interval.
+ * Counters are never reset: each one remembers how much of it was already flushed, so increments
+ * that race with a flush are picked up by the next one instead of being lost. Idle counters are
+ * closed before they are removed, so no increment can land on a counter that is no longer flushed,
+ * and only removed once what was added to them is written: if the batch fails, it moves to the
+ * counter that takes their place.
+ */
+@Component
+@Slf4j
+public class LikeAggregator {
+
+    private final NotesRepository noteRepository;
+    private final NoteCache noteCache;
+    private final NoteShards noteShards;
+    private final boolean enabled;
+
+    private final ConcurrentHashMap<Long, Counter> pending = new ConcurrentHashMap<>();
+
+    // Serializes flushes, which hold it while the batch is written (a ReentrantLock, so virtual threads can unmount)
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Constructor for LikeAggregator.
+     *
+     * @param noteRepository The repository the pending likes are flushed to.
+     * @param noteCache      The cache of notes by ID, invalidated for the notes whose likes were flushed.
+     * @param noteShards     The shards the notes are spread over, each flushed with its own batch.
+     * @param enabled        Whether likes are buffered, or written synchronously by {@link NotesService}.
+     */
+    public LikeAggregator(NotesRepository noteRepository, NoteCache noteCache, NoteShards noteShards,
+                          @Value("${notes.likes.write-behind.enabled:false}") boolean enabled) {
+        this.noteRepository = noteRepository;
+        this.noteCache = noteCache;
+        this.noteShards = noteShards;
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return Whether likes are buffered in memory and flushed in batches.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds likes to the pending delta of a note, without touching the database.
+     * Likes are only removed while the note keeps at least 0 likes, checked atomically with concurrent unlikes.
+     *
+     * @param noteId         The ID of the note.
+     * @param delta          The number of likes to add, negative to remove likes.
+     * @param persistedLikes The likes of the note as read from the database, without the pending delta.
+     * @return Whether the likes were added, false if removing them would take the note below 0 likes.
+     */
+    public boolean add(Long noteId, long delta, long persistedLikes) {
+        Counter counter;
+        Counter.Outcome outcome;
+        while ((outcome = (counter = pending.computeIfAbsent(noteId, Counter::new)).tryAdd(delta, persistedLikes))
+                == Counter.Outcome.CLOSED) {
+            // Closed by a flush or a discard that is about to remove it: retry on a fresh counter
+            pending.remove(noteId, counter);
+        }
+        return outcome == Counter.Outcome.ADDED;
+    }
+
+    /**
+     * Returns the likes of a note that were accepted but not flushed yet.
+     *
+     * @param noteId The ID of the note.
+     * @return The pending delta, 0 if there is none.
+     */
+    public long pendingDelta(Long noteId) {
+        Counter counter = pending.get(noteId);
+        return counter == null ? 0 : counter.unflushed();
+    }
+
+    /**
+     * Drops the pending delta of a note whose likes were deleted or overwritten.
+     * Waits for a flush in progress, so a delta it already collected is written before the likes are overwritten,
+     * and closes the counter like a flush does, so a concurrent like goes to a fresh counter instead of being lost.
+     *
+     * @param noteId The ID of the note.
+     */
+    public void discard(Long noteId) {
+        lock.lock();
+        try {
+            Counter counter = pending.get(noteId);
+            if (counter != null) {
+                while (!counter.close()) {
+                    Thread.onSpinWait();  // Increments in progress only take a few instructions
+                }
+                pending.remove(noteId, counter);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Merges every pending delta into the database with one JDBC batch per shard.
+     * Runs on a fixed delay, and once more on shutdown so that no accepted like is lost.
+     */
+    @Scheduled(fixedDelayString = "${notes.likes.write-behind.flush-interval-ms:200}")
+    @PreDestroy
+    public void flush() {
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            Map<Long, Long> deltas = new HashMap<>();
+            List<Counter> dirty = new ArrayList<>();
+            List<Long> dirtyDeltas = new ArrayList<>();
+            List<Counter> closed = new ArrayList<>();
+            for (Counter counter : pending.values()) {
+                if (!collect(counter, deltas, dirty, dirtyDeltas) && counter.close()) {
+                    // Counters without activity since the last flush are dropped. Once closed nothing can be
+                    // added to them, so whatever was added since the check above is collected now.
+                    collect(counter, deltas, dirty, dirtyDeltas);
+                    closed.add(counter);
+                }
+            }
+            try {
+                write(deltas, dirty, dirtyDeltas);
+            } finally {
+                closed.forEach(this::drop);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the collected deltas with one batch per shard, and marks them flushed on the shards whose batch succeeded.
+     */
+    private void write(Map<Long, Long> deltas, List<Counter> dirty, List<Long> dirtyDeltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<Long>> idsByShard = noteShards.groupByShard(deltas.keySet(), Long::longValue);
+        // Each shard commits its batch on its own: a shard that fails must not keep the likes written to the
+        // others from being marked as flushed, or the next flush would write them again
+        Map<Integer, RuntimeException> failures = new ConcurrentHashMap<>();
+        int updated = noteShards.onEachShard(shard -> {
+            if (!idsByShard.containsKey(shard)) {
+                return 0;
+            }
+            try {
+                return noteRepository.incrementLikesBatch(shardDeltas(deltas, idsByShard.get(shard)));
+            } catch (RuntimeException e) {
+                failures.put(shard, e);
+                return 0;
+            }
+        }).stream().mapToInt(Integer::intValue).sum();
+        int flushedNotes = 0;
+        for (int i = 0; i < dirty.size(); i++) {
+            if (!failures.containsKey(noteShards.shardOf(dirty.get(i).noteId))) {
+                dirty.get(i).flushed += dirtyDeltas.get(i);
+            }
+        }
+        for (Long noteId : deltas.keySet()) {
+            if (!failures.containsKey(noteShards.shardOf(noteId))) {
+                // The cached note still holds the likes from before the flush, and no longer gets the pending
+                // delta added
+                noteCache.invalidate(noteId);
+                flushedNotes++;
+            }
+        }
+        log.info("Flushed pending likes of {} notes ({} updated)", flushedNotes, updated);
+        if (!failures.isEmpty()) {
+            // The likes of the failed shards stay pending, and are retried by the next flush
+            RuntimeException failure = null;
+            for (RuntimeException e : failures.values()) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+            throw failure;
+        }
+    }
+
+    /**
+     * Removes a closed counter, once what was added to it is written. If its batch failed, what is left moves to the
+     * counter that takes its place, which the next flush writes.
+     */
+    private void drop(Counter counter) {
+        long unflushed = counter.unflushed();
+        if (unflushed == 0) {
+            pending.remove(counter.noteId, counter);
+            return;
+        }
+        pending.compute(counter.noteId,
+                        (noteId, current) -> current == null || current == counter ? new Counter(noteId) : current)
+                .carry(unflushed);
+    }
+
+    /**
+     * @return The deltas of the given notes, all of them when every note is on the same shard.
+     */
+    private static Map<Long, Long> shardDeltas(Map<Long, Long> deltas, List<Long> noteIds) {
+        if (noteIds.size() == deltas.size()) {
+            return deltas;
+        }
+        Map<Long, Long> shardDeltas = new HashMap<>();
+        noteIds.forEach(noteId -> shardDeltas.put(noteId, deltas.get(noteId)));
+        return shardDeltas;
+    }
+
+    /**
+     * Adds the unflushed delta of a counter to the batch.
+     *
+     * @return Whether the counter had anything to flush.
+     */
+    private boolean collect(Counter counter, Map<Long, Long> deltas, List<Counter> dirty, List<Long> dirtyDeltas) {
+        long delta = counter.unflushed();
+        if (delta == 0) {
+            return false;
+        }
+        deltas.merge(counter.noteId, delta, Long::sum);
+        dirty.add(counter);
+        dirtyDeltas.add(delta);
+        return true;
+    }
+
+    private static final class Counter {
+        private static final int CLOSED = -1;
+
+        private enum Outcome { ADDED, BELOW_ZERO, CLOSED }
+
+        private final Long noteId;
+        private final LongAdder adds = new LongAdder();
+        // Number of increments in progress, or CLOSED once the flush decided to drop the counter
+        private final AtomicInteger writers = new AtomicInteger();
+        // Only written by the flush, under the aggregator lock
+        private volatile long flushed;
+
+        private Counter(Long noteId) {
+            this.noteId = noteId;
+        }
+
+        private Outcome tryAdd(long delta, long persistedLikes) {
+            int current;
+            do {
+                current = writers.get();
+                if (current == CLOSED) {
+                    return Outcome.CLOSED;
+                }
+            } while (!writers.compareAndSet(current, current + 1));
+            try {
+                if (delta >= 0) {
+                    adds.add(delta);
+                    return Outcome.ADDED;
+                }
+                // Removals check and add under the monitor, so two of them cannot both pass the check;
+                // additions racing with them only raise the count
+                synchronized (this) {
+                    if (persistedLikes + unflushed() + delta < 0) {
+                        return Outcome.BELOW_ZERO;
+                    }
+                    adds.add(delta);
+                    return Outcome.ADDED;
+                }
+            } finally {
+                writers.decrementAndGet();
+            }
+        }
+
+        // Under the monitor, like the removals that check the count
+        private synchronized void carry(long delta) {
+            adds.add(delta);
+        }
+
+        private boolean close() {
+            return writers.compareAndSet(0, CLOSED);
+        }
+
+        private long unflushed() {
+            return adds.sum() - flushed;
+        }
+    }
+}
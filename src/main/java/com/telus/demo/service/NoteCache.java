@@ -0,0 +1,139 @@
+package com.telus.demo.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.telus.demo.modal.Note;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of notes by ID, bounded in size (W-TinyLFU eviction) and in age.
+ * Writers invalidate a note once their change is committed. A load that races with the
+ * invalidation is dropped from the cache without being waited for: its callers get what it read, but
+ * it is not cached, so a read that starts after a write returns never sees the note as it was before
+ * that write. Loads run outside the lock of the cache, as the writer invalidating the note may hold
+ * the database connection the load is waiting for.
+ */
+@Component
+@Slf4j
+public class NoteCache {
+
+    // Null when the cache is switched off; each entry is completed by the thread that missed
+    private final AsyncCache<Long, Note> cache;
+
+    /**
+     * Constructor for NoteCache.
+     *
+     * @param enabled     Whether notes are cached, or every read goes to the database.
+     * @param maximumSize The maximum number of cached notes.
+     * @param ttl         How long a note stays cached after it was loaded.
+     */
+    public NoteCache(@Value("${notes.cache.enabled:true}") boolean enabled,
+                     @Value("${notes.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${notes.cache.ttl:10m}") Duration ttl) {
+        this.cache = enabled
+                ? Caffeine.newBuilder()
+                        .maximumSize(maximumSize)
+                        .expireAfterWrite(ttl)
+                        .executor(Runnable::run)  // Evicts on the calling thread, the work is tiny
+                        .recordStats()
+                        .buildAsync()
+                : null;
+    }
+
+    /**
+     * Returns a note from the cache, loading it on a miss.
+     * Concurrent misses on the same note share a single load.
+     *
+     * @param id     The ID of the note.
+     * @param loader Loads the note from the database, returns null if it does not exist.
+     * @return A copy of the note, or null if it does not exist.
+     */
+    public Note get(Long id, Function<Long, Note> loader) {
+        if (cache == null) {
+            return loader.apply(id);
+        }
+        CompletableFuture<Note> loading = new CompletableFuture<>();
+        CompletableFuture<Note> future = cache.get(id, (key, executor) -> loading);
+        if (future == loading) {
+            try {
+                Note loaded = loader.apply(id);
+                loading.complete(loaded == null ? null : loaded.toBuilder().build());  // Never keeps a managed entity
+            } catch (RuntimeException | Error e) {
+                loading.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            Note note = future.join();
+            return note == null ? null : note.toBuilder().build();  // Callers cannot change the cached note
+        } catch (CompletionException e) {
+            // Waited for the load of another caller, which failed
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Returns a note only if it is cached, without loading it or waiting for its load.
+     *
+     * @param id The ID of the note.
+     * @return A copy of the note, or null if it is not cached.
+     */
+    public Note getIfPresent(Long id) {
+        CompletableFuture<Note> future = cache == null ? null : cache.getIfPresent(id);
+        Note note = future != null && future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+        return note == null ? null : note.toBuilder().build();
+    }
+
+    /**
+     * Drops a note from the cache, now and once the current transaction completes.
+     * Call it after the change reached the database, or inside the transaction making it.
+     *
+     * @param id The ID of the note.
+     */
+    public void invalidate(Long id) {
+        if (cache == null) {
+            return;
+        }
+        Cache<Long, Note> cache = this.cache.synchronous();
+        cache.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // A read between the invalidation above and the commit would cache the old note again
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(id);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return The hit, miss and eviction counts of the cache, and its current size.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", cache != null);
+        if (cache != null) {
+            CacheStats cacheStats = cache.synchronous().stats();
+            stats.put("size", cache.synchronous().estimatedSize());
+            stats.put("hits", cacheStats.hitCount());
+            stats.put("misses", cacheStats.missCount());
+            stats.put("hitRate", cacheStats.hitRate());
+            stats.put("evictions", cacheStats.evictionCount());
+        }
+        return stats;
+    }
+}
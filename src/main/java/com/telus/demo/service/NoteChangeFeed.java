@@ -0,0 +1,347 @@
+package com.telus.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telus.demo.modal.Note;
+import com.telus.demo.modal.NoteChange;
+import com.telus.demo.modal.NoteSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Feed of the changes to notes, streamed as Server-Sent Events by {@code GET /api/notes/stream}.
+ * Changes are numbered once committed and kept in a ring buffer of the last {@code notes.stream.buffer-size} ones,
+ * from which a client reconnecting with {@code Last-Event-ID} resumes.
+ * Each change is serialized once, when committed. Every subscriber is served by its own virtual thread, reading
+ * the ring buffer at its own pace and sending what it has not sent yet in one write: a slow client only holds back
+ * its own thread, and costs no memory besides its position in the buffer. A client that falls
+ * further behind than the buffer holds, or resumes from a change no longer in it, gets a {@value #RESET_EVENT}
+ * event instead of the changes it missed, and has to read the notes again.
+ * Sequence numbers start again from 1 when the application restarts.
+ */
+@Component
+@Slf4j
+public class NoteChangeFeed {
+
+    // Event sent instead of changes that are no longer in the buffer
+    public static final String RESET_EVENT = "reset";
+
+    // Changes sent to a subscriber per write
+    private static final int MAX_BATCH = 256;
+
+    private final Event[] buffer;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMillis;
+    private final long heartbeatMillis;
+
+    // Guards the buffer; many subscribers read it at once, committed changes are written one at a time
+    private final ReentrantReadWriteLock bufferLock = new ReentrantReadWriteLock();
+
+    // Subscribers waiting for a change wait on this condition
+    private final ReentrantLock signalLock = new ReentrantLock();
+    private final Condition published = signalLock.newCondition();
+
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    private volatile long lastSequence;
+    private volatile boolean closed;
+
+    /**
+     * Constructor for NoteChangeFeed.
+     *
+     * @param bufferSize        The number of changes kept for subscribers that resume or fall behind.
+     * @param timeout           How long a subscription lasts; EventSource clients then reconnect with Last-Event-ID.
+     * @param heartbeatInterval How long a subscriber waits without changes before a comment is sent, which keeps
+     *                          the connection open through proxies and detects clients that went away.
+     * @param objectMapper      The mapper changes are serialized with.
+     * @param meterRegistry     The registry the number of subscribers is published to.
+     */
+    public NoteChangeFeed(@Value("${notes.stream.buffer-size:10000}") int bufferSize,
+                          @Value("${notes.stream.timeout:30m}") Duration timeout,
+                          @Value("${notes.stream.heartbeat-interval:15s}") Duration heartbeatInterval,
+                          ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry) {
+        this.buffer = new Event[bufferSize];
+        this.objectMapper = objectMapper;
+        this.timeoutMillis = timeout.toMillis();
+        this.heartbeatMillis = heartbeatInterval.toMillis();
+        Gauge.builder("notes.stream.subscribers", subscribers, AtomicInteger::get)
+                .description("Clients subscribed to the change stream")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Announces a new note, once the current transaction, if any, commits.
+     *
+     * @param note The saved note.
+     */
+    public void created(Note note) {
+        publish(NoteChange.Type.CREATED, note.getNoteId(), note);
+    }
+
+    /**
+     * Announces a modified note, once the current transaction, if any, commits.
+     *
+     * @param note The modified note.
+     */
+    public void modified(Note note) {
+        publish(NoteChange.Type.MODIFIED, note.getNoteId(), note);
+    }
+
+    /**
+     * Announces a deleted note, once the current transaction, if any, commits.
+     *
+     * @param noteId The ID of the deleted note.
+     */
+    public void deleted(Long noteId) {
+        publish(NoteChange.Type.DELETED, noteId, null);
+    }
+
+    /**
+     * Announces a new like count, once the current transaction, if any, commits.
+     *
+     * @param note The note, with the likes it is now shown with.
+     */
+    public void likesChanged(Note note) {
+        publish(NoteChange.Type.LIKES_CHANGED, note.getNoteId(), note);
+    }
+
+    /**
+     * Subscribes a client to the changes committed from now on, or after the last change it received.
+     *
+     * @param lastEventId The Last-Event-ID header of a reconnecting client, null for a new one.
+     * @return The emitter streaming the changes to the client.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+
+        long last = lastSequence;
+        Long resumeAfter = parseSequence(lastEventId);
+        if (resumeAfter == null) {
+            subscriber.position = last;
+        } else if (resumeAfter <= last && resumeAfter >= last - buffer.length) {
+            subscriber.position = resumeAfter;
+        } else {
+            // Changes were missed, or the ID is from before a restart
+            subscriber.position = -1;
+        }
+        subscribers.incrementAndGet();
+        senders.execute(subscriber::run);
+        return emitter;
+    }
+
+    /**
+     * @return The sequence number of the last committed change, 0 if there is none yet.
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return The number of connected subscribers.
+     */
+    public int getSubscriberCount() {
+        return subscribers.get();
+    }
+
+    @PreDestroy
+    public void close() {
+        closed = true;
+        signalAll();
+        senders.shutdown();
+    }
+
+    private void publish(NoteChange.Type type, Long noteId, Note note) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Subscribers never hear of a change that is rolled back; the note is read once its changes are flushed
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    append(type, noteId, note);
+                }
+            });
+        } else {
+            append(type, noteId, note);
+        }
+    }
+
+    private void append(NoteChange.Type type, Long noteId, Note note) {
+        NoteSummary summary = note == null ? null : NoteSummary.of(note);
+        bufferLock.writeLock().lock();
+        try {
+            long sequence = lastSequence + 1;
+            buffer[(int) (sequence % buffer.length)] = new Event(sequence, format(sequence, type.eventName(),
+                    toJson(new NoteChange(sequence, type, noteId, summary))));
+            lastSequence = sequence;
+        } finally {
+            bufferLock.writeLock().unlock();
+        }
+        signalAll();
+    }
+
+    // The event in the text/event-stream format; the JSON is on a single line
+    private static String format(long sequence, String name, String json) {
+        return "id:" + sequence + "\nevent:" + name + "\ndata:" + json + "\n\n";
+    }
+
+    private String toJson(Object data) {
+        try {
+            return objectMapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize a note change", e);
+        }
+    }
+
+    /**
+     * Reads the changes following a position in the buffer.
+     *
+     * @param position The sequence number of the last change the subscriber received.
+     * @return The next changes, at most {@link #MAX_BATCH}, or null if some of them are no longer in the buffer.
+     */
+    private List<Event> changesAfter(long position) {
+        bufferLock.readLock().lock();
+        try {
+            long last = lastSequence;
+            if (position < last - buffer.length) {
+                return null;
+            }
+            int count = (int) Math.min(last - position, MAX_BATCH);
+            List<Event> changes = new ArrayList<>(count);
+            for (long sequence = position + 1; sequence <= position + count; sequence++) {
+                changes.add(buffer[(int) (sequence % buffer.length)]);
+            }
+            return changes;
+        } finally {
+            bufferLock.readLock().unlock();
+        }
+    }
+
+    private void signalAll() {
+        signalLock.lock();
+        try {
+            published.signalAll();
+        } finally {
+            signalLock.unlock();
+        }
+    }
+
+    private static Long parseSequence(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    // A connected client, and the sequence number of the last change it was sent (-1 until it is reset)
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+        private volatile long position;
+        private volatile boolean disconnected;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void run() {
+            try {
+                while (!disconnected && !closed) {
+                    List<Event> changes = position < 0 ? null : changesAfter(position);
+                    if (changes == null) {
+                        reset();
+                    } else if (changes.isEmpty()) {
+                        if (!awaitChange()) {
+                            send(":heartbeat\n\n");
+                        }
+                    } else {
+                        StringBuilder events = new StringBuilder();
+                        for (Event change : changes) {
+                            events.append(change.text());
+                        }
+                        send(events.toString());
+                        position = changes.get(changes.size() - 1).sequence();
+                    }
+                }
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // The client went away, or the subscription completed or timed out while sending
+                log.debug("Change stream subscriber disconnected: {}", e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                emitter.complete();
+            } finally {
+                subscribers.decrementAndGet();
+            }
+        }
+
+        void close() {
+            disconnected = true;
+            signalAll();
+        }
+
+        private void reset() throws IOException {
+            position = lastSequence;
+            send(format(position, RESET_EVENT, "{\"sequence\":" + position + "}"));
+        }
+
+        // Writes events already in the text/event-stream format, with a single flush
+        private void send(String events) throws IOException {
+            emitter.send(Set.of(new ResponseBodyEmitter.DataWithMediaType(events, MediaType.TEXT_PLAIN)));
+        }
+
+        /**
+         * @return Whether a change was committed, or the subscriber closed, before the heartbeat interval elapsed.
+         */
+        private boolean awaitChange() throws InterruptedException {
+            signalLock.lock();
+            try {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(heartbeatMillis);
+                while (lastSequence == position && !disconnected && !closed) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    published.awaitNanos(remaining);
+                }
+                return true;
+            } finally {
+                signalLock.unlock();
+            }
+        }
+    }
+
+    // A committed change, and the event sent for it
+    private record Event(long sequence, String text) {
+    }
+}
@@ -0,0 +1,164 @@
+package com.telus.demo.service;
+
+import com.telus.demo.dao.NoteShards;
+import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.modal.Note;
+import com.telus.demo.modal.NoteLengthTotals;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Running total of the word counts of all notes, so the average note length is answered in O(1).
+ * The totals are adjusted by the write methods of {@link NotesService}, and recovered from the
+ * database with a single SUM/COUNT query on startup, and again every interval: a note committed right
+ * before a recovery is counted by its SUM, and once more when its change is recorded after it, so the
+ * totals may drift until the next one.
+ */
+@Component
+@Slf4j
+public class NoteLengthStats {
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    private final NotesRepository noteRepository;
+    private final NoteShards noteShards;
+
+    private long totalWords;
+    private long noteCount;
+    private boolean stale = true;
+
+    // Guards the totals. recalculate() queries the database while holding it, so it is not a monitor
+    // that would pin a virtual thread to its carrier for the duration of the query
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Constructor for NoteLengthStats.
+     *
+     * @param noteRepository The repository used to recover the totals.
+     * @param noteShards     The shards the notes are spread over, each summed by the recovery.
+     */
+    public NoteLengthStats(NotesRepository noteRepository, NoteShards noteShards) {
+        this.noteRepository = noteRepository;
+        this.noteShards = noteShards;
+    }
+
+    /**
+     * Backfills the notes stored without a word count, then recovers the totals once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recalculateOnStartup() {
+        backfillWordCounts();
+        recalculate();
+    }
+
+    /**
+     * Has the totals recovered again by the next read, so that they do not drift for long.
+     */
+    @Scheduled(initialDelayString = "${notes.length-stats.recalculate-interval-ms:300000}",
+            fixedDelayString = "${notes.length-stats.recalculate-interval-ms:300000}")
+    public void expire() {
+        lock.lock();
+        try {
+            stale = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The average number of words per note, 0.0 if there are no notes.
+     */
+    public double averageWords() {
+        lock.lock();
+        try {
+            if (stale) {
+                recalculate();
+            }
+            return noteCount == 0 ? 0.0 : (double) totalWords / noteCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a new note.
+     *
+     * @param words The word count of the note.
+     */
+    public void added(int words) {
+        lock.lock();
+        try {
+            totalWords += words;
+            noteCount++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a change of the description of a note.
+     *
+     * @param previousWords The word count before the change.
+     * @param words         The word count after the change.
+     */
+    public void modified(int previousWords, int words) {
+        lock.lock();
+        try {
+            totalWords += words - previousWords;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a deleted note.
+     *
+     * @param words The word count of the deleted note.
+     */
+    public void deleted(int words) {
+        lock.lock();
+        try {
+            totalWords -= words;
+            noteCount--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reloads the totals from the database with a single SUM/COUNT query per shard.
+     */
+    public void recalculate() {
+        lock.lock();
+        try {
+            List<NoteLengthTotals> shardTotals = noteShards.onEachShard(shard -> noteRepository.sumWordCounts());
+            totalWords = shardTotals.stream().mapToLong(NoteLengthTotals::getTotalWords).sum();
+            noteCount = shardTotals.stream().mapToLong(NoteLengthTotals::getNoteCount).sum();
+            stale = false;
+            log.info("Recovered note length totals: {} words in {} notes", totalWords, noteCount);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Computes the word count of the notes written before it was stored, one batch at a time, on every shard.
+     */
+    private void backfillWordCounts() {
+        noteShards.forEachShard(shard -> {
+            List<Note> notes;
+            while (!(notes = noteRepository.findByWordCountIsNull(Limit.of(BACKFILL_BATCH_SIZE))).isEmpty()) {
+                notes.forEach(note -> note.setWordCount(TextAnalyzer.countWords(note.getDescription())));
+                noteRepository.saveAll(notes);
+                log.info("Backfilled word counts of {} notes", notes.size());
+            }
+        });
+    }
+}
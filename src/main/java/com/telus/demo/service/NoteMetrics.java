@@ -0,0 +1,54 @@
+package com.telus.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Business counters of the notes API, scraped as {@code notes_added_total} and {@code notes_likes_total}.
+ * Rates such as notes added or likes per second are derived from them by the monitoring system.
+ */
+@Component
+public class NoteMetrics {
+
+    private final Counter added;
+    private final Counter liked;
+    private final Counter unliked;
+
+    /**
+     * Constructor for NoteMetrics.
+     *
+     * @param meterRegistry The registry the counters are published to.
+     */
+    public NoteMetrics(MeterRegistry meterRegistry) {
+        this.added = Counter.builder("notes.added")
+                .description("Notes added, one by one or by bulk import")
+                .register(meterRegistry);
+        this.liked = Counter.builder("notes.likes")
+                .description("Like and unlike requests")
+                .tag("direction", "like")
+                .register(meterRegistry);
+        this.unliked = Counter.builder("notes.likes")
+                .description("Like and unlike requests")
+                .tag("direction", "unlike")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records added notes.
+     *
+     * @param notes The number of notes added.
+     */
+    public void added(long notes) {
+        added.increment(notes);
+    }
+
+    /**
+     * Records a like or an unlike.
+     *
+     * @param delta 1 for a like, -1 for an unlike.
+     */
+    public void liked(int delta) {
+        (delta > 0 ? liked : unliked).increment();
+    }
+}
@@ -0,0 +1,454 @@
+package com.telus.demo.service;
+
+import com.telus.demo.dao.NoteShards;
+import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.modal.Note;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory inverted index over the subject and description of every note, ranked with BM25.
+ * Each indexed version of a note gets an internal document number; postings store document numbers
+ * and term frequencies in primitive arrays. Updating or deleting a note only marks its old document
+ * dead, and dead postings are dropped by a compaction once they outnumber the live ones, along with the
+ * terms no live document contains any more.
+ * The index is built on startup and kept up to date by the write methods of {@link NotesService}.
+ */
+@Component
+@Slf4j
+public class NoteSearchIndex {
+
+    // BM25 parameters
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    // Subject terms count as this many occurrences in the description
+    private static final int SUBJECT_WEIGHT = 3;
+
+    private static final int REBUILD_BATCH_SIZE = 1_000;
+    private static final int MIN_DEAD_DOCS_TO_COMPACT = 10_000;
+
+    private final NotesRepository noteRepository;
+    private final NoteShards noteShards;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<Posting> postings = new ArrayList<>();
+
+    // Per document number: note ID, weighted length, distinct terms, liveness
+    private long[] docNoteIds = new long[1024];
+    private int[] docLengths = new int[1024];
+    private int[][] docTerms = new int[1024][];
+    private final BitSet liveDocs = new BitSet();
+    private int docCount;
+
+    private final Map<Long, Integer> docByNoteId = new HashMap<>();
+    private long totalLength;
+
+    /**
+     * Constructor for NoteSearchIndex.
+     *
+     * @param noteRepository The repository the index is built from on startup.
+     * @param noteShards     The shards the notes are spread over, all read by the build.
+     */
+    public NoteSearchIndex(NotesRepository noteRepository, NoteShards noteShards) {
+        this.noteRepository = noteRepository;
+        this.noteShards = noteShards;
+    }
+
+    /**
+     * Indexes every note once the application has started, reading the table of each shard one page at a time.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        int indexed = noteShards.onEachShard(shard -> {
+            long after = 0L;
+            int shardIndexed = 0;
+            List<Note> page;
+            do {
+                page = noteRepository.findByNoteIdGreaterThanOrderByNoteIdAsc(after, Limit.of(REBUILD_BATCH_SIZE));
+                for (Note note : page) {
+                    index(note);
+                    after = note.getNoteId();
+                }
+                shardIndexed += page.size();
+            } while (page.size() == REBUILD_BATCH_SIZE);
+            return shardIndexed;
+        }).stream().mapToInt(Integer::intValue).sum();
+        log.info("Built search index over {} notes", indexed);
+    }
+
+    /**
+     * Indexes a new note, or replaces the indexed version of an existing one.
+     *
+     * @param note The note to index.
+     */
+    public void index(Note note) {
+        if (note.getNoteId() == null) {
+            return;
+        }
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        int[] length = new int[1];
+        tokenize(note.getSubject(), term -> {
+            frequencies.merge(term, SUBJECT_WEIGHT, Integer::sum);
+            length[0] += SUBJECT_WEIGHT;
+        });
+        tokenize(note.getDescription(), term -> {
+            frequencies.merge(term, 1, Integer::sum);
+            length[0]++;
+        });
+
+        lock.writeLock().lock();
+        try {
+            removeDoc(note.getNoteId());
+            int doc = newDoc(note.getNoteId(), length[0]);
+            int[] terms = new int[frequencies.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                int termId = termIds.computeIfAbsent(entry.getKey(), key -> {
+                    postings.add(new Posting(key));
+                    return postings.size() - 1;
+                });
+                postings.get(termId).add(doc, entry.getValue());
+                terms[i++] = termId;
+            }
+            docTerms[doc] = terms;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a deleted note from the index.
+     *
+     * @param noteId The ID of the deleted note.
+     */
+    public void remove(Long noteId) {
+        lock.writeLock().lock();
+        try {
+            removeDoc(noteId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the notes that best match a free-text query, ranked by BM25.
+     *
+     * @param query The query, tokenized like the indexed text.
+     * @param k     The maximum number of results.
+     * @return The IDs of the best matching notes, best match first.
+     */
+    public List<Long> search(String query, int k) {
+        List<String> terms = new ArrayList<>();
+        tokenize(query, term -> {
+            if (!terms.contains(term)) {
+                terms.add(term);
+            }
+        });
+        lock.readLock().lock();
+        try {
+            int liveCount = docByNoteId.size();
+            if (terms.isEmpty() || liveCount == 0 || k <= 0) {
+                return List.of();
+            }
+            float averageLength = (float) totalLength / liveCount;
+            List<Posting> matched = new ArrayList<>(terms.size());
+            int candidates = 0;
+            for (String term : terms) {
+                Integer termId = termIds.get(term);
+                if (termId != null && postings.get(termId).live > 0) {
+                    matched.add(postings.get(termId));
+                    candidates += postings.get(termId).size;
+                }
+            }
+            ScoreAccumulator scores = new ScoreAccumulator(candidates);
+            for (Posting posting : matched) {
+                float idf = (float) Math.log(1 + (liveCount - posting.live + 0.5) / (posting.live + 0.5));
+                for (int i = 0; i < posting.size; i++) {
+                    int doc = posting.docs[i];
+                    if (liveDocs.get(doc)) {
+                        int tf = posting.freqs[i];
+                        float norm = K1 * (1 - B + B * docLengths[doc] / averageLength);
+                        scores.add(doc, idf * tf * (K1 + 1) / (tf + norm));
+                    }
+                }
+            }
+            return scores.top(k, docNoteIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of notes in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docByNoteId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of distinct terms in the index, including those only found in dead documents.
+     */
+    int termCount() {
+        lock.readLock().lock();
+        try {
+            return termIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Splits text into lowercase runs of letters and digits.
+     *
+     * @param text   The text to split, may be null.
+     * @param action Receives each term.
+     */
+    static void tokenize(String text, Consumer<String> action) {
+        if (text == null) {
+            return;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                action.accept(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+    }
+
+    private int newDoc(long noteId, int length) {
+        if (docCount == docNoteIds.length) {
+            int capacity = docCount * 2;
+            docNoteIds = Arrays.copyOf(docNoteIds, capacity);
+            docLengths = Arrays.copyOf(docLengths, capacity);
+            docTerms = Arrays.copyOf(docTerms, capacity);
+        }
+        int doc = docCount++;
+        docNoteIds[doc] = noteId;
+        docLengths[doc] = length;
+        liveDocs.set(doc);
+        docByNoteId.put(noteId, doc);
+        totalLength += length;
+        return doc;
+    }
+
+    private void removeDoc(Long noteId) {
+        Integer doc = docByNoteId.remove(noteId);
+        if (doc == null) {
+            return;
+        }
+        liveDocs.clear(doc);
+        totalLength -= docLengths[doc];
+        for (int termId : docTerms[doc]) {
+            postings.get(termId).live--;
+        }
+        docTerms[doc] = null;
+        if (docCount - docByNoteId.size() > Math.max(MIN_DEAD_DOCS_TO_COMPACT, docByNoteId.size())) {
+            compact();
+        }
+    }
+
+    /**
+     * Renumbers the live documents densely and drops every dead posting, then renumbers the terms
+     * still found in a live document and drops the others.
+     */
+    private void compact() {
+        int[] renumbered = new int[docCount];
+        int live = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (liveDocs.get(doc)) {
+                renumbered[doc] = live;
+                docNoteIds[live] = docNoteIds[doc];
+                docLengths[live] = docLengths[doc];
+                docTerms[live] = docTerms[doc];
+                docByNoteId.put(docNoteIds[live], live);
+                live++;
+            } else {
+                renumbered[doc] = -1;
+            }
+        }
+        Arrays.fill(docTerms, live, docCount, null);
+        liveDocs.clear();
+        liveDocs.set(0, live);
+        int[] renumberedTerms = new int[postings.size()];
+        List<Posting> livePostings = new ArrayList<>();
+        for (int termId = 0; termId < postings.size(); termId++) {
+            Posting posting = postings.get(termId);
+            if (posting.live == 0) {
+                // Unique tokens, such as IDs or typos, would otherwise stay forever once their notes change
+                renumberedTerms[termId] = -1;
+                termIds.remove(posting.term);
+            } else {
+                posting.compact(renumbered);
+                renumberedTerms[termId] = livePostings.size();
+                termIds.put(posting.term, livePostings.size());
+                livePostings.add(posting);
+            }
+        }
+        for (int doc = 0; doc < live; doc++) {
+            int[] terms = docTerms[doc];
+            for (int i = 0; i < terms.length; i++) {
+                terms[i] = renumberedTerms[terms[i]];
+            }
+        }
+        log.info("Compacted search index from {} to {} documents and from {} to {} terms",
+                docCount, live, postings.size(), livePostings.size());
+        postings.clear();
+        postings.addAll(livePostings);
+        docCount = live;
+    }
+
+    /**
+     * Documents containing one term, in the order they were indexed.
+     */
+    private static final class Posting {
+        private final String term;
+        private int[] docs = new int[2];
+        private int[] freqs = new int[2];
+        private int size;
+        // Number of postings whose document is still live, the document frequency used by BM25
+        private int live;
+
+        private Posting(String term) {
+            this.term = term;
+        }
+
+        private void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+            live++;
+        }
+
+        private void compact(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = renumbered[docs[i]];
+                if (doc >= 0) {
+                    docs[kept] = doc;
+                    freqs[kept] = freqs[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+    }
+
+    /**
+     * Open-addressing map from document number to score, sized for the candidates of one query.
+     */
+    private static final class ScoreAccumulator {
+        private final int[] docs;
+        private final float[] scores;
+        private final int mask;
+
+        private ScoreAccumulator(int candidates) {
+            int capacity = Integer.highestOneBit(Math.max(candidates, 8) * 2 - 1) << 1;
+            docs = new int[capacity];
+            scores = new float[capacity];
+            mask = capacity - 1;
+            Arrays.fill(docs, -1);
+        }
+
+        private void add(int doc, float score) {
+            int slot = (doc * 0x9E3779B9) & mask;
+            while (docs[slot] != -1 && docs[slot] != doc) {
+                slot = (slot + 1) & mask;
+            }
+            docs[slot] = doc;
+            scores[slot] += score;
+        }
+
+        /**
+         * Selects the K best scores with a bounded min-heap, ties broken by the oldest note.
+         */
+        private List<Long> top(int k, long[] noteIds) {
+            int[] heap = new int[k];
+            int heapSize = 0;
+            for (int slot = 0; slot < docs.length; slot++) {
+                if (docs[slot] == -1) {
+                    continue;
+                }
+                if (heapSize < k) {
+                    heap[heapSize] = slot;
+                    siftUp(heap, heapSize++, noteIds);
+                } else if (better(slot, heap[0], noteIds)) {
+                    heap[0] = slot;
+                    siftDown(heap, heapSize, noteIds);
+                }
+            }
+            Long[] result = new Long[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                result[i] = noteIds[docs[heap[0]]];
+                heap[0] = heap[i];
+                siftDown(heap, i, noteIds);
+            }
+            return Arrays.asList(result);
+        }
+
+        private boolean better(int slot, int other, long[] noteIds) {
+            if (scores[slot] != scores[other]) {
+                return scores[slot] > scores[other];
+            }
+            return noteIds[docs[slot]] < noteIds[docs[other]];
+        }
+
+        private void siftUp(int[] heap, int i, long[] noteIds) {
+            while (i > 0 && better(heap[(i - 1) / 2], heap[i], noteIds)) {
+                swap(heap, i, (i - 1) / 2);
+                i = (i - 1) / 2;
+            }
+        }
+
+        private void siftDown(int[] heap, int size, long[] noteIds) {
+            int i = 0;
+            while (true) {
+                int worst = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                    if (better(heap[worst], heap[child], noteIds)) {
+                        worst = child;
+                    }
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(heap, i, worst);
+                i = worst;
+            }
+        }
+
+        private static void swap(int[] heap, int a, int b) {
+            int tmp = heap[a];
+            heap[a] = heap[b];
+            heap[b] = tmp;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.telus.demo.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.telus.demo.dao.NoteShards;
+import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.dao.ReadFromReplica;
+import com.telus.demo.modal.Note;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Service for exporting all notes as newline-delimited JSON (one note per line).
+ * Rows are streamed from the database and written out one at a time, so memory use does not
+ * depend on the number of notes.
+ */
+@Service
+@Slf4j
+public class NotesExportService {
+
+    // Number of notes written between two flushes of the output
+    private static final int FLUSH_EVERY = 500;
+
+    private final NotesRepository noteRepository;
+    private final EntityManager entityManager;
+    private final ObjectWriter noteWriter;
+    private final ObjectMapper objectMapper;
+    private final NoteShards noteShards;
+    private final TransactionTemplate readOnlyTransaction;
+
+    /**
+     * Constructor for NotesExportService.
+     *
+     * @param noteRepository     The repository the notes are streamed from.
+     * @param entityManager      The entity manager, used to detach notes once written.
+     * @param objectMapper       The mapper used to write each note as JSON.
+     * @param noteShards         The shards the notes are spread over, exported one after the other.
+     * @param transactionManager The transaction manager, used to stream each shard in a read-only transaction.
+     */
+    public NotesExportService(NotesRepository noteRepository, EntityManager entityManager, ObjectMapper objectMapper,
+                              NoteShards noteShards, PlatformTransactionManager transactionManager) {
+        this.noteRepository = noteRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.noteShards = noteShards;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // Flushing is batched below instead of after every note
+        this.noteWriter = objectMapper.writerFor(Note.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Writes every note to the output as one JSON object per line, ordered by ID.
+     * Shards are read one after the other, each in its own read-only transaction; the shard is in the
+     * high bits of the ID, so this keeps the notes ordered by ID.
+     *
+     * @param out  The output to write to; it is not closed.
+     * @param gzip Whether to gzip the output.
+     * @return The number of notes written.
+     * @throws IOException If writing to the output fails.
+     */
+    @ReadFromReplica
+    public long exportNotes(OutputStream out, boolean gzip) throws IOException {
+        log.info("Exporting all notes as NDJSON (gzip: {})", gzip);
+        GZIPOutputStream gzipOut = gzip ? new GZIPOutputStream(out, 8192) : null;
+        long count = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(gzip ? gzipOut : out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            for (int shard = 0; shard < noteShards.getCount(); shard++) {
+                count += noteShards.onShard(shard, () -> readOnlyTransaction.execute(status -> writeNotes(generator)));
+            }
+            generator.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (gzipOut != null) {
+            gzipOut.finish();
+        }
+        log.info("Exported {} notes", count);
+        return count;
+    }
+
+    /**
+     * Streams the notes of the current shard to the generator, within a transaction.
+     *
+     * @param generator The generator writing the output.
+     * @return The number of notes written.
+     */
+    private long writeNotes(JsonGenerator generator) {
+        long count = 0;
+        try (Stream<Note> notes = noteRepository.streamAllByOrderByNoteId()) {
+            Iterator<Note> iterator = notes.iterator();
+            while (iterator.hasNext()) {
+                Note note = iterator.next();
+                noteWriter.writeValue(generator, note);
+                generator.writeRaw('\n');
+                entityManager.detach(note);  // Keeps the persistence context from growing with the export
+                if (++count % FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count;
+    }
+}
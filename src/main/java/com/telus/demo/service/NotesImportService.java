@@ -0,0 +1,162 @@
+package com.telus.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.telus.demo.dao.MemoryNotesRepository;
+import com.telus.demo.dao.NoteShards;
+import com.telus.demo.modal.BulkImportResult;
+import com.telus.demo.modal.Note;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service for importing many notes at once, from a JSON array or newline-delimited JSON.
+ * Notes are read one at a time from the input and inserted in chunks, each chunk in its own
+ * transaction and sent to the database in JDBC batches. With sharding, each chunk goes to the next shard in turn.
+ * With the in-memory store, each chunk is saved to it with a single write to its log.
+ */
+@Service
+@Slf4j
+public class NotesImportService {
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectReader noteReader;
+    private final NoteLengthStats noteLengthStats;
+    private final NoteSearchIndex noteSearchIndex;
+    private final TopLikedLeaderboard topLikedLeaderboard;
+    private final NoteMetrics noteMetrics;
+    private final NoteChangeFeed noteChangeFeed;
+    private final NoteShards noteShards;
+    private final MemoryNotesRepository memoryNotesRepository;
+    private final int chunkSize;
+    private final int batchSize;
+
+    /**
+     * Constructor for NotesImportService.
+     *
+     * @param entityManager         The entity manager the notes are persisted with.
+     * @param transactionManager    The transaction manager, used to commit each chunk separately.
+     * @param objectMapper          The mapper used to read the notes.
+     * @param noteLengthStats       The running word count totals, updated once a chunk is committed.
+     * @param noteSearchIndex       The full-text index, updated once a chunk is committed.
+     * @param topLikedLeaderboard   The ranking of the most liked notes, updated once a chunk is committed.
+     * @param noteMetrics           The business counters, incremented once a chunk is committed.
+     * @param noteChangeFeed        The stream of changes, which announces the notes of a chunk once it is committed.
+     * @param noteShards            The shards the notes are spread over.
+     * @param memoryNotesRepository The in-memory store, when it is used instead of JPA.
+     * @param chunkSize             The number of notes inserted per transaction.
+     * @param batchSize             The number of inserts sent to the database per JDBC batch.
+     */
+    public NotesImportService(EntityManager entityManager, PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper, NoteLengthStats noteLengthStats,
+                              NoteSearchIndex noteSearchIndex, TopLikedLeaderboard topLikedLeaderboard,
+                              NoteMetrics noteMetrics, NoteChangeFeed noteChangeFeed, NoteShards noteShards,
+                              ObjectProvider<MemoryNotesRepository> memoryNotesRepository,
+                              @Value("${notes.bulk.chunk-size:1000}") int chunkSize,
+                              @Value("${notes.bulk.batch-size:50}") int batchSize) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.noteReader = objectMapper.readerFor(Note.class);
+        this.noteLengthStats = noteLengthStats;
+        this.noteSearchIndex = noteSearchIndex;
+        this.topLikedLeaderboard = topLikedLeaderboard;
+        this.noteMetrics = noteMetrics;
+        this.noteChangeFeed = noteChangeFeed;
+        this.noteShards = noteShards;
+        this.memoryNotesRepository = memoryNotesRepository.getIfAvailable();
+        this.chunkSize = chunkSize;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Imports the notes of a JSON array, or of a stream of JSON objects such as newline-delimited JSON.
+     * Notes get new IDs and timestamps, like {@link NotesService#addNote(Note)}. Malformed input stops
+     * the import: the chunk being read is reported as failed and the chunks already committed are kept.
+     *
+     * @param in The input to read the notes from; it is not closed.
+     * @return The number of imported notes and the chunks that failed.
+     * @throws IOException If reading the input fails.
+     */
+    public BulkImportResult importNotes(InputStream in) throws IOException {
+        log.info("Importing notes in chunks of {} (JDBC batches of {})", chunkSize, batchSize);
+        BulkImportResult result = new BulkImportResult();
+        List<Note> chunk = new ArrayList<>(chunkSize);
+        int chunkIndex = 0;
+        long read = 0;
+        try (MappingIterator<Note> notes = noteReader.readValues(in)) {
+            while (notes.hasNextValue()) {
+                chunk.add(notes.nextValue());
+                read++;
+                if (chunk.size() == chunkSize) {
+                    insertChunk(chunkIndex++, read - chunk.size(), chunk, result);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Stopped importing notes at malformed input: {}", e.getOriginalMessage());
+            result.getFailures().add(new BulkImportResult.ChunkFailure(chunkIndex, read - chunk.size(), chunk.size(),
+                    "Malformed input: " + e.getOriginalMessage()));
+            chunk.clear();
+        }
+        if (!chunk.isEmpty()) {
+            insertChunk(chunkIndex, read - chunk.size(), chunk, result);
+        }
+        log.info("Imported {} notes, {} chunks failed", result.getImported(), result.getFailures().size());
+        return result;
+    }
+
+    /**
+     * Inserts one chunk of notes in its own transaction, and records it as imported or failed.
+     */
+    private void insertChunk(int chunkIndex, long firstNote, List<Note> chunk, BulkImportResult result) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Note note : chunk) {
+            note.setNoteId(null);  // Always a new note, so persist never looks up an existing row
+            note.setTimestampCreated(now);
+            note.setTimestampUpdated(now);
+            note.setWordCount(TextAnalyzer.countWords(note.getDescription()));
+        }
+        try {
+            if (memoryNotesRepository != null) {
+                memoryNotesRepository.saveAll(chunk);
+            } else {
+                noteShards.onShard(noteShards.nextShard(), () -> transactionTemplate.executeWithoutResult(status -> {
+                    entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+                    chunk.forEach(entityManager::persist);
+                    entityManager.flush();
+                    entityManager.clear();  // Keeps the persistence context from growing with the import
+                }));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to import chunk {} ({} notes): {}", chunkIndex, chunk.size(), e.getMessage());
+            result.getFailures().add(new BulkImportResult.ChunkFailure(chunkIndex, firstNote, chunk.size(),
+                    NestedExceptionUtils.getMostSpecificCause(e).getMessage()));
+            return;
+        }
+        for (Note note : chunk) {
+            noteLengthStats.added(note.getWordCount());
+            noteSearchIndex.index(note);
+            topLikedLeaderboard.update(note.getNoteId(), note.getLikes(), note.getVersion());
+            // A subscriber that falls behind a large import gets a reset, and reads the notes again
+            noteChangeFeed.created(note);
+        }
+        noteMetrics.added(chunk.size());
+        result.setImported(result.getImported() + chunk.size());
+    }
+}
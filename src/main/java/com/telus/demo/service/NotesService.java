@@ -1,37 +1,101 @@
 package com.telus.demo.service;
 
+import com.telus.demo.dao.NoteShards;
 import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.dao.OnNoteShard;
+import com.telus.demo.dao.ReadFromReplica;
+import com.telus.demo.exception.InvalidBatchException;
 import com.telus.demo.exception.NoteNotFoundException;
+import com.telus.demo.exception.PreconditionFailedException;
+import com.telus.demo.modal.BatchOperation;
+import com.telus.demo.modal.BatchResult;
+import com.telus.demo.modal.CursorPage;
 import com.telus.demo.modal.Note;
+import com.telus.demo.modal.NoteETag;
+import com.telus.demo.modal.NoteSummary;
+import com.telus.demo.modal.NoteVersion;
+import com.telus.demo.modal.PageCursor;
+import com.telus.demo.modal.TextStats;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 /**
  * Service layer for managing notes. This class handles the business logic related to
  * notes, including CRUD operations and additional functionalities like counting notes,
  * calculating word counts, and managing likes.
+ * Notes can be spread over several databases ({@link NoteShards}): operations on one note run on its shard,
+ * and the pages, searches and counts over all notes query every shard in parallel and merge the results.
  */
 @Service
 @Slf4j
 public class NotesService {
+    /**
+     * Largest number of IDs or operations accepted by one batch request.
+     */
+    public static final int MAX_BATCH_SIZE = 100;
+
     private final NotesRepository noteRepository;
+    private final TopLikedLeaderboard topLikedLeaderboard;
+    private final LikeAggregator likeAggregator;
+    private final NoteLengthStats noteLengthStats;
+    private final NoteSearchIndex noteSearchIndex;
+    private final NoteCache noteCache;
+    private final NoteMetrics noteMetrics;
+    private final NoteShards noteShards;
+    private final NoteChangeFeed noteChangeFeed;
 
     /**
      * Constructor for NotesService.
      *
-     * @param noteRepository The repository used to interact with the data source.
+     * @param noteRepository      The repository used to interact with the data source.
+     * @param topLikedLeaderboard The ranking of the most liked notes, kept up to date by the like mutations.
+     * @param likeAggregator      The write-behind buffer for likes, used when it is enabled.
+     * @param noteLengthStats     The running word count totals, kept up to date by the write methods.
+     * @param noteSearchIndex     The full-text index, kept up to date by the write methods.
+     * @param noteCache           The cache of notes by ID, invalidated by the write methods.
+     * @param noteMetrics         The business counters, incremented by the add and like methods.
+     * @param noteShards          The shards the notes are spread over.
+     * @param noteChangeFeed      The feed the write methods announce their changes to.
      */
-    public NotesService(NotesRepository noteRepository) {
+    public NotesService(NotesRepository noteRepository, TopLikedLeaderboard topLikedLeaderboard,
+                        LikeAggregator likeAggregator, NoteLengthStats noteLengthStats,
+                        NoteSearchIndex noteSearchIndex, NoteCache noteCache, NoteMetrics noteMetrics,
+                        NoteShards noteShards, NoteChangeFeed noteChangeFeed) {
         this.noteRepository = noteRepository;
+        this.topLikedLeaderboard = topLikedLeaderboard;
+        this.likeAggregator = likeAggregator;
+        this.noteLengthStats = noteLengthStats;
+        this.noteSearchIndex = noteSearchIndex;
+        this.noteCache = noteCache;
+        this.noteMetrics = noteMetrics;
+        this.noteShards = noteShards;
+        this.noteChangeFeed = noteChangeFeed;
     }
 
     /**
-     * Adds a new note to the system.
+     * Adds a new note to the system, on the next shard in turn.
      *
      * @param note The note to be added.
      * @return The saved note.
@@ -40,7 +104,13 @@ public class NotesService {
         log.info("Adding a new note with subject: {}", note.getSubject());
         note.setTimestampCreated(LocalDateTime.now());  // Setting creation timestamp
         note.setTimestampUpdated(LocalDateTime.now());  // Setting update timestamp
-        Note savedNote = noteRepository.save(note);
+        note.setWordCount(TextAnalyzer.countWords(note.getDescription()));  // Counting words once, on write
+        Note savedNote = noteShards.onShard(noteShards.nextShard(), () -> noteRepository.save(note));
+        noteLengthStats.added(savedNote.getWordCount());
+        noteSearchIndex.index(savedNote);
+        topLikedLeaderboard.update(savedNote.getNoteId(), savedNote.getLikes(), savedNote.getVersion());
+        noteMetrics.added(1);
+        noteChangeFeed.created(savedNote);
         log.info("Note with ID {} added successfully", savedNote.getNoteId());
         return savedNote;
     }
@@ -53,22 +123,67 @@ public class NotesService {
      * @return The updated note.
      * @throws ResponseStatusException If the note with the given ID is not found.
      */
+    @OnNoteShard
     public Note modifyNote(Long id, Note noteDetails) {
+        return modifyNote(id, noteDetails, null);
+    }
+
+    /**
+     * Modifies an existing note by its ID, only if it still has one of the expected ETags.
+     *
+     * @param id          The ID of the note to modify.
+     * @param noteDetails The updated note details.
+     * @param ifMatch     The If-Match header sent by the client, or null to modify the note unconditionally.
+     * @return The updated note.
+     * @throws NoteNotFoundException        If the note with the given ID is not found.
+     * @throws PreconditionFailedException If the note changed since the client read it.
+     */
+    @OnNoteShard
+    public Note modifyNote(Long id, Note noteDetails, String ifMatch) {
         log.info("Modifying note with ID {}", id);
         Note note = noteRepository.findById(id)
                 .orElseThrow(() -> new NoteNotFoundException("Note with ID " + id + " not found"));
+        if (ifMatch != null && !NoteETag.matches(ifMatch, NoteETag.of(withPendingLikes(note)))) {
+            throw new PreconditionFailedException("Note with ID " + id + " was modified, its current version is " + note.getVersion());
+        }
 
         if (noteDetails.getSubject() != null) {
             note.setSubject(noteDetails.getSubject());
         }
+        int previousWordCount = wordCountOf(note);
         if (noteDetails.getDescription() != null) {
             note.setDescription(noteDetails.getDescription());
+            note.setWordCount(TextAnalyzer.countWords(noteDetails.getDescription()));
         }
         note.setTimestampUpdated(LocalDateTime.now());  // Updating timestamp
-        if (noteDetails.getLikes() > 0) {
+        boolean likesOverridden = noteDetails.getLikes() > 0;
+        if (likesOverridden) {
             note.setLikes(noteDetails.getLikes());
         }
-        Note updatedNote = noteRepository.save(note);
+        Note updatedNote;
+        try {
+            // The version read above is checked again by the update, so a concurrent change is never overwritten
+            Note savedNote = noteRepository.save(note);
+            updatedNote = likesOverridden ? savedNote : withPendingLikes(savedNote);
+        } catch (OptimisticLockingFailureException e) {
+            if (ifMatch != null) {
+                throw new PreconditionFailedException("Note with ID " + id + " was modified concurrently");
+            }
+            throw e;
+        }
+        if (likesOverridden) {
+            // The new count overrides likes that were not flushed yet, once it is stored
+            afterCommit(() -> likeAggregator.discard(id));
+        }
+        noteCache.invalidate(id);
+        int wordCount = wordCountOf(updatedNote);
+        Note indexed = updatedNote.toBuilder().build();  // Read now, the entity may be detached by the commit
+        afterCommit(() -> {
+            noteLengthStats.modified(previousWordCount, wordCount);
+            noteSearchIndex.index(indexed);
+            topLikedLeaderboard.update(id, indexed.getLikes(), indexed.getVersion());
+        });
+        noteChangeFeed.modified(updatedNote);
         log.info("Note with ID {} modified successfully", updatedNote.getNoteId());
         return updatedNote;
     }
@@ -79,38 +194,134 @@ public class NotesService {
      * @param id The ID of the note to delete.
      * @throws ResponseStatusException If the note with the given ID is not found.
      */
+    @OnNoteShard
     public void deleteNote(Long id) {
         log.info("Deleting note with ID {}", id);
         Note note = noteRepository.findById(id)
                 .orElseThrow(() -> new NoteNotFoundException("Note with ID " + id + " not found"));
         noteRepository.delete(note);
+        noteCache.invalidate(id);
+        int wordCount = wordCountOf(note);
+        afterCommit(() -> {
+            noteLengthStats.deleted(wordCount);
+            noteSearchIndex.remove(id);
+            likeAggregator.discard(id);
+            topLikedLeaderboard.remove(id);
+        });
+        noteChangeFeed.deleted(id);
         log.info("Note with ID {} deleted successfully", id);
     }
 
     /**
-     * Searches for notes by a subject string (case-insensitive).
+     * Searches for notes by a subject string (case-insensitive), one page at a time.
      *
      * @param subject The subject string to search for.
-     * @return A list of notes that contain the given subject.
+     * @param cursor  The cursor returned with the previous page, or null for the first page.
+     * @param limit   The requested page size, or null for the default.
+     * @return A page of notes that contain the given subject.
      */
-    public List<Note> searchNotesBySubject(String subject) {
+    @ReadFromReplica
+    public CursorPage<Note> searchNotesBySubject(String subject, String cursor, Integer limit) {
         log.info("Searching notes with subject containing: {}", subject);
-        List<Note> notes = noteRepository.findBySubjectContainingIgnoreCase(subject);
-        log.info("Found {} notes with subject containing: {}", notes.size(), subject);
+        int pageSize = PageCursor.clampLimit(limit);
+        Long after = PageCursor.decode(cursor);
+        List<Note> notes = firstOfEachShard(shard -> noteRepository
+                .findBySubjectContainingIgnoreCaseAndNoteIdGreaterThanOrderByNoteIdAsc(subject, after, Limit.of(pageSize + 1)),
+                Note::getNoteId, pageSize + 1);
+        CursorPage<Note> page = withPendingLikes(CursorPage.of(notes, pageSize, Note::getNoteId));
+        log.info("Found {} notes with subject containing: {}", page.getItems().size(), subject);
+        return page;
+    }
+
+    /**
+     * Searches for notes by a subject string (case-insensitive), one page at a time, without their description.
+     *
+     * @param subject The subject string to search for.
+     * @param cursor  The cursor returned with the previous page, or null for the first page.
+     * @param limit   The requested page size, or null for the default.
+     * @return A page of the summaries of the notes that contain the given subject.
+     */
+    @ReadFromReplica
+    public CursorPage<NoteSummary> searchNoteSummariesBySubject(String subject, String cursor, Integer limit) {
+        log.info("Searching note summaries with subject containing: {}", subject);
+        int pageSize = PageCursor.clampLimit(limit);
+        Long after = PageCursor.decode(cursor);
+        List<NoteSummary> summaries = firstOfEachShard(shard -> noteRepository
+                .findSummariesBySubjectContainingIgnoreCaseAndNoteIdGreaterThanOrderByNoteIdAsc(subject, after, Limit.of(pageSize + 1)),
+                NoteSummary::getNoteId, pageSize + 1);
+        return withPendingSummaryLikes(CursorPage.of(summaries, pageSize, NoteSummary::getNoteId));
+    }
+
+    /**
+     * Searches the subject and description of all notes for the given words, ranked by relevance (BM25).
+     * Served by the in-memory full-text index; only the K best notes are loaded.
+     *
+     * @param query The words to search for.
+     * @param k     The maximum number of notes to return.
+     * @return The best matching notes, best match first.
+     */
+    public List<Note> searchNotesFullText(String query, int k) {
+        log.info("Full-text searching notes for: {}", query);
+        List<Note> notes = findAllByIdInOrder(noteSearchIndex.search(query, Math.max(1, Math.min(k, PageCursor.MAX_LIMIT))));
+        log.info("Found {} notes matching: {}", notes.size(), query);
         return notes;
     }
 
     /**
-     * Fetches a note by its ID.
+     * Fetches a note by its ID, from the note cache when it holds it.
      *
      * @param id The ID of the note to retrieve.
      * @return The note corresponding to the given ID.
      * @throws ResponseStatusException If the note with the given ID is not found.
      */
+    @OnNoteShard
     public Note getNoteById(Long id) {
         log.info("Fetching note with ID {}", id);
-        return noteRepository.findById(id)
+        return withPendingLikes(findCachedById(id));
+    }
+
+    /**
+     * Returns the current ETag of a note, as {@link #getNoteById(Long)} would return it.
+     * Answered from the note cache, or by reading only the version and likes of the note.
+     *
+     * @param id The ID of the note.
+     * @return The quoted ETag of the note.
+     * @throws NoteNotFoundException If the note with the given ID is not found.
+     */
+    @OnNoteShard
+    public String getNoteETag(Long id) {
+        Note cached = noteCache.getIfPresent(id);
+        if (cached != null) {
+            return NoteETag.of(withPendingLikes(cached));
+        }
+        NoteVersion version = noteRepository.findVersionById(id)
                 .orElseThrow(() -> new NoteNotFoundException("Note with ID " + id + " not found"));
+        return NoteETag.of(version.getVersion(), withPendingLikes(id, version.getLikes()));
+    }
+
+    /**
+     * Copies the description of a note to a writer as it is read from the database, for descriptions too large
+     * to be held in memory at once.
+     *
+     * @param id  The ID of the note.
+     * @param out The writer to copy the description to; it is not closed.
+     * @throws NoteNotFoundException If the note with the given ID is not found.
+     * @throws IOException           If writing fails.
+     */
+    @OnNoteShard
+    public void writeDescription(Long id, Writer out) throws IOException {
+        if (!noteRepository.writeDescription(id, out)) {
+            throw new NoteNotFoundException("Note with ID " + id + " not found");
+        }
+    }
+
+    /**
+     * Returns the hit, miss and eviction counts of the note cache.
+     *
+     * @return The cache statistics, only {@code enabled: false} if the cache is switched off.
+     */
+    public Map<String, Object> getCacheStats() {
+        return noteCache.stats();
     }
 
     /**
@@ -118,41 +329,55 @@ public class NotesService {
      *
      * @return The total number of notes.
      */
+    @ReadFromReplica
     public Long countTotalNotes() {
         log.info("Counting total number of notes");
-        long count = noteRepository.count();
+        long count = noteShards.onEachShard(shard -> noteRepository.count()).stream().mapToLong(Long::longValue).sum();
         log.info("Total number of notes: {}", count);
         return count;
     }
 
     /**
-     * Calculates the word count for a given note by its ID.
+     * Returns the word count of a note by its ID.
+     * The count is computed when the note is written, so only that column is read here.
      *
      * @param id The ID of the note.
      * @return The word count of the note's description.
      * @throws ResponseStatusException If the note with the given ID is not found.
      */
+    @ReadFromReplica
+    @OnNoteShard
     public Integer getWordCount(Long id) {
         log.info("Getting word count for note with ID {}", id);
-        Note note = noteRepository.findById(id)
-                .orElseThrow(() -> new NoteNotFoundException("Note with ID " + id + " not found"));
-        int wordCount = note.getDescription().split("\\s+").length;  // Count words by spaces
+        int wordCount = noteRepository.findWordCountById(id)
+                .orElseGet(() -> wordCountOf(noteRepository.findById(id)  // Not backfilled yet, or not found
+                        .orElseThrow(() -> new NoteNotFoundException("Note with ID " + id + " not found"))));
         log.info("Note with ID {} has {} words", id, wordCount);
         return wordCount;
     }
 
     /**
-     * Calculates the average length of all notes' descriptions in terms of word count.
+     * Returns the text statistics of a note's description, analyzed in a single pass.
+     *
+     * @param id The ID of the note.
+     * @return The word, character, sentence and distinct word counts, and the reading time.
+     * @throws NoteNotFoundException If the note with the given ID is not found.
+     */
+    @OnNoteShard
+    public TextStats getTextStats(Long id) {
+        log.info("Analyzing the text of note with ID {}", id);
+        return TextAnalyzer.analyze(findCachedById(id).getDescription());
+    }
+
+    /**
+     * Returns the average length of all notes' descriptions in terms of word count.
+     * Answered from running totals, without reading any note.
      *
      * @return The average word count across all notes.
      */
     public Double getAverageNoteLength() {
         log.info("Calculating the average note length");
-        List<Note> notes = noteRepository.findAll();
-        double averageLength = notes.stream()
-                .mapToInt(note -> note.getDescription().split("\\s+").length)  // Map to word counts
-                .average()
-                .orElse(0.0);  // Default to 0.0 if no notes exist
+        double averageLength = noteLengthStats.averageWords();  // 0.0 if no notes exist
         log.info("Average note length: {} words", averageLength);
         return averageLength;
     }
@@ -164,13 +389,12 @@ public class NotesService {
      * @return The updated note with the new like count.
      * @throws ResponseStatusException If the note with the given ID is not found.
      */
+    @Transactional
+    @OnNoteShard
     public Note likeNote(Long id) {
         log.info("Liking note with ID {}", id);
-        Note note = noteRepository.findById(id)
-                .orElseThrow(() -> new NoteNotFoundException("Note with ID " + id + " not found"));
-        note.setLikes(note.getLikes() + 1);  // Increment the like count
-        note.setTimestampUpdated(LocalDateTime.now());  // Update timestamp
-        Note updatedNote = noteRepository.save(note);
+        Note updatedNote = likeAggregator.isEnabled() ? bufferLikes(id, 1) : addLikes(id, 1);
+        noteMetrics.liked(1);
         log.info("Note with ID {} liked successfully. Total likes: {}", id, updatedNote.getLikes());
         return updatedNote;
     }
@@ -182,49 +406,152 @@ public class NotesService {
      * @return The updated note with the new like count.
      * @throws ResponseStatusException If the note with the given ID is not found.
      */
+    @Transactional
+    @OnNoteShard
     public Note unlikeNote(Long id) {
         log.info("Unliking note with ID {}", id);
-        Note note = noteRepository.findById(id)
-                .orElseThrow(() -> new NoteNotFoundException("Note with ID " + id + " not found"));
-        note.setLikes(Math.max(note.getLikes() - 1, 0));  // Decrease the like count, but not below 0
-        note.setTimestampUpdated(LocalDateTime.now());  // Update timestamp
-        Note updatedNote = noteRepository.save(note);
+        Note updatedNote = likeAggregator.isEnabled() ? bufferLikes(id, -1) : addLikes(id, -1);
+        noteMetrics.liked(-1);
         log.info("Note with ID {} unliked successfully. Total likes: {}", id, updatedNote.getLikes());
         return updatedNote;
     }
 
     /**
-     * Retrieves all notes that have been liked (likes > 0).
+     * Retrieves the notes that have been liked (likes > 0), one page at a time.
      *
-     * @return A list of liked notes.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param limit  The requested page size, or null for the default.
+     * @return A page of liked notes.
      */
-    public List<Note> getLikedNotes() {
-        log.info("Fetching all liked notes");
-        List<Note> likedNotes = noteRepository.findByLikesGreaterThan(0);
-        log.info("Found {} liked notes", likedNotes.size());
-        return likedNotes;
+    @ReadFromReplica
+    public CursorPage<Note> getLikedNotes(String cursor, Integer limit) {
+        log.info("Fetching liked notes");
+        int pageSize = PageCursor.clampLimit(limit);
+        Long after = PageCursor.decode(cursor);
+        List<Note> likedNotes = firstOfEachShard(shard -> noteRepository
+                .findByLikesGreaterThanAndNoteIdGreaterThanOrderByNoteIdAsc(0, after, Limit.of(pageSize + 1)),
+                Note::getNoteId, pageSize + 1);
+        CursorPage<Note> page = withPendingLikes(CursorPage.of(likedNotes, pageSize, Note::getNoteId));
+        log.info("Found {} liked notes", page.getItems().size());
+        return page;
     }
 
     /**
-     * Retrieves all available notes.
+     * Retrieves the notes that have been liked (likes > 0), one page at a time, without their description.
      *
-     * @return A list of all notes.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param limit  The requested page size, or null for the default.
+     * @return A page of the summaries of liked notes.
      */
-    public List<Note> getAllNotes() {
-        log.info("Fetching all available notes");
-        return noteRepository.findAll();
+    @ReadFromReplica
+    public CursorPage<NoteSummary> getLikedNoteSummaries(String cursor, Integer limit) {
+        log.info("Fetching liked note summaries");
+        int pageSize = PageCursor.clampLimit(limit);
+        Long after = PageCursor.decode(cursor);
+        List<NoteSummary> summaries = firstOfEachShard(shard -> noteRepository
+                .findSummariesByLikesGreaterThanAndNoteIdGreaterThanOrderByNoteIdAsc(0, after, Limit.of(pageSize + 1)),
+                NoteSummary::getNoteId, pageSize + 1);
+        return withPendingSummaryLikes(CursorPage.of(summaries, pageSize, NoteSummary::getNoteId));
     }
 
     /**
-     * Retrieves the top 5 most liked notes.
+     * Retrieves the available notes, one page at a time, ordered by ID.
+     * Each call costs one indexed range scan of the page size per shard, however deep the client pages.
      *
-     * @return a list of top 5 most liked notes
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param limit  The requested page size, or null for the default.
+     * @return A page of notes.
      */
-    public List<Note> getTopLikedNotes() {
-        return noteRepository.findAll().stream()
-                .sorted((n1, n2) -> Integer.compare(n2.getLikes(), n1.getLikes())) // Sort by likes in descending order
-                .limit(5)
-                .collect(Collectors.toList());
+    @ReadFromReplica
+    public CursorPage<Note> getAllNotes(String cursor, Integer limit) {
+        log.info("Fetching available notes");
+        int pageSize = PageCursor.clampLimit(limit);
+        Long after = PageCursor.decode(cursor);
+        List<Note> notes = firstOfEachShard(shard -> noteRepository
+                .findByNoteIdGreaterThanOrderByNoteIdAsc(after, Limit.of(pageSize + 1)), Note::getNoteId, pageSize + 1);
+        return withPendingLikes(CursorPage.of(notes, pageSize, Note::getNoteId));
+    }
+
+    /**
+     * Retrieves the available notes, one page at a time, ordered by ID, without their description.
+     *
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param limit  The requested page size, or null for the default.
+     * @return A page of note summaries.
+     */
+    @ReadFromReplica
+    public CursorPage<NoteSummary> getAllNoteSummaries(String cursor, Integer limit) {
+        log.info("Fetching available note summaries");
+        int pageSize = PageCursor.clampLimit(limit);
+        Long after = PageCursor.decode(cursor);
+        List<NoteSummary> summaries = firstOfEachShard(shard -> noteRepository
+                .findSummariesByNoteIdGreaterThanOrderByNoteIdAsc(after, Limit.of(pageSize + 1)), NoteSummary::getNoteId, pageSize + 1);
+        return withPendingSummaryLikes(CursorPage.of(summaries, pageSize, NoteSummary::getNoteId));
+    }
+
+    /**
+     * Retrieves the top K most liked notes from the in-memory leaderboard.
+     * Only the K winning notes are loaded, with a single lookup by primary key.
+     *
+     * @param k the number of notes to return, clamped to the leaderboard capacity
+     * @return a list of the K most liked notes, most liked first
+     */
+    public List<Note> getTopLikedNotes(int k) {
+        return findAllByIdInOrder(topLikedIds(k));
+    }
+
+    /**
+     * Retrieves the top K most liked notes from the in-memory leaderboard, without their description.
+     *
+     * @param k the number of notes to return, clamped to the leaderboard capacity
+     * @return the summaries of the K most liked notes, most liked first
+     */
+    public List<NoteSummary> getTopLikedNoteSummaries(int k) {
+        return findAllByIdInOrder(topLikedIds(k), noteRepository::findSummariesByNoteIdIn, NoteSummary::getNoteId,
+                this::withPendingLikes);
+    }
+
+    /**
+     * Retrieves several notes by ID with a single query, in the order of the given IDs.
+     *
+     * @param ids the IDs of the notes, at most {@link #MAX_BATCH_SIZE}
+     * @return the notes that exist, in the order of their IDs; missing notes are left out
+     * @throws InvalidBatchException if too many IDs are given
+     */
+    public List<Note> getNotesByIds(List<Long> ids) {
+        checkBatchSize(ids.size());
+        log.info("Fetching {} notes by ID", ids.size());
+        return findAllByIdInOrder(ids);
+    }
+
+    /**
+     * Applies likes, unlikes, modifications and deletions in a single transaction, in the given order.
+     * A missing note or an incomplete operation is reported in its own result and does not stop the
+     * batch. Any other failure, such as a concurrent modification, rolls the whole batch back: the search
+     * index, word count totals, leaderboard and like buffer are only updated once the batch commits, and
+     * likes are written to the database even when they are otherwise buffered, so they roll back too.
+     * A transaction does not span databases, so with sharding every note of a batch must be on the same shard.
+     *
+     * @param operations the operations, at most {@link #MAX_BATCH_SIZE}
+     * @return one result per operation, in the same order
+     * @throws InvalidBatchException if too many operations are given, or their notes are on several shards
+     */
+    @Transactional
+    @OnNoteShard
+    public List<BatchResult> applyBatch(List<BatchOperation> operations) {
+        checkBatchSize(operations.size());
+        long shards = operations.stream().map(BatchOperation::getId).filter(Objects::nonNull)
+                .map(noteShards::shardOf).distinct().count();
+        if (shards > 1) {
+            throw new InvalidBatchException("A batch can only change notes stored on the same shard, got notes of "
+                    + shards + " shards");
+        }
+        log.info("Applying a batch of {} operations", operations.size());
+        List<BatchResult> results = new ArrayList<>(operations.size());
+        for (BatchOperation operation : operations) {
+            results.add(apply(operation));
+        }
+        return results;
     }
 
     /**
@@ -234,11 +561,10 @@ public class NotesService {
      * @return the updated note with boosted likes
      * @throws NoteNotFoundException if the note with the given ID is not found
      */
+    @Transactional
+    @OnNoteShard
     public Note boostLikes(Long id) {
-        Note note = noteRepository.findById(id)
-                .orElseThrow(() -> new NoteNotFoundException("Note with ID " + id + " not found"));
-        note.setLikes(note.getLikes() + 10);
-        return noteRepository.save(note);
+        return addLikes(id, 10);
     }
 
     /**
@@ -248,10 +574,280 @@ public class NotesService {
      * @return the updated note with 0 likes
      * @throws NoteNotFoundException if the note with the given ID is not found
      */
+    @Transactional
+    @OnNoteShard
     public Note resetLikes(Long id) {
-        Note note = noteRepository.findById(id)
+        likeAggregator.discard(id);
+        Note cached = noteCache.getIfPresent(id);
+        if (noteRepository.resetLikes(id, LocalDateTime.now()) == 0) {
+            throw new NoteNotFoundException("Note with ID " + id + " not found");
+        }
+        noteCache.invalidate(id);
+        return reloadAfterLikes(id, cached);
+    }
+
+    /**
+     * Adds likes to a note with a single atomic update in the database, then reads the note back.
+     * Concurrent calls never lose an update, and the count never goes below 0.
+     *
+     * @param id    the ID of the note
+     * @param delta the number of likes to add, negative to remove likes
+     * @return the updated note
+     * @throws NoteNotFoundException if the note with the given ID is not found
+     */
+    private Note addLikes(Long id, int delta) {
+        Note cached = noteCache.getIfPresent(id);
+        if (noteRepository.incrementLikes(id, delta, LocalDateTime.now()) == 0) {
+            throw new NoteNotFoundException("Note with ID " + id + " not found");
+        }
+        noteCache.invalidate(id);
+        return reloadAfterLikes(id, cached);
+    }
+
+    /**
+     * Reads a note back after its likes changed and records the new count in the leaderboard once committed.
+     * When the cached copy is the note as it was right before the change, only the likes, version and update
+     * timestamp are read back, and the description, which can be large, is taken from the copy.
+     *
+     * @param id     the ID of the note
+     * @param cached the cached copy of the note taken before the change, or null if it was not cached
+     * @return the updated note
+     */
+    private Note reloadAfterLikes(Long id, Note cached) {
+        Note note = Optional.ofNullable(cached)
+                .flatMap(before -> noteRepository.findVersionById(id)
+                        // Every change increments the version, so this was the only change since the copy was cached
+                        .filter(current -> current.getVersion() == before.getVersion() + 1)
+                        .map(current -> before.toBuilder()
+                                .likes(current.getLikes())
+                                .version(current.getVersion())
+                                .timestampUpdated(current.getTimestampUpdated())
+                                .build()))
+                .or(() -> noteRepository.findById(id))
                 .orElseThrow(() -> new NoteNotFoundException("Note with ID " + id + " not found"));
-        note.setLikes(0);
-        return noteRepository.save(note);
+        int likes = note.getLikes();
+        long version = note.getVersion();
+        afterCommit(() -> topLikedLeaderboard.update(id, likes, version));
+        noteChangeFeed.likesChanged(note);
+        return note;
+    }
+
+    /**
+     * Accepts likes into the write-behind buffer instead of updating the database.
+     * The returned note shows the persisted likes plus every pending delta. The persisted note does
+     * not change, so it is read from the note cache, which the flush invalidates.
+     *
+     * @param id    the ID of the note
+     * @param delta the number of likes to add, negative to remove likes
+     * @return the note as it will be once the pending likes are flushed
+     * @throws NoteNotFoundException if the note with the given ID is not found
+     */
+    private Note bufferLikes(Long id, int delta) {
+        Note note = findCachedById(id);
+        if (!likeAggregator.add(id, delta, note.getLikes())) {
+            return withPendingLikes(note);  // Like the synchronous path, likes never go below 0
+        }
+        Note updatedNote = note.toBuilder().likes(withPendingLikes(id, note.getLikes())).build();
+        topLikedLeaderboard.update(id, updatedNote.getLikes(), updatedNote.getVersion());
+        noteChangeFeed.likesChanged(updatedNote);
+        return updatedNote;
+    }
+
+    /**
+     * Reads a note through the note cache.
+     *
+     * @param id the ID of the note
+     * @return a copy of the note as persisted
+     * @throws NoteNotFoundException if the note with the given ID is not found
+     */
+    private Note findCachedById(Long id) {
+        Note note = noteCache.get(id, key -> noteRepository.findById(key).orElse(null));
+        if (note == null) {
+            throw new NoteNotFoundException("Note with ID " + id + " not found");
+        }
+        return note;
+    }
+
+    /**
+     * Adds the likes still pending in the write-behind buffer to a note read from the database.
+     * Returns a copy, so the pending likes never end up in a managed entity.
+     *
+     * @param note the note as persisted
+     * @return the note with its pending likes
+     */
+    private Note withPendingLikes(Note note) {
+        int likes = withPendingLikes(note.getNoteId(), note.getLikes());
+        return likes == note.getLikes() ? note : note.toBuilder().likes(likes).build();
+    }
+
+    private int withPendingLikes(Long id, int likes) {
+        if (!likeAggregator.isEnabled()) {
+            return likes;
+        }
+        return (int) Math.max(0, likes + likeAggregator.pendingDelta(id));
+    }
+
+    private CursorPage<Note> withPendingLikes(CursorPage<Note> page) {
+        if (likeAggregator.isEnabled()) {
+            page.setItems(page.getItems().stream().map(this::withPendingLikes).collect(Collectors.toList()));
+        }
+        return page;
+    }
+
+    private NoteSummary withPendingLikes(NoteSummary summary) {
+        int likes = withPendingLikes(summary.getNoteId(), summary.getLikes());
+        return likes == summary.getLikes() ? summary : summary.toBuilder().likes(likes).build();
+    }
+
+    private CursorPage<NoteSummary> withPendingSummaryLikes(CursorPage<NoteSummary> page) {
+        if (likeAggregator.isEnabled()) {
+            page.setItems(page.getItems().stream().map(this::withPendingLikes).collect(Collectors.toList()));
+        }
+        return page;
+    }
+
+    private List<Long> topLikedIds(int k) {
+        return topLikedLeaderboard.topIds(Math.max(1, Math.min(k, topLikedLeaderboard.getCapacity())));
+    }
+
+    /**
+     * Applies one operation of a batch, within the transaction of the batch.
+     *
+     * @param operation the operation
+     * @return its result
+     */
+    private BatchResult apply(BatchOperation operation) {
+        BatchOperation.Type op = operation.getOp();
+        Long id = operation.getId();
+        if (op == null || id == null || (op == BatchOperation.Type.MODIFY && operation.getNote() == null)) {
+            return new BatchResult(op, id, HttpStatus.BAD_REQUEST.value(), null,
+                    "An operation needs an op and an id, and a modify also needs a note");
+        }
+        try {
+            Note note = switch (op) {
+                case LIKE -> batchLikes(id, 1);
+                case UNLIKE -> batchLikes(id, -1);
+                case MODIFY -> modifyNote(id, operation.getNote());
+                case DELETE -> {
+                    deleteNote(id);
+                    yield null;
+                }
+            };
+            // Writes the change now, so the returned note has its new version and the next operations see it
+            noteRepository.flush();
+            if (note == null) {
+                return new BatchResult(op, id, HttpStatus.NO_CONTENT.value(), null, null);
+            }
+            // A copy, as the next operations of the batch may change the same managed entity
+            return new BatchResult(op, id, HttpStatus.OK.value(), note.toBuilder().build(), null);
+        } catch (NoteNotFoundException e) {
+            return new BatchResult(op, id, HttpStatus.NOT_FOUND.value(), null, e.getMessage());
+        }
+    }
+
+    /**
+     * Likes or unlikes a note within a batch, with an update in the database that rolls back with the batch.
+     *
+     * @param id    the ID of the note
+     * @param delta the number of likes to add, negative to remove likes
+     * @return the updated note, with its pending likes
+     */
+    private Note batchLikes(Long id, int delta) {
+        Note note = withPendingLikes(addLikes(id, delta));
+        noteMetrics.liked(delta);
+        return note;
+    }
+
+    /**
+     * Updates the in-memory state kept next to the database once the current transaction, if any, commits,
+     * so that a change that is rolled back, on its own or with its batch, never shows in it.
+     *
+     * @param update the update of the in-memory state
+     */
+    private static void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    /**
+     * @param size the number of IDs or operations of a batch request
+     * @throws InvalidBatchException if it is above {@link #MAX_BATCH_SIZE}
+     */
+    private void checkBatchSize(int size) {
+        if (size > MAX_BATCH_SIZE) {
+            throw new InvalidBatchException("A batch holds at most " + MAX_BATCH_SIZE + " items, got " + size);
+        }
+    }
+
+    /**
+     * Returns the stored word count of a note, computing it for notes written before it was stored.
+     *
+     * @param note the note
+     * @return the word count of its description
+     */
+    private int wordCountOf(Note note) {
+        return note.getWordCount() != null ? note.getWordCount() : TextAnalyzer.countWords(note.getDescription());
+    }
+
+    /**
+     * Loads notes by ID with a single query per shard, keeping the order of the given IDs.
+     *
+     * @param ids the IDs of the notes, in the wanted order
+     * @return the notes that still exist, in the order of their IDs
+     */
+    private List<Note> findAllByIdInOrder(List<Long> ids) {
+        return findAllByIdInOrder(ids, noteRepository::findAllById, Note::getNoteId, this::withPendingLikes);
+    }
+
+    /**
+     * Loads notes, or projections of notes, by ID with a single query per shard, keeping the order of the given IDs.
+     *
+     * @param ids          the IDs of the notes, in the wanted order
+     * @param find         the query loading the notes of some IDs, run on their shard
+     * @param noteId       the ID of a loaded note
+     * @param pendingLikes adds the pending likes to a loaded note
+     * @return the notes that still exist, in the order of their IDs
+     */
+    private <T> List<T> findAllByIdInOrder(List<Long> ids, Function<List<Long>, List<T>> find, ToLongFunction<T> noteId,
+                                           UnaryOperator<T> pendingLikes) {
+        Map<Integer, List<Long>> idsByShard = noteShards.groupByShard(ids, Long::longValue);
+        Map<Long, T> notesById = noteShards.onEachShard(shard -> idsByShard.containsKey(shard)
+                        ? find.apply(idsByShard.get(shard)) : List.<T>of()).stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toMap(note -> noteId.applyAsLong(note), Function.identity()));
+        return ids.stream()
+                .map(notesById::get)
+                .filter(Objects::nonNull)  // Skip notes deleted since the IDs were read
+                .map(pendingLikes)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Runs a keyset query on every shard and merges the results into one page ordered by ID.
+     * Each shard returns its own first rows after the cursor, so the first rows overall are among them.
+     *
+     * @param query  the query run on each shard, returning at most {@code limit} notes ordered by ID
+     * @param noteId the ID of a returned note
+     * @param limit  the number of notes wanted
+     * @return the first {@code limit} notes of all shards, ordered by ID
+     */
+    private <T> List<T> firstOfEachShard(IntFunction<List<T>> query, ToLongFunction<T> noteId, int limit) {
+        List<List<T>> results = noteShards.onEachShard(query);
+        if (results.size() == 1) {
+            return results.get(0);
+        }
+        return results.stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparingLong(noteId))
+                .limit(limit)
+                .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,144 @@
+package com.telus.demo.service;
+
+import com.telus.demo.modal.TextStats;
+
+/**
+ * Single-pass text analysis of note descriptions.
+ * Walks the text once, code point by code point, without a regex and without a substring per word:
+ * words are hashed as they are read, and distinct words are estimated by linear counting of the
+ * hashes in a fixed bitmap, the only allocation of an analysis.
+ */
+public final class TextAnalyzer {
+
+    /**
+     * Reading speed used for the reading time, in words per minute.
+     */
+    public static final int WORDS_PER_MINUTE = 200;
+
+    // Linear counting bitmap: estimates within a few percent up to a few thousand distinct words
+    private static final int BITMAP_BITS = 4096;
+
+    private TextAnalyzer() {
+    }
+
+    /**
+     * Counts the words of a text, as runs of non-whitespace characters.
+     *
+     * @param text The text, may be null.
+     * @return The number of words, 0 for a missing or blank text.
+     */
+    public static int countWords(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            boolean whitespace = Character.isWhitespace(text.charAt(i));
+            if (!whitespace && !inWord) {
+                words++;
+            }
+            inWord = !whitespace;
+        }
+        return words;
+    }
+
+    /**
+     * Computes the statistics of a text.
+     *
+     * @param text The text, may be null.
+     * @return The statistics, all 0 for a missing or blank text.
+     */
+    public static TextStats analyze(CharSequence text) {
+        if (text == null) {
+            return new TextStats();
+        }
+        long[] bitmap = new long[BITMAP_BITS / Long.SIZE];
+        int words = 0;
+        int characters = 0;
+        int sentences = 0;
+        boolean inWord = false;
+        // Whether the current sentence has words not yet followed by a terminator
+        boolean openSentence = false;
+        boolean terminated = false;
+        int hash = 0;
+
+        for (int i = 0, length = text.length(); i < length; ) {
+            int codePoint = Character.codePointAt(text, i);
+            i += Character.charCount(codePoint);
+            characters++;
+
+            if (Character.isWhitespace(codePoint)) {
+                if (inWord) {
+                    mark(bitmap, hash);
+                    inWord = false;
+                }
+                continue;
+            }
+            if (!inWord) {
+                words++;
+                inWord = true;
+                hash = 0;
+            }
+            if (codePoint == '.' || codePoint == '!' || codePoint == '?') {
+                if (openSentence && !terminated) {
+                    sentences++;
+                    openSentence = false;
+                }
+                terminated = true;
+            } else {
+                if (Character.isLetterOrDigit(codePoint)) {
+                    hash = 31 * hash + Character.toLowerCase(codePoint);
+                }
+                openSentence = true;
+                terminated = false;
+            }
+        }
+        if (inWord) {
+            mark(bitmap, hash);
+        }
+        if (openSentence) {
+            sentences++;
+        }
+
+        return new TextStats(words, characters, sentences, estimateDistinct(bitmap, words),
+                readingTimeSeconds(words));
+    }
+
+    /**
+     * @param words The number of words of a text.
+     * @return The time to read them at {@link #WORDS_PER_MINUTE}, rounded up to the second.
+     */
+    public static int readingTimeSeconds(int words) {
+        return (int) ((words * 60L + WORDS_PER_MINUTE - 1) / WORDS_PER_MINUTE);
+    }
+
+    private static void mark(long[] bitmap, int hash) {
+        int bit = mix(hash) & (BITMAP_BITS - 1);
+        bitmap[bit >>> 6] |= 1L << bit;
+    }
+
+    /**
+     * Estimates the number of distinct hashes from the share of bits still clear, capped by the number of words.
+     */
+    private static int estimateDistinct(long[] bitmap, int words) {
+        int set = 0;
+        for (long bits : bitmap) {
+            set += Long.bitCount(bits);
+        }
+        if (set == BITMAP_BITS) {
+            return words;  // Saturated, the estimate is unbounded
+        }
+        double estimate = -BITMAP_BITS * Math.log((double) (BITMAP_BITS - set) / BITMAP_BITS);
+        return (int) Math.min(Math.round(estimate), words);
+    }
+
+    // Spreads the bits of the polynomial hash, so that short words do not cluster in the low bits
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,202 @@
+package com.telus.demo.service;
+
+import com.telus.demo.dao.NoteShards;
+import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.modal.NoteLikes;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory ranking of the most liked notes, kept up to date by the like mutations of {@link NotesService}.
+ * Only the top {@code capacity} notes are tracked. Every untracked note ranks below every tracked one,
+ * so increases can be applied incrementally; a decrease or removal that could promote an untracked note
+ * marks the ranking stale, and the next read rebuilds it with a single query ordered by likes.
+ * Updates carry the version of the note, since the commits of two changes may report their counts in either order:
+ * a count older than the one tracked is ignored.
+ */
+@Component
+@Slf4j
+public class TopLikedLeaderboard {
+
+    // Most likes first, ties broken by the oldest note
+    private static final Comparator<Entry> RANK_ORDER = Comparator.comparingInt(Entry::likes).reversed()
+            .thenComparingLong(Entry::noteId);
+
+    private final NotesRepository noteRepository;
+    private final NoteShards noteShards;
+    private final int capacity;
+
+    private final NavigableSet<Entry> ranking = new TreeSet<>(RANK_ORDER);
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    // True when some notes are not tracked because they rank below the capacity
+    private boolean truncated;
+    private boolean stale = true;
+
+    // Guards the ranking; held by rebuild() during its query, which a virtual thread can only wait out unmounted with a lock
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Constructor for TopLikedLeaderboard.
+     *
+     * @param noteRepository The repository used to rebuild the ranking.
+     * @param noteShards     The shards the notes are spread over, each ranked by the rebuild.
+     * @param capacity       The number of notes tracked, which is also the largest K that can be requested.
+     */
+    public TopLikedLeaderboard(NotesRepository noteRepository, NoteShards noteShards,
+                               @Value("${notes.top-liked.capacity:100}") int capacity) {
+        this.noteRepository = noteRepository;
+        this.noteShards = noteShards;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Builds the ranking once the application has started, so the first poll does not pay for it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        rebuild();
+    }
+
+    /**
+     * @return The largest K that can be requested.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the IDs of the K most liked notes, most liked first.
+     *
+     * @param k The number of notes wanted, at most the capacity.
+     * @return The IDs of the top notes.
+     */
+    public List<Long> topIds(int k) {
+        lock.lock();
+        try {
+            if (stale) {
+                rebuild();
+            }
+            List<Long> ids = new ArrayList<>(Math.min(k, ranking.size()));
+            Iterator<Entry> iterator = ranking.iterator();
+            while (ids.size() < k && iterator.hasNext()) {
+                ids.add(iterator.next().noteId());
+            }
+            return ids;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the new like count of a note after it was created or its likes changed.
+     *
+     * @param noteId  The ID of the note.
+     * @param likes   The like count of the note.
+     * @param version The version of the note with that count.
+     */
+    public void update(Long noteId, int likes, long version) {
+        lock.lock();
+        try {
+            if (noteId == null || stale) {
+                return;
+            }
+            Entry updated = new Entry(noteId, likes, version);
+            Entry previous = entries.get(noteId);
+            if (previous != null && version < previous.version()) {
+                return;
+            }
+            if (previous != null) {
+                entries.remove(noteId);
+                ranking.remove(previous);
+                if (truncated && likes < previous.likes()) {
+                    // An untracked note may now outrank this one
+                    stale = true;
+                    return;
+                }
+                add(updated);
+            } else if (ranking.size() < capacity && !truncated) {
+                add(updated);
+            } else {
+                // The ranking is full: the note either displaces the last entry or stays untracked
+                if (RANK_ORDER.compare(updated, ranking.last()) < 0) {
+                    add(updated);
+                    entries.remove(ranking.pollLast().noteId());
+                }
+                truncated = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a deleted note from the ranking.
+     *
+     * @param noteId The ID of the deleted note.
+     */
+    public void remove(Long noteId) {
+        lock.lock();
+        try {
+            Entry previous = entries.remove(noteId);
+            if (previous != null) {
+                ranking.remove(previous);
+                if (truncated) {
+                    // The best untracked note should take its place
+                    stale = true;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reloads the ranking from the database with a single query ordered by likes, per shard.
+     * The top of each shard is enough to merge the top of all notes.
+     */
+    public void rebuild() {
+        lock.lock();
+        try {
+            List<Entry> rows = noteShards.onEachShard(shard -> noteRepository.findLikeRanking(Limit.of(capacity + 1)))
+                    .stream()
+                    .flatMap(List::stream)
+                    .map(row -> new Entry(row.getNoteId(), row.getLikes(), row.getVersion()))
+                    .sorted(RANK_ORDER)
+                    .limit(capacity + 1)
+                    .toList();
+            ranking.clear();
+            entries.clear();
+            for (int i = 0; i < rows.size() && i < capacity; i++) {
+                add(rows.get(i));
+            }
+            truncated = rows.size() > capacity;
+            stale = false;
+            log.info("Rebuilt top liked leaderboard with {} notes", ranking.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void add(Entry entry) {
+        ranking.add(entry);
+        entries.put(entry.noteId(), entry);
+    }
+
+    private record Entry(long noteId, int likes, long version) {
+    }
+}
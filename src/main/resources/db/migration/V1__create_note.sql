@@ -0,0 +1,19 @@
+-- Schema of the note table for com.telus.demo.modal.Note.
+-- Idempotent, so that databases created by Hibernate's former schema update (baselined at version 0)
+-- are brought to the same state as new ones
+create sequence if not exists note_seq start with 1 increment by 50;
+
+create table if not exists note (
+    note_id bigint not null primary key,
+    subject varchar(255),
+    description varchar(255),
+    likes integer not null,
+    word_count integer,
+    version bigint default 0 not null,
+    timestamp_created timestamp(6),
+    timestamp_updated timestamp(6)
+);
+
+-- Databases written before these columns were added
+alter table note add column if not exists word_count integer;
+alter table note add column if not exists version bigint default 0 not null;
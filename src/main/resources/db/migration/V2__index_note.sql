@@ -0,0 +1,16 @@
+-- Indexes of the hot queries of com.telus.demo.dao.NotesRepository, checked by NotesRepositoryQueryPlanTest
+
+-- findByLikesGreaterThan, the liked notes pages and the like ranking of the top-liked leaderboard,
+-- which reads this index in order instead of sorting the table
+create index if not exists idx_note_likes on note (likes desc, note_id);
+
+-- Time-ordered and time-range reads
+create index if not exists idx_note_timestamp_updated on note (timestamp_updated);
+
+-- Lookups by subject
+create index if not exists idx_note_subject on note (subject);
+
+-- Case-insensitive lookups by subject. H2 has no index on expressions, so the upper-cased subject is
+-- a generated column with its own index
+alter table note add column if not exists subject_upper varchar(255) generated always as (upper(subject));
+create index if not exists idx_note_subject_upper on note (subject_upper);
@@ -0,0 +1,3 @@
+-- Descriptions of any size up to 1 MB (Note.MAX_DESCRIPTION_LENGTH), as a character LOB: H2 keeps the larger
+-- values out of the row, so the scans of the hot columns (likes, version, timestamps) do not read them
+alter table note alter column description set data type character large object(1048576);
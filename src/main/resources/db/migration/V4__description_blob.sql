@@ -0,0 +1,4 @@
+-- Descriptions as a binary LOB, so that the compressed ones are stored as the output of their codec (see
+-- com.telus.demo.dao.DescriptionCompression). H2 converts the text of the existing rows to its UTF-8, which is
+-- how an uncompressed description is stored
+alter table note alter column description set data type binary large object;
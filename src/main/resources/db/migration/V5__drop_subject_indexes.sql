@@ -0,0 +1,5 @@
+-- No query looks notes up by their exact subject: subject searches match a part of it, which neither index can
+-- serve, so they only slowed down every write
+drop index if exists idx_note_subject;
+drop index if exists idx_note_subject_upper;
+alter table note drop column if exists subject_upper;
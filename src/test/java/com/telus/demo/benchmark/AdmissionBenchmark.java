@@ -0,0 +1,155 @@
+package com.telus.demo.benchmark;
+
+import com.telus.demo.NoteApplication;
+import com.telus.demo.modal.Note;
+import com.telus.demo.service.NotesService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of admission control: {@value #READERS} clients read notes and pages of notes while {@value #LIKERS}
+ * clients like notes as fast as they can, honouring the Retry-After of the likes that are shed. Reports the read
+ * latencies without likes, then during the like storm with admission control off and on, along with the likes
+ * handled and shed per second. Reads time out after {@link #READ_TIMEOUT}, and count as failed.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class AdmissionBenchmark {
+
+    private static final int NOTES = 1_000;
+    private static final int READERS = 4;
+    private static final int LIKERS = 64;
+    private static final long WARM_UP_SECONDS = 3;
+    private static final long MEASURED_SECONDS = 10;
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(5);
+
+    @Test
+    void compareReadLatencyDuringALikeStorm() throws Exception {
+        System.out.printf("%n%d readers, %d likers, %d s measured%n", READERS, LIKERS, MEASURED_SECONDS);
+        run("reads only", true, 0);
+        run("admission off", false, LIKERS);
+        run("admission on", true, LIKERS);
+        System.out.println();
+    }
+
+    private static void run(String label, boolean admission, int likers) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(NoteApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:admission-benchmark-" + admission + likers + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.com.telus.demo=WARN",
+                        "--notes.admission.enabled=" + admission,
+                        "--notes.admission.rate-limit.client-header=X-Client-Id");
+             HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+            NotesService notesService = context.getBean(NotesService.class);
+            long[] ids = new long[NOTES];
+            for (int i = 0; i < NOTES; i++) {
+                ids[i] = notesService.addNote(Note.builder().subject("Note " + i).description("Liked a lot").build()).getNoteId();
+            }
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/notes";
+
+            long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(WARM_UP_SECONDS);
+            long end = measureFrom + TimeUnit.SECONDS.toNanos(MEASURED_SECONDS);
+            List<Long> readLatencies = Collections.synchronizedList(new ArrayList<>());
+            LongAdder readErrors = new LongAdder();
+            ConcurrentHashMap<Integer, LongAdder> likeStatuses = new ConcurrentHashMap<>();
+
+            ExecutorService executor = Executors.newFixedThreadPool(READERS + likers);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int r = 0; r < READERS; r++) {
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; System.nanoTime() < end; i++) {
+                            // Pages go to the database; notes by ID mostly come from the cache, unless just liked
+                            String url = i % 2 == 0 ? baseUrl + "?limit=20" : baseUrl + "/" + randomId(ids);
+                            long start = System.nanoTime();
+                            int status;
+                            try {
+                                status = send(client, HttpRequest.newBuilder(URI.create(url)).timeout(READ_TIMEOUT).build()).statusCode();
+                            } catch (HttpTimeoutException e) {
+                                status = 0;
+                            }
+                            // Reads count when they end, so that those stuck since the warm-up count too
+                            long now = System.nanoTime();
+                            if (now >= measureFrom) {
+                                if (status == 200) {
+                                    readLatencies.add(now - start);
+                                } else {
+                                    readErrors.increment();
+                                }
+                            }
+                            TimeUnit.MILLISECONDS.sleep(5);
+                        }
+                        return null;
+                    }));
+                }
+                for (int l = 0; l < likers; l++) {
+                    String clientId = "liker-" + l;
+                    futures.add(executor.submit(() -> {
+                        while (System.nanoTime() < end) {
+                            long start = System.nanoTime();
+                            HttpResponse<Void> response = send(client, HttpRequest.newBuilder(
+                                            URI.create(baseUrl + "/" + randomId(ids) + "/like"))
+                                    .header("X-Client-Id", clientId)
+                                    .POST(HttpRequest.BodyPublishers.noBody())
+                                    .build());
+                            if (start >= measureFrom) {
+                                likeStatuses.computeIfAbsent(response.statusCode(), status -> new LongAdder()).increment();
+                            }
+                            long retryAfter = response.headers().firstValueAsLong("Retry-After").orElse(0);
+                            TimeUnit.SECONDS.sleep(retryAfter);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            // Reads that failed or timed out are counted apart; the latencies are those of the others
+            List<Long> sorted = readLatencies.stream().sorted().toList();
+            System.out.printf("  %-14s read p50 %8.2f ms  p99 %8.2f ms  failed %,5d | likes/s handled %,5.0f  shed 429 %,5.0f  503 %,5.0f%n",
+                    label, percentile(sorted, 50), percentile(sorted, 99), readErrors.sum(),
+                    perSecond(likeStatuses, 200), perSecond(likeStatuses, 429), perSecond(likeStatuses, 503));
+        }
+    }
+
+    private static HttpResponse<Void> send(HttpClient client, HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    private static double percentile(List<Long> sorted, int percentile) {
+        return sorted.isEmpty() ? Double.NaN : sorted.get(sorted.size() * percentile / 100) / 1e6;
+    }
+
+    private static double perSecond(ConcurrentHashMap<Integer, LongAdder> statuses, int status) {
+        LongAdder count = statuses.get(status);
+        return count == null ? 0 : count.sum() / (double) MEASURED_SECONDS;
+    }
+
+    private static long randomId(long[] ids) {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+}
@@ -0,0 +1,78 @@
+package com.telus.demo.benchmark;
+
+import com.telus.demo.NoteApplication;
+import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.modal.BulkImportResult;
+import com.telus.demo.modal.Note;
+import com.telus.demo.service.NotesImportService;
+import com.telus.demo.service.NotesService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares rows/sec of loading notes one by one through addNote and through the bulk import.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class BulkImportBenchmark {
+
+    private static final int NOTES = 50_000;
+
+    @Test
+    void compareAddNoteAndBulkImport() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(NoteApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:import-benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.com.telus.demo=WARN")) {
+            NotesService notesService = context.getBean(NotesService.class);
+            NotesImportService notesImportService = context.getBean(NotesImportService.class);
+            NotesRepository notesRepository = context.getBean(NotesRepository.class);
+
+            // Warm up both paths, then measure
+            addOneByOne(notesService, NOTES / 10);
+            notesImportService.importNotes(ndjson(NOTES / 10));
+
+            long start = System.nanoTime();
+            addOneByOne(notesService, NOTES);
+            double oneByOne = NOTES / ((System.nanoTime() - start) / 1e9);
+
+            byte[] body = ndjson(NOTES).readAllBytes();
+            start = System.nanoTime();
+            BulkImportResult result = notesImportService.importNotes(new ByteArrayInputStream(body));
+            double bulk = NOTES / ((System.nanoTime() - start) / 1e9);
+
+            assertEquals(NOTES, result.getImported());
+            assertTrue(result.getFailures().isEmpty());
+            assertEquals(2L * (NOTES + NOTES / 10), notesRepository.count());
+
+            System.out.printf("%nNote inserts, %,d notes%n", NOTES);
+            System.out.printf("  addNote one by one: %,12.0f rows/sec%n", oneByOne);
+            System.out.printf("  bulk import       : %,12.0f rows/sec (x%.1f)%n%n", bulk, bulk / oneByOne);
+        }
+    }
+
+    private static void addOneByOne(NotesService notesService, int count) {
+        for (int i = 0; i < count; i++) {
+            notesService.addNote(Note.builder().subject("Subject " + i).description("Some words about note " + i).build());
+        }
+    }
+
+    private static ByteArrayInputStream ndjson(int count) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            body.append("{\"subject\":\"Subject ").append(i)
+                    .append("\",\"description\":\"Some words about note ").append(i).append("\"}\n");
+        }
+        return new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
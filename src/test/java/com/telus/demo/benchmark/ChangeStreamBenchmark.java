@@ -0,0 +1,152 @@
+package com.telus.demo.benchmark;
+
+import com.telus.demo.NoteApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Subscribes {@value #SUBSCRIBERS} clients to {@code GET /api/notes/stream} of a server running in its own JVM,
+ * creates notes one after the other, and measures how long each change takes to reach every subscriber.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class ChangeStreamBenchmark {
+
+    private static final int SUBSCRIBERS = 10_000;
+    private static final int CHANGES = 100;
+    private static final Duration CHANGE_INTERVAL = Duration.ofMillis(50);
+    private static final String SUBJECT = "\"subject\":\"Stream ";
+
+    @Test
+    void fanOutToTenThousandSubscribers() throws Exception {
+        int port = HttpLoad.freePort();
+        Process server = HttpLoad.startServer(NoteApplication.class, port, List.of(
+                "--spring.datasource.url=jdbc:h2:mem:stream-benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false"), "stream");
+        List<Socket> sockets = new ArrayList<>(SUBSCRIBERS);
+        ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            String baseUrl = "http://localhost:" + port + "/api/notes";
+            HttpLoad.awaitStarted(client, baseUrl);
+
+            // When each change was sent, and when each subscriber received it
+            long[] sent = new long[CHANGES];
+            AtomicLongArray received = new AtomicLongArray(SUBSCRIBERS * CHANGES);
+            AtomicInteger resets = new AtomicInteger();
+
+            long connectStart = System.nanoTime();
+            for (int s = 0; s < SUBSCRIBERS; s++) {
+                Socket socket = new Socket("localhost", port);
+                sockets.add(socket);
+                int subscriber = s;
+                readers.execute(() -> read(socket, subscriber, received, resets));
+            }
+            awaitSubscribers(client, baseUrl);
+            double connectSeconds = (System.nanoTime() - connectStart) / 1e9;
+
+            for (int i = 0; i < CHANGES; i++) {
+                sent[i] = System.nanoTime();
+                createNote(client, baseUrl, i);
+                Thread.sleep(CHANGE_INTERVAL);
+            }
+            Thread.sleep(Duration.ofSeconds(5));
+
+            List<Long> latencies = new ArrayList<>(SUBSCRIBERS * CHANGES);
+            int missed = 0;
+            for (int i = 0; i < received.length(); i++) {
+                long at = received.get(i);
+                if (at == 0) {
+                    missed++;
+                } else {
+                    latencies.add(at - sent[i % CHANGES]);
+                }
+            }
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+
+            System.out.printf("%n%,d subscribers connected in %.1f s, %d notes created %d ms apart%n",
+                    SUBSCRIBERS, connectSeconds, CHANGES, CHANGE_INTERVAL.toMillis());
+            System.out.printf("  POST to event received: p50 %7.1f ms   p99 %7.1f ms   max %7.1f ms%n",
+                    sorted[sorted.length / 2] / 1e6, sorted[sorted.length * 99 / 100] / 1e6, sorted[sorted.length - 1] / 1e6);
+            System.out.printf("  events missed %d   resets %d%n%n", missed, resets.get());
+            assertEquals(0, missed);
+        } finally {
+            // Ends the reads
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            readers.close();
+            server.destroy();
+            server.waitFor(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Subscribes over a plain socket, and records when each created note arrived.
+     * A blocking read per virtual thread keeps the client far cheaper than the server it measures.
+     */
+    private static void read(Socket socket, int subscriber, AtomicLongArray received, AtomicInteger resets) {
+        try {
+            socket.getOutputStream().write(("GET /api/notes/stream HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Accept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            BufferedReader lines = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            // Chunk sizes come on lines of their own, and each part of an event in a chunk of its own: only the
+            // created notes and the reset events are looked for
+            for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+                if (line.startsWith("event:reset")) {
+                    resets.incrementAndGet();
+                } else if (line.contains(SUBJECT)) {
+                    int start = line.indexOf(SUBJECT) + SUBJECT.length();
+                    int change = Integer.parseInt(line.substring(start, line.indexOf('"', start)));
+                    received.set(subscriber * CHANGES + change, System.nanoTime());
+                }
+            }
+        } catch (IOException e) {
+            // The socket was closed at the end of the run
+        }
+    }
+
+    /**
+     * Waits until the server counts every subscriber, as reported by the subscribers gauge.
+     */
+    private static void awaitSubscribers(HttpClient client, String baseUrl) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl.replace("/api/notes", "/actuator/metrics/notes.stream.subscribers"))).build();
+        for (int attempt = 0; attempt < 1200; attempt++) {
+            String body = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+            if (body.contains("\"value\":" + SUBSCRIBERS + ".0")) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        throw new IllegalStateException("Not every subscriber connected");
+    }
+
+    private static void createNote(HttpClient client, String baseUrl, int i) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"subject\":\"Stream " + i + "\",\"description\":\"Pushed\"}"))
+                .build();
+        assertEquals(201, client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+    }
+}
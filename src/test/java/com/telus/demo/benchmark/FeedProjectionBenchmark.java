@@ -0,0 +1,122 @@
+package com.telus.demo.benchmark;
+
+import com.telus.demo.NoteApplication;
+import com.telus.demo.controller.NotesController;
+import com.telus.demo.service.NotesImportService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the payload size and latency of reading the whole feed, page by page, as whole notes and as
+ * {@code ?fields=noteId,subject,likes}, with descriptions at the largest size the schema allows.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class FeedProjectionBenchmark {
+
+    private static final int NOTES = 20_000;
+    private static final int PAGE_SIZE = 500;
+    private static final int DESCRIPTION_LENGTH = 255;
+    private static final int ROUNDS = 10;
+
+    @Test
+    void compareWholeNotesAndSparseFieldsets() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(NoteApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:feed-benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.com.telus.demo=WARN");
+             HttpClient client = HttpClient.newHttpClient()) {
+            context.getBean(NotesImportService.class).importNotes(ndjson(NOTES));
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/notes";
+
+            // Warm up both paths, then measure
+            readFeed(client, baseUrl, "");
+            readFeed(client, baseUrl, "&fields=noteId,subject,likes");
+            Feed whole = new Feed();
+            Feed sparse = new Feed();
+            for (int round = 0; round < ROUNDS; round++) {
+                whole.add(readFeed(client, baseUrl, ""));
+                sparse.add(readFeed(client, baseUrl, "&fields=noteId,subject,likes"));
+            }
+
+            System.out.printf("%nFeed of %,d notes with %d-character descriptions, pages of %d%n",
+                    NOTES, DESCRIPTION_LENGTH, PAGE_SIZE);
+            whole.print("whole notes                 ");
+            sparse.print("fields=noteId,subject,likes ");
+            System.out.printf("  payload x%.1f smaller%n%n", (double) whole.bytes / sparse.bytes);
+        }
+    }
+
+    /**
+     * Reads every page of the feed.
+     *
+     * @return The latency of each page, in nanoseconds, and the total size of the bodies as the last element.
+     */
+    private static long[] readFeed(HttpClient client, String baseUrl, String fields) throws Exception {
+        List<Long> latencies = new ArrayList<>();
+        long bytes = 0;
+        String cursor = null;
+        do {
+            String url = baseUrl + "?limit=" + PAGE_SIZE + fields + (cursor != null ? "&cursor=" + cursor : "");
+            long start = System.nanoTime();
+            HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(url)).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            latencies.add(System.nanoTime() - start);
+            assertEquals(200, response.statusCode());
+            bytes += response.body().length;
+            cursor = response.headers().firstValue(NotesController.NEXT_CURSOR_HEADER).orElse(null);
+        } while (cursor != null);
+        assertEquals(NOTES / PAGE_SIZE, latencies.size());
+
+        long[] result = new long[latencies.size() + 1];
+        for (int i = 0; i < latencies.size(); i++) {
+            result[i] = latencies.get(i);
+        }
+        result[latencies.size()] = bytes;
+        return result;
+    }
+
+    private static ByteArrayInputStream ndjson(int count) {
+        String description = "x".repeat(DESCRIPTION_LENGTH);
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            body.append("{\"subject\":\"Subject ").append(i)
+                    .append("\",\"description\":\"").append(description).append("\"}\n");
+        }
+        return new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Page latencies and bytes per feed read, over all measured rounds
+    private static final class Feed {
+
+        private final List<Long> latencies = new ArrayList<>();
+        private long bytes;
+
+        void add(long[] feed) {
+            for (int i = 0; i < feed.length - 1; i++) {
+                latencies.add(feed[i]);
+            }
+            bytes = feed[feed.length - 1];
+        }
+
+        void print(String label) {
+            List<Long> sorted = latencies.stream().sorted().toList();
+            System.out.printf("  %s: %,11d bytes per feed   page p50 %7.2f ms   p99 %7.2f ms%n", label, bytes,
+                    sorted.get(sorted.size() / 2) / 1e6, sorted.get(sorted.size() * 99 / 100) / 1e6);
+        }
+    }
+}
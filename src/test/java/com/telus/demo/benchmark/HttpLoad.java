@@ -0,0 +1,158 @@
+package com.telus.demo.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Load generator shared by the benchmarks comparing server configurations.
+ * Each server runs in its own JVM, so that client and server do not share a file descriptor limit,
+ * and every connection reads notes through the database with {@code GET /api/notes/word-count/{id}}.
+ */
+final class HttpLoad {
+
+    private static final int NOTES = 100;
+
+    private HttpLoad() {
+    }
+
+    /**
+     * Starts a server, creates the notes, warms up with a tenth of the connections, then measures.
+     *
+     * @param mainClass             The main class of the server.
+     * @param serverArgs            The arguments of the server, besides its port.
+     * @param logName               The name of the server log, written to target/load-benchmark-server-NAME.log.
+     * @param connections           The number of concurrent connections.
+     * @param requestsPerConnection The number of requests sent one after the other on each connection.
+     * @return The throughput, p99 latency and number of failed requests of the measured run.
+     */
+    static Result run(Class<?> mainClass, List<String> serverArgs, String logName,
+                      int connections, int requestsPerConnection) throws Exception {
+        int port = freePort();
+        Process server = startServer(mainClass, port, serverArgs, logName);
+        try (HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(30))
+                .build()) {
+            String baseUrl = "http://localhost:" + port + "/api/notes";
+            awaitStarted(client, baseUrl);
+            List<Long> noteIds = new ArrayList<>();
+            for (int i = 0; i < NOTES; i++) {
+                noteIds.add(createNote(client, baseUrl, i));
+            }
+
+            load(client, baseUrl, noteIds, connections / 10, requestsPerConnection);  // Warm up
+            return load(client, baseUrl, noteIds, connections, requestsPerConnection);
+        } finally {
+            server.destroy();
+            server.waitFor();
+        }
+    }
+
+    private static Result load(HttpClient client, String baseUrl, List<Long> noteIds,
+                               int connections, int requestsPerConnection) throws Exception {
+        long[] latencies = new long[connections * requestsPerConnection];
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(connections);
+            for (int c = 0; c < connections; c++) {
+                int connection = c;
+                futures.add(executor.submit(() -> {
+                    for (int r = 0; r < requestsPerConnection; r++) {
+                        // The word count is read from the database on every call, it is not cached
+                        Long noteId = noteIds.get((connection + r) % noteIds.size());
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/word-count/" + noteId))
+                                .timeout(Duration.ofMinutes(2))
+                                .build();
+                        long requestStart = System.nanoTime();
+                        try {
+                            if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[connection * requestsPerConnection + r] = System.nanoTime() - requestStart;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(latencies);
+        return new Result(latencies.length / seconds, latencies[latencies.length * 99 / 100] / 1e6, errors.get());
+    }
+
+    static Process startServer(Class<?> mainClass, int port, List<String> serverArgs, String logName) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path"), mainClass.getName(),
+                "--server.port=" + port,
+                "--logging.level.root=WARN"));
+        command.addAll(serverArgs);
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(new File("target/load-benchmark-server-" + logName + ".log"))
+                .start();
+    }
+
+    static void awaitStarted(HttpClient client, String baseUrl) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/count")).build();
+        for (int attempt = 0; attempt < 600; attempt++) {
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(100);
+        }
+        throw new IllegalStateException("Server did not start");
+    }
+
+    private static Long createNote(HttpClient client, String baseUrl, int i) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"subject\":\"Load " + i + "\",\"description\":\"Words to count in note " + i + "\"}"))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(201, response.statusCode());
+        String body = response.body();
+        int start = body.indexOf("\"noteId\":") + "\"noteId\":".length();
+        return Long.parseLong(body.substring(start, body.indexOf(',', start)));
+    }
+
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    record Result(double throughput, double p99Millis, int errors) {
+
+        void print(String label) {
+            System.out.printf("  %-16s: %,10.0f req/sec   p99 %8.1f ms   errors %d%n", label, throughput, p99Millis, errors);
+        }
+    }
+}
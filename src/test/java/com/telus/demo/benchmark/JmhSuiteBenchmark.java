@@ -0,0 +1,48 @@
+package com.telus.demo.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs the JMH benchmarks of the {@code jmh} package and writes the results as JSON, to compare commits.
+ * Run with {@code mvn test -Pbenchmark -Dtest=JmhSuiteBenchmark}. System properties narrow the run:
+ * {@code -Djmh.include=<regex>} selects benchmarks, {@code -Djmh.notes=1000,100000} the dataset sizes,
+ * {@code -Djmh.prof=gc} adds profilers, and {@code -Djmh.result=<file>} moves the JSON output from
+ * {@code target/jmh-result.json}.
+ */
+@Tag("benchmark")
+public class JmhSuiteBenchmark {
+
+    @Test
+    void runJmhBenchmarks() throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(System.getProperty("jmh.include", JmhSuiteBenchmark.class.getPackageName() + "\\.jmh\\."))
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty("jmh.result", "target/jmh-result.json"))
+                .shouldFailOnError(true);
+        String notes = System.getProperty("jmh.notes");
+        if (notes != null) {
+            options.param("notes", notes.split(","));
+        }
+        String profilers = System.getProperty("jmh.prof");
+        if (profilers != null) {
+            for (String profiler : profilers.split(",")) {
+                options.addProfiler(profiler);
+            }
+        }
+
+        Collection<RunResult> results = new Runner(options.build()).run();
+
+        assertFalse(results.isEmpty());
+    }
+}
@@ -0,0 +1,158 @@
+package com.telus.demo.benchmark;
+
+import com.telus.demo.NoteApplication;
+import com.telus.demo.modal.Note;
+import com.telus.demo.service.NotesService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Measures the latency and the memory allocated per operation with descriptions of 1, 4 and 100 KB, on the paths
+ * that skip the description (likes of a cached note, summary pages) and on those that read it, with the descriptions
+ * stored as they are and compressed. The smaller sizes show what compressing a description costs its reads, against
+ * what it saves, near notes.description.compression.min-length.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class LargeDescriptionBenchmark {
+
+    private static final int[] DESCRIPTION_KB = {1, 4, 100};
+    private static final int NOTES = 200;
+    private static final int OPERATIONS = 1_000;
+    private static final int PAGE_SIZE = 20;
+    private static final int VOCABULARY = 5_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void compareHotAndDescriptionPaths() {
+        for (int descriptionKb : DESCRIPTION_KB) {
+            for (String codec : List.of("none", "deflate")) {
+                run(descriptionKb, codec);
+            }
+        }
+    }
+
+    private static void run(int descriptionKb, String codec) {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(NoteApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:description-benchmark-" + descriptionKb + "-" + codec + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.com.telus.demo=WARN",
+                        "--notes.description.compression.codec=" + codec,
+                        // Every size is compressed, to measure what compression costs at each
+                        "--notes.description.compression.min-length=0")) {
+            NotesService notesService = context.getBean(NotesService.class);
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            Random random = new Random(42);
+            String[] vocabulary = vocabulary(random);
+            long[] ids = new long[NOTES];
+            for (int i = 0; i < NOTES; i++) {
+                ids[i] = notesService.addNote(Note.builder().subject("Large " + i).description(text(vocabulary, random, descriptionKb)).build()).getNoteId();
+            }
+
+            // Each like leaves the note out of the cache, so a like is only served from a cached copy after a read
+            Map<String, Supplier<Runnable>> operations = new LinkedHashMap<>();
+            operations.put("like, note cached", () -> {
+                long id = randomId(ids);
+                notesService.getNoteById(id);
+                return () -> notesService.likeNote(id);
+            });
+            operations.put("like, note not cached", () -> {
+                long id = randomId(ids);
+                return () -> notesService.likeNote(id);
+            });
+            operations.put("page of " + PAGE_SIZE + ", summaries", () -> () -> notesService.getAllNoteSummaries(null, PAGE_SIZE));
+            operations.put("page of " + PAGE_SIZE + ", notes", () -> () -> notesService.getAllNotes(null, PAGE_SIZE));
+            operations.put("description streamed", () -> {
+                long id = randomId(ids);
+                return () -> writeDescription(notesService, id);
+            });
+
+            // Every path is warmed up before any is measured
+            operations.values().forEach(LargeDescriptionBenchmark::measure);
+            double ratio = meterRegistry.get("notes.description.bytes").tag("form", "raw").counter().count()
+                    / meterRegistry.get("notes.description.bytes").tag("form", "stored").counter().count();
+            System.out.printf("%n%d notes with %d KB descriptions, %,d operations each, codec %s (compression ratio %.1f)%n",
+                    NOTES, descriptionKb, OPERATIONS, codec, ratio);
+            operations.forEach((name, setup) -> {
+                Result result = measure(setup);
+                System.out.printf("  %-24s p50 %8.1f us  p99 %8.1f us  %,10.1f KB allocated per operation%n", name,
+                        result.p50Nanos() / 1e3, result.p99Nanos() / 1e3, result.allocatedBytes() / 1024.0);
+            });
+            System.out.println();
+        }
+    }
+
+    /**
+     * Times the operations made by the setup, which runs untimed before each of them.
+     */
+    private static Result measure(Supplier<Runnable> setup) {
+        long[] latencies = new long[OPERATIONS];
+        long allocated = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            Runnable operation = setup.get();
+            long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            operation.run();
+            latencies[i] = System.nanoTime() - start;
+            allocated += THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        }
+        Arrays.sort(latencies);
+        return new Result(latencies[OPERATIONS / 2], latencies[OPERATIONS * 99 / 100], allocated / OPERATIONS);
+    }
+
+    private static void writeDescription(NotesService notesService, long id) {
+        try {
+            notesService.writeDescription(id, Writer.nullWriter());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Words of 2 to 9 letters, used with their rank-frequency (Zipf) distribution so the text compresses like prose
+    private static String[] vocabulary(Random random) {
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            char[] letters = new char[2 + random.nextInt(8)];
+            for (int j = 0; j < letters.length; j++) {
+                letters[j] = (char) ('a' + random.nextInt(26));
+            }
+            words[i] = new String(letters);
+        }
+        return words;
+    }
+
+    private static String text(String[] vocabulary, Random random, int kb) {
+        StringBuilder text = new StringBuilder(kb * 1024);
+        while (text.length() < kb * 1024) {
+            int rank = (int) Math.floor(Math.pow(vocabulary.length, random.nextDouble()));
+            text.append(vocabulary[rank - 1]).append(random.nextInt(12) == 0 ? ". " : " ");
+        }
+        return text.toString();
+    }
+
+    private static long randomId(long[] ids) {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    private record Result(long p50Nanos, long p99Nanos, long allocatedBytes) {
+    }
+}
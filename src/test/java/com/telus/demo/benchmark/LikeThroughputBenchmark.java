@@ -0,0 +1,78 @@
+package com.telus.demo.benchmark;
+
+import com.telus.demo.NoteApplication;
+import com.telus.demo.modal.Note;
+import com.telus.demo.service.LikeAggregator;
+import com.telus.demo.service.NotesService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares likes/sec on one viral note between the synchronous path and the write-behind aggregator.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class LikeThroughputBenchmark {
+
+    private static final int THREADS = 64;
+    private static final int LIKES = 50_000;
+
+    @Test
+    void compareSynchronousAndWriteBehindLikes() throws Exception {
+        double synchronous = likesPerSecond(false);
+        double writeBehind = likesPerSecond(true);
+
+        System.out.printf("%nLike throughput, %d likes on %d threads%n", LIKES, THREADS);
+        System.out.printf("  synchronous : %,12.0f likes/sec%n", synchronous);
+        System.out.printf("  write-behind: %,12.0f likes/sec (x%.1f)%n%n", writeBehind, writeBehind / synchronous);
+    }
+
+    private double likesPerSecond(boolean writeBehind) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(NoteApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:like-benchmark-" + writeBehind + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.com.telus.demo=WARN",
+                        "--notes.likes.write-behind.enabled=" + writeBehind)) {
+            NotesService notesService = context.getBean(NotesService.class);
+            Long noteId = notesService.addNote(Note.builder().subject("Viral").description("Everybody likes it").build()).getNoteId();
+
+            // Warm up, then measure
+            runInParallel(LIKES / 10, () -> notesService.likeNote(noteId));
+            long start = System.nanoTime();
+            runInParallel(LIKES, () -> notesService.likeNote(noteId));
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            context.getBean(LikeAggregator.class).flush();
+            assertEquals(LIKES + LIKES / 10, notesService.getNoteById(noteId).getLikes());
+            return LIKES / seconds;
+        }
+    }
+
+    private static void runInParallel(int count, Callable<Note> task) throws Exception {
+        List<Callable<Note>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(task);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Note> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
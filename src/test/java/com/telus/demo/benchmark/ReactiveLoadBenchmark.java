@@ -0,0 +1,39 @@
+package com.telus.demo.benchmark;
+
+import com.telus.demo.NoteApplication;
+import com.telus.demo.reactive.ReactiveNoteApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Compares throughput and p99 latency of the servlet/JPA server, on platform and virtual threads,
+ * with the WebFlux/R2DBC server, under 10k concurrent connections each reading notes through the database.
+ * Both stacks get the same number of database connections.
+ * Run with {@code mvn test -Pbenchmark}; {@code -Dload.connections=N} changes the number of connections.
+ */
+@Tag("benchmark")
+public class ReactiveLoadBenchmark {
+
+    private static final int CONNECTIONS = Integer.getInteger("load.connections", 10_000);
+    private static final int REQUESTS_PER_CONNECTION = 5;
+
+    @Test
+    void compareServletAndReactiveStacks() throws Exception {
+        HttpLoad.Result platform = HttpLoad.run(NoteApplication.class,
+                VirtualThreadLoadBenchmark.servletArgs(CONNECTIONS, false), "platform", CONNECTIONS, REQUESTS_PER_CONNECTION);
+        HttpLoad.Result virtual = HttpLoad.run(NoteApplication.class,
+                VirtualThreadLoadBenchmark.servletArgs(CONNECTIONS, true), "virtual", CONNECTIONS, REQUESTS_PER_CONNECTION);
+        HttpLoad.Result reactive = HttpLoad.run(ReactiveNoteApplication.class,
+                List.of("--spring.r2dbc.url=r2dbc:h2:mem:///load-benchmark;DB_CLOSE_DELAY=-1",
+                        "--spring.flyway.url=jdbc:h2:mem:load-benchmark;DB_CLOSE_DELAY=-1"),
+                "reactive", CONNECTIONS, REQUESTS_PER_CONNECTION);
+
+        System.out.printf("%nLoad, %,d concurrent connections x %d requests%n", CONNECTIONS, REQUESTS_PER_CONNECTION);
+        platform.print("servlet/JPA");
+        virtual.print("servlet/JPA, VT");
+        reactive.print("WebFlux/R2DBC");
+        System.out.println();
+    }
+}
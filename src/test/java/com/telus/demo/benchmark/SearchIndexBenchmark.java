@@ -0,0 +1,64 @@
+package com.telus.demo.benchmark;
+
+import com.telus.demo.dao.NoteShards;
+import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.modal.Note;
+import com.telus.demo.service.NoteSearchIndex;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures full-text query latency of the in-memory index over a million synthetic notes.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class SearchIndexBenchmark {
+
+    private static final int NOTES = 1_000_000;
+    private static final int QUERIES = 2_000;
+    // Zipf-like vocabulary: a few very common words and a long tail of rare ones
+    private static final int VOCABULARY = 50_000;
+
+    @Test
+    void queryLatencyAtOneMillionNotes() {
+        Random random = new Random(42);
+        NoteSearchIndex index = new NoteSearchIndex(Mockito.mock(NotesRepository.class), new NoteShards(List.of()));
+        long start = System.nanoTime();
+        for (long id = 1; id <= NOTES; id++) {
+            index.index(Note.builder()
+                    .noteId(id)
+                    .subject(words(random, 3))
+                    .description(words(random, 30))
+                    .build());
+        }
+        System.out.printf("%nIndexed %,d notes in %.1f s%n", NOTES, (System.nanoTime() - start) / 1e9);
+
+        for (int rareness : new int[]{100, 5_000, 40_000}) {
+            long[] latencies = new long[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                String query = "w" + (rareness + random.nextInt(1_000)) + " w" + (rareness + random.nextInt(1_000));
+                long queryStart = System.nanoTime();
+                index.search(query, 10);
+                latencies[i] = System.nanoTime() - queryStart;
+            }
+            Arrays.sort(latencies);
+            System.out.printf("  terms ranked ~%-6d p50 %8.3f ms   p99 %8.3f ms%n", rareness,
+                    latencies[QUERIES / 2] / 1e6, latencies[QUERIES * 99 / 100] / 1e6);
+        }
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            // Rank r is drawn with probability roughly proportional to 1/r
+            int rank = (int) Math.pow(VOCABULARY, random.nextDouble());
+            text.append('w').append(rank).append(' ');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package com.telus.demo.benchmark;
+
+import com.telus.demo.NoteApplication;
+import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.modal.Note;
+import com.telus.demo.service.NotesService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares the point read and like latencies of the database and of the in-memory note store, with the same
+ * services on top. Likes are timed on one thread, then on {@value #THREADS} threads, where the in-memory store
+ * makes one log flush durable for several likes at once.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class StorageEngineBenchmark {
+
+    private static final int NOTES = 10_000;
+    private static final int OPERATIONS = 20_000;
+    private static final int THREADS = 16;
+
+    @Test
+    void compareJpaAndMemoryEngines() throws Exception {
+        System.out.printf("%nStorage engines, %,d notes, %,d operations each%n", NOTES, OPERATIONS);
+        for (String engine : List.of("jpa", "memory")) {
+            run(engine);
+        }
+        System.out.println();
+    }
+
+    private static void run(String engine) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(NoteApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:engine-benchmark-" + engine + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.com.telus.demo=WARN",
+                        "--notes.storage.engine=" + engine,
+                        "--notes.storage.memory.directory=" + Files.createTempDirectory("engine-benchmark"))) {
+            NotesService notesService = context.getBean(NotesService.class);
+            NotesRepository notesRepository = context.getBean(NotesRepository.class);
+            long[] ids = new long[NOTES];
+            for (int i = 0; i < NOTES; i++) {
+                ids[i] = notesService.addNote(Note.builder().subject("Note " + i).description("Stored by " + engine).build()).getNoteId();
+            }
+
+            // Reads go to the repository, as the service would serve most of them from its cache
+            time(OPERATIONS, () -> notesRepository.findById(randomId(ids)));
+            long[] reads = time(OPERATIONS, () -> notesRepository.findById(randomId(ids)));
+            time(OPERATIONS / 10, () -> notesService.likeNote(randomId(ids)));
+            long[] likes = time(OPERATIONS, () -> notesService.likeNote(randomId(ids)));
+
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            long start = System.nanoTime();
+            try {
+                List<Future<long[]>> futures = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    futures.add(executor.submit(() -> time(OPERATIONS / THREADS, () -> notesService.likeNote(randomId(ids)))));
+                }
+                for (Future<long[]> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+            double likesPerSecond = OPERATIONS / ((System.nanoTime() - start) / 1e9);
+
+            System.out.printf("  %-6s point read p50 %7.1f us  p99 %7.1f us | like p50 %7.1f us  p99 %7.1f us | %,9.0f likes/sec on %d threads%n",
+                    engine, percentile(reads, 50), percentile(reads, 99), percentile(likes, 50), percentile(likes, 99),
+                    likesPerSecond, THREADS);
+        }
+    }
+
+    private static long randomId(long[] ids) {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    // Latency of each run of the operation, in nanoseconds and sorted
+    private static long[] time(int count, Runnable operation) {
+        long[] latencies = new long[count];
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            operation.run();
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        return sorted[sorted.length * percentile / 100] / 1e3;
+    }
+}
@@ -0,0 +1,48 @@
+package com.telus.demo.benchmark;
+
+import com.telus.demo.NoteApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+/**
+ * Compares throughput and p99 latency of the server on platform threads and on virtual threads,
+ * under 10k concurrent connections each reading notes through the database.
+ * The server runs in its own JVM, so that client and server do not share a file descriptor limit.
+ * Run with {@code mvn test -Pbenchmark}; {@code -Dload.connections=N} changes the number of connections.
+ */
+@Tag("benchmark")
+public class VirtualThreadLoadBenchmark {
+
+    private static final int CONNECTIONS = Integer.getInteger("load.connections", 10_000);
+    private static final int REQUESTS_PER_CONNECTION = 5;
+
+    @Test
+    void comparePlatformAndVirtualThreads() throws Exception {
+        HttpLoad.Result platform = run(false);
+        HttpLoad.Result virtual = run(true);
+
+        System.out.printf("%nLoad, %,d concurrent connections x %d requests%n", CONNECTIONS, REQUESTS_PER_CONNECTION);
+        platform.print("platform threads");
+        virtual.print("virtual threads");
+        System.out.println();
+    }
+
+    private HttpLoad.Result run(boolean virtualThreads) throws Exception {
+        return HttpLoad.run(NoteApplication.class, servletArgs(CONNECTIONS, virtualThreads),
+                virtualThreads ? "virtual" : "platform", CONNECTIONS, REQUESTS_PER_CONNECTION);
+    }
+
+    /**
+     * @return The arguments of the servlet server, on an in-memory database.
+     */
+    static List<String> servletArgs(int connections, boolean virtualThreads) {
+        return List.of(
+                "--server.tomcat.max-connections=" + (connections + 1_000),
+                "--server.tomcat.accept-count=" + connections,
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--spring.datasource.url=jdbc:h2:mem:load-benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false");
+    }
+}
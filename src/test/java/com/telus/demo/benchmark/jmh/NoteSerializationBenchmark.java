@@ -0,0 +1,62 @@
+package com.telus.demo.benchmark.jmh;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telus.demo.modal.Note;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the note lists returned by the paged endpoints.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoteSerializationBenchmark {
+
+    @Param({"10", "50", "500"})
+    private int pageSize;
+
+    // Configured like the mapper Spring MVC writes responses with
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private List<Note> page;
+
+    @Setup
+    public void setUp() {
+        page = new ArrayList<>(pageSize);
+        for (long id = 1; id <= pageSize; id++) {
+            page.add(Note.builder()
+                    .noteId(id)
+                    .subject("Subject " + id)
+                    .description("Description of note " + id + " with a few more words")
+                    .likes((int) (id * 7919 % 10007))
+                    .wordCount(9)
+                    .timestampCreated(LocalDateTime.now())
+                    .timestampUpdated(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeNotes() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
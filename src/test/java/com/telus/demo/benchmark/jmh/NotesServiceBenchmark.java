@@ -0,0 +1,98 @@
+package com.telus.demo.benchmark.jmh;
+
+import com.telus.demo.NoteApplication;
+import com.telus.demo.dao.NoteIdSequence;
+import com.telus.demo.modal.CursorPage;
+import com.telus.demo.modal.Note;
+import com.telus.demo.service.NoteLengthStats;
+import com.telus.demo.service.NotesService;
+import com.telus.demo.service.TopLikedLeaderboard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service hot paths against an in-memory H2 database seeded with 1k, 100k and 1M notes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class NotesServiceBenchmark {
+
+    // Every description has the same 9 words, with the note number as one of them
+    private static final String SEED_SQL = "insert into note (note_id, subject, description, likes, word_count, version, "
+            + "timestamp_created, timestamp_updated) "
+            + "select x, 'Subject ' || x, 'Description of note ' || x || ' with a few more words', "
+            + "mod(x * 7919, 10007), 9, 0, current_timestamp, current_timestamp from system_range(1, ?)";
+
+    @Param({"1000", "100000", "1000000"})
+    private int notes;
+
+    private ConfigurableApplicationContext context;
+    private NotesService notesService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(NoteApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:jmh-" + notes + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN");
+        context.getBean(JdbcTemplate.class).update(SEED_SQL, notes);
+        context.getBean(NoteIdSequence.class).align();
+        context.getBean(NoteLengthStats.class).recalculate();
+        context.getBean(TopLikedLeaderboard.class).rebuild();
+        notesService = context.getBean(NotesService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Integer getWordCount() {
+        return notesService.getWordCount(randomNoteId());
+    }
+
+    @Benchmark
+    public Double getAverageNoteLength() {
+        return notesService.getAverageNoteLength();
+    }
+
+    @Benchmark
+    public List<Note> getTopLikedNotes() {
+        return notesService.getTopLikedNotes(10);
+    }
+
+    @Benchmark
+    public CursorPage<Note> searchNotesBySubject() {
+        return notesService.searchNotesBySubject("Subject " + randomNoteId(), null, 50);
+    }
+
+    private long randomNoteId() {
+        return ThreadLocalRandom.current().nextLong(1, notes + 1);
+    }
+}
@@ -0,0 +1,68 @@
+package com.telus.demo.benchmark.jmh;
+
+import com.telus.demo.modal.TextStats;
+import com.telus.demo.service.TextAnalyzer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokenization behind the word count of a note, run on every write.
+ * Run with {@code -Djmh.prof=gc} to compare the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WordCountBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int words;
+
+    private String description;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            // Words of 1 to 10 letters, mostly separated by one space and sometimes by a line break
+            for (int letters = 1 + random.nextInt(10); letters > 0; letters--) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+            text.append(random.nextInt(10) == 0 ? ".\n" : " ");
+        }
+        description = text.toString();
+    }
+
+    /**
+     * The regex split the word count used to be computed with, as a baseline.
+     */
+    @Benchmark
+    public int regexSplit() {
+        return description.split("\\s+").length;
+    }
+
+    @Benchmark
+    public int countWords() {
+        return TextAnalyzer.countWords(description);
+    }
+
+    @Benchmark
+    public TextStats analyze() {
+        return TextAnalyzer.analyze(description);
+    }
+}
@@ -0,0 +1,150 @@
+package com.telus.demo.controller;
+
+import com.telus.demo.exception.GlobalExceptionHandler;
+import com.telus.demo.modal.Note;
+import com.telus.demo.service.NoteChangeFeed;
+import com.telus.demo.service.NotesExportService;
+import com.telus.demo.service.NotesImportService;
+import com.telus.demo.service.NotesService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class AdmissionInterceptorTest {
+
+    private final NotesService notesService = mock(NotesService.class);
+    private final NotesExportService notesExportService = mock(NotesExportService.class);
+    private final NoteChangeFeed noteChangeFeed = mock(NoteChangeFeed.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanoTime = new AtomicLong();
+    private AdmissionInterceptor admission;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setup() {
+        // Two likes or writes per second per client behind one proxy, a single like at a time, and no queue
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(2, 2, "X-Forwarded-For", 1, nanoTime::get);
+        admission = new AdmissionInterceptor(true, 10, Duration.ofSeconds(1), 1, Duration.ofSeconds(1),
+                10, Duration.ofSeconds(1), 0, Duration.ZERO, rateLimiter, meterRegistry);
+        mockMvc = MockMvcBuilders.standaloneSetup(new NotesController(notesService, notesExportService,
+                        mock(NotesImportService.class), noteChangeFeed))
+                .addMappedInterceptors(new String[]{"/api/notes/**"}, admission)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        when(notesService.getNoteById(1L)).thenReturn(Note.builder().noteId(1L).subject("Read").build());
+        when(notesService.likeNote(1L)).thenReturn(Note.builder().noteId(1L).likes(1).build());
+        when(notesService.modifyNote(eq(1L), any(Note.class), isNull())).thenReturn(Note.builder().noteId(1L).subject("Write").build());
+    }
+
+    @Test
+    void testClientOverItsRateIsToldWhenToRetry() throws Exception {
+        mockMvc.perform(post("/api/notes/1/like").header("X-Forwarded-For", "10.0.0.1")).andExpect(status().isOk());
+        // An address put before the one the proxy appended does not make another client
+        mockMvc.perform(post("/api/notes/1/like").header("X-Forwarded-For", "10.0.0.254, 10.0.0.1")).andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/notes/1/like").header("X-Forwarded-For", "10.0.0.1"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.error").value("Too Many Requests"));
+        // Other clients and reads are not limited
+        mockMvc.perform(post("/api/notes/1/like").header("X-Forwarded-For", "10.0.0.2")).andExpect(status().isOk());
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(get("/api/notes/1").header("X-Forwarded-For", "10.0.0.1")).andExpect(status().isOk());
+        }
+
+        // Half a second gives the client one more like
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        mockMvc.perform(post("/api/notes/1/like").header("X-Forwarded-For", "10.0.0.1")).andExpect(status().isOk());
+        assertEquals(1, meterRegistry.get("notes.admission.rejected").tag("class", "like").tag("reason", "rate-limit")
+                .counter().count());
+    }
+
+    @Test
+    void testLikesOverTheirLimitAreShedWhileReadsGoOn() throws Exception {
+        CountDownLatch liking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(notesService.likeNote(2L)).thenAnswer(invocation -> {
+            liking.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return Note.builder().noteId(2L).likes(1).build();
+        });
+        CompletableFuture<Integer> slowLike = CompletableFuture.supplyAsync(() -> {
+            try {
+                return mockMvc.perform(post("/api/notes/2/like").header("X-Forwarded-For", "10.0.0.1"))
+                        .andReturn().getResponse().getStatus();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(liking.await(10, TimeUnit.SECONDS));
+
+        mockMvc.perform(post("/api/notes/1/like").header("X-Forwarded-For", "10.0.0.2"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER))
+                .andExpect(jsonPath("$.error").value("Service Overloaded"));
+        mockMvc.perform(get("/api/notes/1")).andExpect(status().isOk());
+        mockMvc.perform(put("/api/notes/1").contentType("application/json").content("{\"subject\":\"Write\"}"))
+                .andExpect(status().isOk());
+        assertEquals(1, admission.getLimiter(AdmissionInterceptor.EndpointClass.LIKE).getInFlight());
+
+        release.countDown();
+        assertEquals(200, slowLike.get(10, TimeUnit.SECONDS));
+        assertEquals(0, admission.getLimiter(AdmissionInterceptor.EndpointClass.LIKE).getInFlight());
+        assertEquals(0, admission.getLimiter(AdmissionInterceptor.EndpointClass.READ).getInFlight());
+        mockMvc.perform(post("/api/notes/1/like").header("X-Forwarded-For", "10.0.0.3")).andExpect(status().isOk());
+        assertEquals(1, meterRegistry.get("notes.admission.rejected").tag("class", "like").tag("reason", "concurrency")
+                .counter().count());
+    }
+
+    @Test
+    void testExportKeepsItsSlotUntilStreamedWhileEventStreamsReleaseIt() throws Exception {
+        CountDownLatch exporting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(notesExportService.exportNotes(any(), eq(false))).thenAnswer(invocation -> {
+            exporting.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return 0L;
+        });
+        when(noteChangeFeed.subscribe(isNull())).thenReturn(new SseEmitter());
+        ConcurrencyLimiter reads = admission.getLimiter(AdmissionInterceptor.EndpointClass.READ);
+
+        MvcResult export = mockMvc.perform(get("/api/notes/export")).andExpect(request().asyncStarted()).andReturn();
+        assertTrue(exporting.await(10, TimeUnit.SECONDS));
+        mockMvc.perform(get("/api/notes/stream")).andExpect(request().asyncStarted());
+        assertEquals(1, reads.getInFlight());
+
+        release.countDown();
+        export.getAsyncResult(10_000);
+        mockMvc.perform(asyncDispatch(export)).andExpect(status().isOk());
+        assertEquals(0, reads.getInFlight());
+    }
+
+    @Test
+    void testEndpointClasses() {
+        assertEquals(AdmissionInterceptor.EndpointClass.LIKE, AdmissionInterceptor.EndpointClass.of("POST", "/api/notes/{id}/like-boost"));
+        assertEquals(AdmissionInterceptor.EndpointClass.LIKE, AdmissionInterceptor.EndpointClass.of("DELETE", "/api/notes/{id}/unlike"));
+        assertEquals(AdmissionInterceptor.EndpointClass.READ, AdmissionInterceptor.EndpointClass.of("GET", "/api/notes/liked"));
+        assertEquals(AdmissionInterceptor.EndpointClass.READ, AdmissionInterceptor.EndpointClass.of("GET", "/api/notes/{id}"));
+        assertEquals(AdmissionInterceptor.EndpointClass.WRITE, AdmissionInterceptor.EndpointClass.of("POST", "/api/notes/bulk"));
+        assertEquals(AdmissionInterceptor.EndpointClass.WRITE, AdmissionInterceptor.EndpointClass.of("DELETE", "/api/notes/{id}"));
+    }
+}
@@ -0,0 +1,81 @@
+package com.telus.demo.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void testLimitIsCutBySlowRequestsAndRaisedByFastOnes() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, Duration.ofMillis(100), 0, Duration.ZERO);
+
+        double expected = 10;
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.acquire());
+            limiter.release(SLOW, false);
+            expected *= ConcurrencyLimiter.BACKOFF_RATIO;
+        }
+        assertEquals((int) expected, limiter.getLimit());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.acquire());
+            limiter.release(FAST, true);
+            expected *= ConcurrencyLimiter.BACKOFF_RATIO;
+        }
+        assertEquals((int) expected, limiter.getLimit());
+
+        // Fast requests only raise the limit while it is in use
+        assertTrue(limiter.acquire());
+        limiter.release(FAST, false);
+        int unused = limiter.getLimit();
+        for (int i = 0; i < unused; i++) {
+            assertTrue(limiter.acquire());
+        }
+        for (int i = 0; i < unused; i++) {
+            limiter.release(FAST, false);
+        }
+        assertTrue(limiter.getLimit() > unused);
+        assertTrue(limiter.getLimit() <= 10);
+    }
+
+    @Test
+    void testRequestsOverTheLimitAreQueuedThenRejected() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, Duration.ofSeconds(1), 1, Duration.ofSeconds(5));
+        assertTrue(limiter.acquire());
+
+        CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(limiter::acquire);
+        while (limiter.getQueued() == 0) {
+            Thread.onSpinWait();
+        }
+        // The queue holds a single request, so the next one is rejected without waiting
+        long start = System.nanoTime();
+        assertFalse(limiter.acquire());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        limiter.release(FAST, false);
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    void testQueuedRequestIsRejectedAfterTheTimeout() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, Duration.ofSeconds(1), 10, Duration.ofMillis(50));
+        assertTrue(limiter.acquire());
+
+        long start = System.nanoTime();
+        assertFalse(limiter.acquire());
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(0, limiter.getQueued());
+        limiter.release(FAST, false);
+        assertTrue(limiter.acquire());
+    }
+}
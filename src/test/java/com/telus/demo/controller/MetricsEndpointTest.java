@@ -0,0 +1,56 @@
+package com.telus.demo.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:metrics;DB_CLOSE_DELAY=-1",
+        "logging.level.com.telus.demo.service=WARN"
+})
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testPrometheusScrape() throws Exception {
+        String created = mockMvc.perform(post("/api/notes")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"subject\":\"Measured\",\"description\":\"Counted and timed\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long noteId = JsonPath.parse(created).read("$.noteId", Long.class);
+        mockMvc.perform(post("/api/notes/{id}/like", noteId)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/notes/{id}", noteId)).andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                // Per-endpoint latency histogram, by URI template
+                .andExpect(content().string(containsString("status=\"200\",uri=\"/api/notes/{id}\",le=\"0.001\"}")))
+                // Repository timers
+                .andExpect(content().string(containsString("method=\"incrementLikes\",repository=\"NotesRepository\",state=\"SUCCESS\",le=")))
+                // Hibernate statistics and statements per request
+                .andExpect(content().string(containsString("hibernate_entities_loads_total")))
+                .andExpect(content().string(containsString("notes_request_statements_bucket{application=\"NoteApplication\",method=\"POST\",uri=\"/api/notes\",le=\"2.0\"} 1")))
+                // Pool saturation
+                .andExpect(content().string(containsString("hikaricp_connections_pending")))
+                .andExpect(content().string(containsString("notes_db_permits_waiting")))
+                // Business counters
+                .andExpect(content().string(containsString("notes_added_total{application=\"NoteApplication\"} 1.0")))
+                .andExpect(content().string(containsString("notes_likes_total{application=\"NoteApplication\",direction=\"like\"} 1.0")));
+    }
+}
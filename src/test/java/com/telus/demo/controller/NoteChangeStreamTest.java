@@ -0,0 +1,153 @@
+package com.telus.demo.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telus.demo.modal.Note;
+import com.telus.demo.service.NoteChangeFeed;
+import com.telus.demo.service.NotesService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Subscribes to {@code GET /api/notes/stream} over HTTP and checks the events pushed for changes made through the service.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:change-stream;DB_CLOSE_DELAY=-1",
+        "notes.stream.buffer-size=" + NoteChangeStreamTest.BUFFER_SIZE,
+        "logging.level.com.telus.demo.service=WARN"
+})
+public class NoteChangeStreamTest {
+
+    static final int BUFFER_SIZE = 8;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private NotesService notesService;
+
+    @Autowired
+    private NoteChangeFeed noteChangeFeed;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final List<Stream<String>> subscriptions = new ArrayList<>();
+
+    @AfterEach
+    void disconnect() {
+        subscriptions.forEach(Stream::close);
+        client.close();
+    }
+
+    @Test
+    void testChangesArePushedInOrder() throws Exception {
+        Iterator<String> stream = subscribe(null);
+        Note note = notesService.addNote(Note.builder().subject("Streamed").description("Not in the events").build());
+        notesService.modifyNote(note.getNoteId(), Note.builder().subject("Renamed").build());
+        notesService.likeNote(note.getNoteId());
+        notesService.deleteNote(note.getNoteId());
+
+        List<Event> events = List.of(next(stream), next(stream), next(stream), next(stream));
+        assertEquals(List.of("note-created", "note-modified", "note-likes-changed", "note-deleted"),
+                events.stream().map(Event::name).toList());
+        for (int i = 1; i < events.size(); i++) {
+            assertEquals(events.get(i - 1).id() + 1, events.get(i).id());
+        }
+        assertEquals(note.getNoteId(), events.get(3).data().get("noteId").asLong());
+        assertEquals("Renamed", events.get(1).data().get("note").get("subject").asText());
+        assertEquals(1, events.get(2).data().get("note").get("likes").asInt());
+        assertFalse(events.get(0).data().get("note").has("description"));
+        assertTrue(events.get(3).data().get("note").isNull());
+    }
+
+    @Test
+    void testResumesAfterLastEventId() throws Exception {
+        long lastSeen = noteChangeFeed.getLastSequence();
+        Note first = notesService.addNote(Note.builder().subject("Missed 1").build());
+        Note second = notesService.addNote(Note.builder().subject("Missed 2").build());
+
+        Iterator<String> stream = subscribe(Long.toString(lastSeen));
+        Event resumed = next(stream);
+        assertEquals(lastSeen + 1, resumed.id());
+        assertEquals(first.getNoteId(), resumed.data().get("noteId").asLong());
+        assertEquals(second.getNoteId(), next(stream).data().get("noteId").asLong());
+    }
+
+    @Test
+    void testResetWhenTheMissedChangesAreNoLongerKept() throws Exception {
+        long lastSeen = noteChangeFeed.getLastSequence();
+        for (int i = 0; i <= BUFFER_SIZE; i++) {
+            notesService.addNote(Note.builder().subject("Overflow " + i).build());
+        }
+
+        Iterator<String> stream = subscribe(Long.toString(lastSeen));
+        Event reset = next(stream);
+        assertEquals(NoteChangeFeed.RESET_EVENT, reset.name());
+        assertEquals(noteChangeFeed.getLastSequence(), reset.id());
+
+        // The stream goes on from there
+        Note note = notesService.addNote(Note.builder().subject("After the reset").build());
+        assertEquals(note.getNoteId(), next(stream).data().get("noteId").asLong());
+
+        assertEquals(NoteChangeFeed.RESET_EVENT, next(subscribe("not a sequence number")).name());
+    }
+
+    /**
+     * Subscribes, and waits until the subscription is registered, so that it sees the changes made next.
+     */
+    private Iterator<String> subscribe(String lastEventId) throws Exception {
+        int subscribers = noteChangeFeed.getSubscriberCount();
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/notes/stream"));
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        CompletableFuture<HttpResponse<Stream<String>>> response =
+                client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofLines());
+        for (int attempt = 0; attempt < 100 && noteChangeFeed.getSubscriberCount() == subscribers; attempt++) {
+            Thread.sleep(50);
+        }
+        if (lastEventId == null) {
+            assertTrue(noteChangeFeed.getSubscriberCount() > subscribers, "Not subscribed");
+        }
+        Stream<String> lines = response.get().body();
+        subscriptions.add(lines);
+        return lines.iterator();
+    }
+
+    private Event next(Iterator<String> stream) throws Exception {
+        long id = -1;
+        String name = null;
+        StringBuilder data = new StringBuilder();
+        while (stream.hasNext()) {
+            String line = stream.next();
+            if (line.isEmpty() && name != null) {
+                return new Event(id, name, objectMapper.readTree(data.toString()));
+            } else if (line.startsWith("id:")) {
+                id = Long.parseLong(line.substring(3).trim());
+            } else if (line.startsWith("event:")) {
+                name = line.substring(6).trim();
+            } else if (line.startsWith("data:")) {
+                data.append(line.substring(5));
+            }
+        }
+        throw new AssertionError("The stream ended");
+    }
+
+    private record Event(long id, String name, JsonNode data) {
+    }
+}
@@ -1,27 +1,54 @@
 package com.telus.demo.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telus.demo.exception.GlobalExceptionHandler;
+import com.telus.demo.exception.NoteNotFoundException;
+import com.telus.demo.exception.PreconditionFailedException;
+import com.telus.demo.modal.BatchOperation;
+import com.telus.demo.modal.BatchResult;
+import com.telus.demo.modal.BulkImportResult;
+import com.telus.demo.modal.CursorPage;
 import com.telus.demo.modal.Note;
+import com.telus.demo.modal.NoteSummary;
+import com.telus.demo.modal.TextStats;
+import com.telus.demo.service.NoteChangeFeed;
+import com.telus.demo.service.NotesExportService;
+import com.telus.demo.service.NotesImportService;
 import com.telus.demo.service.NotesService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@WebMvcTest
+// The metrics and admission interceptors need the meter registry and Hibernate, neither of which is in the web slice;
+// admission control is tested on its own in AdmissionInterceptorTest
+@WebMvcTest(excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE,
+        classes = {StatementMetricsInterceptor.class, AdmissionInterceptor.class}))
 public class NotesControllerTest {
 
     @Autowired
@@ -29,11 +56,20 @@ public class NotesControllerTest {
 
     @MockBean
     private NotesService notesService;
+
+    @MockBean
+    private NotesExportService notesExportService;
+
+    @MockBean
+    private NotesImportService notesImportService;
+
+    @MockBean
+    private NoteChangeFeed noteChangeFeed;
     private ObjectMapper objectMapper;
 
     @BeforeEach
     void setup() {
-        mockMvc = MockMvcBuilders.standaloneSetup(new NotesController(notesService)).build();
+        mockMvc = MockMvcBuilders.standaloneSetup(new NotesController(notesService, notesExportService, notesImportService, noteChangeFeed)).build();
         objectMapper = new ObjectMapper();
     }
 
@@ -77,6 +113,90 @@ public class NotesControllerTest {
                 .andExpect(jsonPath("$.description").value("Test Description"));
     }
 
+    @Test
+    void testGetNotesByIds() throws Exception {
+        when(notesService.getNotesByIds(List.of(2L, 1L))).thenReturn(List.of(
+                Note.builder().noteId(2L).subject("Second").build(),
+                Note.builder().noteId(1L).subject("First").build()));
+
+        mockMvc.perform(get("/api/notes/batch").param("ids", "2,1"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$[0].noteId").value(2))
+                .andExpect(jsonPath("$[1].noteId").value(1));
+    }
+
+    @Test
+    void testApplyBatch() throws Exception {
+        when(notesService.applyBatch(anyList())).thenReturn(List.of(
+                new BatchResult(BatchOperation.Type.LIKE, 1L, 200, Note.builder().noteId(1L).likes(3).build(), null),
+                new BatchResult(BatchOperation.Type.DELETE, 2L, 404, null, "Note with ID 2 not found")));
+
+        mockMvc.perform(post("/api/notes/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"op\":\"like\",\"id\":1},{\"op\":\"delete\",\"id\":2}]"))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$[0].op").value("like"))
+                .andExpect(jsonPath("$[0].note.likes").value(3))
+                .andExpect(jsonPath("$[1].status").value(404))
+                .andExpect(jsonPath("$[1].note").doesNotExist());
+        verify(notesService).applyBatch(List.of(
+                new BatchOperation(BatchOperation.Type.LIKE, 1L, null),
+                new BatchOperation(BatchOperation.Type.DELETE, 2L, null)));
+    }
+
+    @Test
+    void testGetNoteById_ETag() throws Exception {
+        Note note = Note.builder().noteId(1L).subject("Test Subject").likes(2).version(7).build();
+        when(notesService.getNoteById(1L)).thenReturn(note);
+
+        mockMvc.perform(get("/api/notes/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7-2\""));
+        verify(notesService, never()).getNoteETag(any());
+    }
+
+    @Test
+    void testGetNoteById_NotModified() throws Exception {
+        when(notesService.getNoteETag(1L)).thenReturn("\"7-2\"");
+
+        mockMvc.perform(get("/api/notes/1").header("If-None-Match", "\"7-2\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"7-2\""))
+                .andExpect(content().string(""));
+        verify(notesService, never()).getNoteById(any());
+    }
+
+    @Test
+    void testGetNoteById_Modified() throws Exception {
+        when(notesService.getNoteETag(1L)).thenReturn("\"8-2\"");
+        when(notesService.getNoteById(1L)).thenReturn(Note.builder().noteId(1L).likes(2).version(8).build());
+
+        mockMvc.perform(get("/api/notes/1").header("If-None-Match", "\"7-2\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"8-2\""))
+                .andExpect(jsonPath("$.version").value(8));
+    }
+
+    @Test
+    void testGetAllNotes_NotModified() throws Exception {
+        List<Note> notes = List.of(Note.builder().noteId(1L).version(1).build());
+        when(notesService.getAllNotes(null, null)).thenReturn(new CursorPage<>(notes, null));
+
+        String eTag = mockMvc.perform(get("/api/notes"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/notes").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+
+        // Any change to a note of the page changes the ETag
+        List<Note> changed = List.of(Note.builder().noteId(1L).version(2).build());
+        when(notesService.getAllNotes(null, null)).thenReturn(new CursorPage<>(changed, null));
+        mockMvc.perform(get("/api/notes").header("If-None-Match", eTag))
+                .andExpect(status().isOk());
+    }
+
     @Test
     void testGetAllNotes() throws Exception {
         // Given
@@ -93,14 +213,90 @@ public class NotesControllerTest {
                 .build());
 
         // When
-        when(notesService.getAllNotes()).thenReturn(notes);
+        when(notesService.getAllNotes(null, null)).thenReturn(new CursorPage<>(notes, null));
 
         // Then
         mockMvc.perform(get("/api/notes"))
                 .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(NotesController.NEXT_CURSOR_HEADER))
                 .andExpect(jsonPath("$.length()").value(2));
     }
 
+    @Test
+    void testGetAllNotes_NextCursor() throws Exception {
+        // Given
+        List<Note> notes = List.of(Note.builder().noteId(1L).subject("Test Subject 1").build());
+
+        // When
+        when(notesService.getAllNotes("abc", 1)).thenReturn(new CursorPage<>(notes, "def"));
+
+        // Then
+        mockMvc.perform(get("/api/notes?cursor=abc&limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(NotesController.NEXT_CURSOR_HEADER, "def"))
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void testGetAllNotes_Fields() throws Exception {
+        List<NoteSummary> summaries = List.of(NoteSummary.builder().noteId(1L).subject("Test Subject 1").likes(3).version(2).build());
+        when(notesService.getAllNoteSummaries("abc", 1)).thenReturn(new CursorPage<>(summaries, "def"));
+
+        // Without the description, only summaries are read, and only the requested fields are returned
+        mockMvc.perform(get("/api/notes?cursor=abc&limit=1&fields=subject,noteId,likes"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(NotesController.NEXT_CURSOR_HEADER, "def"))
+                .andExpect(header().exists("ETag"))
+                .andExpect(content().json("[{\"subject\":\"Test Subject 1\",\"noteId\":1,\"likes\":3}]", true));
+        verify(notesService, never()).getAllNotes(any(), any());
+    }
+
+    @Test
+    void testGetAllNotes_FieldsHaveTheirOwnETag() throws Exception {
+        List<Note> notes = List.of(Note.builder().noteId(1L).subject("Test Subject 1").likes(3).version(2).build());
+        List<NoteSummary> summaries = List.of(NoteSummary.of(notes.get(0)));
+        when(notesService.getAllNotes(null, null)).thenReturn(new CursorPage<>(notes, null));
+        when(notesService.getAllNoteSummaries(null, null)).thenReturn(new CursorPage<>(summaries, null));
+
+        String full = mockMvc.perform(get("/api/notes")).andReturn().getResponse().getHeader("ETag");
+        String selected = mockMvc.perform(get("/api/notes?fields=noteId,subject")).andReturn().getResponse().getHeader("ETag");
+
+        // Each selection is its own representation, so a validator of one never matches another
+        assertNotEquals(full, selected);
+        assertNotEquals(selected, mockMvc.perform(get("/api/notes?fields=subject,noteId")).andReturn().getResponse().getHeader("ETag"));
+        mockMvc.perform(get("/api/notes?fields=noteId,subject").header("If-None-Match", full))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/notes").header("If-None-Match", selected))
+                .andExpect(status().isOk());
+        // Duplicates and blanks do not change the selection
+        mockMvc.perform(get("/api/notes?fields=noteId,, subject,noteId").header("If-None-Match", selected))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void testGetTopLikedNotes_FieldsWithDescription() throws Exception {
+        List<Note> notes = List.of(Note.builder().noteId(1L).subject("Test Subject").description("Test Description").likes(9).build());
+        when(notesService.getTopLikedNotes(3)).thenReturn(notes);
+
+        mockMvc.perform(get("/api/notes/top-liked?k=3&fields=noteId,description"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"noteId\":1,\"description\":\"Test Description\"}]", true));
+        verify(notesService, never()).getTopLikedNoteSummaries(anyInt());
+    }
+
+    @Test
+    void testGetLikedNotes_UnknownField() throws Exception {
+        MockMvc mockMvcWithAdvice = MockMvcBuilders
+                .standaloneSetup(new NotesController(notesService, notesExportService, notesImportService, noteChangeFeed))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        mockMvcWithAdvice.perform(get("/api/notes/liked?fields=noteId,body"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid Fields"));
+        verifyNoInteractions(notesService);
+    }
+
     @Test
     void testUpdateNote() throws Exception {
         // Given
@@ -111,7 +307,7 @@ public class NotesControllerTest {
                 .build();
 
         // When
-        when(notesService.modifyNote(anyObject(), any(Note.class))).thenReturn(note);
+        when(notesService.modifyNote(anyObject(), any(Note.class), isNull())).thenReturn(note);
 
         // Then
         mockMvc.perform(put("/api/notes/1")
@@ -122,6 +318,36 @@ public class NotesControllerTest {
                 .andExpect(jsonPath("$.description").value("Test Description"));
     }
 
+    @Test
+    void testUpdateNote_IfMatch() throws Exception {
+        Note note = Note.builder().noteId(1L).subject("Test Subject").version(4).build();
+        when(notesService.modifyNote(eq(1L), any(Note.class), eq("\"3-0\""))).thenReturn(note);
+
+        mockMvc.perform(put("/api/notes/1")
+                        .header("If-Match", "\"3-0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(note)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4-0\""));
+    }
+
+    @Test
+    void testUpdateNote_IfMatchMismatch() throws Exception {
+        MockMvc mockMvcWithAdvice = MockMvcBuilders
+                .standaloneSetup(new NotesController(notesService, notesExportService, notesImportService, noteChangeFeed))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        when(notesService.modifyNote(eq(1L), any(Note.class), eq("\"3-0\"")))
+                .thenThrow(new PreconditionFailedException("Note with ID 1 was modified, its current version is 4"));
+
+        mockMvcWithAdvice.perform(put("/api/notes/1")
+                        .header("If-Match", "\"3-0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(Note.builder().subject("Stale").build())))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.error").value("Precondition Failed"));
+    }
+
     @Test
     void testDeleteNote() throws Exception {
         // When
@@ -141,7 +367,8 @@ public class NotesControllerTest {
                 .description("Test Description")
                 .build();
 
-        when(notesService.searchNotesBySubject(anyString())).thenReturn(List.of(note));
+        when(notesService.searchNotesBySubject(anyString(), isNull(), isNull()))
+                .thenReturn(new CursorPage<>(List.of(note), null));
 
         mockMvc.perform(get("/api/notes/search?subject=Test")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -150,6 +377,128 @@ public class NotesControllerTest {
                 .andExpect(jsonPath("$.length()").value(1));
     }
 
+    @Test
+    void testSearchNotesFullText() throws Exception {
+        List<Note> notes = List.of(
+                Note.builder().noteId(2L).subject("Budget").build(),
+                Note.builder().noteId(1L).subject("Party").description("budget pending").build()
+        );
+
+        when(notesService.searchNotesFullText("budget", 5)).thenReturn(notes);
+
+        mockMvc.perform(get("/api/notes/search?mode=fulltext&q=budget&k=5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].noteId").value(2));
+        verify(notesService, never()).searchNotesBySubject(any(), any(), any());
+    }
+
+    @Test
+    void testImportNotes() throws Exception {
+        when(notesImportService.importNotes(any(InputStream.class))).thenReturn(new BulkImportResult(2, new ArrayList<>()));
+
+        mockMvc.perform(post("/api/notes/bulk")
+                        .contentType(NotesController.NDJSON)
+                        .content("{\"subject\":\"A\"}\n{\"subject\":\"B\"}\n"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.failures").isEmpty());
+    }
+
+    @Test
+    void testImportNotes_PartialFailure() throws Exception {
+        BulkImportResult result = new BulkImportResult(1000,
+                List.of(new BulkImportResult.ChunkFailure(1, 1000, 1000, "Value too long")));
+        when(notesImportService.importNotes(any(InputStream.class))).thenReturn(result);
+
+        mockMvc.perform(post("/api/notes/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.imported").value(1000))
+                .andExpect(jsonPath("$.failures[0].chunk").value(1))
+                .andExpect(jsonPath("$.failures[0].error").value("Value too long"));
+    }
+
+    @Test
+    void testExportNotes() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(0);
+            out.write("{\"noteId\":1}\n{\"noteId\":2}\n".getBytes(StandardCharsets.UTF_8));
+            return 2L;
+        }).when(notesExportService).exportNotes(any(OutputStream.class), eq(false));
+
+        MvcResult result = mockMvc.perform(get("/api/notes/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", NotesController.NDJSON))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string("{\"noteId\":1}\n{\"noteId\":2}\n"));
+    }
+
+    @Test
+    void testExportNotes_Gzip() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/notes/export?gzip=true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"));
+        verify(notesExportService, times(1)).exportNotes(any(OutputStream.class), eq(true));
+    }
+
+    @Test
+    void testGetNoteDescription_Streamed() throws Exception {
+        String description = "Très long ".repeat(10_000);
+        when(notesService.getNoteETag(1L)).thenReturn("\"3-0\"");
+        doAnswer(invocation -> {
+            Writer out = invocation.getArgument(1);
+            out.write(description);
+            return null;
+        }).when(notesService).writeDescription(eq(1L), any(Writer.class));
+
+        MvcResult result = mockMvc.perform(get("/api/notes/1/description"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/plain;charset=UTF-8"))
+                .andExpect(header().string("ETag", "\"3-0\""))
+                .andExpect(content().string(description));
+    }
+
+    @Test
+    void testGetNoteDescription_NotModifiedOrNotFound() throws Exception {
+        MockMvc mockMvcWithAdvice = MockMvcBuilders
+                .standaloneSetup(new NotesController(notesService, notesExportService, notesImportService, noteChangeFeed))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        when(notesService.getNoteETag(1L)).thenReturn("\"3-0\"");
+        when(notesService.getNoteETag(2L)).thenThrow(new NoteNotFoundException("Note with ID 2 not found"));
+
+        mockMvcWithAdvice.perform(get("/api/notes/1/description").header("If-None-Match", "\"3-0\""))
+                .andExpect(status().isNotModified());
+        mockMvcWithAdvice.perform(get("/api/notes/2/description"))
+                .andExpect(status().isNotFound());
+        verify(notesService, never()).writeDescription(any(), any());
+    }
+
+    @Test
+    void testGetCacheStats() throws Exception {
+        when(notesService.getCacheStats()).thenReturn(Map.of("enabled", true, "hits", 8L, "misses", 2L));
+
+        mockMvc.perform(get("/api/notes/cache-stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.enabled").value(true))
+                .andExpect(jsonPath("$.hits").value(8))
+                .andExpect(jsonPath("$.misses").value(2));
+    }
+
     @Test
     void testCountTotalNotes() throws Exception {
         List<Note> listNotes = new ArrayList<>();
@@ -180,6 +529,17 @@ public class NotesControllerTest {
                 .andExpect(jsonPath("$").value(11));
     }
 
+    @Test
+    void testGetTextStats() throws Exception {
+        when(notesService.getTextStats(1L)).thenReturn(new TextStats(9, 41, 2, 9, 3));
+
+        mockMvc.perform(get("/api/notes/1/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.words").value(9))
+                .andExpect(jsonPath("$.sentences").value(2))
+                .andExpect(jsonPath("$.readingTimeSeconds").value(3));
+    }
+
     private String asJsonString(Object obj) {
         try {
             return objectMapper.writeValueAsString(obj);
@@ -196,7 +556,7 @@ public class NotesControllerTest {
                 Note.builder().noteId(2L).subject("Meeting Notes").likes(30).build()
         );
 
-        when(notesService.getTopLikedNotes()).thenReturn(mockNotes);
+        when(notesService.getTopLikedNotes(5)).thenReturn(mockNotes);
 
         mockMvc.perform(get("/api/notes/top-liked"))
                 .andExpect(status().isOk())
@@ -204,7 +564,7 @@ public class NotesControllerTest {
                 .andExpect(jsonPath("$[0].likes").value(45))
                 .andExpect(jsonPath("$[1].likes").value(30));
 
-        verify(notesService, times(1)).getTopLikedNotes();
+        verify(notesService, times(1)).getTopLikedNotes(5);
     }
 
     @Test
@@ -286,7 +646,7 @@ public class NotesControllerTest {
                 Note.builder().noteId(1L).subject("Note 1").description("Description 1").likes(10).build(),
                 Note.builder().noteId(1L).subject("Note 2").description("Description 2").likes(20).build()
         );
-        when(notesService.getLikedNotes()).thenReturn(likedNotes);
+        when(notesService.getLikedNotes(null, null)).thenReturn(new CursorPage<>(likedNotes, null));
 
         // Act & Assert
         mockMvc.perform(get("/api/notes/liked"))
@@ -0,0 +1,156 @@
+package com.telus.demo.dao;
+
+import com.telus.demo.modal.Note;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DescriptionCompressionTest {
+
+    private static final String LONG_TEXT = "Notes are mostly long, repetitive text. ".repeat(200);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testLongDescriptionsAreCompressedWithEachCodec() throws IOException {
+        for (DescriptionCompression.Codec codec : new DescriptionCompression.Codec[]{
+                DescriptionCompression.Codec.DEFLATE, DescriptionCompression.Codec.GZIP}) {
+            DescriptionCompression compression = compression(codec);
+
+            byte[] stored = compression.compress(LONG_TEXT);
+
+            assertTrue(DescriptionCompression.hasHeader(stored));
+            assertTrue(stored.length < LONG_TEXT.length() / 10, codec + " stored " + stored.length + " bytes");
+            assertEquals(LONG_TEXT, compression.decompress(stored));
+            assertEquals(LONG_TEXT, read(compression.decompress(new ByteArrayInputStream(stored))));
+        }
+    }
+
+    @Test
+    void testCompressedDescriptionIsTheOutputOfTheCodec() throws IOException {
+        byte[] stored = compression(DescriptionCompression.Codec.DEFLATE).compress(LONG_TEXT);
+
+        assertEquals('D', stored[1]);
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(stored, 2, stored.length - 2))) {
+            assertEquals(LONG_TEXT, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testShortAndIncompressibleDescriptionsAreStoredAsTheyAre() {
+        DescriptionCompression compression = compression(DescriptionCompression.Codec.DEFLATE);
+        // Over the minimum length, but the deflate stream would be longer than the text
+        DescriptionCompression anyLength = new DescriptionCompression(DescriptionCompression.Codec.DEFLATE, 6, 1, meterRegistry);
+
+        assertArrayEquals(utf8("Short"), compression.compress("Short"));
+        assertArrayEquals(utf8("Short"), anyLength.compress("Short"));
+        assertNull(compression.compress(null));
+        assertNull(compression.decompress((byte[]) null));
+    }
+
+    @Test
+    void testDescriptionLongerThanTheLimitIsRejected() {
+        DescriptionCompression compression = compression(DescriptionCompression.Codec.DEFLATE);
+
+        // Would compress to a few KB, which the column alone would take
+        assertThrows(DataIntegrityViolationException.class, () -> compression.compress("x".repeat(Note.MAX_DESCRIPTION_LENGTH + 1)));
+        assertEquals(Note.MAX_DESCRIPTION_LENGTH, compression.decompress(compression.compress("x".repeat(Note.MAX_DESCRIPTION_LENGTH))).length());
+    }
+
+    @Test
+    void testRowsWrittenBeforeCompressionOrWithAnotherCodecAreRead() throws IOException {
+        DescriptionCompression deflate = compression(DescriptionCompression.Codec.DEFLATE);
+        DescriptionCompression none = compression(DescriptionCompression.Codec.NONE);
+
+        assertEquals(LONG_TEXT, deflate.decompress(utf8(LONG_TEXT)));
+        assertEquals(LONG_TEXT, read(deflate.decompress(new ByteArrayInputStream(utf8(LONG_TEXT)))));
+        assertEquals("", read(deflate.decompress(new ByteArrayInputStream(new byte[0]))));
+        assertArrayEquals(utf8(LONG_TEXT), none.compress(LONG_TEXT));
+        assertEquals(LONG_TEXT, none.decompress(compression(DescriptionCompression.Codec.GZIP).compress(LONG_TEXT)));
+        assertFalse(none.isEnabled());
+    }
+
+    @Test
+    void testTextStartingWithTheMarkerIsNotMistakenForAHeader() throws IOException {
+        DescriptionCompression compression = compression(DescriptionCompression.Codec.DEFLATE);
+        String text = "\u0001D not compressed";
+
+        byte[] stored = compression.compress(text);
+
+        assertTrue(DescriptionCompression.hasHeader(stored));
+        assertEquals(text, compression.decompress(stored));
+        assertEquals(text, read(compression.decompress(new ByteArrayInputStream(stored))));
+    }
+
+    @Test
+    void testCompressionRatioAndDecompressionTimeAreMeasured() {
+        DescriptionCompression compression = compression(DescriptionCompression.Codec.DEFLATE);
+
+        byte[] stored = compression.compress(LONG_TEXT);
+        compression.decompress(stored);
+        compression.decompress(utf8("Not compressed"));
+
+        assertEquals(LONG_TEXT.length(), meterRegistry.get("notes.description.bytes").tag("form", "raw").counter().count());
+        assertEquals(stored.length, meterRegistry.get("notes.description.bytes").tag("form", "stored").counter().count());
+        assertEquals(1, meterRegistry.get("notes.description.decompression").tag("codec", "deflate").timer().count());
+    }
+
+    @Test
+    void testDescriptionsStoredAsTextAreMigratedToTheirUtf8() throws SQLException {
+        String url = "jdbc:h2:mem:description-migration;DB_CLOSE_DELAY=-1";
+        Flyway.configure().dataSource(url, "sa", "").target("3").load().migrate();
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("insert into note (note_id, description, likes) values "
+                    + "(1, '" + LONG_TEXT + "', 0), (2, 'Plain text, é', 0), (3, null, 0)");
+
+            Flyway.configure().dataSource(url, "sa", "").load().migrate();
+
+            DescriptionCompression compression = compression(DescriptionCompression.Codec.DEFLATE);
+            Map<Long, byte[]> stored = new HashMap<>();
+            try (ResultSet rows = statement.executeQuery("select note_id, description from note")) {
+                while (rows.next()) {
+                    stored.put(rows.getLong(1), rows.getBytes(2));
+                }
+            }
+            assertArrayEquals(utf8(LONG_TEXT), stored.get(1L));
+            assertEquals(LONG_TEXT, compression.decompress(stored.get(1L)));
+            assertEquals("Plain text, é", compression.decompress(stored.get(2L)));
+            assertNull(stored.get(3L));
+        }
+    }
+
+    private DescriptionCompression compression(DescriptionCompression.Codec codec) {
+        return new DescriptionCompression(codec, 6, 512, meterRegistry);
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(Reader reader) throws IOException {
+        StringWriter out = new StringWriter();
+        try (reader) {
+            reader.transferTo(out);
+        }
+        return out.toString();
+    }
+}
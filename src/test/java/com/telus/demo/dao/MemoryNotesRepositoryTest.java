@@ -0,0 +1,311 @@
+package com.telus.demo.dao;
+
+import com.telus.demo.modal.Note;
+import com.telus.demo.modal.NoteLikes;
+import com.telus.demo.modal.NoteSummary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the in-memory note store on its own, reopening its directory the way a restart after a crash would:
+ * without closing the store first, so that no snapshot is written on the way out.
+ */
+public class MemoryNotesRepositoryTest {
+
+    // Runs the synchronizations the store registers, without a resource of its own
+    private final TransactionTemplate transactions = new TransactionTemplate(new AbstractPlatformTransactionManager() {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    });
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testChangesSurviveACrash() {
+        MemoryNotesRepository store = open();
+        Note kept = store.save(note("Kept", "Three words here"));
+        Note deleted = store.save(note("Deleted", "Gone"));
+        Note modified = store.save(note("Modified", null));
+        store.incrementLikes(kept.getNoteId(), 3, LocalDateTime.now());
+        store.incrementLikes(kept.getNoteId(), -1, LocalDateTime.now());
+        store.deleteById(deleted.getNoteId());
+        Note change = store.findById(modified.getNoteId()).orElseThrow();
+        change.setSubject("Modified twice");
+        store.save(change);
+
+        MemoryNotesRepository recovered = open();
+        Note keptAfter = recovered.findById(kept.getNoteId()).orElseThrow();
+        assertEquals(2, keptAfter.getLikes());
+        assertEquals(2, keptAfter.getVersion());
+        assertEquals("Three words here", keptAfter.getDescription());
+        assertEquals(kept.getTimestampCreated(), keptAfter.getTimestampCreated());
+        assertEquals(3, keptAfter.getWordCount());
+        assertFalse(recovered.existsById(deleted.getNoteId()));
+        Note modifiedAfter = recovered.findById(modified.getNoteId()).orElseThrow();
+        assertEquals("Modified twice", modifiedAfter.getSubject());
+        assertNull(modifiedAfter.getDescription());
+        assertEquals(2, recovered.count());
+
+        // IDs are never handed out twice, even the ID of the last note once deleted
+        assertTrue(recovered.save(note("New", "After the crash")).getNoteId() > modified.getNoteId());
+    }
+
+    @Test
+    void testWriteCutShortByACrashIsIgnored() throws IOException {
+        MemoryNotesRepository store = open();
+        Note note = store.save(note("Whole", "Written before the crash"));
+        store.incrementLikes(note.getNoteId(), 1, LocalDateTime.now());
+
+        // The crash leaves the header of a record, and only part of its body
+        Path logFile = lastLogFile();
+        int end = endOfRecords(logFile);
+        try (var channel = Files.newByteChannel(logFile, StandardOpenOption.WRITE)) {
+            channel.position(end);
+            channel.write(ByteBuffer.allocate(12).putInt(200).putInt(0x5EED).putInt(42).flip());
+        }
+
+        MemoryNotesRepository recovered = open();
+        assertEquals(1, recovered.findById(note.getNoteId()).orElseThrow().getLikes());
+        Note after = recovered.save(note("After", "Appended to a new log file"));
+
+        // The torn record is not in the way of the next recovery either
+        MemoryNotesRepository again = open();
+        assertEquals(2, again.count());
+        assertEquals("After", again.findById(after.getNoteId()).orElseThrow().getSubject());
+    }
+
+    @Test
+    void testSnapshotReplacesTheLog() throws IOException {
+        MemoryNotesRepository store = open();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add(store.save(note("Note " + i, "Description " + i)).getNoteId());
+        }
+        store.deleteById(ids.get(0));
+        store.deleteById(ids.get(99));
+        store.snapshot();
+        store.incrementLikes(ids.get(1), 5, LocalDateTime.now());
+
+        try (Stream<Path> files = Files.list(directory)) {
+            List<String> names = files.map(file -> file.getFileName().toString()).sorted().toList();
+            assertEquals(1, names.stream().filter(name -> name.startsWith("snapshot-")).count(), names::toString);
+            assertEquals(1, names.stream().filter(name -> name.endsWith(".wal")).count(), names::toString);
+        }
+
+        MemoryNotesRepository recovered = open();
+        assertEquals(98, recovered.count());
+        assertEquals(5, recovered.findById(ids.get(1)).orElseThrow().getLikes());
+        assertEquals(ids.subList(1, 11), recovered.findByNoteIdGreaterThanOrderByNoteIdAsc(0L, Limit.of(10)).stream()
+                .map(Note::getNoteId).toList());
+
+        // The snapshot keeps the ID of the last note, deleted before it, from being handed out again
+        assertTrue(recovered.save(note("New", "After the snapshot")).getNoteId() > ids.get(99));
+    }
+
+    @Test
+    void testStaleVersionIsRejected() {
+        MemoryNotesRepository store = open();
+        Long noteId = store.save(note("Contended", "Read twice")).getNoteId();
+        Note first = store.findById(noteId).orElseThrow();
+        Note second = store.findById(noteId).orElseThrow();
+
+        first.setSubject("First");
+        store.save(first);
+        second.setSubject("Second");
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> store.save(second));
+        assertEquals("First", store.findById(noteId).orElseThrow().getSubject());
+
+        // Notes are copied in and out
+        first.setSubject("Not saved");
+        assertEquals("First", store.findById(noteId).orElseThrow().getSubject());
+    }
+
+    @Test
+    void testUncommittedChangesAreOnlySeenByTheirTransaction() {
+        MemoryNotesRepository store = open();
+        Note liked = store.save(note("Liked", "Committed"));
+
+        Long inserted = transactions.execute(status -> {
+            Long noteId = store.save(note("Inserted", "Not committed yet")).getNoteId();
+            store.incrementLikes(liked.getNoteId(), 2, LocalDateTime.now());
+
+            assertEquals(2, store.count());
+            assertEquals(List.of(liked.getNoteId(), noteId), store.findAll().stream().map(Note::getNoteId).toList());
+            assertEquals(2, store.findById(liked.getNoteId()).orElseThrow().getLikes());
+
+            // Another thread, and a recovery after a crash, see neither change
+            assertEquals(1, CompletableFuture.supplyAsync(store::count).join());
+            assertTrue(CompletableFuture.supplyAsync(() -> store.findById(noteId)).join().isEmpty());
+            assertEquals(0, CompletableFuture.supplyAsync(() -> store.findById(liked.getNoteId())).join().orElseThrow().getLikes());
+            assertEquals(1, open().count());
+            return noteId;
+        });
+
+        assertEquals("Inserted", store.findById(inserted).orElseThrow().getSubject());
+        assertEquals(2, open().findById(liked.getNoteId()).orElseThrow().getLikes());
+    }
+
+    @Test
+    void testRollbackLeavesConcurrentCommitsAlone() {
+        MemoryNotesRepository store = open();
+        Long noteId = store.save(note("Original", "Contended")).getNoteId();
+
+        transactions.executeWithoutResult(status -> {
+            Note note = store.findById(noteId).orElseThrow();
+            note.setSubject("Rolled back");
+            store.save(note);
+            store.incrementLikes(noteId, 5, LocalDateTime.now());
+            CompletableFuture.runAsync(() -> store.incrementLikes(noteId, 1, LocalDateTime.now())).join();
+            status.setRollbackOnly();
+        });
+
+        Note stored = store.findById(noteId).orElseThrow();
+        assertEquals("Original", stored.getSubject());
+        assertEquals(1, stored.getLikes());
+        assertEquals(1, open().findById(noteId).orElseThrow().getLikes());
+
+        // Likes are added to the note as committed, but a note saved from a stale read fails at commit
+        transactions.executeWithoutResult(status -> {
+            store.incrementLikes(noteId, 2, LocalDateTime.now());
+            CompletableFuture.runAsync(() -> store.incrementLikes(noteId, 1, LocalDateTime.now())).join();
+        });
+        assertEquals(4, store.findById(noteId).orElseThrow().getLikes());
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> transactions.executeWithoutResult(status -> {
+            Note note = store.findById(noteId).orElseThrow();
+            note.setSubject("Stale");
+            store.save(note);
+            CompletableFuture.runAsync(() -> store.incrementLikes(noteId, 1, LocalDateTime.now())).join();
+        }));
+        assertEquals("Original", store.findById(noteId).orElseThrow().getSubject());
+        assertEquals(5, store.findById(noteId).orElseThrow().getLikes());
+    }
+
+    @Test
+    void testQueriesMatchTheJpaRepository() {
+        MemoryNotesRepository store = open();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Note note = note(i % 3 == 0 ? "Groceries " + i : "Work " + i, "Some words " + i);
+            note.setLikes(i % 5);
+            ids.add(store.save(note).getNoteId());
+        }
+        store.deleteById(ids.get(3));
+
+        List<Note> page = store.findByNoteIdGreaterThanOrderByNoteIdAsc(ids.get(1), Limit.of(3));
+        assertEquals(List.of(ids.get(2), ids.get(4), ids.get(5)), page.stream().map(Note::getNoteId).toList());
+        assertEquals(List.of(ids.get(6), ids.get(9), ids.get(12)), store
+                .findBySubjectContainingIgnoreCaseAndNoteIdGreaterThanOrderByNoteIdAsc("GROCERIES", ids.get(0), Limit.of(3))
+                .stream().map(Note::getNoteId).toList());
+        assertTrue(store.findByLikesGreaterThanAndNoteIdGreaterThanOrderByNoteIdAsc(0, 0L, Limit.unlimited()).stream()
+                .allMatch(note -> note.getLikes() > 0));
+        List<NoteSummary> summaries = store.findSummariesByNoteIdGreaterThanOrderByNoteIdAsc(0L, Limit.of(2));
+        assertEquals("Work 1", summaries.get(1).getSubject());
+        assertEquals(2, store.findSummariesByNoteIdIn(List.of(ids.get(1), ids.get(3), ids.get(2))).size());
+
+        List<NoteLikes> ranking = store.findLikeRanking(Limit.of(3));
+        assertEquals(List.of(4, 4, 4), ranking.stream().map(NoteLikes::getLikes).toList());
+        assertEquals(ids.get(4), ranking.get(0).getNoteId());
+        assertEquals(29, store.sumWordCounts().getNoteCount());
+        assertEquals(29 * 3, store.sumWordCounts().getTotalWords());
+        assertEquals(ids.get(2), store.findVersionById(ids.get(2)).map(version -> ids.get(2)).orElseThrow());
+        assertTrue(store.findVersionById(ids.get(3)).isEmpty());
+
+        assertEquals(2, store.incrementLikesBatch(Map.of(ids.get(1), -10L, ids.get(2), 3L, ids.get(3), 1L)));
+        assertEquals(0, store.findById(ids.get(1)).orElseThrow().getLikes());
+        assertEquals(5, store.findById(ids.get(2)).orElseThrow().getLikes());
+        assertEquals(0, store.resetLikes(ids.get(3), LocalDateTime.now()));
+
+        try (Stream<Note> all = store.streamAllByOrderByNoteId()) {
+            assertEquals(29, all.count());
+        }
+    }
+
+    @Test
+    void testMapKeepsEveryKeyThroughRemovals() {
+        LongKeyMap<Long> map = new LongKeyMap<>(4);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long key = 1 + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key = 1; key <= 5_000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    private MemoryNotesRepository open() {
+        return new MemoryNotesRepository(directory, DataSize.ofKilobytes(64), new NoteShards(List.of()));
+    }
+
+    private Path lastLogFile() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".wal")).sorted()
+                    .reduce((first, second) -> second).orElseThrow();
+        }
+    }
+
+    // Offset of the zero length that follows the last record of a log file
+    private static int endOfRecords(Path logFile) throws IOException {
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(logFile));
+        int length;
+        while ((length = content.getInt(content.position())) != 0) {
+            content.position(content.position() + 8 + length);
+        }
+        return content.position();
+    }
+
+    private static Note note(String subject, String description) {
+        LocalDateTime now = LocalDateTime.now();
+        return Note.builder()
+                .subject(subject)
+                .description(description)
+                .wordCount(description == null ? 0 : description.split(" ").length)
+                .timestampCreated(now)
+                .timestampUpdated(now)
+                .build();
+    }
+}
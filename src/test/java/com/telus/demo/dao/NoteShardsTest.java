@@ -0,0 +1,63 @@
+package com.telus.demo.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteShardsTest {
+
+    private final NoteShards noteShards = new NoteShards(List.of("jdbc:h2:mem:shard1", "jdbc:h2:mem:shard2"));
+
+    @Test
+    void testIdsCarryTheirShard() {
+        assertEquals(3, noteShards.getCount());
+        assertEquals(42L, NoteShards.encode(0, 42));
+        long id = NoteShards.encode(2, 42);
+        assertEquals(2, noteShards.shardOf(id));
+        assertEquals(42L, id & ((1L << NoteShards.SHARD_SHIFT) - 1));
+        assertTrue(NoteShards.encode(NoteShards.MAX_SHARDS - 1, (1L << NoteShards.SHARD_SHIFT) - 1) < 1L << 53);
+        assertThrows(IllegalStateException.class, () -> NoteShards.encode(1, 1L << NoteShards.SHARD_SHIFT));
+    }
+
+    @Test
+    void testIdsOfUnknownShardsAreLookedUpOnTheFirst() {
+        assertEquals(0, noteShards.shardOf(NoteShards.encode(5, 1)));
+        assertEquals(0, noteShards.shardOf(Long.MAX_VALUE));
+        assertEquals(0, noteShards.shardOf(-1));
+        assertEquals(0, new NoteShards(List.of()).shardOf(NoteShards.encode(2, 1)));
+    }
+
+    @Test
+    void testNewNotesGoToEachShardInTurn() {
+        List<Integer> shards = List.of(noteShards.nextShard(), noteShards.nextShard(), noteShards.nextShard());
+        assertEquals(List.of(0, 1, 2), shards.stream().sorted().toList());
+        assertEquals(0, new NoteShards(List.of(" ")).nextShard());
+    }
+
+    @Test
+    void testEachShardIsQueriedOnItsShard() {
+        assertEquals(List.of(0, 1, 2), noteShards.onEachShard(shard -> ShardRoutingDataSource.currentShard()));
+        assertEquals(0, ShardRoutingDataSource.currentShard());
+        assertEquals(2, noteShards.onShard(2, ShardRoutingDataSource::currentShard));
+        assertEquals(0, ShardRoutingDataSource.currentShard());
+
+        IllegalStateException failure = new IllegalStateException("shard down");
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> noteShards.onEachShard(shard -> {
+            if (shard == 1) {
+                throw failure;
+            }
+            return shard;
+        })));
+    }
+
+    @Test
+    void testGroupByShardKeepsTheOrder() {
+        long a = NoteShards.encode(1, 7);
+        long b = NoteShards.encode(0, 3);
+        long c = NoteShards.encode(1, 2);
+        assertEquals(Map.of(0, List.of(b), 1, List.of(a, c)), noteShards.groupByShard(List.of(a, b, c), Long::longValue));
+    }
+}
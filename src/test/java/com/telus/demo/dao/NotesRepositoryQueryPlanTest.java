@@ -0,0 +1,195 @@
+package com.telus.demo.dao;
+
+import com.telus.demo.modal.Note;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the SQL Hibernate generates for the hot queries of {@link NotesRepository} through H2's {@code EXPLAIN},
+ * and fails when one of them no longer uses the index the migrations in {@code db/migration} create for it.
+ */
+@DataJpaTest
+@Import({DescriptionCompression.class, SimpleMeterRegistry.class})
+public class NotesRepositoryQueryPlanTest {
+
+    private static final int NOTE_COUNT = 2_000;
+
+    // H2 names the index of the primary key itself, PRIMARY_KEY_ followed by a suffix
+    private static final String PRIMARY_KEY = "PRIMARY_KEY_\\w*";
+
+    // Statements prepared by Hibernate, in order
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @TestConfiguration
+    static class StatementCapture {
+
+        @Bean
+        HibernatePropertiesCustomizer statementCapture() {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, (StatementInspector) sql -> {
+                STATEMENTS.add(sql);
+                return sql;
+            });
+        }
+    }
+
+    @Autowired
+    private NotesRepository notesRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        List<Note> notes = new ArrayList<>(NOTE_COUNT);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            // Like most notes, these have no likes
+            notes.add(Note.builder()
+                    .subject("Subject " + i)
+                    .description("Description " + i)
+                    .likes(i % 20 == 0 ? i % 7 + 1 : 0)
+                    .timestampCreated(now.minusMinutes(i))
+                    .timestampUpdated(now.minusMinutes(i))
+                    .build());
+        }
+        notesRepository.saveAll(notes);
+        entityManager.flush();
+        entityManager.clear();
+        // Gives the optimizer the row counts and selectivity of the seeded table
+        jdbcTemplate.execute("analyze");
+    }
+
+    @Test
+    void testLikesQueriesUseTheLikesIndex() {
+        String plan = explain(() -> notesRepository.findByLikesGreaterThan(1));
+        assertUsesIndex("IDX_NOTE_LIKES", plan);
+
+        // A liked notes page may as well walk the primary key in order, stopping at the limit
+        String pagePlan = explain(() -> notesRepository
+                .findByLikesGreaterThanAndNoteIdGreaterThanOrderByNoteIdAsc(0, 0L, Limit.of(20)));
+        assertTrue(pagePlan.matches("(?s).*/\\* PUBLIC\\.(IDX_NOTE_LIKES|" + PRIMARY_KEY + ")\\b.*"),
+                () -> "Uses neither the likes index nor the primary key:\n" + pagePlan);
+        assertFalse(pagePlan.contains("tableScan"), () -> "Scans the table:\n" + pagePlan);
+    }
+
+    @Test
+    void testLikeRankingReadsTheLikesIndexInOrder() {
+        String plan = explain(() -> notesRepository.findLikeRanking(Limit.of(10)));
+        assertUsesIndex("IDX_NOTE_LIKES", plan);
+        assertTrue(plan.contains("index sorted"), () -> "Sorts instead of reading the index in order:\n" + plan);
+    }
+
+    @Test
+    void testKeysetPagesReadThePrimaryKeyInOrder() {
+        String plan = explain(() -> notesRepository.findByNoteIdGreaterThanOrderByNoteIdAsc(0L, Limit.of(20)));
+        assertUsesIndex(PRIMARY_KEY, plan);
+        assertTrue(plan.contains("index sorted"), () -> "Sorts instead of reading the index in order:\n" + plan);
+
+        // The leading wildcard of a containing search rules out any subject index: the page walks the primary key
+        // in order and stops at the limit, instead of scanning and sorting the table
+        String searchPlan = explain(() -> notesRepository
+                .findBySubjectContainingIgnoreCaseAndNoteIdGreaterThanOrderByNoteIdAsc("subject 1", 0L, Limit.of(20)));
+        assertUsesIndex(PRIMARY_KEY, searchPlan);
+        assertTrue(searchPlan.contains("index sorted"), () -> "Sorts instead of reading the index in order:\n" + searchPlan);
+    }
+
+    @Test
+    void testSummariesLeaveTheDescriptionOutAndUseTheSameIndexes() {
+        String plan = explainSummaries(() -> notesRepository.findSummariesByNoteIdGreaterThanOrderByNoteIdAsc(0L, Limit.of(20)));
+        assertUsesIndex(PRIMARY_KEY, plan);
+        assertTrue(plan.contains("index sorted"), () -> "Sorts instead of reading the index in order:\n" + plan);
+
+        assertUsesIndex(PRIMARY_KEY, explainSummaries(() -> notesRepository
+                .findSummariesBySubjectContainingIgnoreCaseAndNoteIdGreaterThanOrderByNoteIdAsc("subject 1", 0L, Limit.of(20))));
+        assertFalse(explainSummaries(() -> notesRepository
+                .findSummariesByLikesGreaterThanAndNoteIdGreaterThanOrderByNoteIdAsc(0, 0L, Limit.of(20))).contains("tableScan"));
+        assertUsesIndex(PRIMARY_KEY, explainSummaries(() -> notesRepository.findSummariesByNoteIdIn(List.of(1L, 2L))));
+    }
+
+    @Test
+    void testPointReadsUseThePrimaryKey() {
+        assertUsesIndex(PRIMARY_KEY, explain(() -> notesRepository.findVersionById(1L)));
+        assertUsesIndex(PRIMARY_KEY, explain(() -> notesRepository.findWordCountById(1L)));
+    }
+
+    @Test
+    void testTimeLookupsUseTheirIndex() {
+        assertUsesIndex("IDX_NOTE_TIMESTAMP_UPDATED",
+                explain("select note_id from note where timestamp_updated > ? order by timestamp_updated"));
+    }
+
+    private static void assertUsesIndex(String index, String plan) {
+        // The index follows the table, with the condition it is searched with, if any
+        assertTrue(plan.matches("(?s).*/\\* PUBLIC\\." + index + "(:| \\*/).*"), () -> "Does not use " + index + ":\n" + plan);
+        assertFalse(plan.contains("tableScan"), () -> "Scans the table:\n" + plan);
+    }
+
+    /**
+     * Runs a repository query and explains the statement Hibernate prepared for it.
+     */
+    private String explain(Runnable query) {
+        STATEMENTS.clear();
+        query.run();
+        assertFalse(STATEMENTS.isEmpty(), "The query ran no statement");
+        return explain(STATEMENTS.get(STATEMENTS.size() - 1));
+    }
+
+    /**
+     * Runs a summary query, checks that it does not read the description, and explains it.
+     */
+    private String explainSummaries(Runnable query) {
+        String plan = explain(query);
+        assertFalse(plan.contains("DESCRIPTION"), () -> "Reads the description:\n" + plan);
+        return plan;
+    }
+
+    /**
+     * Explains a statement, its parameters bound to placeholder values of their type.
+     */
+    private String explain(String sql) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("explain " + sql)) {
+                ParameterMetaData parameters = statement.getParameterMetaData();
+                for (int i = 1; i <= parameters.getParameterCount(); i++) {
+                    switch (parameters.getParameterType(i)) {
+                        case Types.VARCHAR -> statement.setString(i, "%SUBJECT%");
+                        case Types.TIMESTAMP -> statement.setTimestamp(i, Timestamp.valueOf(LocalDateTime.now().minusHours(1)));
+                        default -> statement.setInt(i, 1);
+                    }
+                }
+                try (ResultSet plan = statement.executeQuery()) {
+                    plan.next();
+                    return plan.getString(1);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,238 @@
+package com.telus.demo.dao;
+
+import com.telus.demo.modal.Note;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {"spring.jpa.properties.hibernate.generate_statistics=true",
+        "notes.description.compression.codec=deflate"})
+@Import({DescriptionCompression.class, SimpleMeterRegistry.class})
+public class NotesRepositoryTest {
+
+    private static final int NOTE_COUNT = 5_000;
+    private static final int PAGE_SIZE = 50;
+
+    @Autowired
+    private NotesRepository notesRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        List<Note> notes = new ArrayList<>(NOTE_COUNT);
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            notes.add(Note.builder()
+                    .subject(i % 2 == 0 ? "Even Subject " + i : "Odd Subject " + i)
+                    .description("Description " + i)
+                    .likes(i % 3)
+                    .timestampCreated(LocalDateTime.now())
+                    .timestampUpdated(LocalDateTime.now())
+                    .build());
+        }
+        notesRepository.saveAll(notes);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void testKeysetPagesCoverEveryNoteOnce() {
+        Set<Long> seen = new HashSet<>();
+        long after = 0L;
+        List<Note> page;
+        do {
+            page = notesRepository.findByNoteIdGreaterThanOrderByNoteIdAsc(after, Limit.of(PAGE_SIZE));
+            for (Note note : page) {
+                assertTrue(note.getNoteId() > after);
+                assertTrue(seen.add(note.getNoteId()));
+            }
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).getNoteId();
+            }
+        } while (page.size() == PAGE_SIZE);
+
+        assertEquals(NOTE_COUNT, seen.size());
+    }
+
+    @Test
+    void testFilteredKeysetPages() {
+        List<Note> liked = notesRepository.findByLikesGreaterThanAndNoteIdGreaterThanOrderByNoteIdAsc(0, 0L, Limit.of(PAGE_SIZE));
+        List<Note> even = notesRepository.findBySubjectContainingIgnoreCaseAndNoteIdGreaterThanOrderByNoteIdAsc("even", 0L, Limit.of(PAGE_SIZE));
+
+        assertEquals(PAGE_SIZE, liked.size());
+        assertTrue(liked.stream().allMatch(note -> note.getLikes() > 0));
+        assertEquals(PAGE_SIZE, even.size());
+        assertTrue(even.stream().allMatch(note -> note.getSubject().startsWith("Even")));
+    }
+
+    @Test
+    void testDeepPageCostsTheSameAsFirstPage() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<Note> all = notesRepository.findByNoteIdGreaterThanOrderByNoteIdAsc(0L, Limit.of(NOTE_COUNT));
+        long deepCursor = all.get(NOTE_COUNT - PAGE_SIZE - 1).getNoteId();
+        entityManager.clear();
+
+        // Both pages load exactly one page of entities, whatever the offset into the table
+        statistics.clear();
+        notesRepository.findByNoteIdGreaterThanOrderByNoteIdAsc(0L, Limit.of(PAGE_SIZE));
+        long firstPageLoads = statistics.getEntityLoadCount();
+        entityManager.clear();
+
+        statistics.clear();
+        notesRepository.findByNoteIdGreaterThanOrderByNoteIdAsc(deepCursor, Limit.of(PAGE_SIZE));
+        long deepPageLoads = statistics.getEntityLoadCount();
+        entityManager.clear();
+
+        assertEquals(PAGE_SIZE, firstPageLoads);
+        assertEquals(PAGE_SIZE, deepPageLoads);
+
+        // And take about as long: the deep page seeks by primary key instead of skipping rows
+        long firstPageNanos = timePage(0L);
+        long deepPageNanos = timePage(deepCursor);
+        assertTrue(deepPageNanos < firstPageNanos * 3 + 5_000_000L,
+                "deep page took " + deepPageNanos + "ns, first page " + firstPageNanos + "ns");
+    }
+
+    @Test
+    void testEveryChangeBumpsTheVersion() {
+        Long noteId = notesRepository.findByNoteIdGreaterThanOrderByNoteIdAsc(0L, Limit.of(1)).get(0).getNoteId();
+        long version = notesRepository.findVersionById(noteId).orElseThrow().getVersion();
+
+        notesRepository.incrementLikes(noteId, 1, LocalDateTime.now());
+        notesRepository.resetLikes(noteId, LocalDateTime.now());
+        notesRepository.incrementLikesBatch(Map.of(noteId, 2L));
+        Note note = notesRepository.findById(noteId).orElseThrow();
+        note.setSubject("Changed");
+        notesRepository.save(note);
+        notesRepository.flush();
+
+        assertEquals(version + 4, notesRepository.findVersionById(noteId).orElseThrow().getVersion());
+        assertEquals(2, notesRepository.findVersionById(noteId).orElseThrow().getLikes());
+    }
+
+    @Test
+    void testDescriptionIsOnlyLoadedWithTheNotesReturnedToTheServices() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Note page = notesRepository.findByNoteIdGreaterThanOrderByNoteIdAsc(0L, Limit.of(1)).get(0);
+        Note byId = notesRepository.findById(page.getNoteId() + 1).orElseThrow();
+        assertTrue(Hibernate.isPropertyInitialized(page, "description"));
+        assertTrue(Hibernate.isPropertyInitialized(byId, "description"));
+        entityManager.clear();
+
+        statistics.clear();
+        List<Note> liked = notesRepository.findByLikesGreaterThan(1);
+        assertFalse(liked.stream().anyMatch(note -> Hibernate.isPropertyInitialized(note, "description")));
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        // Read on demand while the session is open
+        assertTrue(liked.get(0).getDescription().startsWith("Description "));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void testLargeDescriptionIsStreamed() throws IOException {
+        String description = "Large description ".repeat(6_000);
+        Long noteId = notesRepository.save(Note.builder().subject("Large").description(description).build()).getNoteId();
+        notesRepository.flush();
+        entityManager.clear();
+
+        StringWriter out = new StringWriter();
+        assertTrue(notesRepository.writeDescription(noteId, out));
+        assertEquals(description, out.toString());
+        assertEquals(description, notesRepository.findById(noteId).orElseThrow().getDescription());
+        assertFalse(notesRepository.writeDescription(-1L, new StringWriter()));
+    }
+
+    @Test
+    void testLongDescriptionIsStoredCompressed() {
+        String description = "Compressed description ".repeat(1_000);
+        Long noteId = notesRepository.save(Note.builder().subject("Compressed").description(description).build()).getNoteId();
+        notesRepository.flush();
+        entityManager.clear();
+
+        byte[] stored = storedDescription(noteId);
+        assertTrue(DescriptionCompression.hasHeader(stored));
+        assertTrue(stored.length < description.length() / 10);
+        assertEquals(description, notesRepository.findById(noteId).orElseThrow().getDescription());
+        assertEquals("Description 0", new String(storedDescription(notesRepository.findByNoteIdGreaterThanOrderByNoteIdAsc(0L, Limit.of(1)).get(0).getNoteId()),
+                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testDescriptionsStoredUncompressedAreCompressedInBatches() throws IOException {
+        String description = "Stored before compression ".repeat(500);
+        List<Long> noteIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Long noteId = notesRepository.save(Note.builder().subject("Old " + i).description("Short").build()).getNoteId();
+            notesRepository.flush();
+            jdbcTemplate.update("update note set description = ? where note_id = ?", description + i, noteId);
+            noteIds.add(noteId);
+        }
+        long version = notesRepository.findById(noteIds.get(0)).orElseThrow().getVersion();
+        entityManager.clear();
+
+        long afterId = 0;
+        int batches = 0;
+        for (long lastId; (lastId = notesRepository.compressDescriptions(afterId, 2)) != afterId; afterId = lastId) {
+            batches++;
+        }
+
+        assertEquals(3, batches);
+        for (int i = 0; i < noteIds.size(); i++) {
+            assertTrue(DescriptionCompression.hasHeader(storedDescription(noteIds.get(i))));
+            Note note = notesRepository.findById(noteIds.get(i)).orElseThrow();
+            assertEquals(description + i, note.getDescription());
+            assertEquals(version, note.getVersion());
+            StringWriter out = new StringWriter();
+            notesRepository.writeDescription(noteIds.get(i), out);
+            assertEquals(description + i, out.toString());
+            entityManager.clear();
+        }
+    }
+
+    private byte[] storedDescription(Long noteId) {
+        return jdbcTemplate.queryForObject("select description from note where note_id = ?", byte[].class, noteId);
+    }
+
+    private long timePage(long after) {
+        for (int i = 0; i < 20; i++) {
+            notesRepository.findByNoteIdGreaterThanOrderByNoteIdAsc(after, Limit.of(PAGE_SIZE));
+            entityManager.clear();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < 50; i++) {
+            notesRepository.findByNoteIdGreaterThanOrderByNoteIdAsc(after, Limit.of(PAGE_SIZE));
+            entityManager.clear();
+        }
+        return (System.nanoTime() - start) / 50;
+    }
+}
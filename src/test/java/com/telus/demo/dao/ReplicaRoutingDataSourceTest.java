@@ -0,0 +1,125 @@
+package com.telus.demo.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ReplicaRoutingDataSourceTest {
+
+    private final DataSource primary = dataSource();
+    private final DataSource first = dataSource();
+    private final DataSource second = dataSource();
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRoutingDataSource.setReadFromReplica(false);
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void testOnlyReplicaReadsGoToReplicas() throws SQLException {
+        ReplicaRoutingDataSource dataSource = routing(ReplicaRoutingDataSource.Selection.ROUND_ROBIN);
+
+        dataSource.getConnection();
+        verify(primary).getConnection();
+
+        ReplicaRoutingDataSource.setReadFromReplica(true);
+        dataSource.getConnection();
+        dataSource.getConnection();
+        dataSource.getConnection();
+        verify(first, times(2)).getConnection();
+        verify(second).getConnection();
+        verify(primary).getConnection();
+    }
+
+    @Test
+    void testReadWriteTransactionStaysOnThePrimary() throws SQLException {
+        ReplicaRoutingDataSource dataSource = routing(ReplicaRoutingDataSource.Selection.ROUND_ROBIN);
+        ReplicaRoutingDataSource.setReadFromReplica(true);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        dataSource.getConnection();
+        verify(primary).getConnection();
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        dataSource.getConnection();
+        verify(first).getConnection();
+    }
+
+    @Test
+    void testLeastConnectionsPicksTheLeastBusyReplica() throws SQLException {
+        ReplicaRoutingDataSource dataSource = routing(ReplicaRoutingDataSource.Selection.LEAST_CONNECTIONS);
+        ReplicaRoutingDataSource.setReadFromReplica(true);
+
+        List<Connection> held = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            held.add(dataSource.getConnection());
+        }
+        assertEquals(Map.of("replica-1", 2, "replica-2", 2), dataSource.getReplicaConnections());
+
+        // Closing twice only counts once
+        held.get(0).close();
+        held.get(0).close();
+        held.get(2).close();
+        assertEquals(Map.of("replica-1", 0, "replica-2", 2), dataSource.getReplicaConnections());
+        dataSource.getConnection();
+        verify(first, times(3)).getConnection();
+    }
+
+    @Test
+    void testFailedReplicaFallsBackToThePrimaryUntilItIsBack() throws SQLException {
+        ReplicaRoutingDataSource dataSource = routing(ReplicaRoutingDataSource.Selection.ROUND_ROBIN);
+        ReplicaRoutingDataSource.setReadFromReplica(true);
+        when(first.getConnection()).thenThrow(new SQLException("Replica down"));
+        when(second.getConnection()).thenThrow(new SQLException("Replica down"));
+
+        assertNotNull(dataSource.getConnection());
+        assertNotNull(dataSource.getConnection());
+        assertEquals(Map.of("replica-1", false, "replica-2", false), dataSource.getReplicaStatus());
+        verify(primary, times(2)).getConnection();
+
+        // Down replicas are no longer tried
+        dataSource.getConnection();
+        verify(first).getConnection();
+        verify(primary, times(3)).getConnection();
+
+        Connection valid = mock(Connection.class);
+        when(valid.isValid(anyInt())).thenReturn(true);
+        doReturn(valid).when(second).getConnection();
+        dataSource.checkReplicas();
+        assertEquals(Map.of("replica-1", false, "replica-2", true), dataSource.getReplicaStatus());
+
+        dataSource.getConnection();
+        verify(second, times(3)).getConnection();
+        verify(primary, times(3)).getConnection();
+    }
+
+    private ReplicaRoutingDataSource routing(ReplicaRoutingDataSource.Selection selection) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", first);
+        replicas.put("replica-2", second);
+        return new ReplicaRoutingDataSource(primary, replicas, selection);
+    }
+
+    private static DataSource dataSource() {
+        DataSource dataSource = mock(DataSource.class);
+        try {
+            when(dataSource.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return dataSource;
+    }
+}
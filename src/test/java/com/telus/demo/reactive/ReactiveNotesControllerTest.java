@@ -0,0 +1,227 @@
+package com.telus.demo.reactive;
+
+import com.telus.demo.controller.NotesController;
+import com.telus.demo.modal.Note;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = ReactiveNoteApplication.class, properties = {
+        "spring.main.web-application-type=reactive",
+        "spring.r2dbc.url=r2dbc:h2:mem:///reactive;DB_CLOSE_DELAY=-1",
+        "spring.flyway.url=jdbc:h2:mem:reactive;DB_CLOSE_DELAY=-1",
+        "logging.level.com.telus.demo.reactive=WARN"
+})
+@ActiveProfiles(ReactiveNoteApplication.PROFILE)
+@AutoConfigureWebTestClient
+public class ReactiveNotesControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    void testAddAndGetNote() {
+        Note note = addNote("Reactive", "Served without a thread per request");
+        assertNotNull(note.getNoteId());
+        assertEquals(6, note.getWordCount());
+
+        String eTag = webTestClient.get().uri("/api/notes/{id}", note.getNoteId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.subject").isEqualTo("Reactive")
+                .returnResult().getResponseHeaders().getETag();
+        assertEquals("\"0-0\"", eTag);
+
+        webTestClient.get().uri("/api/notes/{id}", note.getNoteId())
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    void testGetMissingNote() {
+        webTestClient.get().uri("/api/notes/{id}", Long.MAX_VALUE)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Note Not Found")
+                .jsonPath("$.path").isEqualTo("uri=/api/notes/" + Long.MAX_VALUE);
+    }
+
+    @Test
+    void testModifyNoteWithStaleETag() {
+        Note note = addNote("Versioned", "First draft");
+
+        webTestClient.put().uri("/api/notes/{id}", note.getNoteId())
+                .header(HttpHeaders.IF_MATCH, "\"0-0\"")
+                .bodyValue(Note.builder().description("Second draft, longer").build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1-0\"")
+                .expectBody()
+                .jsonPath("$.subject").isEqualTo("Versioned")
+                .jsonPath("$.wordCount").isEqualTo(3);
+
+        webTestClient.put().uri("/api/notes/{id}", note.getNoteId())
+                .header(HttpHeaders.IF_MATCH, "\"0-0\"")
+                .bodyValue(Note.builder().subject("Lost update").build())
+                .exchange()
+                .expectStatus().isEqualTo(412);
+    }
+
+    @Test
+    void testPagesFollowTheCursor() {
+        String subject = "Paged " + System.nanoTime();
+        Note first = addNote(subject, "One");
+        Note second = addNote(subject, "Two");
+        Note third = addNote(subject, "Three");
+
+        var firstPage = webTestClient.get().uri(uri -> uri.path("/api/notes/search")
+                        .queryParam("subject", subject.toLowerCase()).queryParam("limit", 2).build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Note.class)
+                .returnResult();
+        assertEquals(List.of(first.getNoteId(), second.getNoteId()),
+                firstPage.getResponseBody().stream().map(Note::getNoteId).toList());
+        String cursor = firstPage.getResponseHeaders().getFirst(NotesController.NEXT_CURSOR_HEADER);
+        assertNotNull(cursor);
+
+        webTestClient.get().uri(uri -> uri.path("/api/notes/search")
+                        .queryParam("subject", subject).queryParam("cursor", cursor).queryParam("limit", 2).build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(NotesController.NEXT_CURSOR_HEADER)
+                .expectBodyList(Note.class)
+                .value(notes -> assertEquals(List.of(third.getNoteId()), notes.stream().map(Note::getNoteId).toList()));
+    }
+
+    @Test
+    void testInvalidCursor() {
+        webTestClient.get().uri("/api/notes?cursor=not-a-cursor")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Invalid Cursor");
+    }
+
+    @Test
+    void testStreamNotesAsNdjson() {
+        String subject = "Streamed " + System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            addNote(subject, "Line " + i);
+        }
+
+        List<Note> notes = webTestClient.get().uri(uri -> uri.path("/api/notes/search").queryParam("subject", subject).build())
+                .accept(MediaType.parseMediaType(NotesController.NDJSON))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.parseMediaType(NotesController.NDJSON))
+                .returnResult(Note.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+        assertEquals(List.of("Line 0", "Line 1", "Line 2"), notes.stream().map(Note::getDescription).toList());
+    }
+
+    @Test
+    void testLikesAndTopLiked() {
+        Note note = addNote("Popular", "Liked a lot");
+
+        webTestClient.post().uri("/api/notes/{id}/like-boost", note.getNoteId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.TotalLikes").isEqualTo(10);
+        webTestClient.delete().uri("/api/notes/{id}/unlike", note.getNoteId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.likes").isEqualTo(9)
+                .jsonPath("$.version").isEqualTo(2);
+
+        webTestClient.get().uri("/api/notes/top-liked?k=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].noteId").isEqualTo(note.getNoteId());
+
+        webTestClient.delete().uri("/api/notes/{id}/like-reset", note.getNoteId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.TotalLikes").isEqualTo(0);
+        webTestClient.post().uri("/api/notes/{id}/like", Long.MAX_VALUE)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testBatchKeepsTheOrderOfTheIds() {
+        Note first = addNote("Feed", "First");
+        Note second = addNote("Feed", "Second");
+
+        webTestClient.get().uri("/api/notes/batch?ids={ids}", second.getNoteId() + "," + Long.MAX_VALUE + "," + first.getNoteId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Note.class)
+                .value(notes -> assertEquals(List.of(second.getNoteId(), first.getNoteId()),
+                        notes.stream().map(Note::getNoteId).toList()));
+    }
+
+    @Test
+    void testTextStatistics() {
+        Note note = addNote("Counted", "Short note. Two sentences!");
+
+        webTestClient.get().uri("/api/notes/word-count/{id}", note.getNoteId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Integer.class).isEqualTo(4);
+        webTestClient.get().uri("/api/notes/{id}/stats", note.getNoteId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.sentences").isEqualTo(2);
+        webTestClient.get().uri("/api/notes/average-length")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Double.class).value(average -> assertTrue(average > 0));
+    }
+
+    @Test
+    void testDeleteNote() {
+        Note note = addNote("Temporary", "Deleted right away");
+        long count = webTestClient.get().uri("/api/notes/count").exchange().expectBody(Long.class).returnResult().getResponseBody();
+
+        webTestClient.delete().uri("/api/notes/{id}", note.getNoteId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.deleted").isEqualTo(true);
+        webTestClient.delete().uri("/api/notes/{id}", note.getNoteId())
+                .exchange()
+                .expectStatus().isNotFound();
+        webTestClient.get().uri("/api/notes/count")
+                .exchange()
+                .expectBody(Long.class).isEqualTo(count - 1);
+    }
+
+    private Note addNote(String subject, String description) {
+        return webTestClient.post().uri("/api/notes")
+                .bodyValue(Note.builder().subject(subject).description(description).build())
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Note.class)
+                .returnResult().getResponseBody();
+    }
+}
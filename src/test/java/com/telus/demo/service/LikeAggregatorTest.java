@@ -0,0 +1,225 @@
+package com.telus.demo.service;
+
+import com.telus.demo.dao.NoteShards;
+import com.telus.demo.dao.NotesRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+public class LikeAggregatorTest {
+
+    @Mock
+    private NotesRepository notesRepository;
+
+    @Mock
+    private NoteCache noteCache;
+
+    private LikeAggregator likeAggregator;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        likeAggregator = new LikeAggregator(notesRepository, noteCache, new NoteShards(List.of()), true);
+    }
+
+    @Test
+    void testFlushMergesPendingDeltasInOneBatch() {
+        likeAggregator.add(1L, 1, 0);
+        likeAggregator.add(1L, 1, 0);
+        likeAggregator.add(2L, -1, 1);
+        likeAggregator.add(3L, 1, 0);
+        likeAggregator.add(3L, -1, 0);
+
+        assertEquals(2, likeAggregator.pendingDelta(1L));
+
+        likeAggregator.flush();
+
+        verify(notesRepository, times(1)).incrementLikesBatch(Map.of(1L, 2L, 2L, -1L));
+        assertEquals(0, likeAggregator.pendingDelta(1L));
+        assertEquals(0, likeAggregator.pendingDelta(2L));
+    }
+
+    @Test
+    void testFlushWithoutPendingLikesSkipsDatabase() {
+        likeAggregator.flush();
+
+        verify(notesRepository, never()).incrementLikesBatch(anyMap());
+    }
+
+    @Test
+    void testFailedFlushKeepsPendingLikes() {
+        likeAggregator.add(1L, 5, 0);
+        when(notesRepository.incrementLikesBatch(anyMap())).thenThrow(new IllegalStateException("database down"));
+
+        try {
+            likeAggregator.flush();
+        } catch (IllegalStateException expected) {
+            // The deltas stay pending and are retried by the next flush
+        }
+
+        assertEquals(5, likeAggregator.pendingDelta(1L));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void testLikesRacingWithFailedFlushesAreNeverLost() throws Exception {
+        // Every other batch fails, including the ones that would write the likes of counters closed as idle
+        AtomicInteger batches = new AtomicInteger();
+        AtomicLong written = new AtomicLong();
+        when(notesRepository.incrementLikesBatch(anyMap())).thenAnswer(invocation -> {
+            if (batches.incrementAndGet() % 2 == 0) {
+                throw new IllegalStateException("database down");
+            }
+            ((Map<Long, Long>) invocation.getArgument(0)).values().forEach(written::addAndGet);
+            return 1;
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    likeAggregator.add(1L + i % 64, 1, 0);
+                    if (i % 100 == 0) {
+                        Thread.yield();  // Leaves some counters idle for a flush, to be closed while likes arrive
+                    }
+                }
+            }));
+        }
+        while (futures.stream().anyMatch(future -> !future.isDone())) {
+            flushIgnoringFailure();
+        }
+        executor.shutdown();
+        for (int i = 0; i < 4; i++) {
+            flushIgnoringFailure();
+        }
+
+        assertEquals(40_000, written.get());
+    }
+
+    private void flushIgnoringFailure() {
+        try {
+            likeAggregator.flush();
+        } catch (IllegalStateException expected) {
+            // Retried by the next flush
+        }
+    }
+
+    @Test
+    void testDiscardDropsPendingLikes() {
+        likeAggregator.add(1L, 3, 0);
+        likeAggregator.discard(1L);
+        likeAggregator.flush();
+
+        assertEquals(0, likeAggregator.pendingDelta(1L));
+        verify(notesRepository, never()).incrementLikesBatch(anyMap());
+    }
+
+    @Test
+    void testDiscardWaitsForAFlushInProgress() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(notesRepository.incrementLikesBatch(anyMap())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return 1;
+        });
+        likeAggregator.add(1L, 3, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> flush = executor.submit(likeAggregator::flush);
+            assertTrue(writing.await(10, TimeUnit.SECONDS));
+            likeAggregator.add(1L, 2, 0);
+
+            // A reset must not run before the likes the flush collected are written, or they would undo it
+            Future<?> discard = executor.submit(() -> likeAggregator.discard(1L));
+            assertThrows(TimeoutException.class, () -> discard.get(200, TimeUnit.MILLISECONDS));
+            release.countDown();
+            flush.get(10, TimeUnit.SECONDS);
+            discard.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(0, likeAggregator.pendingDelta(1L));
+        // The discarded counter is closed, so the next like goes to a new one
+        likeAggregator.add(1L, 1, 0);
+        assertEquals(1, likeAggregator.pendingDelta(1L));
+    }
+
+    @Test
+    void testConcurrentUnlikesNeverGoBelowZero() throws Exception {
+        likeAggregator.add(1L, 1, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> unlikes = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            unlikes.add(executor.submit(() -> likeAggregator.add(1L, -1, 1)));
+        }
+        int accepted = 0;
+        for (Future<Boolean> unlike : unlikes) {
+            accepted += unlike.get() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        // One like persisted and one pending: two unlikes take the note to 0, the others are refused
+        assertEquals(2, accepted);
+        assertEquals(-1, likeAggregator.pendingDelta(1L));
+        assertFalse(likeAggregator.add(1L, -1, 1));
+    }
+
+    @Test
+    void testFlushInvalidatesCachedNotes() {
+        likeAggregator.add(1L, 1, 0);
+        likeAggregator.add(2L, 1, 0);
+        likeAggregator.add(2L, -1, 0);
+
+        likeAggregator.flush();
+
+        verify(noteCache).invalidate(1L);
+        verify(noteCache, never()).invalidate(2L);  // Nothing changed in the database
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void testConcurrentLikesDuringFlushesAreNeverLost() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    likeAggregator.add(1L + i % 4, 1, 0);
+                }
+            }));
+        }
+        while (futures.stream().anyMatch(future -> !future.isDone())) {
+            likeAggregator.flush();
+        }
+        executor.shutdown();
+        likeAggregator.flush();
+
+        ArgumentCaptor<Map<Long, Long>> batches = ArgumentCaptor.forClass(Map.class);
+        verify(notesRepository, atLeastOnce()).incrementLikesBatch(batches.capture());
+        long flushedLikes = batches.getAllValues().stream()
+                .flatMap(batch -> batch.values().stream())
+                .mapToLong(Long::longValue)
+                .sum();
+        assertEquals(80_000, flushedLikes);
+    }
+}
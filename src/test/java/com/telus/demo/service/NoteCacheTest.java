@@ -0,0 +1,124 @@
+package com.telus.demo.service;
+
+import com.telus.demo.modal.Note;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NoteCacheTest {
+
+    @Test
+    void testReadThroughAndStats() {
+        NoteCache noteCache = new NoteCache(true, 100, Duration.ofMinutes(10));
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            noteCache.get(1L, id -> {
+                loads.incrementAndGet();
+                return Note.builder().noteId(id).subject("Cached").build();
+            });
+        }
+
+        assertEquals(1, loads.get());
+        Map<String, Object> stats = noteCache.stats();
+        assertEquals(true, stats.get("enabled"));
+        assertEquals(2L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+    }
+
+    @Test
+    void testReturnsCopies() {
+        NoteCache noteCache = new NoteCache(true, 100, Duration.ofMinutes(10));
+        Note loaded = Note.builder().noteId(1L).subject("Original").build();
+
+        noteCache.get(1L, id -> loaded).setSubject("Changed by a caller");
+        loaded.setSubject("Changed in the persistence context");
+
+        assertEquals("Original", noteCache.get(1L, id -> fail("should be cached")).getSubject());
+    }
+
+    @Test
+    void testMissingNotesAreNotCached() {
+        NoteCache noteCache = new NoteCache(true, 100, Duration.ofMinutes(10));
+
+        assertNull(noteCache.get(1L, id -> null));
+        assertEquals("Created", noteCache.get(1L, id -> Note.builder().noteId(id).subject("Created").build()).getSubject());
+    }
+
+    @Test
+    void testSizeIsBounded() {
+        NoteCache noteCache = new NoteCache(true, 100, Duration.ofMinutes(10));
+
+        for (long id = 1; id <= 1_000; id++) {
+            noteCache.get(id, key -> Note.builder().noteId(key).build());
+        }
+
+        Map<String, Object> stats = noteCache.stats();
+        assertTrue((long) stats.get("size") <= 100, "size " + stats.get("size"));
+        assertTrue((long) stats.get("evictions") >= 900, "evictions " + stats.get("evictions"));
+    }
+
+    @Test
+    void testInvalidateAgainAfterTransaction() {
+        NoteCache noteCache = new NoteCache(true, 100, Duration.ofMinutes(10));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            noteCache.invalidate(1L);
+            // A read inside the transaction still sees the committed note and caches it
+            noteCache.get(1L, id -> Note.builder().noteId(id).subject("Before commit").build());
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals("After commit", noteCache.get(1L, id -> Note.builder().noteId(id).subject("After commit").build()).getSubject());
+    }
+
+    @Test
+    void testInvalidateDoesNotWaitForALoad() throws Exception {
+        NoteCache noteCache = new NoteCache(true, 100, Duration.ofMinutes(10));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Note> slowLoad = CompletableFuture.supplyAsync(() -> noteCache.get(1L, id -> {
+            loading.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Note.builder().noteId(id).subject("Before the write").build();
+        }));
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+        // A writer holding the connection the load waits for must not wait for the load in turn
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> noteCache.invalidate(1L));
+        assertNull(noteCache.getIfPresent(1L));
+        release.countDown();
+
+        assertEquals("Before the write", slowLoad.get(10, TimeUnit.SECONDS).getSubject());
+        assertEquals("After the write", noteCache.get(1L, id -> Note.builder().noteId(id).subject("After the write").build()).getSubject());
+    }
+
+    @Test
+    void testDisabledCacheAlwaysLoads() {
+        NoteCache noteCache = new NoteCache(false, 100, Duration.ofMinutes(10));
+        AtomicInteger loads = new AtomicInteger();
+
+        noteCache.get(1L, id -> Note.builder().noteId((long) loads.incrementAndGet()).build());
+        noteCache.get(1L, id -> Note.builder().noteId((long) loads.incrementAndGet()).build());
+
+        assertEquals(2, loads.get());
+        assertEquals(Map.of("enabled", false), noteCache.stats());
+    }
+}
@@ -0,0 +1,136 @@
+package com.telus.demo.service;
+
+import com.telus.demo.dao.NoteShards;
+import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.modal.Note;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+public class NoteSearchIndexTest {
+
+    @Mock
+    private NotesRepository notesRepository;
+
+    private NoteSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        index = new NoteSearchIndex(notesRepository, new NoteShards(List.of()));
+    }
+
+    @Test
+    void testTokenize() {
+        List<String> terms = new ArrayList<>();
+        NoteSearchIndex.tokenize("  Hello, WORLD! it's 2024 ", terms::add);
+
+        assertEquals(List.of("hello", "world", "it", "s", "2024"), terms);
+    }
+
+    @Test
+    void testRanksByTermFrequencyAndRarity() {
+        index.index(note(1L, "Groceries", "milk eggs bread"));
+        index.index(note(2L, "Recipe", "eggs eggs eggs and flour"));
+        index.index(note(3L, "Chores", "laundry and dishes"));
+
+        assertEquals(List.of(2L, 1L), index.search("eggs", 10));
+        // "milk" is rarer than "eggs", so the single note holding both ranks first
+        assertEquals(List.of(1L, 2L), index.search("milk eggs", 10));
+        assertEquals(List.of(2L), index.search("EGGS", 1));
+        assertTrue(index.search("pineapple", 10).isEmpty());
+    }
+
+    @Test
+    void testSubjectWeighsMoreThanDescription() {
+        index.index(note(1L, "Notes", "budget meeting tomorrow"));
+        index.index(note(2L, "Budget", "meeting tomorrow"));
+
+        assertEquals(List.of(2L, 1L), index.search("budget", 10));
+    }
+
+    @Test
+    void testReindexAndRemove() {
+        index.index(note(1L, "Budget", "Quarterly review"));
+        index.index(note(1L, "Roadmap", "Next year"));
+
+        assertTrue(index.search("budget", 10).isEmpty());
+        assertEquals(List.of(1L), index.search("roadmap", 10));
+        assertEquals(1, index.size());
+
+        index.remove(1L);
+
+        assertTrue(index.search("roadmap", 10).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void testCompactionKeepsLiveNotes() {
+        for (long id = 1; id <= 100; id++) {
+            index.index(note(id, "Subject " + id, "common words here"));
+        }
+        // Enough rewrites to trigger compactions of the dead documents
+        for (int round = 0; round < 250; round++) {
+            for (long id = 1; id <= 100; id++) {
+                index.index(note(id, "Subject " + id, round % 2 == 0 ? "common words here" : "other text"));
+            }
+        }
+
+        assertEquals(100, index.size());
+        assertEquals(100, index.search("other", 200).size());
+        assertTrue(index.search("common", 200).isEmpty());
+        assertEquals(List.of(42L), index.search("42", 10));
+    }
+
+    @Test
+    void testCompactionDropsTermsOfDeadDocuments() {
+        for (long id = 1; id <= 100; id++) {
+            index.index(note(id, "Subject", "common words"));
+        }
+        // Each rewrite brings a token no other note has, such as a URL or a typo
+        for (int round = 0; round < 250; round++) {
+            for (long id = 1; id <= 100; id++) {
+                index.index(note(id, "Subject", "common words token" + round + "x" + id));
+            }
+        }
+
+        // 25,000 unique tokens were indexed; only those of the live notes and of the dead documents since the
+        // last compaction are left
+        assertTrue(index.termCount() < 12_500, "terms " + index.termCount());
+        assertEquals(List.of(7L), index.search("token249x7", 10));
+        assertTrue(index.search("token0x7", 10).isEmpty());
+        assertEquals(100, index.search("common", 200).size());
+    }
+
+    @Test
+    void testRebuildOnStartupPagesThroughNotes() {
+        List<Note> all = new ArrayList<>();
+        for (long id = 1; id <= 2_500; id++) {
+            all.add(note(id, "Subject", id % 2 == 0 ? "even" : "odd"));
+        }
+        when(notesRepository.findByNoteIdGreaterThanOrderByNoteIdAsc(anyLong(), any(Limit.class))).thenAnswer(invocation -> {
+            long after = invocation.getArgument(0);
+            Limit limit = invocation.getArgument(1);
+            return all.stream().filter(n -> n.getNoteId() > after).limit(limit.max()).toList();
+        });
+
+        index.rebuildOnStartup();
+
+        assertEquals(2_500, index.size());
+        assertEquals(1_250, index.search("even", 2_000).size());
+    }
+
+    private static Note note(Long id, String subject, String description) {
+        return Note.builder().noteId(id).subject(subject).description(description).build();
+    }
+}
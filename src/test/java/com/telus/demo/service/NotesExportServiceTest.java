@@ -0,0 +1,102 @@
+package com.telus.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.telus.demo.dao.DescriptionCompression;
+import com.telus.demo.dao.NoteShards;
+import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.modal.Note;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@AutoConfigureJson
+@Import({NotesExportService.class, NoteShards.class, DescriptionCompression.class, SimpleMeterRegistry.class})
+public class NotesExportServiceTest {
+
+    private static final int NOTE_COUNT = 1_234;
+
+    @Autowired
+    private NotesExportService notesExportService;
+
+    @Autowired
+    private NotesRepository notesRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        List<Note> notes = new ArrayList<>(NOTE_COUNT);
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            notes.add(Note.builder()
+                    .subject("Subject " + i)
+                    .description("Description " + i)
+                    .likes(i % 7)
+                    .timestampCreated(LocalDateTime.now())
+                    .timestampUpdated(LocalDateTime.now())
+                    .build());
+        }
+        notesRepository.saveAll(notes);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void testExportWritesOneNotePerLineInIdOrder() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = notesExportService.exportNotes(out, false);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(NOTE_COUNT, count);
+        assertEquals(NOTE_COUNT, lines.length);
+        long previousId = 0;
+        for (String line : lines) {
+            Note note = objectMapper.readValue(line, Note.class);
+            assertTrue(note.getNoteId() > previousId);
+            previousId = note.getNoteId();
+        }
+    }
+
+    @Test
+    void testExportGzip() throws IOException {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+
+        notesExportService.exportNotes(plain, false);
+        notesExportService.exportNotes(gzipped, true);
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.toByteArray()))) {
+            assertArrayEquals(plain.toByteArray(), in.readAllBytes());
+        }
+        assertTrue(gzipped.size() < plain.size());
+    }
+
+    @Test
+    void testExportDoesNotKeepNotesInThePersistenceContext() throws IOException {
+        notesExportService.exportNotes(new ByteArrayOutputStream(), false);
+
+        assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+    }
+}
@@ -0,0 +1,131 @@
+package com.telus.demo.service;
+
+import com.telus.demo.dao.DescriptionCompression;
+import com.telus.demo.dao.NoteShards;
+import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.modal.BulkImportResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.AutoConfigureJson;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "notes.bulk.chunk-size=100",
+        "notes.bulk.batch-size=25",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+@AutoConfigureJson
+@Import({NotesImportService.class, NoteLengthStats.class, NoteSearchIndex.class, TopLikedLeaderboard.class,
+        NoteMetrics.class, NoteChangeFeed.class, NoteShards.class, DescriptionCompression.class, SimpleMeterRegistry.class})
+// Each chunk commits in its own transaction, so the test must not wrap them in one
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class NotesImportServiceTest {
+
+    @Autowired
+    private NotesImportService notesImportService;
+
+    @Autowired
+    private NotesRepository notesRepository;
+
+    @Autowired
+    private NoteSearchIndex noteSearchIndex;
+
+    @Autowired
+    private NoteChangeFeed noteChangeFeed;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        notesRepository.deleteAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void testImportJsonArrayInBatches() throws IOException {
+        StringJoiner json = new StringJoiner(",", "[", "]");
+        for (int i = 0; i < 250; i++) {
+            json.add(note(i, "Subject " + i));
+        }
+
+        int indexed = noteSearchIndex.size();
+        long sequence = noteChangeFeed.getLastSequence();
+        BulkImportResult result = notesImportService.importNotes(input(json.toString()));
+
+        assertEquals(250, result.getImported());
+        assertTrue(result.getFailures().isEmpty());
+        assertEquals(250, notesRepository.count());
+        assertEquals(indexed + 250, noteSearchIndex.size());
+        assertEquals(sequence + 250, noteChangeFeed.getLastSequence());
+        // 3 chunks in batches of 25 inserts, instead of one statement per note
+        assertEquals(3, statistics.getTransactionCount() - 1);
+        assertTrue(statistics.getPrepareStatementCount() < 30,
+                "prepared " + statistics.getPrepareStatementCount() + " statements");
+    }
+
+    @Test
+    void testImportNdjsonReportsFailedChunk() throws IOException {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            // Too long for the subject column, so the second chunk is rolled back
+            String subject = i == 150 ? "x".repeat(300) : "Subject " + i;
+            ndjson.append(note(i, subject)).append('\n');
+        }
+
+        int indexed = noteSearchIndex.size();
+        BulkImportResult result = notesImportService.importNotes(input(ndjson.toString()));
+
+        assertEquals(200, result.getImported());
+        assertEquals(1, result.getFailures().size());
+        BulkImportResult.ChunkFailure failure = result.getFailures().get(0);
+        assertEquals(1, failure.getChunk());
+        assertEquals(100, failure.getFirstNote());
+        assertEquals(100, failure.getNotes());
+        assertEquals(200, notesRepository.count());
+        assertEquals(indexed + 200, noteSearchIndex.size());
+    }
+
+    @Test
+    void testMalformedInputStopsTheImport() throws IOException {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 120; i++) {
+            ndjson.append(note(i, "Subject " + i)).append('\n');
+        }
+        ndjson.append("{\"subject\": oops}\n").append(note(120, "Never read")).append('\n');
+
+        BulkImportResult result = notesImportService.importNotes(input(ndjson.toString()));
+
+        assertEquals(100, result.getImported());
+        assertEquals(1, result.getFailures().size());
+        assertEquals(100, result.getFailures().get(0).getFirstNote());
+        assertTrue(result.getFailures().get(0).getError().startsWith("Malformed input"));
+        assertEquals(100, notesRepository.count());
+    }
+
+    private static String note(int i, String subject) {
+        return "{\"noteId\":" + i + ",\"subject\":\"" + subject + "\",\"description\":\"Bulk note " + i + "\",\"likes\":" + (i % 5) + "}";
+    }
+
+    private static InputStream input(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,97 @@
+package com.telus.demo.service;
+
+import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.modal.BatchOperation;
+import com.telus.demo.modal.BatchResult;
+import com.telus.demo.modal.Note;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:batch;DB_CLOSE_DELAY=-1",
+        "logging.level.com.telus.demo.service=WARN"
+})
+public class NotesServiceBatchTest {
+
+    @Autowired
+    private NotesService notesService;
+
+    @Autowired
+    private NotesRepository notesRepository;
+
+    @Test
+    void testBatchIsAppliedInOrder() {
+        Long noteId = notesService.addNote(Note.builder().subject("Batched").description("One round trip").build()).getNoteId();
+        Long deletedId = notesService.addNote(Note.builder().subject("Doomed").description("Deleted in the batch").build()).getNoteId();
+
+        List<BatchResult> results = notesService.applyBatch(List.of(
+                new BatchOperation(BatchOperation.Type.LIKE, noteId, null),
+                new BatchOperation(BatchOperation.Type.MODIFY, noteId, Note.builder().subject("Renamed").build()),
+                new BatchOperation(BatchOperation.Type.LIKE, noteId, null),
+                new BatchOperation(BatchOperation.Type.DELETE, deletedId, null),
+                new BatchOperation(BatchOperation.Type.UNLIKE, deletedId, null)));
+
+        assertEquals(List.of(200, 200, 200, 204, 404), results.stream().map(BatchResult::getStatus).toList());
+        // Every result shows the note as left by the operations before it
+        assertEquals(1, results.get(0).getNote().getVersion());
+        assertEquals("Renamed", results.get(1).getNote().getSubject());
+        assertEquals(2, results.get(1).getNote().getVersion());
+        assertEquals(2, results.get(2).getNote().getLikes());
+        assertEquals(3, results.get(2).getNote().getVersion());
+
+        Note stored = notesRepository.findById(noteId).orElseThrow();
+        assertEquals("Renamed", stored.getSubject());
+        assertEquals(2, stored.getLikes());
+        assertFalse(notesRepository.existsById(deletedId));
+        assertEquals(List.of(noteId), notesService.getNotesByIds(List.of(deletedId, noteId)).stream().map(Note::getNoteId).toList());
+    }
+
+    @Test
+    void testFailedBatchIsRolledBack() {
+        Long noteId = notesService.addNote(Note.builder().subject("Untouched").description("Rolled back").build()).getNoteId();
+
+        assertThrows(DataIntegrityViolationException.class, () -> notesService.applyBatch(List.of(
+                new BatchOperation(BatchOperation.Type.LIKE, noteId, null),
+                // Too long for the subject column
+                new BatchOperation(BatchOperation.Type.MODIFY, noteId, Note.builder().subject("x".repeat(300)).build()))));
+
+        Note stored = notesRepository.findById(noteId).orElseThrow();
+        assertEquals("Untouched", stored.getSubject());
+        assertEquals(0, stored.getLikes());
+    }
+
+    @Test
+    void testRolledBackBatchLeavesInMemoryStateAlone() {
+        Long noteId = notesService.addNote(Note.builder().subject("Indexed").description("Words before").build()).getNoteId();
+        Long deletedId = notesService.addNote(Note.builder().subject("Kept").description("Survivor").build()).getNoteId();
+        Long likedId = notesService.addNote(Note.builder().subject("Liked").description("Liked twice").build()).getNoteId();
+        notesService.likeNote(likedId);
+        notesService.likeNote(likedId);
+        double averageLength = notesService.getAverageNoteLength();
+
+        assertThrows(DataIntegrityViolationException.class, () -> notesService.applyBatch(List.of(
+                new BatchOperation(BatchOperation.Type.LIKE, noteId, null),
+                new BatchOperation(BatchOperation.Type.LIKE, noteId, null),
+                new BatchOperation(BatchOperation.Type.LIKE, noteId, null),
+                new BatchOperation(BatchOperation.Type.MODIFY, noteId, Note.builder()
+                        .description("Quokka words that were never committed, and many more of them").build()),
+                new BatchOperation(BatchOperation.Type.DELETE, deletedId, null),
+                // Too long for the subject column
+                new BatchOperation(BatchOperation.Type.MODIFY, noteId, Note.builder().subject("x".repeat(300)).build()))));
+
+        assertTrue(notesService.searchNotesFullText("quokka", 10).isEmpty());
+        assertEquals(List.of(noteId), notesService.searchNotesFullText("before", 10).stream().map(Note::getNoteId).toList());
+        assertEquals(List.of(deletedId), notesService.searchNotesFullText("survivor", 10).stream().map(Note::getNoteId).toList());
+        assertEquals(averageLength, notesService.getAverageNoteLength());
+        // The three likes were rolled back, so the note still ranks below the one liked twice
+        List<Long> ranking = notesService.getTopLikedNotes(100).stream().map(Note::getNoteId).toList();
+        assertTrue(ranking.indexOf(likedId) < ranking.indexOf(noteId), "ranking " + ranking);
+        assertEquals(0, notesRepository.findById(noteId).orElseThrow().getLikes());
+    }
+}
@@ -0,0 +1,131 @@
+package com.telus.demo.service;
+
+import com.telus.demo.modal.Note;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Slf4j
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:likes-concurrency;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "logging.level.com.telus.demo.service=WARN"
+})
+public class NotesServiceConcurrencyTest {
+
+    private static final int THREADS = 32;
+    private static final int LIKES = 4_000;
+
+    @Autowired
+    private NotesService notesService;
+
+    @Test
+    void testParallelLikesAreNeverLost() throws Exception {
+        Long noteId = notesService.addNote(Note.builder().subject("Viral").description("Liked a lot").build()).getNoteId();
+
+        long start = System.nanoTime();
+        runInParallel(LIKES, () -> notesService.likeNote(noteId));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double likesPerSecond = LIKES / seconds;
+        log.warn("{} parallel likes on {} threads: {} likes/sec", LIKES, THREADS, Math.round(likesPerSecond));
+
+        assertEquals(LIKES, notesService.getNoteById(noteId).getLikes());
+        assertTrue(likesPerSecond > 100, "throughput collapsed to " + likesPerSecond + " likes/sec");
+    }
+
+    @Test
+    void testParallelLikesAndUnlikesBalanceOut() throws Exception {
+        Long noteId = notesService.addNote(Note.builder().subject("Contested").description("Loved and hated").likes(LIKES).build()).getNoteId();
+
+        List<Callable<Note>> tasks = new ArrayList<>();
+        for (int i = 0; i < LIKES / 2; i++) {
+            tasks.add(() -> notesService.likeNote(noteId));
+            tasks.add(() -> notesService.unlikeNote(noteId));
+        }
+        runInParallel(tasks);
+
+        // The initial likes keep the count above 0 whatever the interleaving, so every unlike cancels one like
+        assertEquals(LIKES, notesService.getNoteById(noteId).getLikes());
+    }
+
+    @Test
+    void testParallelUnlikesStopAtZero() throws Exception {
+        Long noteId = notesService.addNote(Note.builder().subject("Unpopular").description("Not liked").build()).getNoteId();
+        notesService.boostLikes(noteId);
+
+        runInParallel(200, () -> notesService.unlikeNote(noteId));
+
+        assertEquals(0, notesService.getNoteById(noteId).getLikes());
+    }
+
+    @Test
+    void testCachedReadsNeverSeeANoteOlderThanTheLastWrite() throws Exception {
+        Long noteId = notesService.addNote(Note.builder().subject("0").description("Read a lot").build()).getNoteId();
+        // Version and likes of the last write that returned, published before the next write starts
+        AtomicInteger writtenVersion = new AtomicInteger();
+        AtomicInteger writtenLikes = new AtomicInteger();
+        AtomicInteger staleReads = new AtomicInteger();
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        List<Callable<Note>> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            for (int version = 1; version <= 300; version++) {
+                notesService.modifyNote(noteId, Note.builder().subject(String.valueOf(version)).build());
+                writtenVersion.set(version);
+                writtenLikes.set(notesService.likeNote(noteId).getLikes());
+            }
+            writing.set(false);
+            return null;
+        });
+        for (int reader = 0; reader < THREADS - 1; reader++) {
+            tasks.add(() -> {
+                while (writing.get()) {
+                    int version = writtenVersion.get();
+                    int likes = writtenLikes.get();
+                    Note note = notesService.getNoteById(noteId);
+                    if (Integer.parseInt(note.getSubject()) < version || note.getLikes() < likes) {
+                        staleReads.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        runInParallel(tasks);
+
+        assertEquals(0, staleReads.get());
+        assertEquals(300, notesService.getNoteById(noteId).getLikes());
+        assertTrue((long) notesService.getCacheStats().get("hits") > 0);
+    }
+
+    private void runInParallel(int count, Callable<Note> task) throws Exception {
+        List<Callable<Note>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(task);
+        }
+        runInParallel(tasks);
+    }
+
+    private void runInParallel(List<Callable<Note>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Note> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.telus.demo.service;
+
+import com.telus.demo.dao.MemoryNotesRepository;
+import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.modal.BatchOperation;
+import com.telus.demo.modal.BulkImportResult;
+import com.telus.demo.modal.CursorPage;
+import com.telus.demo.modal.Note;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the services on the in-memory note store instead of the database.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:memory-storage;DB_CLOSE_DELAY=-1",
+        "notes.storage.engine=memory",
+        "logging.level.com.telus.demo.service=WARN"
+})
+public class NotesServiceMemoryStorageTest {
+
+    @Autowired
+    private NotesService notesService;
+
+    @Autowired
+    private NotesImportService notesImportService;
+
+    @Autowired
+    private NotesExportService notesExportService;
+
+    @Autowired
+    private NotesRepository notesRepository;
+
+    @DynamicPropertySource
+    static void storageDirectory(DynamicPropertyRegistry registry) throws IOException {
+        String directory = Files.createTempDirectory("memory-storage").toString();
+        registry.add("notes.storage.memory.directory", () -> directory);
+    }
+
+    @Test
+    void testServicesUseTheMemoryStore() {
+        assertInstanceOf(MemoryNotesRepository.class, notesRepository);
+
+        Note added = notesService.addNote(Note.builder().subject("In memory").description("No database involved").build());
+        notesService.likeNote(added.getNoteId());
+        Note modified = notesService.modifyNote(added.getNoteId(), Note.builder().subject("Still in memory").build());
+
+        assertEquals(2, modified.getVersion());
+        assertEquals(1, modified.getLikes());
+        assertEquals(3, notesService.getWordCount(added.getNoteId()));
+        assertEquals("Still in memory", notesRepository.findById(added.getNoteId()).orElseThrow().getSubject());
+        CursorPage<Note> liked = notesService.getLikedNotes(null, 100);
+        assertTrue(liked.getItems().stream().anyMatch(note -> note.getNoteId().equals(added.getNoteId())));
+
+        notesService.deleteNote(added.getNoteId());
+        assertFalse(notesRepository.existsById(added.getNoteId()));
+    }
+
+    @Test
+    void testFailedBatchIsRolledBack() {
+        Long noteId = notesService.addNote(Note.builder().subject("Untouched").description("Rolled back").build()).getNoteId();
+
+        assertThrows(DataIntegrityViolationException.class, () -> notesService.applyBatch(List.of(
+                new BatchOperation(BatchOperation.Type.LIKE, noteId, null),
+                // Longer than the database would take
+                new BatchOperation(BatchOperation.Type.MODIFY, noteId, Note.builder().subject("x".repeat(300)).build()))));
+
+        Note stored = notesRepository.findById(noteId).orElseThrow();
+        assertEquals("Untouched", stored.getSubject());
+        assertEquals(0, stored.getLikes());
+        assertEquals(0, stored.getVersion());
+    }
+
+    @Test
+    void testImportAndExport() throws IOException {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 150; i++) {
+            ndjson.append("{\"subject\":\"Imported ").append(i).append("\",\"description\":\"Bulk note\"}\n");
+        }
+        long before = notesRepository.count();
+
+        BulkImportResult result = notesImportService.importNotes(
+                new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(150, result.getImported());
+        assertEquals(before + 150, notesRepository.count());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(before + 150, notesExportService.exportNotes(out, false));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("\"subject\":\"Imported 149\""));
+    }
+}
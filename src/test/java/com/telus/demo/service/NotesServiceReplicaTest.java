@@ -0,0 +1,74 @@
+package com.telus.demo.service;
+
+import com.telus.demo.dao.ReplicaRoutingDataSource;
+import com.telus.demo.modal.Note;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two H2 file databases stand in for the primary and its replica. Nothing replicates between them,
+ * so what a read returns shows which one served it.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + NotesServiceReplicaTest.PRIMARY_URL,
+        "notes.datasource.replica-urls=" + NotesServiceReplicaTest.REPLICA_URL,
+        "logging.level.com.telus.demo.service=WARN"
+})
+public class NotesServiceReplicaTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:file:./target/replica-test/primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:file:./target/replica-test/replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private NotesService notesService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeAll
+    static void createReplica() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(REPLICA_URL, "root", "root");
+             Statement statement = connection.createStatement()) {
+            statement.execute("drop all objects");
+            statement.execute("create table note (note_id bigint primary key, subject varchar(255), "
+                    + "description varchar(255), likes integer not null, word_count integer, version bigint default 0 not null, "
+                    + "timestamp_created timestamp(6), timestamp_updated timestamp(6))");
+            statement.execute("insert into note (note_id, subject, description, likes, word_count) "
+                    + "values (1000000, 'Replicated', 'Only on the replica', 3, 4)");
+        }
+        try (Connection connection = DriverManager.getConnection(PRIMARY_URL, "root", "root");
+             Statement statement = connection.createStatement()) {
+            statement.execute("drop all objects");
+        }
+    }
+
+    @Test
+    void testReadsGoToTheReplicaAndWritesToThePrimary() throws SQLException {
+        Note note = notesService.addNote(Note.builder().subject("Written").description("Only on the primary").build());
+
+        // Reads after a write and cache loads stay on the primary
+        assertEquals("Written", notesService.getNoteById(note.getNoteId()).getSubject());
+        assertEquals("Written", notesService.likeNote(note.getNoteId()).getSubject());
+
+        // Pages, searches and counts are served by the replica
+        assertEquals(1L, notesService.countTotalNotes());
+        assertEquals("Replicated", notesService.getAllNotes(null, null).getItems().get(0).getSubject());
+        assertEquals(1, notesService.getLikedNotes(null, null).getItems().size());
+        assertTrue(notesService.searchNotesBySubject("Written", null, null).getItems().isEmpty());
+        assertEquals(4, notesService.getWordCount(1000000L));
+
+        ReplicaRoutingDataSource routing = dataSource.unwrap(ReplicaRoutingDataSource.class);
+        assertEquals(Map.of("replica-1", true), routing.getReplicaStatus());
+    }
+}
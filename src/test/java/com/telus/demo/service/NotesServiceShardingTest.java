@@ -0,0 +1,239 @@
+package com.telus.demo.service;
+
+import com.telus.demo.dao.NoteShards;
+import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.exception.InvalidBatchException;
+import com.telus.demo.modal.BatchOperation;
+import com.telus.demo.modal.BatchResult;
+import com.telus.demo.modal.CursorPage;
+import com.telus.demo.modal.Note;
+import com.telus.demo.modal.NoteSummary;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Three H2 file databases stand in for three shards, each checked directly to see where a note was stored.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + NotesServiceShardingTest.SHARD_0_URL,
+        "notes.sharding.shard-urls=" + NotesServiceShardingTest.SHARD_1_URL + "," + NotesServiceShardingTest.SHARD_2_URL,
+        "logging.level.com.telus.demo.service=WARN"
+})
+public class NotesServiceShardingTest {
+
+    static final String SHARD_0_URL = "jdbc:h2:file:./target/sharding-test/shard0;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1_URL = "jdbc:h2:file:./target/sharding-test/shard1;DB_CLOSE_DELAY=-1";
+    static final String SHARD_2_URL = "jdbc:h2:file:./target/sharding-test/shard2;DB_CLOSE_DELAY=-1";
+    private static final List<String> SHARD_URLS = List.of(SHARD_0_URL, SHARD_1_URL, SHARD_2_URL);
+
+    @Autowired
+    private NotesService notesService;
+
+    @Autowired
+    private NotesExportService notesExportService;
+
+    @Autowired
+    private NoteShards noteShards;
+
+    @Autowired
+    private NotesRepository notesRepository;
+
+    @Autowired
+    private NoteCache noteCache;
+
+    @BeforeAll
+    static void dropShards() throws SQLException {
+        for (String url : SHARD_URLS) {
+            try (Connection connection = DriverManager.getConnection(url, "root", "root");
+                 Statement statement = connection.createStatement()) {
+                statement.execute("drop all objects");
+            }
+        }
+    }
+
+    @Test
+    void testNotesAreSpreadOverTheShardsAndFoundByTheirId() throws SQLException {
+        List<Note> notes = addNotes("Spread " + System.nanoTime(), 6);
+
+        assertEquals(3, noteShards.getCount());
+        assertEquals(Set.of(0, 1, 2), notes.stream().map(note -> noteShards.shardOf(note.getNoteId())).collect(Collectors.toSet()));
+        for (Note note : notes) {
+            int shard = noteShards.shardOf(note.getNoteId());
+            assertEquals(note.getSubject(), subjectStoredOn(shard, note.getNoteId()));
+
+            // Point operations run on the shard of the note
+            assertEquals(note.getDescription(), notesService.getNoteById(note.getNoteId()).getDescription());
+            assertEquals(1, notesService.likeNote(note.getNoteId()).getLikes());
+            assertEquals("Renamed", notesService.modifyNote(note.getNoteId(), Note.builder().subject("Renamed").build()).getSubject());
+            assertEquals("Renamed", subjectStoredOn(shard, note.getNoteId()));
+        }
+
+        Note deleted = notes.get(1);
+        notesService.deleteNote(deleted.getNoteId());
+        assertNull(subjectStoredOn(noteShards.shardOf(deleted.getNoteId()), deleted.getNoteId()));
+    }
+
+    @Test
+    void testPagesSearchesAndCountsMergeEveryShard() throws SQLException, IOException {
+        String subject = "Merged " + System.nanoTime();
+        List<Long> ids = addNotes(subject, 6).stream().map(Note::getNoteId).sorted().toList();
+
+        CursorPage<Note> firstPage = notesService.searchNotesBySubject(subject, null, 4);
+        assertEquals(ids.subList(0, 4), firstPage.getItems().stream().map(Note::getNoteId).toList());
+        CursorPage<Note> lastPage = notesService.searchNotesBySubject(subject, firstPage.getNextCursor(), 4);
+        assertEquals(ids.subList(4, 6), lastPage.getItems().stream().map(Note::getNoteId).toList());
+        assertNull(lastPage.getNextCursor());
+        CursorPage<NoteSummary> summaries = notesService.searchNoteSummariesBySubject(subject, null, 4);
+        assertEquals(ids.subList(0, 4), summaries.getItems().stream().map(NoteSummary::getNoteId).toList());
+        assertEquals(firstPage.getNextCursor(), summaries.getNextCursor());
+
+        List<Long> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<Note> page = notesService.getAllNotes(cursor, 5);
+            page.getItems().forEach(note -> all.add(note.getNoteId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertTrue(all.containsAll(ids));
+        assertEquals(all.stream().sorted().toList(), all);
+
+        long stored = 0;
+        for (int shard = 0; shard < SHARD_URLS.size(); shard++) {
+            stored += countStoredOn(shard);
+        }
+        assertEquals(stored, notesService.countTotalNotes());
+        assertEquals(stored, notesExportService.exportNotes(new ByteArrayOutputStream(), false));
+    }
+
+    @Test
+    void testLikedNotesAndTopLikedComeFromEveryShard() {
+        List<Note> notes = addNotes("Liked " + System.nanoTime(), 3);
+        notes.forEach(note -> notesService.boostLikes(note.getNoteId()));
+        Note favourite = notes.get(2);
+        notesService.likeNote(favourite.getNoteId());
+
+        Set<Long> liked = new HashSet<>();
+        String cursor = null;
+        do {
+            CursorPage<Note> page = notesService.getLikedNotes(cursor, 2);
+            page.getItems().forEach(note -> liked.add(note.getNoteId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertTrue(liked.containsAll(notes.stream().map(Note::getNoteId).toList()));
+
+        List<Note> top = notesService.getTopLikedNotes(100);
+        assertEquals(top.stream().map(Note::getNoteId).toList(),
+                notesService.getTopLikedNoteSummaries(100).stream().map(NoteSummary::getNoteId).toList());
+        assertEquals(top.stream().sorted(Comparator.comparingInt(Note::getLikes).reversed()).toList(), top);
+        assertTrue(top.stream().map(Note::getNoteId).toList().containsAll(notes.stream().map(Note::getNoteId).toList()));
+        List<Long> topIds = top.stream().map(Note::getNoteId).toList();
+        assertTrue(topIds.indexOf(favourite.getNoteId()) < topIds.indexOf(notes.get(0).getNoteId()));
+
+        List<Long> ids = List.of(notes.get(2).getNoteId(), notes.get(0).getNoteId(), notes.get(1).getNoteId());
+        assertEquals(ids, notesService.getNotesByIds(ids).stream().map(Note::getNoteId).toList());
+    }
+
+    @Test
+    void testBatchStaysOnOneShard() {
+        List<Note> notes = addNotes("Batched " + System.nanoTime(), 4);
+        Note first = notes.get(0);
+        Note sameShard = notes.get(3);
+        assertEquals(noteShards.shardOf(first.getNoteId()), noteShards.shardOf(sameShard.getNoteId()));
+
+        List<BatchResult> results = notesService.applyBatch(List.of(
+                new BatchOperation(BatchOperation.Type.LIKE, first.getNoteId(), null),
+                new BatchOperation(BatchOperation.Type.LIKE, sameShard.getNoteId(), null)));
+        assertEquals(List.of(200, 200), results.stream().map(BatchResult::getStatus).toList());
+
+        assertThrows(InvalidBatchException.class, () -> notesService.applyBatch(List.of(
+                new BatchOperation(BatchOperation.Type.LIKE, first.getNoteId(), null),
+                new BatchOperation(BatchOperation.Type.LIKE, notes.get(1).getNoteId(), null))));
+        assertEquals(1, notesService.getNoteById(first.getNoteId()).getLikes());
+    }
+
+    @Test
+    void testLikesOfAShardThatFailsToFlushAreWrittenOnceByTheNextFlush() throws SQLException {
+        List<Note> notes = addNotes("Flushed " + System.nanoTime(), 3);
+        Set<Integer> failing = new HashSet<>(Set.of(1));
+        NotesRepository flakyRepository = mock(NotesRepository.class);
+        when(flakyRepository.incrementLikesBatch(anyMap())).thenAnswer(invocation -> {
+            Map<Long, Long> deltas = invocation.getArgument(0);
+            if (deltas.keySet().stream().anyMatch(noteId -> failing.contains(noteShards.shardOf(noteId)))) {
+                throw new IllegalStateException("Shard down");
+            }
+            return notesRepository.incrementLikesBatch(deltas);
+        });
+        LikeAggregator likeAggregator = new LikeAggregator(flakyRepository, noteCache, noteShards, true);
+        notes.forEach(note -> likeAggregator.add(note.getNoteId(), 2, 0));
+
+        assertThrows(IllegalStateException.class, likeAggregator::flush);
+        for (Note note : notes) {
+            boolean failed = noteShards.shardOf(note.getNoteId()) == 1;
+            assertEquals(failed ? 0 : 2, likesStoredOn(noteShards.shardOf(note.getNoteId()), note.getNoteId()));
+            assertEquals(failed ? 2 : 0, likeAggregator.pendingDelta(note.getNoteId()));
+        }
+
+        failing.clear();
+        likeAggregator.flush();
+        for (Note note : notes) {
+            assertEquals(2, likesStoredOn(noteShards.shardOf(note.getNoteId()), note.getNoteId()));
+            assertEquals(0, likeAggregator.pendingDelta(note.getNoteId()));
+        }
+    }
+
+    private List<Note> addNotes(String subject, int count) {
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            notes.add(notesService.addNote(Note.builder().subject(subject).description("Note number " + i).build()));
+        }
+        return notes;
+    }
+
+    private static String subjectStoredOn(int shard, long noteId) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(SHARD_URLS.get(shard), "root", "root");
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("select subject from note where note_id = " + noteId)) {
+            return rows.next() ? rows.getString(1) : null;
+        }
+    }
+
+    private static int likesStoredOn(int shard, long noteId) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(SHARD_URLS.get(shard), "root", "root");
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("select likes from note where note_id = " + noteId)) {
+            rows.next();
+            return rows.getInt(1);
+        }
+    }
+
+    private static long countStoredOn(int shard) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(SHARD_URLS.get(shard), "root", "root");
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("select count(*) from note")) {
+            rows.next();
+            return rows.getLong(1);
+        }
+    }
+}
@@ -1,17 +1,38 @@
 package com.telus.demo.service;
 
+import com.telus.demo.dao.NoteShards;
 import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.exception.InvalidBatchException;
+import com.telus.demo.exception.InvalidCursorException;
 import com.telus.demo.exception.NoteNotFoundException;
+import com.telus.demo.exception.PreconditionFailedException;
+import com.telus.demo.modal.BatchOperation;
+import com.telus.demo.modal.BatchResult;
+import com.telus.demo.modal.CursorPage;
 import com.telus.demo.modal.Note;
+import com.telus.demo.modal.NoteLengthTotals;
+import com.telus.demo.modal.NoteLikes;
+import com.telus.demo.modal.NoteVersion;
+import com.telus.demo.modal.PageCursor;
+import com.telus.demo.modal.TextStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -24,10 +45,25 @@ public class NotesServiceTest {
 
     private NotesService notesService;
 
+    private NoteLengthStats noteLengthStats;
+
+    // Switched off, so that every read reaches the mocked repository
+    private final NoteCache noteCache = new NoteCache(false, 0, Duration.ZERO);
+
+    private final NoteShards noteShards = new NoteShards(List.of());
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final NoteMetrics noteMetrics = new NoteMetrics(meterRegistry);
+    private final NoteChangeFeed noteChangeFeed = new NoteChangeFeed(100, Duration.ofMinutes(1), Duration.ofSeconds(15),
+            Jackson2ObjectMapperBuilder.json().build(), meterRegistry);
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        notesService = new NotesService(notesRepository);
+        noteLengthStats = new NoteLengthStats(notesRepository, noteShards);
+        notesService = new NotesService(notesRepository, new TopLikedLeaderboard(notesRepository, noteShards, 100),
+                new LikeAggregator(notesRepository, noteCache, noteShards, false), noteLengthStats,
+                new NoteSearchIndex(notesRepository, noteShards), noteCache, noteMetrics, noteShards, noteChangeFeed);
     }
 
     @Test
@@ -43,6 +79,7 @@ public class NotesServiceTest {
         assertNotNull(createdNote);
         assertEquals("Test Subject", createdNote.getSubject());
         verify(notesRepository, times(1)).save(any(Note.class));
+        assertEquals(1.0, meterRegistry.get("notes.added").counter().count());
     }
 
     @Test
@@ -69,6 +106,77 @@ public class NotesServiceTest {
         verify(notesRepository, times(1)).save(any(Note.class));
     }
 
+    @Test
+    void testModifyNote_IfMatch() {
+        Note existingNote = Note.builder().noteId(1L).subject("Old Subject").likes(2).version(3).build();
+
+        when(notesRepository.findById(1L)).thenReturn(Optional.of(existingNote));
+        when(notesRepository.save(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        Note modifiedNote = notesService.modifyNote(1L, Note.builder().subject("New Subject").build(), "\"2-2\", \"3-2\"");
+
+        assertEquals("New Subject", modifiedNote.getSubject());
+        verify(notesRepository, times(1)).save(any(Note.class));
+    }
+
+    @Test
+    void testModifyNote_IfMatchMismatch() {
+        Note existingNote = Note.builder().noteId(1L).subject("Old Subject").likes(2).version(4).build();
+
+        when(notesRepository.findById(1L)).thenReturn(Optional.of(existingNote));
+
+        assertThrows(PreconditionFailedException.class,
+                () -> notesService.modifyNote(1L, Note.builder().subject("New Subject").build(), "\"3-2\""));
+        verify(notesRepository, never()).save(any(Note.class));
+    }
+
+    @Test
+    void testModifyNote_ConcurrentChangeWithIfMatch() {
+        Note existingNote = Note.builder().noteId(1L).subject("Old Subject").version(3).build();
+
+        when(notesRepository.findById(1L)).thenReturn(Optional.of(existingNote));
+        when(notesRepository.save(any(Note.class))).thenThrow(new ObjectOptimisticLockingFailureException(Note.class, 1L));
+
+        assertThrows(PreconditionFailedException.class,
+                () -> notesService.modifyNote(1L, Note.builder().subject("New Subject").build(), "\"3-0\""));
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> notesService.modifyNote(1L, Note.builder().subject("New Subject").build()));
+    }
+
+    @Test
+    void testModifyNote_PendingLikesKeptUntilSaved() {
+        LikeAggregator likeAggregator = new LikeAggregator(notesRepository, noteCache, noteShards, true);
+        NotesService writeBehindService = new NotesService(notesRepository,
+                new TopLikedLeaderboard(notesRepository, noteShards, 100), likeAggregator, noteLengthStats,
+                new NoteSearchIndex(notesRepository, noteShards), noteCache, noteMetrics, noteShards, noteChangeFeed);
+        when(notesRepository.findById(1L)).thenAnswer(invocation -> Optional.of(Note.builder().noteId(1L).likes(3).version(3).build()));
+        likeAggregator.add(1L, 2, 3);
+
+        when(notesRepository.save(any(Note.class))).thenThrow(new ObjectOptimisticLockingFailureException(Note.class, 1L));
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> writeBehindService.modifyNote(1L, Note.builder().likes(10).build()));
+        assertEquals(2, likeAggregator.pendingDelta(1L));
+
+        doAnswer(invocation -> invocation.getArgument(0)).when(notesRepository).save(any(Note.class));
+        assertEquals(10, writeBehindService.modifyNote(1L, Note.builder().likes(10).build()).getLikes());
+        assertEquals(0, likeAggregator.pendingDelta(1L));
+    }
+
+    @Test
+    void testGetNoteETag_WithoutLoadingNote() {
+        when(notesRepository.findVersionById(1L)).thenReturn(Optional.of(noteVersion(5, 9)));
+
+        assertEquals("\"5-9\"", notesService.getNoteETag(1L));
+        verify(notesRepository, never()).findById(any());
+    }
+
+    @Test
+    void testGetNoteETag_NotFound() {
+        when(notesRepository.findVersionById(1L)).thenReturn(Optional.empty());
+
+        assertThrows(NoteNotFoundException.class, () -> notesService.getNoteETag(1L));
+    }
+
     @Test
     void testDeleteNote() {
         Long noteId = 1L;
@@ -98,14 +206,99 @@ public class NotesServiceTest {
         String subject = "Test Subject";
         Note note = new Note();
         note.setSubject(subject);
-        when(notesRepository.findBySubjectContainingIgnoreCase(subject)).thenReturn(List.of(note));
+        when(notesRepository.findBySubjectContainingIgnoreCaseAndNoteIdGreaterThanOrderByNoteIdAsc(
+                subject, 0L, Limit.of(PageCursor.DEFAULT_LIMIT + 1))).thenReturn(List.of(note));
 
-        List<Note> foundNotes = notesService.searchNotesBySubject(subject);
+        CursorPage<Note> foundNotes = notesService.searchNotesBySubject(subject, null, null);
 
         assertNotNull(foundNotes);
-        assertEquals(1, foundNotes.size());
-        assertEquals(subject, foundNotes.get(0).getSubject());
-        verify(notesRepository, times(1)).findBySubjectContainingIgnoreCase(subject);
+        assertEquals(1, foundNotes.getItems().size());
+        assertEquals(subject, foundNotes.getItems().get(0).getSubject());
+        assertNull(foundNotes.getNextCursor());
+        verify(notesRepository, times(1)).findBySubjectContainingIgnoreCaseAndNoteIdGreaterThanOrderByNoteIdAsc(
+                subject, 0L, Limit.of(PageCursor.DEFAULT_LIMIT + 1));
+    }
+
+    @Test
+    void testSearchNotesFullText() {
+        when(notesRepository.save(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        Note budget = notesService.addNote(Note.builder().noteId(1L).subject("Budget").description("Quarterly budget review").build());
+        Note party = notesService.addNote(Note.builder().noteId(2L).subject("Party").description("Team party, budget pending").build());
+        notesService.addNote(Note.builder().noteId(3L).subject("Standup").description("Daily standup").build());
+        when(notesRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(party, budget));
+
+        List<Note> found = notesService.searchNotesFullText("budget", 10);
+
+        assertEquals(List.of(1L, 2L), found.stream().map(Note::getNoteId).toList());  // Subject match ranks first
+        verify(notesRepository, never()).findBySubjectContainingIgnoreCase(anyString());
+    }
+
+    @Test
+    void testSearchNotesFullText_FollowsModifyAndDelete() {
+        Note note = Note.builder().noteId(1L).subject("Budget").description("Quarterly budget review").build();
+        when(notesRepository.save(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(notesRepository.findById(1L)).thenReturn(Optional.of(note));
+        when(notesRepository.findAllById(anyList())).thenReturn(List.of(note));
+        notesService.addNote(note);
+
+        notesService.modifyNote(1L, Note.builder().subject("Roadmap").description("Next year").build());
+        assertTrue(notesService.searchNotesFullText("budget", 10).isEmpty());
+        assertEquals(1, notesService.searchNotesFullText("roadmap", 10).size());
+
+        notesService.deleteNote(1L);
+        assertTrue(notesService.searchNotesFullText("roadmap", 10).isEmpty());
+    }
+
+    @Test
+    void testGetNotesByIds() {
+        Note first = Note.builder().noteId(1L).subject("First").build();
+        Note second = Note.builder().noteId(2L).subject("Second").build();
+        // The IN query returns rows in any order, and skips missing IDs
+        when(notesRepository.findAllById(List.of(2L, 3L, 1L))).thenReturn(List.of(first, second));
+
+        List<Note> notes = notesService.getNotesByIds(List.of(2L, 3L, 1L));
+
+        assertEquals(List.of(2L, 1L), notes.stream().map(Note::getNoteId).toList());
+        verify(notesRepository, times(1)).findAllById(anyList());
+        verify(notesRepository, never()).findById(any());
+    }
+
+    @Test
+    void testGetNotesByIds_TooMany() {
+        List<Long> ids = LongStream.rangeClosed(1, NotesService.MAX_BATCH_SIZE + 1).boxed().toList();
+
+        assertThrows(InvalidBatchException.class, () -> notesService.getNotesByIds(ids));
+        verify(notesRepository, never()).findAllById(anyList());
+    }
+
+    @Test
+    void testApplyBatch() {
+        Note note = Note.builder().noteId(1L).subject("Old").likes(1).build();
+        when(notesRepository.incrementLikes(eq(1L), eq(1), any(LocalDateTime.class))).thenReturn(1);
+        when(notesRepository.findById(1L)).thenReturn(Optional.of(note));
+        when(notesRepository.findById(2L)).thenReturn(Optional.empty());
+        when(notesRepository.save(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<BatchResult> results = notesService.applyBatch(List.of(
+                new BatchOperation(BatchOperation.Type.LIKE, 1L, null),
+                new BatchOperation(BatchOperation.Type.MODIFY, 1L, Note.builder().subject("New").build()),
+                new BatchOperation(BatchOperation.Type.DELETE, 2L, null),
+                new BatchOperation(BatchOperation.Type.MODIFY, 1L, null)));
+
+        assertEquals(List.of(200, 200, 404, 400), results.stream().map(BatchResult::getStatus).toList());
+        assertEquals("New", results.get(1).getNote().getSubject());
+        assertEquals("Note with ID 2 not found", results.get(2).getError());
+        verify(notesRepository, never()).delete(any(Note.class));
+        verify(notesRepository, times(2)).flush();  // After each applied operation
+    }
+
+    @Test
+    void testApplyBatch_TooMany() {
+        List<BatchOperation> operations = Collections.nCopies(NotesService.MAX_BATCH_SIZE + 1,
+                new BatchOperation(BatchOperation.Type.LIKE, 1L, null));
+
+        assertThrows(InvalidBatchException.class, () -> notesService.applyBatch(operations));
+        verify(notesRepository, never()).incrementLikes(any(), anyInt(), any());
     }
 
     @Test
@@ -146,31 +339,110 @@ public class NotesServiceTest {
     @Test
     void testGetWordCount() {
         Long noteId = 1L;
+
+        when(notesRepository.findWordCountById(noteId)).thenReturn(Optional.of(5));
+
+        Integer wordCount = notesService.getWordCount(noteId);
+
+        assertEquals(5, wordCount);
+        verify(notesRepository, times(1)).findWordCountById(noteId);
+        verify(notesRepository, never()).findById(noteId);  // The description is never loaded
+    }
+
+    @Test
+    void testGetWordCount_NotBackfilled() {
+        Long noteId = 1L;
         Note note = new Note();
         note.setNoteId(noteId);
         note.setDescription("This is a test note.");
 
+        when(notesRepository.findWordCountById(noteId)).thenReturn(Optional.empty());
         when(notesRepository.findById(noteId)).thenReturn(Optional.of(note));
 
-        Integer wordCount = notesService.getWordCount(noteId);
+        assertEquals(5, notesService.getWordCount(noteId));
+    }
 
-        assertEquals(5, wordCount);
-        verify(notesRepository, times(1)).findById(noteId);
+    @Test
+    void testGetWordCount_NotFound() {
+        Long noteId = 1L;
+
+        when(notesRepository.findWordCountById(noteId)).thenReturn(Optional.empty());
+        when(notesRepository.findById(noteId)).thenReturn(Optional.empty());
+
+        assertThrows(NoteNotFoundException.class, () -> notesService.getWordCount(noteId));
     }
 
     @Test
-    void testGetAverageNoteLength() {
-        Note note1 = new Note();
-        note1.setDescription("This is a test note.");
-        Note note2 = new Note();
-        note2.setDescription("This is another test note.");
+    void testGetTextStats() {
+        Long noteId = 1L;
+        Note note = new Note();
+        note.setNoteId(noteId);
+        note.setDescription("This is a test note. It has two sentences");
+
+        when(notesRepository.findById(noteId)).thenReturn(Optional.of(note));
+
+        TextStats stats = notesService.getTextStats(noteId);
+
+        assertEquals(9, stats.getWords());
+        assertEquals(2, stats.getSentences());
+        assertEquals(3, stats.getReadingTimeSeconds());
+    }
+
+    @Test
+    void testGetTextStats_NotFound() {
+        when(notesRepository.findById(1L)).thenReturn(Optional.empty());
 
-        when(notesRepository.findAll()).thenReturn(List.of(note1, note2));
+        assertThrows(NoteNotFoundException.class, () -> notesService.getTextStats(1L));
+    }
+
+    @Test
+    void testGetAverageNoteLength() {
+        when(notesRepository.sumWordCounts()).thenReturn(lengthTotals(10, 2));
 
         Double averageLength = notesService.getAverageNoteLength();
 
         assertEquals(5.0, averageLength);
-        verify(notesRepository, times(1)).findAll();
+        verify(notesRepository, times(1)).sumWordCounts();
+        verify(notesRepository, never()).findAll();
+    }
+
+    @Test
+    void testGetAverageNoteLength_FollowsWrites() {
+        when(notesRepository.sumWordCounts()).thenReturn(lengthTotals(10, 2));
+        when(notesRepository.save(any(Note.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        notesService.getAverageNoteLength();
+
+        Note added = notesService.addNote(Note.builder().noteId(3L).description("one two three four five six seven eight").build());
+        assertEquals(6.0, notesService.getAverageNoteLength());  // (10 + 8) / 3
+
+        when(notesRepository.findById(3L)).thenReturn(Optional.of(added));
+        notesService.modifyNote(3L, Note.builder().description("one two").build());
+        assertEquals(4.0, notesService.getAverageNoteLength());  // (10 + 2) / 3
+
+        notesService.deleteNote(3L);
+        assertEquals(5.0, notesService.getAverageNoteLength());  // 10 / 2
+        verify(notesRepository, times(1)).sumWordCounts();
+    }
+
+    @Test
+    void testGetAverageNoteLength_RecoveredAgainOnceExpired() {
+        when(notesRepository.sumWordCounts()).thenReturn(lengthTotals(10, 2));
+        notesService.getAverageNoteLength();
+
+        // A note the recovery already summed, recorded again once committed
+        noteLengthStats.added(8);
+        assertEquals(6.0, notesService.getAverageNoteLength());
+
+        noteLengthStats.expire();
+        assertEquals(5.0, notesService.getAverageNoteLength());
+        verify(notesRepository, times(2)).sumWordCounts();
+    }
+
+    @Test
+    void testGetAverageNoteLength_NoNotes() {
+        when(notesRepository.sumWordCounts()).thenReturn(lengthTotals(0, 0));
+
+        assertEquals(0.0, notesService.getAverageNoteLength());
     }
 
     @Test
@@ -178,17 +450,57 @@ public class NotesServiceTest {
         Long noteId = 1L;
         Note note = new Note();
         note.setNoteId(noteId);
-        note.setLikes(0);
+        note.setLikes(1);
 
+        when(notesRepository.incrementLikes(eq(noteId), eq(1), any(LocalDateTime.class))).thenReturn(1);
         when(notesRepository.findById(noteId)).thenReturn(Optional.of(note));
-        when(notesRepository.save(any(Note.class))).thenReturn(note);
 
         Note likedNote = notesService.likeNote(noteId);
 
         assertNotNull(likedNote);
         assertEquals(1, likedNote.getLikes());
+        verify(notesRepository, times(1)).incrementLikes(eq(noteId), eq(1), any(LocalDateTime.class));
+        verify(notesRepository, never()).save(any(Note.class));
+        assertEquals(1.0, meterRegistry.get("notes.likes").tag("direction", "like").counter().count());
+    }
+
+    @Test
+    void testLikeNote_NotFound() {
+        Long noteId = 1L;
+
+        when(notesRepository.incrementLikes(eq(noteId), eq(1), any(LocalDateTime.class))).thenReturn(0);
+
+        assertThrows(NoteNotFoundException.class, () -> notesService.likeNote(noteId));
+    }
+
+    @Test
+    void testLikeNote_CachedNoteIsNotReadAgain() {
+        Long noteId = 1L;
+        NoteCache enabledCache = new NoteCache(true, 100, Duration.ofMinutes(10));
+        NotesService cachingService = new NotesService(notesRepository,
+                new TopLikedLeaderboard(notesRepository, noteShards, 100),
+                new LikeAggregator(notesRepository, enabledCache, noteShards, false), noteLengthStats,
+                new NoteSearchIndex(notesRepository, noteShards), enabledCache, noteMetrics, noteShards, noteChangeFeed);
+        Note note = Note.builder().noteId(noteId).subject("Viral").description("Long ".repeat(20_000)).likes(4).version(7).build();
+
+        when(notesRepository.findById(noteId)).thenReturn(Optional.of(note));
+        when(notesRepository.incrementLikes(eq(noteId), eq(1), any(LocalDateTime.class))).thenReturn(1);
+        when(notesRepository.findVersionById(noteId)).thenReturn(Optional.of(noteVersion(8, 5)));
+        cachingService.getNoteById(noteId);
+
+        Note likedNote = cachingService.likeNote(noteId);
+
+        // Only the likes and version are read back, the description comes from the cache
+        assertEquals(5, likedNote.getLikes());
+        assertEquals(8, likedNote.getVersion());
+        assertEquals(note.getDescription(), likedNote.getDescription());
         verify(notesRepository, times(1)).findById(noteId);
-        verify(notesRepository, times(1)).save(any(Note.class));
+
+        // Changed by someone else since it was cached: the whole note is read again
+        cachingService.getNoteById(noteId);
+        when(notesRepository.findVersionById(noteId)).thenReturn(Optional.of(noteVersion(10, 6)));
+        cachingService.likeNote(noteId);
+        verify(notesRepository, times(3)).findById(noteId);
     }
 
     @Test
@@ -196,17 +508,58 @@ public class NotesServiceTest {
         Long noteId = 1L;
         Note note = new Note();
         note.setNoteId(noteId);
-        note.setLikes(1);
+        note.setLikes(0);
 
+        when(notesRepository.incrementLikes(eq(noteId), eq(-1), any(LocalDateTime.class))).thenReturn(1);
         when(notesRepository.findById(noteId)).thenReturn(Optional.of(note));
-        when(notesRepository.save(any(Note.class))).thenReturn(note);
 
         Note unlikedNote = notesService.unlikeNote(noteId);
 
         assertNotNull(unlikedNote);
         assertEquals(0, unlikedNote.getLikes());
-        verify(notesRepository, times(1)).findById(noteId);
-        verify(notesRepository, times(1)).save(any(Note.class));
+        verify(notesRepository, times(1)).incrementLikes(eq(noteId), eq(-1), any(LocalDateTime.class));
+        verify(notesRepository, never()).save(any(Note.class));
+    }
+
+    @Test
+    void testLikeNote_WriteBehind() {
+        Long noteId = 1L;
+        LikeAggregator likeAggregator = new LikeAggregator(notesRepository, noteCache, noteShards, true);
+        NotesService writeBehindService = new NotesService(notesRepository,
+                new TopLikedLeaderboard(notesRepository, noteShards, 100), likeAggregator, noteLengthStats,
+                new NoteSearchIndex(notesRepository, noteShards), noteCache, noteMetrics, noteShards, noteChangeFeed);
+        Note note = Note.builder().noteId(noteId).likes(3).build();
+
+        when(notesRepository.findById(noteId)).thenReturn(Optional.of(note));
+
+        writeBehindService.likeNote(noteId);
+        Note likedNote = writeBehindService.likeNote(noteId);
+
+        assertEquals(5, likedNote.getLikes());  // Persisted likes plus the pending delta
+        assertEquals(5, writeBehindService.getNoteById(noteId).getLikes());
+        assertEquals(3, note.getLikes());  // The entity itself is left untouched
+        verify(notesRepository, never()).incrementLikes(any(), anyInt(), any());
+
+        likeAggregator.flush();
+
+        verify(notesRepository, times(1)).incrementLikesBatch(Map.of(noteId, 2L));
+    }
+
+    @Test
+    void testUnlikeNote_WriteBehindStopsAtZero() {
+        Long noteId = 1L;
+        LikeAggregator likeAggregator = new LikeAggregator(notesRepository, noteCache, noteShards, true);
+        NotesService writeBehindService = new NotesService(notesRepository,
+                new TopLikedLeaderboard(notesRepository, noteShards, 100), likeAggregator, noteLengthStats,
+                new NoteSearchIndex(notesRepository, noteShards), noteCache, noteMetrics, noteShards, noteChangeFeed);
+
+        when(notesRepository.findById(noteId)).thenReturn(Optional.of(Note.builder().noteId(noteId).likes(1).build()));
+
+        writeBehindService.unlikeNote(noteId);
+        Note unlikedNote = writeBehindService.unlikeNote(noteId);
+
+        assertEquals(0, unlikedNote.getLikes());
+        assertEquals(-1, likeAggregator.pendingDelta(noteId));
     }
 
     @Test
@@ -214,14 +567,16 @@ public class NotesServiceTest {
         Note likedNote = new Note();
         likedNote.setLikes(5);
 
-        when(notesRepository.findByLikesGreaterThan(0)).thenReturn(List.of(likedNote));
+        when(notesRepository.findByLikesGreaterThanAndNoteIdGreaterThanOrderByNoteIdAsc(
+                0, 0L, Limit.of(PageCursor.DEFAULT_LIMIT + 1))).thenReturn(List.of(likedNote));
 
-        List<Note> likedNotes = notesService.getLikedNotes();
+        CursorPage<Note> likedNotes = notesService.getLikedNotes(null, null);
 
         assertNotNull(likedNotes);
-        assertEquals(1, likedNotes.size());
-        assertEquals(5, likedNotes.get(0).getLikes());
-        verify(notesRepository, times(1)).findByLikesGreaterThan(0);
+        assertEquals(1, likedNotes.getItems().size());
+        assertEquals(5, likedNotes.getItems().get(0).getLikes());
+        verify(notesRepository, times(1)).findByLikesGreaterThanAndNoteIdGreaterThanOrderByNoteIdAsc(
+                0, 0L, Limit.of(PageCursor.DEFAULT_LIMIT + 1));
     }
 
     @Test
@@ -229,56 +584,121 @@ public class NotesServiceTest {
         Note note1 = new Note();
         Note note2 = new Note();
 
-        when(notesRepository.findAll()).thenReturn(List.of(note1, note2));
+        when(notesRepository.findByNoteIdGreaterThanOrderByNoteIdAsc(0L, Limit.of(PageCursor.DEFAULT_LIMIT + 1)))
+                .thenReturn(List.of(note1, note2));
 
-        List<Note> allNotes = notesService.getAllNotes();
+        CursorPage<Note> allNotes = notesService.getAllNotes(null, null);
 
         assertNotNull(allNotes);
-        assertEquals(2, allNotes.size());
-        verify(notesRepository, times(1)).findAll();
+        assertEquals(2, allNotes.getItems().size());
+        assertNull(allNotes.getNextCursor());
+        verify(notesRepository, times(1)).findByNoteIdGreaterThanOrderByNoteIdAsc(0L, Limit.of(PageCursor.DEFAULT_LIMIT + 1));
+    }
+
+    @Test
+    void testGetAllNotes_NextPage() {
+        List<Note> rows = List.of(
+                Note.builder().noteId(11L).build(),
+                Note.builder().noteId(12L).build(),
+                Note.builder().noteId(13L).build()
+        );
+        String cursor = PageCursor.encode(10L);
+
+        when(notesRepository.findByNoteIdGreaterThanOrderByNoteIdAsc(10L, Limit.of(3))).thenReturn(rows);
+
+        CursorPage<Note> page = notesService.getAllNotes(cursor, 2);
+
+        assertEquals(2, page.getItems().size());
+        assertEquals(12L, PageCursor.decode(page.getNextCursor()));
+    }
+
+    @Test
+    void testGetAllNotes_InvalidCursor() {
+        assertThrows(InvalidCursorException.class, () -> notesService.getAllNotes("not-a-cursor", 10));
     }
 
     @Test
     public void testGetTopLikedNotes() {
         // Arrange
+        List<NoteLikes> ranking = List.of(noteLikes(1L, 10), noteLikes(2L, 5), noteLikes(3L, 3));
         List<Note> notes = Arrays.asList(
+                Note.builder().noteId(3L).subject("Note 3").description("Description 3").likes(3).build(),
                 Note.builder().noteId(1L).subject("Note 1").description("Description 1").likes(10).build(),
-                Note.builder().noteId(1L).subject("Note 2").description("Description 2").likes(5).build(),
-                Note.builder().noteId(1L).subject("Note 3").description("Description 3").likes(3).build()
+                Note.builder().noteId(2L).subject("Note 2").description("Description 2").likes(5).build()
         );
-        when(notesRepository.findAll()).thenReturn(notes);
+        when(notesRepository.findLikeRanking(any(Limit.class))).thenReturn(ranking);
+        when(notesRepository.findAllById(List.of(1L, 2L, 3L))).thenReturn(notes);
 
         // Act
-        List<Note> topLikedNotes = notesService.getTopLikedNotes();
+        List<Note> topLikedNotes = notesService.getTopLikedNotes(5);
 
         // Assert
         assertEquals(3, topLikedNotes.size());
         assertEquals(10, topLikedNotes.get(0).getLikes()); // Note with 10 likes should be first
         assertEquals(5, topLikedNotes.get(1).getLikes()); // Note with 5 likes should be second
         assertEquals(3, topLikedNotes.get(2).getLikes()); // Note with 3 likes should be third
+        verify(notesRepository, never()).findAll();
+    }
+
+    @Test
+    public void testGetTopLikedNotes_FollowsLikes() {
+        // Arrange
+        when(notesRepository.findLikeRanking(any(Limit.class))).thenReturn(List.of(noteLikes(1L, 10), noteLikes(2L, 5)));
+        Note note2 = Note.builder().noteId(2L).subject("Note 2").likes(15).build();
+        when(notesRepository.incrementLikes(eq(2L), eq(10), any(LocalDateTime.class))).thenReturn(1);
+        when(notesRepository.findById(2L)).thenReturn(Optional.of(note2));
+        when(notesRepository.findAllById(anyList())).thenReturn(List.of(note2));
+        notesService.getTopLikedNotes(1);
+
+        // Act
+        notesService.boostLikes(2L);
+        List<Note> topLikedNotes = notesService.getTopLikedNotes(1);
+
+        // Assert
+        assertEquals(2L, topLikedNotes.get(0).getNoteId()); // 15 likes now outrank 10
+        verify(notesRepository, times(1)).findLikeRanking(any(Limit.class));
+    }
+
+    private static NoteLikes noteLikes(Long noteId, int likes) {
+        return new NoteLikes() {
+            @Override
+            public Long getNoteId() {
+                return noteId;
+            }
+
+            @Override
+            public int getLikes() {
+                return likes;
+            }
+
+            @Override
+            public long getVersion() {
+                return 0;
+            }
+        };
     }
 
     @Test
     public void testBoostLikes() {
         // Arrange
         Long noteId = 2L;
-        Note note2 = Note.builder().noteId(1L).subject("Note 2").description("Description 2").likes(5).build();
+        Note note2 = Note.builder().noteId(2L).subject("Note 2").description("Description 2").likes(15).build();
+        when(notesRepository.incrementLikes(eq(noteId), eq(10), any(LocalDateTime.class))).thenReturn(1);
         when(notesRepository.findById(noteId)).thenReturn(Optional.of(note2));
-        when(notesRepository.save(note2)).thenReturn(note2);
 
         // Act
         Note updatedNote = notesService.boostLikes(noteId);
 
         // Assert
         assertEquals(15, updatedNote.getLikes()); // Likes should increase by 10
-        verify(notesRepository, times(1)).save(note2); // Verify that save was called once
+        verify(notesRepository, times(1)).incrementLikes(eq(noteId), eq(10), any(LocalDateTime.class)); // Single atomic update
     }
 
     @Test
     public void testBoostLikes_NoteNotFound() {
         // Arrange
         Long noteId = 4L; // Non-existing note
-        when(notesRepository.findById(noteId)).thenReturn(Optional.empty());
+        when(notesRepository.incrementLikes(eq(noteId), eq(10), any(LocalDateTime.class))).thenReturn(0);
 
         // Act & Assert
         assertThrows(NoteNotFoundException.class, () -> notesService.boostLikes(noteId));
@@ -288,25 +708,58 @@ public class NotesServiceTest {
     public void testResetLikes() {
         // Arrange
         Long noteId = 1L;
-        Note note1 = Note.builder().noteId(1L).subject("Note 1").description("Description 1").likes(10).build();
+        Note note1 = Note.builder().noteId(1L).subject("Note 1").description("Description 1").likes(0).build();
+        when(notesRepository.resetLikes(eq(noteId), any(LocalDateTime.class))).thenReturn(1);
         when(notesRepository.findById(noteId)).thenReturn(Optional.of(note1));
-        when(notesRepository.save(note1)).thenReturn(note1);
 
         // Act
         Note updatedNote = notesService.resetLikes(noteId);
 
         // Assert
         assertEquals(0, updatedNote.getLikes()); // Likes should be reset to 0
-        verify(notesRepository, times(1)).save(note1); // Verify that save was called once
+        verify(notesRepository, times(1)).resetLikes(eq(noteId), any(LocalDateTime.class)); // Single atomic update
     }
 
     @Test
     public void testResetLikes_NoteNotFound() {
         // Arrange
         Long noteId = 5L; // Non-existing note
-        when(notesRepository.findById(noteId)).thenReturn(Optional.empty());
+        when(notesRepository.resetLikes(eq(noteId), any(LocalDateTime.class))).thenReturn(0);
 
         // Act & Assert
         assertThrows(NoteNotFoundException.class, () -> notesService.resetLikes(noteId));
     }
+
+    private static NoteVersion noteVersion(long version, int likes) {
+        return new NoteVersion() {
+            @Override
+            public long getVersion() {
+                return version;
+            }
+
+            @Override
+            public int getLikes() {
+                return likes;
+            }
+
+            @Override
+            public LocalDateTime getTimestampUpdated() {
+                return null;
+            }
+        };
+    }
+
+    private static NoteLengthTotals lengthTotals(long totalWords, long noteCount) {
+        return new NoteLengthTotals() {
+            @Override
+            public long getTotalWords() {
+                return totalWords;
+            }
+
+            @Override
+            public long getNoteCount() {
+                return noteCount;
+            }
+        };
+    }
 }
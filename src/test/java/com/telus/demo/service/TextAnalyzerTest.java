@@ -0,0 +1,68 @@
+package com.telus.demo.service;
+
+import com.telus.demo.modal.TextStats;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TextAnalyzerTest {
+
+    @Test
+    void testCountWordsMatchesWhitespaceRuns() {
+        assertEquals(0, TextAnalyzer.countWords(null));
+        assertEquals(0, TextAnalyzer.countWords(""));
+        assertEquals(0, TextAnalyzer.countWords(" \t\n "));
+        assertEquals(1, TextAnalyzer.countWords("word"));
+        assertEquals(5, TextAnalyzer.countWords("This is a test note."));
+        // Leading whitespace used to count as an empty first word with the regex split
+        assertEquals(3, TextAnalyzer.countWords("  three\twords\n here "));
+    }
+
+    @Test
+    void testAnalyze() {
+        TextStats stats = TextAnalyzer.analyze("The cat sat. The dog ran! Did THE cat see it? Yes");
+
+        assertEquals(12, stats.getWords());
+        assertEquals(49, stats.getCharacters());
+        assertEquals(4, stats.getSentences());
+        assertEquals(9, stats.getUniqueWords());  // Case and punctuation are ignored
+        assertEquals(4, stats.getReadingTimeSeconds());
+    }
+
+    @Test
+    void testAnalyzeIgnoresRepeatedTerminatorsAndCountsCodePoints() {
+        TextStats stats = TextAnalyzer.analyze("Wait... what?! 😀");
+
+        assertEquals(3, stats.getWords());
+        assertEquals(16, stats.getCharacters());  // The emoji is one code point, two chars
+        assertEquals(3, stats.getSentences());
+    }
+
+    @Test
+    void testAnalyzeMissingText() {
+        assertEquals(new TextStats(0, 0, 0, 0, 0), TextAnalyzer.analyze(null));
+        assertEquals(new TextStats(0, 3, 0, 0, 0), TextAnalyzer.analyze("   "));
+    }
+
+    @Test
+    void testUniqueWordsEstimate() {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            text.append("word").append(random.nextInt(1_000)).append(' ');
+        }
+
+        int uniqueWords = TextAnalyzer.analyze(text).getUniqueWords();
+
+        assertTrue(Math.abs(uniqueWords - 1_000) < 50, "estimate " + uniqueWords);
+    }
+
+    @Test
+    void testReadingTime() {
+        assertEquals(0, TextAnalyzer.readingTimeSeconds(0));
+        assertEquals(1, TextAnalyzer.readingTimeSeconds(1));
+        assertEquals(60, TextAnalyzer.readingTimeSeconds(TextAnalyzer.WORDS_PER_MINUTE));
+    }
+}
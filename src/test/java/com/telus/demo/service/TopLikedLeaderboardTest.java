@@ -0,0 +1,127 @@
+package com.telus.demo.service;
+
+import com.telus.demo.dao.NoteShards;
+import com.telus.demo.dao.NotesRepository;
+import com.telus.demo.modal.NoteLikes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class TopLikedLeaderboardTest {
+
+    @Mock
+    private NotesRepository notesRepository;
+
+    // Likes per note ID, index = note ID
+    private final int[] likes = {0, 50, 40, 30, 20, 10};
+
+    private TopLikedLeaderboard leaderboard;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(notesRepository.findLikeRanking(any(Limit.class))).thenAnswer(invocation -> {
+            Limit limit = invocation.getArgument(0);
+            List<NoteLikes> rows = new ArrayList<>();
+            for (long id = 1; id < likes.length && rows.size() < limit.max(); id++) {
+                rows.add(noteLikes(id, likes[(int) id]));
+            }
+            rows.sort((a, b) -> Integer.compare(b.getLikes(), a.getLikes()));
+            return rows;
+        });
+        leaderboard = new TopLikedLeaderboard(notesRepository, new NoteShards(List.of()), 3);
+        leaderboard.rebuild();
+    }
+
+    @Test
+    void testTopIds() {
+        assertEquals(List.of(1L, 2L, 3L), leaderboard.topIds(3));
+        assertEquals(List.of(1L), leaderboard.topIds(1));
+    }
+
+    @Test
+    void testUntrackedNoteClimbsIntoRanking() {
+        likes[5] = 45;
+        leaderboard.update(5L, 45, 1);
+
+        assertEquals(List.of(1L, 5L, 2L), leaderboard.topIds(3));
+        verify(notesRepository, times(1)).findLikeRanking(any(Limit.class));
+    }
+
+    @Test
+    void testTrackedNoteClimbsWithoutRebuild() {
+        likes[3] = 60;
+        leaderboard.update(3L, 60, 1);
+
+        assertEquals(List.of(3L, 1L, 2L), leaderboard.topIds(3));
+        verify(notesRepository, times(1)).findLikeRanking(any(Limit.class));
+    }
+
+    @Test
+    void testDecreaseRebuildsFromDatabase() {
+        likes[1] = 0;
+        leaderboard.update(1L, 0, 1);
+
+        // Note 4 was untracked and now outranks note 1
+        assertEquals(List.of(2L, 3L, 4L), leaderboard.topIds(3));
+        verify(notesRepository, times(2)).findLikeRanking(any(Limit.class));
+    }
+
+    @Test
+    void testRemoveRebuildsFromDatabase() {
+        likes[2] = -1;
+        leaderboard.remove(2L);
+
+        assertEquals(List.of(1L, 3L, 4L), leaderboard.topIds(3));
+    }
+
+    @Test
+    void testIncrementalUpdatesWithoutTruncation() {
+        TopLikedLeaderboard wide = new TopLikedLeaderboard(notesRepository, new NoteShards(List.of()), 10);
+        wide.rebuild();
+
+        wide.update(6L, 35, 1);
+        wide.update(1L, 5, 1);
+
+        assertEquals(List.of(2L, 6L, 3L, 4L, 5L, 1L), wide.topIds(10));
+        verify(notesRepository, times(2)).findLikeRanking(any(Limit.class));
+    }
+
+    @Test
+    void testUpdateOlderThanTheTrackedOneIsIgnored() {
+        // Callbacks of two commits run in the opposite order
+        leaderboard.update(3L, 60, 2);
+        leaderboard.update(3L, 35, 1);
+
+        assertEquals(List.of(3L, 1L, 2L), leaderboard.topIds(3));
+        verify(notesRepository, times(1)).findLikeRanking(any(Limit.class));
+    }
+
+    private static NoteLikes noteLikes(Long noteId, int likes) {
+        return new NoteLikes() {
+            @Override
+            public Long getNoteId() {
+                return noteId;
+            }
+
+            @Override
+            public int getLikes() {
+                return likes;
+            }
+
+            @Override
+            public long getVersion() {
+                return 0;
+            }
+        };
+    }
+}